@@ -0,0 +1,201 @@
+package geometries;
+
+import primitives.Point;
+import primitives.Ray;
+
+/**
+ * Axis aligned bounding box (AABB) of a geometry in 3D space.
+ * A box is defined by its minimal and maximal corners.
+ *
+ * @param minX minimal X coordinate
+ * @param minY minimal Y coordinate
+ * @param minZ minimal Z coordinate
+ * @param maxX maximal X coordinate
+ * @param maxY maximal Y coordinate
+ * @param maxZ maximal Z coordinate
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+public record BoundingBox(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+
+    /**
+     * Constructs the smallest box containing all the given points.
+     *
+     * @param points the points to enclose (at least one)
+     * @return the bounding box of the points
+     * @throws IllegalArgumentException if no points were given
+     */
+    public static BoundingBox of(Point... points) {
+        if (points.length == 0)
+            throw new IllegalArgumentException("Bounding box requires at least one point");
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY, minZ = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+        for (Point p : points) {
+            minX = Math.min(minX, p.getX());
+            minY = Math.min(minY, p.getY());
+            minZ = Math.min(minZ, p.getZ());
+            maxX = Math.max(maxX, p.getX());
+            maxY = Math.max(maxY, p.getY());
+            maxZ = Math.max(maxZ, p.getZ());
+        }
+        return new BoundingBox(minX, minY, minZ, maxX, maxY, maxZ);
+    }
+
+    /**
+     * Returns the smallest box containing both this box and another one.
+     *
+     * @param other the other box
+     * @return the union box
+     */
+    public BoundingBox union(BoundingBox other) {
+        return new BoundingBox(
+                Math.min(minX, other.minX), Math.min(minY, other.minY), Math.min(minZ, other.minZ),
+                Math.max(maxX, other.maxX), Math.max(maxY, other.maxY), Math.max(maxZ, other.maxZ));
+    }
+
+    /**
+     * Checks whether the box overlaps another box (touching counts).
+     *
+     * @param other the other box
+     * @return true if the boxes have a common point
+     */
+    public boolean overlaps(BoundingBox other) {
+        return overlaps(other.minX, other.minY, other.minZ, other.maxX, other.maxY, other.maxZ);
+    }
+
+    /**
+     * Checks whether the box overlaps a box given by its corners.
+     *
+     * @return true if the boxes have a common point
+     */
+    boolean overlaps(double x0, double y0, double z0, double x1, double y1, double z1) {
+        return x0 <= maxX && x1 >= minX && y0 <= maxY && y1 >= minY && z0 <= maxZ && z1 >= minZ;
+    }
+
+    /**
+     * Checks whether the box overlaps a ball.
+     *
+     * @return true if the ball reaches into the box
+     */
+    boolean overlapsSphere(double cx, double cy, double cz, double radius) {
+        double dx = Math.max(0, Math.max(minX - cx, cx - maxX));
+        double dy = Math.max(0, Math.max(minY - cy, cy - maxY));
+        double dz = Math.max(0, Math.max(minZ - cz, cz - maxZ));
+        return dx * dx + dy * dy + dz * dz <= radius * radius;
+    }
+
+    /**
+     * Checks whether an infinite plane passes through the box.
+     *
+     * @param nx normal X
+     * @param ny normal Y
+     * @param nz normal Z
+     * @param d  the plane offset (n*x + d = 0 on the plane)
+     * @return true if the box has corners on both sides of the plane (or on it)
+     */
+    boolean overlapsPlane(double nx, double ny, double nz, double d) {
+        double high = nx * (nx >= 0 ? maxX : minX) + ny * (ny >= 0 ? maxY : minY) + nz * (nz >= 0 ? maxZ : minZ) + d;
+        double low = nx * (nx >= 0 ? minX : maxX) + ny * (ny >= 0 ? minY : maxY) + nz * (nz >= 0 ? minZ : maxZ) + d;
+        return low <= 0 && high >= 0;
+    }
+
+    /**
+     * Returns the minimal coordinate of the box along an axis.
+     *
+     * @param axis the axis index (0 - X, 1 - Y, 2 - Z)
+     * @return the minimal coordinate
+     */
+    public double min(int axis) {
+        return axis == 0 ? minX : axis == 1 ? minY : minZ;
+    }
+
+    /**
+     * Returns the maximal coordinate of the box along an axis.
+     *
+     * @param axis the axis index (0 - X, 1 - Y, 2 - Z)
+     * @return the maximal coordinate
+     */
+    public double max(int axis) {
+        return axis == 0 ? maxX : axis == 1 ? maxY : maxZ;
+    }
+
+    /**
+     * Checks whether a ray passes through the box (slab test).
+     *
+     * @param ray the ray to check
+     * @return true if the ray hits the box in front of its head
+     */
+    public boolean intersects(Ray ray) {
+        Point p0 = ray.getp1();
+        Point dir = ray.getDirection();
+        return intersects(p0.getX(), p0.getY(), p0.getZ(),
+                1 / dir.getX(), 1 / dir.getY(), 1 / dir.getZ(),
+                minX, minY, minZ, maxX, maxY, maxZ, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Slab test of a ray against box coordinates, shared by all the packed box representations.
+     *
+     * @param ox   ray head X
+     * @param oy   ray head Y
+     * @param oz   ray head Z
+     * @param invX inverse of the ray direction X component
+     * @param invY inverse of the ray direction Y component
+     * @param invZ inverse of the ray direction Z component
+     * @param x0   box minimal X
+     * @param y0   box minimal Y
+     * @param z0   box minimal Z
+     * @param x1   box maximal X
+     * @param y1   box maximal Y
+     * @param z1   box maximal Z
+     * @param tMax maximal distance along the ray to look for
+     * @return true if the ray enters the box between its head and tMax
+     */
+    static boolean intersects(double ox, double oy, double oz, double invX, double invY, double invZ,
+                              double x0, double y0, double z0, double x1, double y1, double z1, double tMax) {
+        double tx0 = (x0 - ox) * invX, tx1 = (x1 - ox) * invX;
+        double ty0 = (y0 - oy) * invY, ty1 = (y1 - oy) * invY;
+        double tz0 = (z0 - oz) * invZ, tz1 = (z1 - oz) * invZ;
+        // NaN (0 * infinity) happens only when the head lies on a slab plane of a parallel ray
+        // - the ray is then inside that slab along all its length
+        double tNear = Math.max(Math.max(minNaN(tx0, tx1), minNaN(ty0, ty1)), Math.max(minNaN(tz0, tz1), 0));
+        double tFar = Math.min(Math.min(maxNaN(tx0, tx1), maxNaN(ty0, ty1)), Math.min(maxNaN(tz0, tz1), tMax));
+        return tNear <= tFar;
+    }
+
+    /**
+     * Slab test of a ray against box coordinates that also tells where the ray enters the box.
+     *
+     * @param ox   ray head X
+     * @param oy   ray head Y
+     * @param oz   ray head Z
+     * @param invX inverse of the ray direction X component
+     * @param invY inverse of the ray direction Y component
+     * @param invZ inverse of the ray direction Z component
+     * @param x0   box minimal X
+     * @param y0   box minimal Y
+     * @param z0   box minimal Z
+     * @param x1   box maximal X
+     * @param y1   box maximal Y
+     * @param z1   box maximal Z
+     * @param tMin minimal distance along the ray to look for (not negative)
+     * @param tMax maximal distance along the ray to look for
+     * @return the distance where the ray enters the box, at least tMin, or NaN if it misses the box in the range
+     */
+    static double entry(double ox, double oy, double oz, double invX, double invY, double invZ,
+                        double x0, double y0, double z0, double x1, double y1, double z1, double tMin, double tMax) {
+        double tx0 = (x0 - ox) * invX, tx1 = (x1 - ox) * invX;
+        double ty0 = (y0 - oy) * invY, ty1 = (y1 - oy) * invY;
+        double tz0 = (z0 - oz) * invZ, tz1 = (z1 - oz) * invZ;
+        double tNear = Math.max(Math.max(minNaN(tx0, tx1), minNaN(ty0, ty1)), Math.max(minNaN(tz0, tz1), tMin));
+        double tFar = Math.min(Math.min(maxNaN(tx0, tx1), maxNaN(ty0, ty1)), Math.min(maxNaN(tz0, tz1), tMax));
+        return tNear <= tFar ? tNear : Double.NaN;
+    }
+
+    private static double minNaN(double a, double b) {
+        return Double.isNaN(a) || Double.isNaN(b) ? Double.NEGATIVE_INFINITY : Math.min(a, b);
+    }
+
+    private static double maxNaN(double a, double b) {
+        return Double.isNaN(a) || Double.isNaN(b) ? Double.POSITIVE_INFINITY : Math.max(a, b);
+    }
+}
@@ -0,0 +1,1864 @@
+package geometries;
+
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.IntPredicate;
+
+import static primitives.Util.alignZero;
+import static primitives.Util.isZero;
+
+/**
+ * Class CompiledScene is the frozen, read-only render representation of a {@link Geometries} scene.
+ * <p>
+ * Spheres, triangles and planes are packed into one flat array together with their
+ * precomputed data (squared radii, triangle edges and unit normals), so the intersection kernels
+ * read consecutive numbers instead of chasing {@code Triangle -> List -> Point -> Double3} references.
+ * Any other geometry (polygons, tubes, cylinders, user defined ones) is kept as a reference and
+ * delegated to. All bounded primitives are indexed by a bounding volume hierarchy (BVH) stored in
+ * flat arrays as well; unbounded ones are tested against every ray.
+ * </p>
+ * <p>
+ * Primitive ids are grouped by kind - spheres first, then triangles, planes and delegated geometries -
+ * so the kind and the data offset of a primitive follow from its id without any per-primitive table.
+ * </p>
+ * <p>
+ * The numbers may be stored in double or, to halve the memory of large scenes, in single precision
+ * (see {@link Precision}). The intersection maths is always done in double. All the arrays may be kept
+ * on the Java heap or off it (see {@link Storage}), and a scene may be written to a file and mapped
+ * back from it ({@link #write(Path)}, {@link #map(Path)}).
+ * </p>
+ * <p>
+ * The scene never changes after construction, so a single instance may be shared by any number of
+ * render threads. It is built by {@link Geometries#compile(Precision)}.
+ * </p>
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+public final class CompiledScene implements Intersectable {
+    /**
+     * Storage precision of the packed numbers of a compiled scene
+     */
+    public enum Precision {
+        /**
+         * 64 bit numbers - exactly the values of the source geometries
+         */
+        DOUBLE,
+        /**
+         * 32 bit numbers - half the memory, positions rounded to about 7 significant digits.
+         * BVH boxes are rounded outwards so they still enclose their primitives.
+         */
+        SINGLE
+    }
+
+    /**
+     * Memory where the arrays of a compiled scene are kept
+     */
+    public enum Storage {
+        /**
+         * Java arrays on the garbage collected heap
+         */
+        HEAP,
+        /**
+         * Direct buffers outside the heap. The heap holds a constant amount of buffer objects
+         * whatever the size of the scene, and the source geometries are not referenced - they are
+         * rebuilt from the packed data by {@link #getGeometry(int)} when asked for.
+         */
+        OFF_HEAP
+    }
+
+    private static final int SPHERE_STRIDE = 5; // center (3), radius, squared radius
+    private static final int TRIANGLE_STRIDE = 12; // first vertex (3), two edges (3+3), unit normal (3)
+    private static final int PLANE_STRIDE = 6; // reference point (3), unit normal (3)
+    /**
+     * Maximal amount of primitives in a BVH leaf
+     */
+    private static final int LEAF_SIZE = 4;
+    /**
+     * Estimated JVM object header size (bytes), used by {@link #memoryFootprint()}
+     */
+    private static final int HEADER_BYTES = 16;
+    /**
+     * Estimated reference size (bytes) with compressed references
+     */
+    private static final int REFERENCE_BYTES = 4;
+    /**
+     * Scene file signature ("CSCN") and format version
+     */
+    private static final int FILE_MAGIC = 0x4353434E;
+    private static final int FILE_VERSION = 1;
+    private static final int FILE_HEADER_BYTES = 64;
+    /**
+     * The classes accepted as delegated geometries of a scene read from a stream: those of this library,
+     * their arrays and the serial form of the immutable lists they hold - with limits on the graph size
+     */
+    private static final ObjectInputFilter DELEGATE_FILTER = ObjectInputFilter.Config.createFilter(
+            "maxdepth=16;maxarray=16777216;maxrefs=67108864;geometries.*;primitives.*;"
+                    + "java.util.CollSer;java.util.ImmutableCollections$List*;java.lang.Object;!*");
+
+    private final Precision precision;
+    /**
+     * Source geometry of each primitive, indexed by primitive id, or null if not kept
+     */
+    private final Intersectable[] sources;
+    /**
+     * Delegated geometries, for ids from {@link #planeEnd} on
+     */
+    private final Intersectable[] delegates;
+    /**
+     * Ends (exclusive) of the id ranges of spheres, triangles and planes
+     */
+    private final int sphereEnd, triangleEnd, planeEnd;
+    /**
+     * Offsets of the triangles' and planes' data in {@link #data}
+     */
+    private final int triangleBase, planeBase;
+    /**
+     * Packed primitive data
+     */
+    private final PackedNumbers data;
+    /**
+     * Ids of the primitives without a bounding box
+     */
+    private final PackedIndices unbounded;
+    /**
+     * Ids of the bounded primitives ordered so that each BVH leaf references a consecutive range
+     */
+    private final PackedIndices order;
+    /**
+     * BVH node boxes - 6 numbers per node (min X,Y,Z, max X,Y,Z)
+     */
+    private final PackedNumbers nodeBounds;
+    /**
+     * BVH node links - 2 numbers per node: for a leaf the first index in {@link #order} and the
+     * amount of primitives; for an inner node the index of the left child (the right one follows it) and 0
+     */
+    private final PackedIndices nodeInfo;
+
+    /**
+     * Compiles a list of geometries. Nested {@link Geometries} are expected to be flattened already.
+     *
+     * @param primitives the geometries of the scene
+     * @param precision  the storage precision of the packed numbers
+     * @param storage    where to keep the arrays
+     * @throws IllegalArgumentException if the scene is too large to be indexed by int
+     */
+    CompiledScene(List<Intersectable> primitives, Precision precision, Storage storage) {
+        this.precision = precision;
+        // group the primitives by kind
+        List<Intersectable> spheres = new ArrayList<>(), triangles = new ArrayList<>();
+        List<Intersectable> planes = new ArrayList<>(), objects = new ArrayList<>();
+        for (Intersectable geometry : primitives) {
+            Class<?> type = geometry.getClass(); // a subclass may change the intersection behavior
+            if (type == Sphere.class) spheres.add(geometry);
+            else if (type == Triangle.class) triangles.add(geometry);
+            else if (type == Plane.class) planes.add(geometry);
+            else objects.add(geometry);
+        }
+        sphereEnd = spheres.size();
+        triangleEnd = sphereEnd + triangles.size();
+        planeEnd = triangleEnd + planes.size();
+        triangleBase = SPHERE_STRIDE * sphereEnd;
+        planeBase = triangleBase + TRIANGLE_STRIDE * triangles.size();
+        long length = (long) planeBase + (long) PLANE_STRIDE * planes.size();
+        if (length > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Scene is too large: " + length + " packed numbers");
+
+        List<Intersectable> grouped = new ArrayList<>(primitives.size());
+        grouped.addAll(spheres);
+        grouped.addAll(triangles);
+        grouped.addAll(planes);
+        grouped.addAll(objects);
+        Intersectable[] all = grouped.toArray(new Intersectable[0]);
+        delegates = objects.toArray(new Intersectable[0]);
+        sources = storage == Storage.HEAP ? all : null;
+
+        double[] packed = new double[(int) length];
+        for (int id = 0; id < planeEnd; ++id)
+            pack(all[id], packed, offset(id));
+        data = PackedNumbers.of(packed, precision, storage);
+
+        double[] boxes = new double[6 * all.length];
+        for (int id = 0; id < all.length; ++id)
+            putBox(boxes, id, all[id].getBoundingBox());
+        Hierarchy hierarchy = Hierarchy.of(boxes, precision, storage);
+        unbounded = hierarchy.unbounded;
+        order = hierarchy.order;
+        nodeBounds = hierarchy.nodeBounds;
+        nodeInfo = hierarchy.nodeInfo;
+    }
+
+    /**
+     * Writes the corners of a primitive's box, or NaN for an unbounded primitive.
+     */
+    private static void putBox(double[] boxes, int id, BoundingBox box) {
+        if (box == null) {
+            boxes[6 * id] = Double.NaN;
+            return;
+        }
+        boxes[6 * id] = box.minX();
+        boxes[6 * id + 1] = box.minY();
+        boxes[6 * id + 2] = box.minZ();
+        boxes[6 * id + 3] = box.maxX();
+        boxes[6 * id + 4] = box.maxY();
+        boxes[6 * id + 5] = box.maxZ();
+    }
+
+    /**
+     * The unbounded primitives and the BVH over the bounded ones.
+     */
+    private record Hierarchy(PackedIndices unbounded, PackedIndices order, PackedNumbers nodeBounds,
+                             PackedIndices nodeInfo) {
+        /**
+         * Splits bounded and unbounded primitives and builds the BVH.
+         *
+         * @param boxes the corners of the primitive boxes, 6 numbers by id - NaN first for an unbounded one
+         */
+        static Hierarchy of(double[] boxes, Precision precision, Storage storage) {
+            int size = boxes.length / 6;
+            int[] bounded = new int[size];
+            int boundedCount = 0;
+            int[] infinite = new int[size];
+            int infiniteCount = 0;
+            for (int id = 0; id < size; ++id) {
+                if (Double.isNaN(boxes[6 * id])) infinite[infiniteCount++] = id;
+                else bounded[boundedCount++] = id;
+            }
+            int[] ordered = Arrays.copyOf(bounded, boundedCount);
+            BvhBuilder builder = new BvhBuilder(boxes, ordered);
+            return new Hierarchy(PackedIndices.of(Arrays.copyOf(infinite, infiniteCount), storage),
+                    PackedIndices.of(ordered, storage), PackedNumbers.ofBoxes(builder.bounds, precision, storage),
+                    PackedIndices.of(builder.info, storage));
+        }
+    }
+
+    /**
+     * Assembles a scene from its ready parts, e.g. mapped from a file.
+     */
+    private CompiledScene(Precision precision, Intersectable[] sources, Intersectable[] delegates, int sphereEnd,
+                          int triangleEnd, int planeEnd, PackedNumbers data, PackedIndices unbounded,
+                          PackedIndices order, PackedNumbers nodeBounds, PackedIndices nodeInfo) {
+        this.precision = precision;
+        this.sources = sources;
+        this.delegates = delegates;
+        this.sphereEnd = sphereEnd;
+        this.triangleEnd = triangleEnd;
+        this.planeEnd = planeEnd;
+        this.triangleBase = SPHERE_STRIDE * sphereEnd;
+        this.planeBase = triangleBase + TRIANGLE_STRIDE * (triangleEnd - sphereEnd);
+        this.data = data;
+        this.unbounded = unbounded;
+        this.order = order;
+        this.nodeBounds = nodeBounds;
+        this.nodeInfo = nodeInfo;
+    }
+
+    /**
+     * Returns the offset of a packed primitive's data.
+     *
+     * @param id the primitive id (a sphere, triangle or plane)
+     * @return the offset in {@link #data}
+     */
+    private int offset(int id) {
+        if (id < sphereEnd) return SPHERE_STRIDE * id;
+        if (id < triangleEnd) return triangleBase + TRIANGLE_STRIDE * (id - sphereEnd);
+        return planeBase + PLANE_STRIDE * (id - triangleEnd);
+    }
+
+    /**
+     * Writes the packed data of a primitive.
+     *
+     * @param geometry the primitive
+     * @param data     the packed data being built
+     * @param offset   its offset in the data
+     */
+    private static void pack(Intersectable geometry, double[] data, int offset) {
+        if (geometry instanceof Triangle triangle) {
+            Point v0 = triangle.vertices.get(0);
+            put(data, offset, v0);
+            put(data, offset + 3, triangle.vertices.get(1).subtract(v0));
+            put(data, offset + 6, triangle.vertices.get(2).subtract(v0));
+            put(data, offset + 9, triangle.getNormal(v0));
+        } else if (geometry instanceof Sphere sphere) {
+            put(data, offset, sphere.center);
+            data[offset + 3] = sphere.radius;
+            data[offset + 4] = sphere.radius * sphere.radius;
+        } else if (geometry instanceof Plane plane) {
+            put(data, offset, plane.q0);
+            put(data, offset + 3, plane.normal);
+        }
+    }
+
+    private static void put(double[] data, int offset, Point point) {
+        data[offset] = point.getX();
+        data[offset + 1] = point.getY();
+        data[offset + 2] = point.getZ();
+    }
+
+    /**
+     * Writes the scene into a file that can be mapped back by {@link #map(Path)}.
+     * Delegated geometries are not written - only their amount is recorded.
+     *
+     * @param file the file to (over)write
+     * @throws IOException if the writing fails
+     */
+    public void write(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(channel);
+        }
+    }
+
+    /**
+     * Writes the scene at the current position of a channel, e.g. as one section of a larger file.
+     *
+     * @param channel the channel to write into
+     * @return the amount of bytes written (a multiple of 8)
+     * @throws IOException if the writing fails
+     */
+    long write(FileChannel channel) throws IOException {
+        long start = channel.position();
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES).order(OffHeap.FILE_ORDER);
+        header.putInt(FILE_MAGIC).putInt(FILE_VERSION).putInt(precision.ordinal())
+                .putInt(sphereEnd).putInt(triangleEnd).putInt(planeEnd).putInt(delegates.length)
+                .putInt(data.length()).putInt(unbounded.length()).putInt(order.length())
+                .putInt(nodeBounds.length()).putInt(nodeInfo.length());
+        header.clear();
+        while (header.hasRemaining()) channel.write(header);
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(OffHeap.FILE_ORDER);
+        writeNumbers(channel, buffer, data);
+        writeNumbers(channel, buffer, nodeBounds);
+        writeIndices(channel, buffer, unbounded);
+        writeIndices(channel, buffer, order);
+        writeIndices(channel, buffer, nodeInfo);
+        return channel.position() - start;
+    }
+
+    private void writeNumbers(FileChannel channel, ByteBuffer buffer, PackedNumbers numbers) throws IOException {
+        for (int i = 0; i < numbers.length(); ++i) {
+            if (buffer.remaining() < Double.BYTES) flush(channel, buffer);
+            if (precision == Precision.DOUBLE) buffer.putDouble(numbers.get(i));
+            else buffer.putFloat((float) numbers.get(i));
+        }
+        pad(buffer);
+        flush(channel, buffer);
+    }
+
+    private static void writeIndices(FileChannel channel, ByteBuffer buffer, PackedIndices indices)
+            throws IOException {
+        for (int i = 0; i < indices.length(); ++i) {
+            if (buffer.remaining() < Integer.BYTES) flush(channel, buffer);
+            buffer.putInt(indices.get(i));
+        }
+        pad(buffer);
+        flush(channel, buffer);
+    }
+
+    /**
+     * Pads a section to 8 bytes so that the next one is aligned.
+     */
+    private static void pad(ByteBuffer buffer) {
+        while ((buffer.position() & 7) != 0) buffer.put((byte) 0);
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Maps a scene file written by {@link #write(Path)} read-only into memory. The scene data is read by the
+     * kernels directly from the mapping and the operating system pages it in on demand.
+     *
+     * @param file the scene file
+     * @return the mapped scene
+     * @throws IOException              if the file cannot be read
+     * @throws IllegalArgumentException if the file is not a scene file or it has delegated geometries
+     */
+    public static CompiledScene map(Path file) throws IOException {
+        return map(file, new Intersectable[0]);
+    }
+
+    /**
+     * Maps a scene file and attaches the delegated geometries that the file does not contain.
+     *
+     * @param file      the scene file
+     * @param delegates the delegated geometries, in the order they had in the written scene
+     * @return the mapped scene
+     * @throws IOException              if the file cannot be read
+     * @throws IllegalArgumentException if the file is not a scene file or the delegates do not match it
+     */
+    static CompiledScene map(Path file, Intersectable[] delegates) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return load(channel, 0, delegates, true, file.toString());
+        }
+    }
+
+    /**
+     * Writes the scene to a stream, delegated geometries included, e.g. to send it to another process once
+     * instead of the geometries it was compiled from. The packed sections are written as they are, in the
+     * order of the file format, and the delegated geometries by Java serialization, so the scene read back
+     * traces the very same hits.
+     *
+     * @param out the target
+     * @throws IOException if the writing fails, or a delegated geometry is not serializable
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        ByteArrayOutputStream objects = new ByteArrayOutputStream();
+        try (ObjectOutputStream stream = new ObjectOutputStream(objects)) {
+            stream.writeObject(delegates);
+        }
+        out.writeInt(FILE_MAGIC);
+        out.writeInt(FILE_VERSION);
+        out.writeInt(precision.ordinal());
+        out.writeInt(sphereEnd);
+        out.writeInt(triangleEnd);
+        out.writeInt(planeEnd);
+        out.writeInt(data.length());
+        out.writeInt(nodeBounds.length());
+        out.writeInt(unbounded.length());
+        out.writeInt(order.length());
+        out.writeInt(nodeInfo.length());
+        writeNumbers(out, data);
+        writeNumbers(out, nodeBounds);
+        writeIndices(out, unbounded);
+        writeIndices(out, order);
+        writeIndices(out, nodeInfo);
+        out.writeInt(objects.size());
+        out.write(objects.toByteArray());
+    }
+
+    private void writeNumbers(DataOutput out, PackedNumbers numbers) throws IOException {
+        for (int i = 0; i < numbers.length(); ++i) {
+            if (precision == Precision.DOUBLE) out.writeDouble(numbers.get(i));
+            else out.writeFloat((float) numbers.get(i));
+        }
+    }
+
+    private static void writeIndices(DataOutput out, PackedIndices indices) throws IOException {
+        for (int i = 0; i < indices.length(); ++i)
+            out.writeInt(indices.get(i));
+    }
+
+    /**
+     * Reads a scene written by {@link #writeTo} into the heap. The packed primitives are not kept as objects,
+     * so the geometries of the hits are rebuilt from their data (see {@link #getGeometry}).
+     * <p>
+     * The stream may come from another process, so the delegated geometries are deserialized through a filter:
+     * only the geometries and primitives of this library are accepted, in a graph of limited size.
+     * </p>
+     *
+     * @param in the source
+     * @return the scene
+     * @throws IOException              if the reading fails, or a delegated geometry is not accepted
+     * @throws IllegalArgumentException if there is no valid scene in the stream
+     */
+    public static CompiledScene readFrom(DataInput in) throws IOException {
+        if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION)
+            throw new IllegalArgumentException("Not a scene in the stream");
+        Precision precision = precision(in.readInt(), "stream");
+        int sphereEnd = in.readInt(), triangleEnd = in.readInt(), planeEnd = in.readInt();
+        int dataLength = in.readInt(), boundsLength = in.readInt(), unboundedLength = in.readInt();
+        int orderLength = in.readInt(), infoLength = in.readInt();
+        if (sphereEnd < 0 || triangleEnd < sphereEnd || planeEnd < triangleEnd || boundsLength < 0
+                || unboundedLength < 0 || orderLength < 0 || infoLength < 0
+                || dataLength != (long) SPHERE_STRIDE * sphereEnd + (long) TRIANGLE_STRIDE * (triangleEnd - sphereEnd)
+                + (long) PLANE_STRIDE * (planeEnd - triangleEnd))
+            throw new IllegalArgumentException("Damaged scene in the stream");
+
+        PackedNumbers data = readNumbers(in, dataLength, precision);
+        PackedNumbers nodeBounds = readNumbers(in, boundsLength, precision);
+        PackedIndices unbounded = new PackedIndices.Ints(readIndices(in, unboundedLength));
+        PackedIndices order = new PackedIndices.Ints(readIndices(in, orderLength));
+        PackedIndices nodeInfo = new PackedIndices.Ints(readIndices(in, infoLength));
+        int objectsLength = in.readInt();
+        if (objectsLength < 0)
+            throw new IllegalArgumentException("Damaged scene in the stream");
+        byte[] objects = new byte[objectsLength];
+        in.readFully(objects);
+        Intersectable[] delegates;
+        try (ObjectInputStream stream = new ObjectInputStream(new ByteArrayInputStream(objects))) {
+            stream.setObjectInputFilter(DELEGATE_FILTER);
+            delegates = (Intersectable[]) stream.readObject();
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Cannot read the delegated geometries", e);
+        }
+        return new CompiledScene(precision, null, delegates, sphereEnd, triangleEnd, planeEnd,
+                data, unbounded, order, nodeBounds, nodeInfo);
+    }
+
+    private static PackedNumbers readNumbers(DataInput in, int length, Precision precision) throws IOException {
+        if (precision == Precision.DOUBLE) {
+            double[] values = new double[length];
+            for (int i = 0; i < length; ++i)
+                values[i] = in.readDouble();
+            return new PackedNumbers.Doubles(values);
+        }
+        float[] values = new float[length];
+        for (int i = 0; i < length; ++i)
+            values[i] = in.readFloat();
+        return new PackedNumbers.Floats(values);
+    }
+
+    private static int[] readIndices(DataInput in, int length) throws IOException {
+        int[] values = new int[length];
+        for (int i = 0; i < length; ++i)
+            values[i] = in.readInt();
+        return values;
+    }
+
+    /**
+     * Loads a scene written by {@link #write(FileChannel)} from a position of a channel,
+     * either mapping it or reading it into heap arrays.
+     *
+     * @param channel   the channel to read from
+     * @param start     the position of the scene in the channel
+     * @param delegates the delegated geometries, in the order they had in the written scene
+     * @param mapped    true to map the scene read-only, false to read it into the heap
+     * @param name      the name of the source for error messages
+     * @return the loaded scene
+     * @throws IOException              if the reading fails
+     * @throws IllegalArgumentException if there is no valid scene at the position or the delegates do not match it
+     */
+    static CompiledScene load(FileChannel channel, long start, Intersectable[] delegates, boolean mapped,
+                              String name) throws IOException {
+        ByteBuffer header = OffHeap.read(channel, start, FILE_HEADER_BYTES);
+        if (header == null || header.getInt() != FILE_MAGIC || header.getInt() != FILE_VERSION)
+            throw new IllegalArgumentException("Not a scene file: " + name);
+        Precision precision = precision(header.getInt(), name);
+        int sphereEnd = header.getInt(), triangleEnd = header.getInt(), planeEnd = header.getInt();
+        int delegateCount = header.getInt();
+        if (delegateCount != delegates.length)
+            throw new IllegalArgumentException("Scene file " + name + " needs " + delegateCount
+                    + " delegated geometries, got " + delegates.length);
+        int dataLength = header.getInt(), unboundedLength = header.getInt(), orderLength = header.getInt();
+        int boundsLength = header.getInt(), infoLength = header.getInt();
+
+        int numberBytes = precision == Precision.DOUBLE ? Double.BYTES : Float.BYTES;
+        long expected = FILE_HEADER_BYTES + align((long) dataLength * numberBytes)
+                + align((long) boundsLength * numberBytes) + align((long) unboundedLength * Integer.BYTES)
+                + align((long) orderLength * Integer.BYTES) + align((long) infoLength * Integer.BYTES);
+        if (channel.size() < start + expected)
+            throw new IllegalArgumentException("Truncated scene file " + name);
+
+        long position = start + FILE_HEADER_BYTES;
+        PackedNumbers data = loadNumbers(channel, position, dataLength, precision, mapped);
+        position += align((long) dataLength * numberBytes);
+        PackedNumbers nodeBounds = loadNumbers(channel, position, boundsLength, precision, mapped);
+        position += align((long) boundsLength * numberBytes);
+        PackedIndices unbounded = loadIndices(channel, position, unboundedLength, mapped);
+        position += align((long) unboundedLength * Integer.BYTES);
+        PackedIndices order = loadIndices(channel, position, orderLength, mapped);
+        position += align((long) orderLength * Integer.BYTES);
+        PackedIndices nodeInfo = loadIndices(channel, position, infoLength, mapped);
+        return new CompiledScene(precision, null, delegates, sphereEnd, triangleEnd, planeEnd,
+                data, unbounded, order, nodeBounds, nodeInfo);
+    }
+
+    /**
+     * Returns the scene with the geometries it was compiled from attached, e.g. to a scene mapped from a file,
+     * so that its hits report the very geometries of the caller, as those of a freshly compiled scene do.
+     * The packed data is shared.
+     *
+     * @param primitives the geometries the scene was compiled from, in the same order
+     * @return the scene with its sources
+     * @throws IllegalArgumentException if the geometries do not match the scene
+     */
+    CompiledScene withSources(List<Intersectable> primitives) {
+        Intersectable[] grouped = new Intersectable[size()];
+        int[] next = {0, sphereEnd, triangleEnd, planeEnd};
+        int[] end = {sphereEnd, triangleEnd, planeEnd, grouped.length};
+        for (Intersectable geometry : primitives) {
+            Class<?> type = geometry.getClass();
+            int kind = type == Sphere.class ? 0 : type == Triangle.class ? 1 : type == Plane.class ? 2 : 3;
+            if (next[kind] == end[kind])
+                throw new IllegalArgumentException("Geometries do not match the compiled scene");
+            grouped[next[kind]++] = geometry;
+        }
+        if (!Arrays.equals(next, end))
+            throw new IllegalArgumentException("Geometries do not match the compiled scene");
+        return new CompiledScene(precision, grouped, delegates, sphereEnd, triangleEnd, planeEnd,
+                data, unbounded, order, nodeBounds, nodeInfo);
+    }
+
+    /**
+     * Returns the precision of a written scene by its ordinal.
+     *
+     * @throws IllegalArgumentException if there is no such precision
+     */
+    private static Precision precision(int ordinal, String name) {
+        Precision[] precisions = Precision.values();
+        if (ordinal < 0 || ordinal >= precisions.length)
+            throw new IllegalArgumentException("Not a scene file: " + name + " has unknown precision " + ordinal);
+        return precisions[ordinal];
+    }
+
+    private static PackedNumbers loadNumbers(FileChannel channel, long position, int length, Precision precision,
+                                             boolean mapped) throws IOException {
+        if (precision == Precision.DOUBLE)
+            return mapped ? OffHeap.mapDoubles(channel, position, length)
+                    : new PackedNumbers.Doubles(OffHeap.readDoubles(channel, position, length));
+        return mapped ? OffHeap.mapFloats(channel, position, length)
+                : new PackedNumbers.Floats(OffHeap.readFloats(channel, position, length));
+    }
+
+    private static PackedIndices loadIndices(FileChannel channel, long position, int length, boolean mapped)
+            throws IOException {
+        return mapped ? OffHeap.mapInts(channel, position, length)
+                : new PackedIndices.Ints(OffHeap.readInts(channel, position, length));
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    /**
+     * Returns the amount of primitives in the scene.
+     *
+     * @return the amount of primitives
+     */
+    public int size() {
+        return planeEnd + delegates.length;
+    }
+
+    /**
+     * Returns the source geometry of a primitive. When the sources are not kept (off-heap or mapped scenes)
+     * a packed primitive is rebuilt from its data, so a new equal geometry is returned on every call.
+     *
+     * @param id the primitive id
+     * @return the geometry the primitive was compiled from
+     */
+    public Intersectable getGeometry(int id) {
+        if (sources != null) return sources[id];
+        if (id >= planeEnd) return delegates[id - planeEnd];
+        int off = offset(id);
+        Point p0 = new Point(data.get(off), data.get(off + 1), data.get(off + 2));
+        if (id < sphereEnd) return new Sphere(p0, data.get(off + 3));
+        if (id < triangleEnd)
+            return new Triangle(p0,
+                    p0.add(new Vector(data.get(off + 3), data.get(off + 4), data.get(off + 5))),
+                    p0.add(new Vector(data.get(off + 6), data.get(off + 7), data.get(off + 8))));
+        return new Plane(p0, new Vector(data.get(off + 3), data.get(off + 4), data.get(off + 5)));
+    }
+
+    /**
+     * Estimates the memory used by the flat representation: the packed arrays and the BVH,
+     * whether on the heap or off it. The source geometries referenced for hit reporting and
+     * delegation are not included.
+     *
+     * @return the estimated footprint in bytes
+     */
+    public long memoryFootprint() {
+        return HEADER_BYTES + 12L * REFERENCE_BYTES
+                + (sources == null ? 0 : PackedNumbers.arrayBytes(sources.length, REFERENCE_BYTES))
+                + PackedNumbers.arrayBytes(delegates.length, REFERENCE_BYTES)
+                + data.bytes() + unbounded.bytes() + order.bytes() + nodeBounds.bytes() + nodeInfo.bytes();
+    }
+
+    @Override
+    public BoundingBox getBoundingBox() {
+        if (unbounded.length() > 0 || nodeInfo.length() == 0) return null;
+        return new BoundingBox(nodeBounds.get(0), nodeBounds.get(1), nodeBounds.get(2),
+                nodeBounds.get(3), nodeBounds.get(4), nodeBounds.get(5));
+    }
+
+    @Override
+    public List<Point> findIntersections(Ray ray) {
+        IntersectionBuffer buffer = new IntersectionBuffer();
+        findIntersections(ray, buffer);
+        if (buffer.isEmpty()) return null;
+        List<Point> result = new ArrayList<>(buffer.size());
+        for (int i = 0; i < buffer.size(); ++i)
+            result.add(buffer.getPoint(i, ray));
+        return result;
+    }
+
+    @Override
+    public List<Intersection> calculateIntersections(Ray ray) {
+        IntersectionBuffer buffer = new IntersectionBuffer();
+        findIntersections(ray, buffer);
+        if (buffer.isEmpty()) return null;
+        List<Intersection> result = new ArrayList<>(buffer.size());
+        for (int i = 0; i < buffer.size(); ++i)
+            result.add(buffer.getIntersection(i, ray));
+        return result;
+    }
+
+    /**
+     * Appends all the intersections of the ray to a buffer. Packed hits are reported with this scene
+     * as the source and the primitive id; delegated geometries append their own hits. The traversal
+     * uses the scratch arrays of the buffer, so with a reused buffer it allocates nothing.
+     *
+     * @param ray    the ray to check for intersections
+     * @param buffer the buffer to append the hits to
+     */
+    @Override
+    public void findIntersections(Ray ray, IntersectionBuffer buffer) {
+        Point head = ray.getp1();
+        Vector dir = ray.getDirection();
+        double ox = head.getX(), oy = head.getY(), oz = head.getZ();
+        double dx = dir.getX(), dy = dir.getY(), dz = dir.getZ();
+
+        for (int i = 0; i < unbounded.length(); ++i)
+            collect(unbounded.get(i), ray, ox, oy, oz, dx, dy, dz, buffer);
+
+        if (nodeInfo.length() == 0) return;
+        double invX = 1 / dx, invY = 1 / dy, invZ = 1 / dz;
+        // nested traversals (delegated scenes) push above this one
+        int bottom = buffer.stackTop;
+        int top = bottom;
+        int[] stack = buffer.growStack(top + 1);
+        stack[top++] = 0;
+        while (top > bottom) {
+            int node = stack[--top];
+            if (!hitsNode(node, ox, oy, oz, invX, invY, invZ, Double.POSITIVE_INFINITY)) continue;
+            int count = nodeInfo.get(2 * node + 1);
+            if (count == 0) {
+                stack = buffer.growStack(top + 2);
+                stack[top++] = nodeInfo.get(2 * node);
+                stack[top++] = nodeInfo.get(2 * node) + 1;
+                continue;
+            }
+            int first = nodeInfo.get(2 * node);
+            buffer.stackTop = top;
+            for (int i = first; i < first + count; ++i)
+                collect(order.get(i), ray, ox, oy, oz, dx, dy, dz, buffer);
+            stack = buffer.stack; // a nested traversal may have grown it
+        }
+        buffer.stackTop = bottom;
+    }
+
+    /**
+     * Finds the intersection point closest to the ray head. The BVH traversal skips every node that
+     * starts beyond the closest intersection found so far.
+     *
+     * @param ray the ray
+     * @return the closest intersection point, or null if the ray hits nothing
+     */
+    public Point findClosestIntersection(Ray ray) {
+        Intersection closest = calculateClosestIntersection(ray);
+        return closest == null ? null : closest.getPoint();
+    }
+
+    /**
+     * Finds the intersection closest to the ray head. The BVH traversal skips every node that
+     * starts beyond the closest intersection found so far, and only the closest hit
+     * gets a hit record.
+     *
+     * @param ray the ray
+     * @return the closest hit record, or null if the ray hits nothing
+     */
+    @Override
+    public Intersection calculateClosestIntersection(Ray ray) {
+        IntersectionBuffer buffer = new IntersectionBuffer(2);
+        Point head = ray.getp1();
+        Vector dir = ray.getDirection();
+        if (!closest(ray, head.getX(), head.getY(), head.getZ(), dir.getX(), dir.getY(), dir.getZ(),
+                Double.POSITIVE_INFINITY, buffer))
+            return null;
+        return closestRecord(buffer.getId(0), ray, buffer.getT(0));
+    }
+
+    /**
+     * Creates the hit record of a closest hit found by a kernel.
+     *
+     * @param id  the (top level) primitive id
+     * @param ray the ray
+     * @param t   the distance of the hit
+     * @return the hit record
+     */
+    Intersection closestRecord(int id, Ray ray, double t) {
+        // a delegated geometry reports its own record, e.g. naming the primitive hit inside it
+        if (id >= planeEnd) return delegates[id - planeEnd].calculateClosestIntersection(ray);
+        return new PackedIntersection(this, id, ray, t);
+    }
+
+    /**
+     * Finds the closest hit of every ray of a packet, tracing the rays together: each BVH node is visited
+     * once for the packet with a mask of the rays still active in it, and is culled for the whole packet
+     * by an interval test before any single ray is tested against it. An incoherent packet (see
+     * {@link RayPacket}) is traced ray by ray instead. The results are read from the packet.
+     *
+     * @param packet the rays
+     * @return true if the packet was traced as a packet, false if it fell back to single rays
+     */
+    public boolean traceClosest(RayPacket packet) {
+        int size = packet.size();
+        IntersectionBuffer buffer = packet.buffer;
+        if (!packet.prepare(this)) {
+            for (int i = 0; i < size; ++i) {
+                buffer.clear();
+                if (closest(packet.getRay(i), packet.ox[i], packet.oy[i], packet.oz[i],
+                        packet.dx[i], packet.dy[i], packet.dz[i], Double.POSITIVE_INFINITY, buffer)) {
+                    packet.t[i] = buffer.getT(0);
+                    packet.ids[i] = buffer.getId(0);
+                }
+            }
+            return false;
+        }
+
+        long all = size == RayPacket.MAX_SIZE ? -1L : (1L << size) - 1;
+        for (int k = 0; k < unbounded.length(); ++k)
+            hitPacket(unbounded.get(k), packet, all);
+        packet.updateFarthest();
+
+        if (nodeInfo.length() > 0) {
+            int top = 0;
+            packet.nodes[top] = 0;
+            packet.masks[top++] = all;
+            while (top > 0) {
+                int node = packet.nodes[--top];
+                long mask = packet.masks[top];
+                int b = 6 * node;
+                double x0 = nodeBounds.get(b), y0 = nodeBounds.get(b + 1), z0 = nodeBounds.get(b + 2);
+                double x1 = nodeBounds.get(b + 3), y1 = nodeBounds.get(b + 4), z1 = nodeBounds.get(b + 5);
+                if (packet.missesBox(x0, y0, z0, x1, y1, z1)) continue;
+                long active = 0;
+                for (long m = mask; m != 0; m &= m - 1) {
+                    int i = Long.numberOfTrailingZeros(m);
+                    if (BoundingBox.intersects(packet.ox[i], packet.oy[i], packet.oz[i],
+                            packet.invX[i], packet.invY[i], packet.invZ[i], x0, y0, z0, x1, y1, z1, packet.t[i]))
+                        active |= 1L << i;
+                }
+                if (active == 0) continue;
+                int count = nodeInfo.get(2 * node + 1);
+                if (count == 0) {
+                    packet.growStack(top + 2);
+                    packet.nodes[top] = nodeInfo.get(2 * node);
+                    packet.masks[top++] = active;
+                    packet.nodes[top] = nodeInfo.get(2 * node) + 1;
+                    packet.masks[top++] = active;
+                    continue;
+                }
+                int first = nodeInfo.get(2 * node);
+                for (int i = first; i < first + count; ++i)
+                    hitPacket(order.get(i), packet, active);
+                packet.updateFarthest();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Intersects a primitive with the active rays of a packet, keeping the closer hits.
+     */
+    private void hitPacket(int id, RayPacket packet, long active) {
+        IntersectionBuffer buffer = packet.buffer;
+        double[] t = buffer.hits;
+        for (long m = active; m != 0; m &= m - 1) {
+            int i = Long.numberOfTrailingZeros(m);
+            double hit;
+            if (id >= planeEnd) {
+                buffer.clear();
+                hit = closestDelegated(id, packet.getRay(i), buffer);
+            } else
+                hit = hit(id, packet.ox[i], packet.oy[i], packet.oz[i], packet.dx[i], packet.dy[i], packet.dz[i], t) > 0
+                        ? t[0] : Double.POSITIVE_INFINITY;
+            if (hit < packet.t[i]) {
+                packet.t[i] = hit;
+                packet.ids[i] = id;
+            }
+        }
+    }
+
+    /**
+     * Checks whether anything blocks the ray before a given distance - an any-hit query that stops
+     * at the first intersection found, e.g. for shadow and line of sight rays.
+     *
+     * @param ray         the ray
+     * @param maxDistance the distance to check up to (exclusive)
+     * @return true if the ray hits something closer than maxDistance
+     */
+    public boolean isOccluded(Ray ray, double maxDistance) {
+        Point head = ray.getp1();
+        Vector dir = ray.getDirection();
+        return occluded(ray, head.getX(), head.getY(), head.getZ(), dir.getX(), dir.getY(), dir.getZ(),
+                maxDistance, new IntersectionBuffer(2));
+    }
+
+    /**
+     * Finds the closest intersection before a given distance of a ray given by numbers. On success the hit
+     * is appended to the buffer with this scene as the source and the (top level) primitive id, so a hit in a
+     * delegated geometry has the id of that geometry. The buffer also supplies the scratch arrays,
+     * so with a reused buffer the query allocates nothing unless a delegated geometry does.
+     *
+     * @param ray    the ray as an object, or null to create it only if a delegated geometry needs it
+     * @param tMax   the distance to look up to (exclusive)
+     * @param buffer the buffer for the result and the scratch
+     * @return true if a hit was found and appended
+     */
+    boolean closest(Ray ray, double ox, double oy, double oz, double dx, double dy, double dz,
+                    double tMax, IntersectionBuffer buffer) {
+        double[] t = buffer.hits;
+        double best = tMax;
+        int bestId = -1;
+
+        for (int i = 0; i < unbounded.length(); ++i) {
+            int id = unbounded.get(i);
+            if (id >= planeEnd) {
+                if (ray == null) ray = ray(ox, oy, oz, dx, dy, dz);
+                double hit = closestDelegated(id, ray, buffer);
+                if (hit < best) {
+                    best = hit;
+                    bestId = id;
+                }
+            } else if (hit(id, ox, oy, oz, dx, dy, dz, t) > 0 && t[0] < best) {
+                best = t[0];
+                bestId = id;
+            }
+        }
+
+        if (nodeInfo.length() > 0) {
+            double invX = 1 / dx, invY = 1 / dy, invZ = 1 / dz;
+            int bottom = buffer.stackTop;
+            int top = bottom;
+            int[] stack = buffer.growStack(top + 1);
+            stack[top++] = 0;
+            while (top > bottom) {
+                int node = stack[--top];
+                if (!hitsNode(node, ox, oy, oz, invX, invY, invZ, best)) continue;
+                int count = nodeInfo.get(2 * node + 1);
+                if (count == 0) {
+                    stack = buffer.growStack(top + 2);
+                    stack[top++] = nodeInfo.get(2 * node);
+                    stack[top++] = nodeInfo.get(2 * node) + 1;
+                    continue;
+                }
+                int first = nodeInfo.get(2 * node);
+                for (int i = first; i < first + count; ++i) {
+                    int id = order.get(i);
+                    if (id >= planeEnd) {
+                        if (ray == null) ray = ray(ox, oy, oz, dx, dy, dz);
+                        buffer.stackTop = top;
+                        double hit = closestDelegated(id, ray, buffer);
+                        stack = buffer.stack; // a nested traversal may have grown it
+                        if (hit < best) {
+                            best = hit;
+                            bestId = id;
+                        }
+                    } else if (hit(id, ox, oy, oz, dx, dy, dz, t) > 0 && t[0] < best) {
+                        best = t[0];
+                        bestId = id;
+                    }
+                }
+            }
+            buffer.stackTop = bottom;
+        }
+        if (bestId < 0) return false;
+        buffer.add(best, this, bestId);
+        return true;
+    }
+
+    /**
+     * Checks whether a ray given by numbers hits anything before a given distance,
+     * stopping at the first hit found.
+     *
+     * @param ray    the ray as an object, or null to create it only if a delegated geometry needs it
+     * @param tMax   the distance to check up to (exclusive)
+     * @param buffer scratch buffer
+     * @return true if there is a hit closer than tMax
+     */
+    boolean occluded(Ray ray, double ox, double oy, double oz, double dx, double dy, double dz,
+                     double tMax, IntersectionBuffer buffer) {
+        double[] t = buffer.hits;
+        for (int i = 0; i < unbounded.length(); ++i) {
+            int id = unbounded.get(i);
+            if (id >= planeEnd) {
+                if (ray == null) ray = ray(ox, oy, oz, dx, dy, dz);
+                if (closestDelegated(id, ray, buffer) < tMax) return true;
+            } else if (hit(id, ox, oy, oz, dx, dy, dz, t) > 0 && t[0] < tMax) return true;
+        }
+        if (nodeInfo.length() == 0) return false;
+
+        double invX = 1 / dx, invY = 1 / dy, invZ = 1 / dz;
+        int bottom = buffer.stackTop;
+        int top = bottom;
+        int[] stack = buffer.growStack(top + 1);
+        stack[top++] = 0;
+        boolean found = false;
+        while (top > bottom && !found) {
+            int node = stack[--top];
+            if (!hitsNode(node, ox, oy, oz, invX, invY, invZ, tMax)) continue;
+            int count = nodeInfo.get(2 * node + 1);
+            if (count == 0) {
+                stack = buffer.growStack(top + 2);
+                stack[top++] = nodeInfo.get(2 * node);
+                stack[top++] = nodeInfo.get(2 * node) + 1;
+                continue;
+            }
+            int first = nodeInfo.get(2 * node);
+            for (int i = first; i < first + count && !found; ++i) {
+                int id = order.get(i);
+                if (id >= planeEnd) {
+                    if (ray == null) ray = ray(ox, oy, oz, dx, dy, dz);
+                    buffer.stackTop = top;
+                    found = closestDelegated(id, ray, buffer) < tMax;
+                    stack = buffer.stack;
+                } else
+                    found = hit(id, ox, oy, oz, dx, dy, dz, t) > 0 && t[0] < tMax;
+            }
+        }
+        buffer.stackTop = bottom;
+        return found;
+    }
+
+    /**
+     * Finds the distance of the closest intersection of a delegated geometry, using the end of the buffer
+     * as scratch and leaving the buffer as it was.
+     *
+     * @return the distance, or positive infinity if there is no intersection
+     */
+    private double closestDelegated(int id, Ray ray, IntersectionBuffer buffer) {
+        int from = buffer.size();
+        delegates[id - planeEnd].findIntersections(ray, buffer);
+        double best = Double.POSITIVE_INFINITY;
+        for (int i = from; i < buffer.size(); ++i)
+            best = Math.min(best, buffer.getT(i));
+        buffer.truncate(from);
+        return best;
+    }
+
+    private static Ray ray(double ox, double oy, double oz, double dx, double dy, double dz) {
+        return new Ray(new Point(ox, oy, oz), new Vector(dx, dy, dz));
+    }
+
+    /**
+     * Returns the intersections of the ray in increasing distance, found lazily. The BVH is traversed
+     * best-first - nodes and hits are taken from a priority queue by their distance - so a hit is
+     * returned as soon as no unvisited node can hold a closer one, and parts of the scene beyond the
+     * hits actually read are never visited.
+     *
+     * @param ray the ray
+     * @return an iterator over the hits from the ray head on
+     */
+    public Iterator<Intersection> intersections(Ray ray) {
+        return intersections(ray, 0, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Returns the intersections of the ray within a distance range in increasing distance, found lazily
+     * as described in {@link #intersections(Ray)}. Nodes outside the range are never visited.
+     *
+     * @param ray  the ray
+     * @param tMin the minimal distance of a hit (inclusive, not negative)
+     * @param tMax the maximal distance of a hit (inclusive)
+     * @return an iterator over the hits in the range
+     * @throws IllegalArgumentException if the range is negative or empty
+     */
+    public Iterator<Intersection> intersections(Ray ray, double tMin, double tMax) {
+        if (!(tMin >= 0) || !(tMax >= tMin))
+            throw new IllegalArgumentException("Illegal distance range [" + tMin + ", " + tMax + "]");
+        return new SortedIterator(ray, tMin, tMax);
+    }
+
+    /**
+     * Finds the k intersections closest to the ray head within a distance range, in increasing distance.
+     * The traversal stops as soon as the k-th hit is known.
+     *
+     * @param ray  the ray
+     * @param k    the maximal amount of hits
+     * @param tMin the minimal distance of a hit (inclusive, not negative)
+     * @param tMax the maximal distance of a hit (inclusive)
+     * @return the hits, possibly fewer than k (an empty list if there are none)
+     * @throws IllegalArgumentException if k is not positive or the range is negative or empty
+     */
+    public List<Intersection> findNearest(Ray ray, int k, double tMin, double tMax) {
+        if (k <= 0)
+            throw new IllegalArgumentException("Amount of hits must be positive");
+        Iterator<Intersection> iterator = intersections(ray, tMin, tMax);
+        List<Intersection> result = new ArrayList<>(Math.min(k, 16));
+        while (result.size() < k && iterator.hasNext())
+            result.add(iterator.next());
+        return result;
+    }
+
+    /**
+     * Result of a nearest geometry query.
+     *
+     * @param geometry the geometry closest to the query point
+     * @param id       its primitive id in the scene
+     * @param distance the distance between the query point and the geometry
+     */
+    public record Nearest(Intersectable geometry, int id, double distance) {
+    }
+
+    /**
+     * Computes the distance between a point and the closest primitive of the scene.
+     *
+     * @param point the point
+     * @return the smallest distance, or positive infinity if the scene is empty
+     */
+    @Override
+    public double distance(Point point) {
+        int[] best = {-1};
+        return nearest(point, Double.POSITIVE_INFINITY, best);
+    }
+
+    /**
+     * Finds the primitive closest to a point by branch and bound over the BVH: nodes are visited
+     * nearer child first, and a node farther than the closest primitive found so far is skipped.
+     * Every primitive must support {@link Intersectable#distance(Point)}.
+     *
+     * @param point the point
+     * @return the closest geometry and its distance, or null if the scene is empty
+     */
+    public Nearest findNearest(Point point) {
+        int[] best = {-1};
+        double distance = nearest(point, Double.POSITIVE_INFINITY, best);
+        return best[0] < 0 ? null : new Nearest(getGeometry(best[0]), best[0], distance);
+    }
+
+    /**
+     * Finds all the primitives within a distance from a point. Nodes farther than the radius are skipped.
+     *
+     * @param point  the center of the query
+     * @param radius the maximal distance (inclusive)
+     * @return the ids of the primitives within the radius, in no particular order
+     * @throws IllegalArgumentException if the radius is negative
+     */
+    public int[] findWithin(Point point, double radius) {
+        if (!(radius >= 0))
+            throw new IllegalArgumentException("Radius must not be negative");
+        double px = point.getX(), py = point.getY(), pz = point.getZ();
+        int[] result = new int[16];
+        int count = 0;
+        for (int i = 0; i < unbounded.length(); ++i) {
+            int id = unbounded.get(i);
+            if (distance(id, point, px, py, pz) <= radius) {
+                if (count == result.length) result = Arrays.copyOf(result, 2 * count);
+                result[count++] = id;
+            }
+        }
+        if (nodeInfo.length() > 0) {
+            double radiusSquared = radius * radius;
+            int[] stack = new int[64];
+            int top = 0;
+            stack[top++] = 0;
+            while (top > 0) {
+                int node = stack[--top];
+                if (nodeDistanceSquared(node, px, py, pz) > radiusSquared) continue;
+                int link = nodeInfo.get(2 * node), leafCount = nodeInfo.get(2 * node + 1);
+                if (leafCount == 0) {
+                    if (top + 2 > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+                    stack[top++] = link;
+                    stack[top++] = link + 1;
+                    continue;
+                }
+                for (int i = link; i < link + leafCount; ++i) {
+                    int id = order.get(i);
+                    if (distance(id, point, px, py, pz) <= radius) {
+                        if (count == result.length) result = Arrays.copyOf(result, 2 * count);
+                        result[count++] = id;
+                    }
+                }
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Branch and bound search of the closest primitive to a point.
+     *
+     * @param point the point
+     * @param limit the distance to beat
+     * @param best  output: the id of the closest primitive, untouched if none is closer than the limit
+     * @return the distance of the closest primitive, or the limit if none is closer
+     */
+    private double nearest(Point point, double limit, int[] best) {
+        double px = point.getX(), py = point.getY(), pz = point.getZ();
+        double bestDistance = limit;
+        for (int i = 0; i < unbounded.length(); ++i) {
+            int id = unbounded.get(i);
+            double d = distance(id, point, px, py, pz);
+            if (d < bestDistance) {
+                bestDistance = d;
+                best[0] = id;
+            }
+        }
+        if (nodeInfo.length() == 0) return bestDistance;
+
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            if (nodeDistanceSquared(node, px, py, pz) >= bestDistance * bestDistance) continue;
+            int link = nodeInfo.get(2 * node), count = nodeInfo.get(2 * node + 1);
+            if (count == 0) {
+                if (top + 2 > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+                // push the farther child first, so the nearer one is searched first and tightens the bound
+                boolean leftNearer = nodeDistanceSquared(link, px, py, pz) <= nodeDistanceSquared(link + 1, px, py, pz);
+                stack[top++] = leftNearer ? link + 1 : link;
+                stack[top++] = leftNearer ? link : link + 1;
+                continue;
+            }
+            for (int i = link; i < link + count; ++i) {
+                int id = order.get(i);
+                double d = distance(id, point, px, py, pz);
+                if (d < bestDistance) {
+                    bestDistance = d;
+                    best[0] = id;
+                }
+            }
+        }
+        return bestDistance;
+    }
+
+    /**
+     * Computes the squared distance between a point and a BVH node box (0 inside the box).
+     */
+    private double nodeDistanceSquared(int node, double px, double py, double pz) {
+        int b = 6 * node;
+        double dx = Math.max(0, Math.max(nodeBounds.get(b) - px, px - nodeBounds.get(b + 3)));
+        double dy = Math.max(0, Math.max(nodeBounds.get(b + 1) - py, py - nodeBounds.get(b + 4)));
+        double dz = Math.max(0, Math.max(nodeBounds.get(b + 2) - pz, pz - nodeBounds.get(b + 5)));
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * Computes the distance between a point and a primitive, from the packed data if it is packed.
+     */
+    private double distance(int id, Point point, double px, double py, double pz) {
+        if (id >= planeEnd) return delegates[id - planeEnd].distance(point);
+        int off = offset(id);
+        double ax = data.get(off) - px, ay = data.get(off + 1) - py, az = data.get(off + 2) - pz;
+        if (id < sphereEnd) return Math.abs(Math.sqrt(ax * ax + ay * ay + az * az) - data.get(off + 3));
+        if (id >= triangleEnd)
+            return Math.abs(ax * data.get(off + 3) + ay * data.get(off + 4) + az * data.get(off + 5));
+        // triangle a, b, c relative to the point - the projection is inside if it is left of every edge
+        double bx = ax + data.get(off + 3), by = ay + data.get(off + 4), bz = az + data.get(off + 5);
+        double cx = ax + data.get(off + 6), cy = ay + data.get(off + 7), cz = az + data.get(off + 8);
+        double nx = data.get(off + 9), ny = data.get(off + 10), nz = data.get(off + 11);
+        if (tripleProduct(ax, ay, az, bx, by, bz, nx, ny, nz) >= 0
+                && tripleProduct(bx, by, bz, cx, cy, cz, nx, ny, nz) >= 0
+                && tripleProduct(cx, cy, cz, ax, ay, az, nx, ny, nz) >= 0)
+            return Math.abs(ax * nx + ay * ny + az * nz);
+        return Math.sqrt(Math.min(Polygon.segmentDistanceSquared(ax, ay, az, bx, by, bz),
+                Math.min(Polygon.segmentDistanceSquared(bx, by, bz, cx, cy, cz),
+                        Polygon.segmentDistanceSquared(cx, cy, cz, ax, ay, az))));
+    }
+
+    private static double tripleProduct(double ax, double ay, double az, double bx, double by, double bz,
+                                        double nx, double ny, double nz) {
+        return (ay * bz - az * by) * nx + (az * bx - ax * bz) * ny + (ax * by - ay * bx) * nz;
+    }
+
+    /**
+     * Finds the geometries that reach into a box region. BVH nodes outside the region are skipped and
+     * every remaining primitive gets the conservative test of its type.
+     *
+     * @param region the region
+     * @return the geometries overlapping the region
+     */
+    public List<Intersectable> findOverlapping(BoundingBox region) {
+        return geometries(overlapping(region::overlaps, id -> overlaps(id, region)));
+    }
+
+    /**
+     * Finds the geometries that reach into a frustum, e.g. the view volume of a camera. BVH nodes outside
+     * the frustum are skipped and every remaining primitive gets the conservative test of its type.
+     *
+     * @param frustum the frustum
+     * @return the geometries overlapping the frustum
+     */
+    public List<Intersectable> findOverlapping(Frustum frustum) {
+        return geometries(overlapping(frustum::overlapsBox, id -> overlaps(id, frustum)));
+    }
+
+    /**
+     * Compiles the part of the scene that reaches into a frustum - e.g. the potentially visible set
+     * of a camera, so that primary rays are not tested against geometries the camera cannot see.
+     * <p>
+     * Primary rays never enter the BVH nodes outside the frustum anyway, so the subset pays off only when
+     * it drops a large part of the scene: if at least half of the geometries are visible this scene is
+     * returned as is. Otherwise the subset is assembled from the packed data of the visible primitives
+     * without building geometry objects; it has the precision of this scene and is kept off the heap
+     * if this scene is.
+     * </p>
+     *
+     * @param frustum the frustum
+     * @return the compiled scene of the overlapping geometries - this scene if most of it overlaps
+     */
+    public CompiledScene cull(Frustum frustum) {
+        int[] ids = overlapping(frustum::overlapsBox, id -> overlaps(id, frustum));
+        if (2 * ids.length >= size()) return this;
+        Arrays.sort(ids); // keeps the primitives grouped by kind
+        Storage storage = sources == null ? Storage.OFF_HEAP : Storage.HEAP;
+        int spheres = 0, triangles = 0, planes = 0, length = 0;
+        for (int id : ids) {
+            if (id < sphereEnd) {
+                ++spheres;
+                length += SPHERE_STRIDE;
+            } else if (id < triangleEnd) {
+                ++triangles;
+                length += TRIANGLE_STRIDE;
+            } else if (id < planeEnd) {
+                ++planes;
+                length += PLANE_STRIDE;
+            }
+        }
+        int packedCount = spheres + triangles + planes;
+
+        double[] packed = new double[length];
+        double[] boxes = new double[6 * ids.length];
+        Intersectable[] subDelegates = new Intersectable[ids.length - packedCount];
+        for (int i = 0, off = 0; i < ids.length; ++i) {
+            int id = ids[i];
+            if (id >= planeEnd) {
+                subDelegates[i - packedCount] = delegates[id - planeEnd];
+                putBox(boxes, i, subDelegates[i - packedCount].getBoundingBox());
+                continue;
+            }
+            int from = offset(id), stride = id < sphereEnd ? SPHERE_STRIDE
+                    : id < triangleEnd ? TRIANGLE_STRIDE : PLANE_STRIDE;
+            for (int k = 0; k < stride; ++k)
+                packed[off + k] = data.get(from + k);
+            packedBox(boxes, i, packed, off, id);
+            off += stride;
+        }
+        Intersectable[] subSources = null;
+        if (sources != null) {
+            subSources = new Intersectable[ids.length];
+            for (int i = 0; i < ids.length; ++i)
+                subSources[i] = sources[ids[i]];
+        }
+        Hierarchy hierarchy = Hierarchy.of(boxes, precision, storage);
+        return new CompiledScene(precision, subSources, subDelegates, spheres, spheres + triangles,
+                packedCount, PackedNumbers.of(packed, precision, storage), hierarchy.unbounded, hierarchy.order,
+                hierarchy.nodeBounds, hierarchy.nodeInfo);
+    }
+
+    /**
+     * Writes the box of a packed primitive from its packed data - the box of the primitive the kernel
+     * intersects.
+     */
+    private void packedBox(double[] boxes, int i, double[] packed, int off, int id) {
+        int b = 6 * i;
+        if (id >= triangleEnd) {
+            boxes[b] = Double.NaN; // a plane
+        } else if (id < sphereEnd) {
+            double r = packed[off + 3];
+            for (int axis = 0; axis < 3; ++axis) {
+                boxes[b + axis] = packed[off + axis] - r;
+                boxes[b + axis + 3] = packed[off + axis] + r;
+            }
+        } else {
+            for (int axis = 0; axis < 3; ++axis) {
+                double a = packed[off + axis], e1 = a + packed[off + 3 + axis], e2 = a + packed[off + 6 + axis];
+                boxes[b + axis] = Math.min(a, Math.min(e1, e2));
+                boxes[b + axis + 3] = Math.max(a, Math.max(e1, e2));
+            }
+        }
+    }
+
+    private List<Intersectable> geometries(int[] ids) {
+        List<Intersectable> result = new ArrayList<>(ids.length);
+        for (int id : ids)
+            result.add(getGeometry(id));
+        return result;
+    }
+
+    /**
+     * Test of a box given by its corners against a region.
+     */
+    @FunctionalInterface
+    private interface BoxTest {
+        boolean overlaps(double x0, double y0, double z0, double x1, double y1, double z1);
+    }
+
+    /**
+     * Finds the ids of the primitives overlapping a region.
+     *
+     * @param nodeTest      the test of a BVH node box
+     * @param primitiveTest the test of a primitive by its id
+     * @return the ids, in no particular order
+     */
+    private int[] overlapping(BoxTest nodeTest, IntPredicate primitiveTest) {
+        int[] result = new int[16];
+        int count = 0;
+        for (int i = 0; i < unbounded.length(); ++i) {
+            int id = unbounded.get(i);
+            if (primitiveTest.test(id)) {
+                if (count == result.length) result = Arrays.copyOf(result, 2 * count);
+                result[count++] = id;
+            }
+        }
+        if (nodeInfo.length() > 0) {
+            int[] stack = new int[64];
+            int top = 0;
+            stack[top++] = 0;
+            while (top > 0) {
+                int node = stack[--top];
+                int b = 6 * node;
+                if (!nodeTest.overlaps(nodeBounds.get(b), nodeBounds.get(b + 1), nodeBounds.get(b + 2),
+                        nodeBounds.get(b + 3), nodeBounds.get(b + 4), nodeBounds.get(b + 5)))
+                    continue;
+                int link = nodeInfo.get(2 * node), leafCount = nodeInfo.get(2 * node + 1);
+                if (leafCount == 0) {
+                    if (top + 2 > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+                    stack[top++] = link;
+                    stack[top++] = link + 1;
+                    continue;
+                }
+                for (int i = link; i < link + leafCount; ++i) {
+                    int id = order.get(i);
+                    if (primitiveTest.test(id)) {
+                        if (count == result.length) result = Arrays.copyOf(result, 2 * count);
+                        result[count++] = id;
+                    }
+                }
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Conservative test of a primitive against a box region, from the packed data if it is packed.
+     */
+    private boolean overlaps(int id, BoundingBox region) {
+        if (id >= planeEnd) return delegates[id - planeEnd].overlaps(region);
+        int off = offset(id);
+        if (id < sphereEnd)
+            return region.overlapsSphere(data.get(off), data.get(off + 1), data.get(off + 2), data.get(off + 3));
+        if (id >= triangleEnd)
+            return region.overlapsPlane(data.get(off + 3), data.get(off + 4), data.get(off + 5), planeOffset(off));
+        double ax = data.get(off), ay = data.get(off + 1), az = data.get(off + 2);
+        double bx = ax + data.get(off + 3), by = ay + data.get(off + 4), bz = az + data.get(off + 5);
+        double cx = ax + data.get(off + 6), cy = ay + data.get(off + 7), cz = az + data.get(off + 8);
+        return region.overlaps(Math.min(ax, Math.min(bx, cx)), Math.min(ay, Math.min(by, cy)),
+                Math.min(az, Math.min(bz, cz)), Math.max(ax, Math.max(bx, cx)), Math.max(ay, Math.max(by, cy)),
+                Math.max(az, Math.max(bz, cz)));
+    }
+
+    /**
+     * Conservative test of a primitive against a frustum, from the packed data if it is packed.
+     */
+    private boolean overlaps(int id, Frustum frustum) {
+        if (id >= planeEnd) return delegates[id - planeEnd].overlaps(frustum);
+        int off = offset(id);
+        if (id < sphereEnd)
+            return frustum.overlapsSphere(data.get(off), data.get(off + 1), data.get(off + 2), data.get(off + 3));
+        if (id >= triangleEnd)
+            return frustum.overlapsPlane(data.get(off + 3), data.get(off + 4), data.get(off + 5), planeOffset(off));
+        double ax = data.get(off), ay = data.get(off + 1), az = data.get(off + 2);
+        return frustum.overlapsTriangle(ax, ay, az,
+                ax + data.get(off + 3), ay + data.get(off + 4), az + data.get(off + 5),
+                ax + data.get(off + 6), ay + data.get(off + 7), az + data.get(off + 8));
+    }
+
+    /**
+     * Returns the offset d of the equation n*x + d = 0 of a packed plane.
+     */
+    private double planeOffset(int off) {
+        return -(data.get(off) * data.get(off + 3) + data.get(off + 1) * data.get(off + 4)
+                + data.get(off + 2) * data.get(off + 5));
+    }
+
+    /**
+     * Appends all the intersections of a primitive with the ray to a buffer.
+     */
+    private void collect(int id, Ray ray, double ox, double oy, double oz, double dx, double dy, double dz,
+                         IntersectionBuffer buffer) {
+        if (id >= planeEnd) {
+            delegates[id - planeEnd].findIntersections(ray, buffer);
+            return;
+        }
+        double[] t = buffer.hits;
+        int count = hit(id, ox, oy, oz, dx, dy, dz, t);
+        for (int i = 0; i < count; ++i)
+            buffer.add(t[i], this, id);
+    }
+
+    /**
+     * Creates the hit record of a primitive.
+     *
+     * @param id  the primitive id
+     * @param ray the ray
+     * @param t   the distance of the hit
+     * @return the hit record
+     */
+    Intersection intersection(int id, Ray ray, double t) {
+        if (id >= planeEnd) return new Intersection(delegates[id - planeEnd], ray, t);
+        return new PackedIntersection(this, id, ray, t);
+    }
+
+    /**
+     * Computes the unit normal of a packed primitive at a point on it. Triangles and planes
+     * keep their normal packed; a sphere's normal is the offset from its center.
+     *
+     * @param id    the primitive id (must not be a delegated one)
+     * @param point the point on the primitive
+     * @return the normal
+     */
+    Vector normal(int id, Point point) {
+        int off = offset(id);
+        if (id < sphereEnd)
+            return new Vector(point.getX() - data.get(off), point.getY() - data.get(off + 1),
+                    point.getZ() - data.get(off + 2)).normalize();
+        off += id < triangleEnd ? 9 : 3;
+        Vector normal = new Vector(data.get(off), data.get(off + 1), data.get(off + 2));
+        return precision == Precision.DOUBLE ? normal : normal.normalize();
+    }
+
+    /**
+     * Returns the unit normal of a primitive at a point on it, e.g. at a hit found by a batched query.
+     *
+     * @param id    the primitive id
+     * @param point the point
+     * @return the normal, or null if the primitive has no normal (a delegated geometry that is not a {@link Geometry})
+     */
+    public Vector getNormal(int id, Point point) {
+        if (id < 0 || id >= size())
+            throw new IndexOutOfBoundsException("Primitive " + id + " out of " + size());
+        if (id < planeEnd) return normal(id, point);
+        return delegates[id - planeEnd] instanceof Geometry geometry ? geometry.getNormal(point) : null;
+    }
+
+    /**
+     * Hit record of a packed primitive. It keeps the primitive id only; the source geometry and
+     * the normal are looked up in the scene when asked for.
+     */
+    private static final class PackedIntersection extends Intersection {
+        private final CompiledScene scene;
+        private final int id;
+        private Intersectable geometry;
+
+        PackedIntersection(CompiledScene scene, int id, Ray ray, double t) {
+            super(null, ray, t);
+            this.scene = scene;
+            this.id = id;
+        }
+
+        @Override
+        public Intersectable getGeometry() {
+            if (geometry == null) geometry = scene.getGeometry(id);
+            return geometry;
+        }
+
+        @Override
+        public int getPrimitiveId() {
+            return id;
+        }
+
+        @Override
+        protected Vector computeNormal() {
+            return scene.normal(id, getPoint());
+        }
+    }
+
+
+    /**
+     * Checks the ray against a BVH node box.
+     */
+    private boolean hitsNode(int node, double ox, double oy, double oz,
+                             double invX, double invY, double invZ, double tMax) {
+        int b = 6 * node;
+        return BoundingBox.intersects(ox, oy, oz, invX, invY, invZ,
+                nodeBounds.get(b), nodeBounds.get(b + 1), nodeBounds.get(b + 2),
+                nodeBounds.get(b + 3), nodeBounds.get(b + 4), nodeBounds.get(b + 5), tMax);
+    }
+
+    /**
+     * Intersects a packed primitive with a ray given by its head and unit direction.
+     *
+     * @param id the primitive id (must not be a delegated one)
+     * @param t  output array of at least 2 cells for the distances, in increasing order
+     * @return the amount of intersections (0 to 2)
+     */
+    int hit(int id, double ox, double oy, double oz, double dx, double dy, double dz, double[] t) {
+        if (id < sphereEnd) return hitSphere(SPHERE_STRIDE * id, ox, oy, oz, dx, dy, dz, t);
+        if (id < triangleEnd)
+            return hitTriangle(triangleBase + TRIANGLE_STRIDE * (id - sphereEnd), ox, oy, oz, dx, dy, dz, t);
+        if (id < planeEnd)
+            return hitPlane(planeBase + PLANE_STRIDE * (id - triangleEnd), ox, oy, oz, dx, dy, dz, t);
+        throw new IllegalArgumentException("Primitive " + id + " is not packed");
+    }
+
+    private int hitSphere(int off, double ox, double oy, double oz, double dx, double dy, double dz, double[] t) {
+        double ux = data.get(off) - ox, uy = data.get(off + 1) - oy, uz = data.get(off + 2) - oz;
+        if (isZero(ux) && isZero(uy) && isZero(uz)) {
+            // the ray starts at the center
+            t[0] = data.get(off + 3);
+            return 1;
+        }
+        double tm = alignZero(dx * ux + dy * uy + dz * uz);
+        double dSquared = alignZero(ux * ux + uy * uy + uz * uz - tm * tm);
+        double rSquared = alignZero(data.get(off + 4));
+        if (dSquared >= rSquared) return 0;
+        double th = alignZero(Math.sqrt(rSquared - dSquared));
+        double t1 = alignZero(tm - th);
+        double t2 = alignZero(tm + th);
+        int count = 0;
+        if (t1 > 0) t[count++] = t1;
+        if (t2 > 0) t[count++] = t2;
+        return count;
+    }
+
+    /**
+     * Möller-Trumbore ray-triangle intersection. Like {@link Triangle}, hits on the edges and
+     * vertices are not counted.
+     */
+    private int hitTriangle(int off, double ox, double oy, double oz, double dx, double dy, double dz, double[] t) {
+        double e1x = data.get(off + 3), e1y = data.get(off + 4), e1z = data.get(off + 5);
+        double e2x = data.get(off + 6), e2y = data.get(off + 7), e2z = data.get(off + 8);
+        double px = dy * e2z - dz * e2y, py = dz * e2x - dx * e2z, pz = dx * e2y - dy * e2x;
+        double det = e1x * px + e1y * py + e1z * pz;
+        if (isZero(det)) return 0; // the ray is parallel to the triangle
+        double inv = 1 / det;
+        double sx = ox - data.get(off), sy = oy - data.get(off + 1), sz = oz - data.get(off + 2);
+        double u = (sx * px + sy * py + sz * pz) * inv;
+        if (alignZero(u) <= 0 || alignZero(u - 1) >= 0) return 0;
+        double qx = sy * e1z - sz * e1y, qy = sz * e1x - sx * e1z, qz = sx * e1y - sy * e1x;
+        double v = (dx * qx + dy * qy + dz * qz) * inv;
+        if (alignZero(v) <= 0 || alignZero(u + v - 1) >= 0) return 0;
+        double distance = alignZero((e2x * qx + e2y * qy + e2z * qz) * inv);
+        if (distance <= 0) return 0;
+        t[0] = distance;
+        return 1;
+    }
+
+    private int hitPlane(int off, double ox, double oy, double oz, double dx, double dy, double dz, double[] t) {
+        double ux = data.get(off) - ox, uy = data.get(off + 1) - oy, uz = data.get(off + 2) - oz;
+        if (isZero(ux) && isZero(uy) && isZero(uz)) return 0; // the ray starts at the reference point
+        double nx = data.get(off + 3), ny = data.get(off + 4), nz = data.get(off + 5);
+        double denominator = nx * dx + ny * dy + nz * dz;
+        if (isZero(denominator)) return 0;
+        double distance = alignZero((nx * ux + ny * uy + nz * uz) / denominator);
+        if (distance <= 0) return 0;
+        t[0] = distance;
+        return 1;
+    }
+
+    /**
+     * Best-first traversal of the scene for one ray. The priority queue is a binary min-heap over
+     * parallel primitive arrays: the key is the entry distance of a node or the distance of a hit,
+     * the reference is a node index (not negative) or the index of a hit in the buffer (encoded as -1-index).
+     */
+    private final class SortedIterator implements Iterator<Intersection> {
+        private final Ray ray;
+        private final double tMin, tMax;
+        private final double ox, oy, oz, dx, dy, dz, invX, invY, invZ;
+        private final IntersectionBuffer hits = new IntersectionBuffer();
+        private double[] keys = new double[32];
+        private int[] refs = new int[32];
+        private int size;
+
+        SortedIterator(Ray ray, double tMin, double tMax) {
+            this.ray = ray;
+            this.tMin = tMin;
+            this.tMax = tMax;
+            Point head = ray.getp1();
+            Vector dir = ray.getDirection();
+            ox = head.getX();
+            oy = head.getY();
+            oz = head.getZ();
+            dx = dir.getX();
+            dy = dir.getY();
+            dz = dir.getZ();
+            invX = 1 / dx;
+            invY = 1 / dy;
+            invZ = 1 / dz;
+            // unbounded primitives have no box to wait on
+            for (int i = 0; i < unbounded.length(); ++i)
+                expand(unbounded.get(i));
+            if (nodeInfo.length() > 0) pushNode(0);
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (size > 0 && refs[0] >= 0) {
+                int node = pop();
+                int count = nodeInfo.get(2 * node + 1);
+                int link = nodeInfo.get(2 * node);
+                if (count == 0) {
+                    pushNode(link);
+                    pushNode(link + 1);
+                } else
+                    for (int i = link; i < link + count; ++i)
+                        expand(order.get(i));
+            }
+            return size > 0;
+        }
+
+        @Override
+        public Intersection next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            return hits.getIntersection(-1 - pop(), ray);
+        }
+
+        /**
+         * Intersects a primitive and queues its hits within the range.
+         */
+        private void expand(int id) {
+            int from = hits.size();
+            collect(id, ray, ox, oy, oz, dx, dy, dz, hits);
+            for (int i = from; i < hits.size(); ++i) {
+                double t = hits.getT(i);
+                if (t >= tMin && t <= tMax) push(t, -1 - i);
+            }
+        }
+
+        private void pushNode(int node) {
+            int b = 6 * node;
+            double t = BoundingBox.entry(ox, oy, oz, invX, invY, invZ,
+                    nodeBounds.get(b), nodeBounds.get(b + 1), nodeBounds.get(b + 2),
+                    nodeBounds.get(b + 3), nodeBounds.get(b + 4), nodeBounds.get(b + 5), tMin, tMax);
+            if (!Double.isNaN(t)) push(t, node);
+        }
+
+        private void push(double key, int ref) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, 2 * size);
+                refs = Arrays.copyOf(refs, 2 * size);
+            }
+            int i = size++;
+            // sift up; on equal keys hits go first, so a hit on a box face is not delayed by the box
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!before(key, ref, keys[parent], refs[parent])) break;
+                keys[i] = keys[parent];
+                refs[i] = refs[parent];
+                i = parent;
+            }
+            keys[i] = key;
+            refs[i] = ref;
+        }
+
+        private int pop() {
+            int top = refs[0];
+            double key = keys[--size];
+            int ref = refs[size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) break;
+                if (child + 1 < size && before(keys[child + 1], refs[child + 1], keys[child], refs[child])) ++child;
+                if (!before(keys[child], refs[child], key, ref)) break;
+                keys[i] = keys[child];
+                refs[i] = refs[child];
+                i = child;
+            }
+            keys[i] = key;
+            refs[i] = ref;
+            return top;
+        }
+
+        private static boolean before(double key1, int ref1, double key2, int ref2) {
+            return key1 < key2 || key1 == key2 && ref1 < 0 && ref2 >= 0;
+        }
+    }
+
+    /**
+     * Builds the flat BVH by recursive median split of the primitive centroids
+     * along the longest axis of their extent.
+     */
+    private static final class BvhBuilder {
+        private final double[] boxes;
+        private final int[] ids;
+        private double[] bounds;
+        private int[] info;
+        private int nodes;
+
+        /**
+         * Builds the hierarchy, reordering the ids array so that each leaf is a consecutive range.
+         *
+         * @param boxes primitive boxes indexed by primitive id (6 numbers each)
+         * @param ids   ids of the primitives to index
+         */
+        BvhBuilder(double[] boxes, int[] ids) {
+            this.boxes = boxes;
+            this.ids = ids;
+            int capacity = Math.max(1, 2 * ids.length - 1);
+            bounds = new double[6 * capacity];
+            info = new int[2 * capacity];
+            if (ids.length > 0) {
+                nodes = 1;
+                build(0, 0, ids.length);
+            }
+            bounds = Arrays.copyOf(bounds, 6 * nodes);
+            info = Arrays.copyOf(info, 2 * nodes);
+        }
+
+        private void build(int node, int from, int to) {
+            double[] box = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+                    Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+            double[] centroids = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+                    Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+            for (int i = from; i < to; ++i) {
+                int b = 6 * ids[i];
+                for (int axis = 0; axis < 3; ++axis) {
+                    box[axis] = Math.min(box[axis], boxes[b + axis]);
+                    box[axis + 3] = Math.max(box[axis + 3], boxes[b + axis + 3]);
+                    double c = centroid(ids[i], axis);
+                    centroids[axis] = Math.min(centroids[axis], c);
+                    centroids[axis + 3] = Math.max(centroids[axis + 3], c);
+                }
+            }
+            System.arraycopy(box, 0, bounds, 6 * node, 6);
+
+            if (to - from <= LEAF_SIZE) {
+                info[2 * node] = from;
+                info[2 * node + 1] = to - from;
+                return;
+            }
+            int axis = 0;
+            for (int a = 1; a < 3; ++a)
+                if (centroids[a + 3] - centroids[a] > centroids[axis + 3] - centroids[axis]) axis = a;
+            int mid = (from + to) >>> 1;
+            select(from, to - 1, mid, axis);
+
+            int left = nodes;
+            nodes += 2;
+            info[2 * node] = left;
+            info[2 * node + 1] = 0;
+            build(left, from, mid);
+            build(left + 1, mid, to);
+        }
+
+        private double centroid(int id, int axis) {
+            return (boxes[6 * id + axis] + boxes[6 * id + axis + 3]) / 2;
+        }
+
+        /**
+         * Quick-select: partially orders ids[lo..hi] so that the k-th one is in its sorted place
+         * by the centroid along the axis.
+         */
+        private void select(int lo, int hi, int k, int axis) {
+            while (lo < hi) {
+                double pivot = centroid(ids[(lo + hi) >>> 1], axis);
+                int i = lo, j = hi;
+                while (i <= j) {
+                    while (centroid(ids[i], axis) < pivot) ++i;
+                    while (centroid(ids[j], axis) > pivot) --j;
+                    if (i <= j) {
+                        int tmp = ids[i];
+                        ids[i++] = ids[j];
+                        ids[j--] = tmp;
+                    }
+                }
+                if (k <= j) hi = j;
+                else if (k >= i) lo = i;
+                else return;
+            }
+        }
+    }
+}
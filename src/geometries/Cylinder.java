@@ -20,7 +20,12 @@ import static primitives.Util.isZero;
  * @author Yehonatan Uzzan and Oz Dahari (refactored)
  */
 public class Cylinder extends Tube {
-    private final double height;
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The height of the cylinder along its axis.
+     */
+    protected final double height;
 
     /**
      * Constructor that initializes a cylinder with a given axis, radius, and height.
@@ -53,6 +58,47 @@ public class Cylinder extends Tube {
         return super.getNormal(point);
     }
 
+    /**
+     * Computes the distance between a point and the surface of the cylinder - its side or its bases.
+     *
+     * @param point the point
+     * @return the distance
+     */
+    @Override
+    public double distance(Point point) {
+        Point p0 = axisRay.getp1();
+        Vector dir = axisRay.getDirection();
+        double along = (point.getX() - p0.getX()) * dir.getX() + (point.getY() - p0.getY()) * dir.getY()
+                + (point.getZ() - p0.getZ()) * dir.getZ();
+        double radial = axisDistance(point);
+        // distance beyond the bases along the axis, and beyond the side across it
+        double outside = along < 0 ? -along : along > height ? along - height : 0;
+        if (radial <= radius)
+            return outside > 0 ? outside : Math.min(radius - radial, Math.min(along, height - along));
+        return outside > 0 ? Math.hypot(radial - radius, outside) : radial - radius;
+    }
+
+    /**
+     * Computes the bounding box of the cylinder as the box of its two base discs.
+     * A disc of radius r orthogonal to the unit axis d extends r*sqrt(1-d_i^2) along axis i.
+     *
+     * @return the bounding box of the cylinder
+     */
+    @Override
+    public BoundingBox getBoundingBox() {
+        Vector dir = axisRay.getDirection();
+        Point bottom = axisRay.getp1();
+        Point top = bottom.add(dir.scale(height));
+        double ex = radius * Math.sqrt(Math.max(0, 1 - dir.getX() * dir.getX()));
+        double ey = radius * Math.sqrt(Math.max(0, 1 - dir.getY() * dir.getY()));
+        double ez = radius * Math.sqrt(Math.max(0, 1 - dir.getZ() * dir.getZ()));
+        return new BoundingBox(
+                Math.min(bottom.getX(), top.getX()) - ex, Math.min(bottom.getY(), top.getY()) - ey,
+                Math.min(bottom.getZ(), top.getZ()) - ez,
+                Math.max(bottom.getX(), top.getX()) + ex, Math.max(bottom.getY(), top.getY()) + ey,
+                Math.max(bottom.getZ(), top.getZ()) + ez);
+    }
+
     @Override
     public List<Point> findIntersections(Ray ray) {
         List<Point> result = new LinkedList<>();
@@ -0,0 +1,202 @@
+package geometries;
+
+import primitives.Point;
+import primitives.Vector;
+
+/**
+ * Class Frustum is the view volume of a perspective camera - a pyramid with its apex at the camera
+ * position through the corners of the view plane, optionally cut by a far plane.
+ * <p>
+ * The volume is kept as a set of planes with inward unit normals (a point is inside when it is on the
+ * inner side of all of them) plus, for a finite frustum, its 5 corners. The overlap tests are
+ * conservative: they never miss a geometry that reaches into the volume, but may accept one that
+ * only comes close to it (near the edges of the pyramid).
+ * </p>
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+public final class Frustum {
+    /**
+     * Plane equations - 4 numbers per plane (nx, ny, nz, d) - inside when n*x + d &gt;= 0
+     */
+    private final double[] planes;
+    /**
+     * Corners (apex and the 4 far corners, 3 numbers each), or null for an infinite frustum
+     */
+    private final double[] corners;
+
+    private Frustum(double[] planes, double[] corners) {
+        this.planes = planes;
+        this.corners = corners;
+    }
+
+    /**
+     * Constructs the view volume of a perspective camera.
+     *
+     * @param position the camera position (the apex)
+     * @param vTo      the forward direction
+     * @param vUp      the up direction
+     * @param vRight   the right direction
+     * @param width    the view plane width
+     * @param height   the view plane height
+     * @param distance the distance between the camera and the view plane
+     * @param far      the distance of the far plane along vTo, or positive infinity for no far plane
+     * @return the frustum
+     * @throws IllegalArgumentException if the view plane size, its distance or the far distance is not positive
+     */
+    public static Frustum perspective(Point position, Vector vTo, Vector vUp, Vector vRight,
+                                      double width, double height, double distance, double far) {
+        if (!(width > 0) || !(height > 0) || !(distance > 0) || !(far > 0))
+            throw new IllegalArgumentException("Frustum dimensions must be positive");
+        Vector to = vTo.normalize(), up = vUp.normalize(), right = vRight.normalize();
+        // directions from the apex through the view plane corners, in cyclic order
+        Vector center = to.scale(distance);
+        Vector[] edges = {
+                center.add(right.scale(width / 2)).add(up.scale(height / 2)),
+                center.add(right.scale(-width / 2)).add(up.scale(height / 2)),
+                center.add(right.scale(-width / 2)).add(up.scale(-height / 2)),
+                center.add(right.scale(width / 2)).add(up.scale(-height / 2))};
+        boolean finite = far < Double.POSITIVE_INFINITY;
+        double[] planes = new double[4 * (finite ? 6 : 5)];
+        for (int i = 0; i < 4; ++i) {
+            Vector n = edges[i].crossProduct(edges[(i + 1) % 4]).normalize();
+            if (n.dotProduct(to) < 0) n = n.scale(-1);
+            setPlane(planes, i, n, position);
+        }
+        setPlane(planes, 4, to, position);
+        double[] corners = null;
+        if (finite) {
+            setPlane(planes, 5, to.scale(-1), position.add(to.scale(far)));
+            corners = new double[15];
+            put(corners, 0, position);
+            for (int i = 0; i < 4; ++i)
+                put(corners, i + 1, position.add(edges[i].scale(far / distance)));
+        }
+        return new Frustum(planes, corners);
+    }
+
+    private static void setPlane(double[] planes, int index, Vector normal, Point point) {
+        planes[4 * index] = normal.getX();
+        planes[4 * index + 1] = normal.getY();
+        planes[4 * index + 2] = normal.getZ();
+        planes[4 * index + 3] = -(normal.getX() * point.getX() + normal.getY() * point.getY()
+                + normal.getZ() * point.getZ());
+    }
+
+    private static void put(double[] corners, int index, Point point) {
+        corners[3 * index] = point.getX();
+        corners[3 * index + 1] = point.getY();
+        corners[3 * index + 2] = point.getZ();
+    }
+
+    /**
+     * Checks whether the frustum has a far plane.
+     *
+     * @return true if the frustum is finite
+     */
+    public boolean isFinite() {
+        return corners != null;
+    }
+
+    /**
+     * Checks whether a point is inside the frustum (or on its boundary).
+     *
+     * @param point the point
+     * @return true if the point is inside
+     */
+    public boolean contains(Point point) {
+        double x = point.getX(), y = point.getY(), z = point.getZ();
+        for (int p = 0; p < planes.length; p += 4)
+            if (planes[p] * x + planes[p + 1] * y + planes[p + 2] * z + planes[p + 3] < 0) return false;
+        return true;
+    }
+
+    /**
+     * Conservative overlap test of a box: the box is rejected only if it is entirely outside one of the planes.
+     *
+     * @param box the box
+     * @return false if the box is certainly outside the frustum
+     */
+    public boolean overlaps(BoundingBox box) {
+        return overlapsBox(box.minX(), box.minY(), box.minZ(), box.maxX(), box.maxY(), box.maxZ());
+    }
+
+    /**
+     * Conservative overlap test of a box given by its corners.
+     *
+     * @return false if the box is certainly outside the frustum
+     */
+    boolean overlapsBox(double x0, double y0, double z0, double x1, double y1, double z1) {
+        for (int p = 0; p < planes.length; p += 4) {
+            // the box corner farthest along the inward normal
+            double x = planes[p] >= 0 ? x1 : x0, y = planes[p + 1] >= 0 ? y1 : y0, z = planes[p + 2] >= 0 ? z1 : z0;
+            if (planes[p] * x + planes[p + 1] * y + planes[p + 2] * z + planes[p + 3] < 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Conservative overlap test of a ball.
+     *
+     * @return false if the ball is certainly outside the frustum
+     */
+    boolean overlapsSphere(double cx, double cy, double cz, double radius) {
+        for (int p = 0; p < planes.length; p += 4)
+            if (planes[p] * cx + planes[p + 1] * cy + planes[p + 2] * cz + planes[p + 3] < -radius) return false;
+        return true;
+    }
+
+    /**
+     * Conservative overlap test of a triangle: it is rejected only if all its vertices are outside one of the planes.
+     *
+     * @return false if the triangle is certainly outside the frustum
+     */
+    boolean overlapsTriangle(double ax, double ay, double az, double bx, double by, double bz,
+                             double cx, double cy, double cz) {
+        for (int p = 0; p < planes.length; p += 4) {
+            double nx = planes[p], ny = planes[p + 1], nz = planes[p + 2], d = planes[p + 3];
+            if (nx * ax + ny * ay + nz * az + d < 0 && nx * bx + ny * by + nz * bz + d < 0
+                    && nx * cx + ny * cy + nz * cz + d < 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Overlap test of an infinite plane. A finite frustum overlaps the plane exactly when its corners are not all
+     * strictly on one side; an infinite one is always considered overlapping.
+     *
+     * @param nx normal X
+     * @param ny normal Y
+     * @param nz normal Z
+     * @param d  the plane offset (n*x + d = 0 on the plane)
+     * @return false if the plane certainly misses the frustum
+     */
+    boolean overlapsPlane(double nx, double ny, double nz, double d) {
+        if (corners == null) return true;
+        boolean above = false, below = false;
+        for (int c = 0; c < corners.length; c += 3) {
+            double side = nx * corners[c] + ny * corners[c + 1] + nz * corners[c + 2] + d;
+            if (side >= 0) above = true;
+            if (side <= 0) below = true;
+        }
+        return above && below;
+    }
+
+    /**
+     * Returns the box enclosing a finite frustum.
+     *
+     * @return the box, or null if the frustum is infinite
+     */
+    public BoundingBox getBoundingBox() {
+        if (corners == null) return null;
+        double[] box = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+                Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        for (int c = 0; c < corners.length; c += 3)
+            for (int axis = 0; axis < 3; ++axis) {
+                box[axis] = Math.min(box[axis], corners[c + axis]);
+                box[axis + 3] = Math.max(box[axis + 3], corners[c + axis]);
+            }
+        return new BoundingBox(box[0], box[1], box[2], box[3], box[4], box[5]);
+    }
+}
@@ -8,7 +8,7 @@ import java.util.*;
  * Implements the Composite design pattern.
  */
 public class Geometries implements Intersectable {
-    private final List<Intersectable> geometries = new LinkedList<>();
+    private final List<Intersectable> geometries = new ArrayList<>();
 
     /**
      * Default constructor initializing an empty collection.
@@ -36,18 +36,132 @@ public class Geometries implements Intersectable {
         Collections.addAll(this.geometries, geometries);
     }
 
+    /**
+     * Compiles the collection into an immutable flat representation for rendering,
+     * in double precision.
+     *
+     * @return the compiled scene, safe for concurrent use by many threads
+     * @see #compile(CompiledScene.Precision)
+     */
+    public CompiledScene compile() {
+        return compile(CompiledScene.Precision.DOUBLE);
+    }
+
+    /**
+     * Compiles the collection into an immutable flat representation for rendering,
+     * kept on the Java heap.
+     *
+     * @param precision the storage precision of the packed numbers
+     * @return the compiled scene, safe for concurrent use by many threads
+     * @see #compile(CompiledScene.Precision, CompiledScene.Storage)
+     */
+    public CompiledScene compile(CompiledScene.Precision precision) {
+        return compile(precision, CompiledScene.Storage.HEAP);
+    }
+
+    /**
+     * Compiles the collection into an immutable flat representation for rendering.
+     * The collection itself stays mutable for authoring - later additions do not affect
+     * a scene compiled earlier, so the scene must be compiled again after changes.
+     *
+     * @param precision the storage precision of the packed numbers
+     * @param storage   where to keep the arrays of the compiled scene
+     * @return the compiled scene, safe for concurrent use by many threads
+     */
+    public CompiledScene compile(CompiledScene.Precision precision, CompiledScene.Storage storage) {
+        List<Intersectable> primitives = new ArrayList<>();
+        flatten(primitives);
+        return new CompiledScene(primitives, precision, storage);
+    }
+
+    /**
+     * Collects all the geometries of the (possibly nested) collection into a list.
+     *
+     * @param out the list to add the geometries into
+     */
+    void flatten(List<Intersectable> out) {
+        for (Intersectable geo : geometries) {
+            if (geo instanceof Geometries nested) nested.flatten(out);
+            else out.add(geo);
+        }
+    }
+
+    /**
+     * Returns the box enclosing all the geometries of the collection.
+     *
+     * @return the union box, or null if any of the geometries is unbounded or the collection is empty
+     */
     @Override
-    public List<Point> findIntersections(Ray ray) {
-        List<Point> result = null;
+    public BoundingBox getBoundingBox() {
+        BoundingBox box = null;
         for (Intersectable geo : geometries) {
-            List<Point> points = geo.findIntersections(ray);
-            if (points != null) {
-                if (result == null) {
-                    result = new LinkedList<>();
-                }
-                result.addAll(points);
-            }
+            BoundingBox childBox = geo.getBoundingBox();
+            if (childBox == null) return null;
+            box = box == null ? childBox : box.union(childBox);
         }
+        return box;
+    }
+
+    /**
+     * Finds the intersection points of all the geometries - an adapter of
+     * {@link #findIntersections(Ray, IntersectionBuffer)}.
+     *
+     * @param ray the ray to check for intersections
+     * @return the intersection points, or null if there are none
+     */
+    @Override
+    public List<Point> findIntersections(Ray ray) {
+        IntersectionBuffer buffer = new IntersectionBuffer();
+        findIntersections(ray, buffer);
+        if (buffer.isEmpty()) return null;
+        List<Point> result = new ArrayList<>(buffer.size());
+        for (int i = 0; i < buffer.size(); ++i)
+            result.add(buffer.getPoint(i, ray));
+        return result;
+    }
+
+    @Override
+    public void findIntersections(Ray ray, IntersectionBuffer buffer) {
+        for (int i = 0; i < geometries.size(); ++i) // indexed - no iterator per ray
+            geometries.get(i).findIntersections(ray, buffer);
+    }
+
+    /**
+     * Computes the distance between a point and the closest geometry of the collection.
+     *
+     * @param point the point
+     * @return the smallest distance, or positive infinity if the collection is empty
+     */
+    @Override
+    public double distance(Point point) {
+        double distance = Double.POSITIVE_INFINITY;
+        for (Intersectable geo : geometries)
+            distance = Math.min(distance, geo.distance(point));
+        return distance;
+    }
+
+    @Override
+    public boolean overlaps(BoundingBox region) {
+        for (Intersectable geo : geometries)
+            if (geo.overlaps(region)) return true;
+        return false;
+    }
+
+    @Override
+    public boolean overlaps(Frustum frustum) {
+        for (Intersectable geo : geometries)
+            if (geo.overlaps(frustum)) return true;
+        return false;
+    }
+
+    @Override
+    public List<Intersection> calculateIntersections(Ray ray) {
+        IntersectionBuffer buffer = new IntersectionBuffer();
+        findIntersections(ray, buffer);
+        if (buffer.isEmpty()) return null;
+        List<Intersection> result = new ArrayList<>(buffer.size());
+        for (int i = 0; i < buffer.size(); ++i)
+            result.add(buffer.getIntersection(i, ray));
         return result;
     }
 }
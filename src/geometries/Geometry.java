@@ -3,13 +3,16 @@ package geometries;
 import primitives.Point;
 import primitives.Vector;
 
+import java.io.Serializable;
+
 /**
  * Abstract class Geometry represents a geometric object in 3D space.
  * All geometric objects must implement the getNormal method.
  *
  * @author Yehonatan Uzzan and Oz Dahari
  */
-public abstract class Geometry implements Intersectable{
+public abstract class Geometry implements Intersectable, Serializable {
+    private static final long serialVersionUID = 1L;
 
     /**
      * Returns the normal vector to the geometry at a given point.
@@ -18,4 +21,13 @@ public abstract class Geometry implements Intersectable{
      * @return The normal vector at the given point.
      */
     public abstract Vector getNormal(Point point);
+
+    /**
+     * Computes the distance between a point and the surface of the geometry.
+     *
+     * @param point the point
+     * @return the distance from the point to the closest point of the surface (0 on the surface)
+     */
+    @Override
+    public abstract double distance(Point point);
 }
@@ -3,6 +3,7 @@ package geometries;
 import primitives.Point;
 import primitives.Ray;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -18,4 +19,94 @@ public interface Intersectable {
      * @return a list of intersection points, or null if there are no intersections
      */
     List<Point> findIntersections(Ray ray);
-}
\ No newline at end of file
+
+    /**
+     * Appends the intersections between a ray and the geometry to a caller supplied buffer.
+     * The default implementation adds the points of {@link #findIntersections(Ray)}; geometries
+     * that compute the distances directly override it so that a reused buffer makes the query
+     * free of allocations.
+     *
+     * @param ray    the ray to check for intersections
+     * @param buffer the buffer to append the hits to
+     */
+    default void findIntersections(Ray ray, IntersectionBuffer buffer) {
+        List<Point> points = findIntersections(ray);
+        if (points == null) return;
+        Point head = ray.getp1();
+        for (Point point : points)
+            buffer.add(point.distance(head), this, -1);
+    }
+
+    /**
+     * Finds the intersections between a ray and the geometry as hit records, which also tell which
+     * geometry was hit and give its normal on demand. The default implementation wraps the points of
+     * {@link #findIntersections(Ray)}; geometries that know the distances directly override it.
+     *
+     * @param ray the ray to check for intersections
+     * @return a list of hit records, or null if there are no intersections
+     */
+    default List<Intersection> calculateIntersections(Ray ray) {
+        List<Point> points = findIntersections(ray);
+        if (points == null) return null;
+        List<Intersection> result = new ArrayList<>(points.size());
+        for (Point point : points)
+            result.add(new Intersection(this, ray, point));
+        return result;
+    }
+
+    /**
+     * Finds the intersection closest to the ray head.
+     *
+     * @param ray the ray to check for intersections
+     * @return the closest hit record, or null if there are no intersections
+     */
+    default Intersection calculateClosestIntersection(Ray ray) {
+        List<Intersection> intersections = calculateIntersections(ray);
+        if (intersections == null) return null;
+        Intersection closest = null;
+        for (Intersection intersection : intersections)
+            if (closest == null || intersection.getT() < closest.getT()) closest = intersection;
+        return closest;
+    }
+
+    /**
+     * Computes the distance between a point and the surface of the geometry.
+     *
+     * @param point the point
+     * @return the distance from the point to the closest point of the geometry (0 on the surface)
+     */
+    double distance(Point point);
+
+    /**
+     * Conservative check whether the geometry reaches into a box region. The default implementation
+     * compares the bounding boxes and accepts unbounded geometries.
+     *
+     * @param region the region
+     * @return false only if the geometry is certainly outside the region
+     */
+    default boolean overlaps(BoundingBox region) {
+        BoundingBox box = getBoundingBox();
+        return box == null || box.overlaps(region);
+    }
+
+    /**
+     * Conservative check whether the geometry reaches into a frustum. The default implementation
+     * tests the bounding box and accepts unbounded geometries.
+     *
+     * @param frustum the frustum
+     * @return false only if the geometry is certainly outside the frustum
+     */
+    default boolean overlaps(Frustum frustum) {
+        BoundingBox box = getBoundingBox();
+        return box == null || frustum.overlaps(box);
+    }
+
+    /**
+     * Returns the axis aligned bounding box of the geometry.
+     *
+     * @return the bounding box, or null if the geometry is unbounded (e.g. plane or infinite tube)
+     */
+    default BoundingBox getBoundingBox() {
+        return null;
+    }
+}
@@ -0,0 +1,122 @@
+package geometries;
+
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+/**
+ * Class Intersection is a hit record of a ray with a geometry.
+ * <p>
+ * It holds the geometry that was hit, the ray and the distance {@code t} of the hit along the ray.
+ * The intersection point and the normal at it are computed only when asked for and then kept, so a
+ * shader that looks at the closest hit only does not pay for the normals of all the other hits.
+ * The lazy values are immutable, so a record may be read by several threads.
+ * </p>
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+public class Intersection {
+    private final Intersectable geometry;
+    private final Ray ray;
+    private final double t;
+    private Point point;
+    private Vector normal;
+
+    /**
+     * Constructs a hit record at a distance along the ray.
+     *
+     * @param geometry the geometry that was hit
+     * @param ray      the ray
+     * @param t        the distance of the hit from the ray head
+     */
+    public Intersection(Intersectable geometry, Ray ray, double t) {
+        this.geometry = geometry;
+        this.ray = ray;
+        this.t = t;
+    }
+
+    /**
+     * Constructs a hit record of an already known point.
+     *
+     * @param geometry the geometry that was hit
+     * @param ray      the ray
+     * @param point    the intersection point
+     */
+    public Intersection(Intersectable geometry, Ray ray, Point point) {
+        this(geometry, ray, point.distance(ray.getp1()));
+        this.point = point;
+    }
+
+    /**
+     * Returns the geometry that was hit.
+     *
+     * @return the geometry
+     */
+    public Intersectable getGeometry() {
+        return geometry;
+    }
+
+    /**
+     * Returns the id of the hit primitive in its compiled scene. Unlike {@link #getGeometry()} it does not
+     * build a geometry object for a scene that does not keep its sources, so it is the cheap way to tell
+     * whether two hits of the same scene are of the same primitive.
+     *
+     * @return the primitive id, or -1 if the hit record names its geometry only
+     */
+    public int getPrimitiveId() {
+        return -1;
+    }
+
+    /**
+     * Returns the ray.
+     *
+     * @return the ray
+     */
+    public Ray getRay() {
+        return ray;
+    }
+
+    /**
+     * Returns the distance of the hit from the ray head.
+     *
+     * @return the distance t
+     */
+    public double getT() {
+        return t;
+    }
+
+    /**
+     * Returns the intersection point, computing it on the first call.
+     *
+     * @return the intersection point
+     */
+    public Point getPoint() {
+        if (point == null) point = ray.getPoint(t);
+        return point;
+    }
+
+    /**
+     * Returns the unit normal of the geometry at the intersection point, computing it on the first call.
+     *
+     * @return the normal, or null if the geometry has no normal (it is not a {@link Geometry})
+     */
+    public Vector getNormal() {
+        if (normal == null) normal = computeNormal();
+        return normal;
+    }
+
+    /**
+     * Computes the normal at the intersection point. Kernels that know a cheaper way
+     * than {@link Geometry#getNormal(Point)} override this method.
+     *
+     * @return the unit normal, or null if the geometry has no normal
+     */
+    protected Vector computeNormal() {
+        return getGeometry() instanceof Geometry hit ? hit.getNormal(getPoint()) : null;
+    }
+
+    @Override
+    public String toString() {
+        return "Intersection(t: " + t + ", point: " + getPoint() + ")";
+    }
+}
@@ -0,0 +1,215 @@
+package geometries;
+
+import primitives.Point;
+import primitives.Ray;
+
+import java.util.Arrays;
+
+/**
+ * Class IntersectionBuffer is a reusable, growable sink for the intersections of a ray.
+ * <p>
+ * Geometries append their hits to it by {@link Intersectable#findIntersections(Ray, IntersectionBuffer)}
+ * as primitive values: the distance {@code t}, the geometry that reported the hit and the primitive id inside
+ * it (for a {@link CompiledScene} - the id of the primitive that was hit; -1 for any other geometry).
+ * Once its arrays have grown to the largest query, a buffer that is {@link #clear() cleared} and reused for
+ * the next ray makes the query allocate nothing. The buffer also lends its scratch arrays to the traversal.
+ * </p>
+ * <p>
+ * A buffer is not thread safe - each render thread keeps its own.
+ * </p>
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+public final class IntersectionBuffer {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private double[] ts;
+    private int[] ids;
+    private Intersectable[] sources;
+    private int size;
+    /**
+     * Scratch for the kernels - the distances of the hits of a single primitive
+     */
+    final double[] hits = new double[2];
+    /**
+     * Traversal stack shared by nested traversals - each one uses the cells from {@link #stackTop} on
+     */
+    int[] stack = new int[64];
+    /**
+     * First free cell of {@link #stack}
+     */
+    int stackTop;
+
+    /**
+     * Constructs an empty buffer of a default capacity.
+     */
+    public IntersectionBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty buffer.
+     *
+     * @param capacity the initial amount of hits the buffer can hold before it grows
+     * @throws IllegalArgumentException if the capacity is not positive
+     */
+    public IntersectionBuffer(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Capacity must be positive");
+        ts = new double[capacity];
+        ids = new int[capacity];
+        sources = new Intersectable[capacity];
+    }
+
+    /**
+     * Empties the buffer, keeping its arrays for reuse. References to the geometries of earlier
+     * hits stay in the arrays until they are overwritten.
+     */
+    public void clear() {
+        size = 0;
+        stackTop = 0;
+    }
+
+    /**
+     * Appends a hit.
+     *
+     * @param t        the distance of the hit from the ray head
+     * @param geometry the geometry that reports the hit
+     * @param id       the primitive id inside the geometry, or -1
+     */
+    public void add(double t, Intersectable geometry, int id) {
+        if (size == ts.length) {
+            int capacity = size * 2;
+            ts = Arrays.copyOf(ts, capacity);
+            ids = Arrays.copyOf(ids, capacity);
+            sources = Arrays.copyOf(sources, capacity);
+        }
+        ts[size] = t;
+        ids[size] = id;
+        sources[size++] = geometry;
+    }
+
+    /**
+     * Returns the amount of hits in the buffer.
+     *
+     * @return the amount of hits
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks whether the buffer has no hits.
+     *
+     * @return true if there are no hits
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the distance of a hit.
+     *
+     * @param index the index of the hit
+     * @return the distance from the ray head
+     */
+    public double getT(int index) {
+        return ts[check(index)];
+    }
+
+    /**
+     * Returns the primitive id of a hit inside the geometry that reported it.
+     *
+     * @param index the index of the hit
+     * @return the primitive id, or -1 if the geometry has no primitive ids
+     */
+    public int getId(int index) {
+        return ids[check(index)];
+    }
+
+    /**
+     * Returns the geometry that reported a hit, e.g. a compiled scene.
+     *
+     * @param index the index of the hit
+     * @return the reporting geometry
+     */
+    public Intersectable getSource(int index) {
+        return sources[check(index)];
+    }
+
+    /**
+     * Returns the geometry that was hit, resolving primitive ids of compiled scenes.
+     *
+     * @param index the index of the hit
+     * @return the geometry that was hit
+     * @see CompiledScene#getGeometry(int)
+     */
+    public Intersectable getGeometry(int index) {
+        check(index);
+        return sources[index] instanceof CompiledScene scene && ids[index] >= 0
+                ? scene.getGeometry(ids[index]) : sources[index];
+    }
+
+    /**
+     * Returns the index of the hit closest to the ray head.
+     *
+     * @return the index, or -1 if the buffer is empty
+     */
+    public int closest() {
+        int closest = -1;
+        for (int i = 0; i < size; ++i)
+            if (closest < 0 || ts[i] < ts[closest]) closest = i;
+        return closest;
+    }
+
+    /**
+     * Computes the point of a hit.
+     *
+     * @param index the index of the hit
+     * @param ray   the ray the hits were found for
+     * @return the intersection point
+     */
+    public Point getPoint(int index, Ray ray) {
+        return ray.getPoint(getT(index));
+    }
+
+    /**
+     * Creates a hit record of a hit.
+     *
+     * @param index the index of the hit
+     * @param ray   the ray the hits were found for
+     * @return the hit record
+     */
+    public Intersection getIntersection(int index, Ray ray) {
+        check(index);
+        return sources[index] instanceof CompiledScene scene && ids[index] >= 0
+                ? scene.intersection(ids[index], ray, ts[index])
+                : new Intersection(sources[index], ray, ts[index]);
+    }
+
+    /**
+     * Drops the hits from a given index on.
+     *
+     * @param size the amount of hits to keep
+     */
+    void truncate(int size) {
+        this.size = size;
+    }
+
+    /**
+     * Makes sure the traversal stack has a given length, keeping its content.
+     *
+     * @param length the needed length
+     * @return the stack
+     */
+    int[] growStack(int length) {
+        if (length > stack.length) stack = Arrays.copyOf(stack, Math.max(length, 2 * stack.length));
+        return stack;
+    }
+
+    private int check(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Hit " + index + " out of " + size);
+        return index;
+    }
+}
@@ -0,0 +1,193 @@
+package geometries;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Utilities for the off-heap storage and the files of compiled scenes.
+ * <p>
+ * A single NIO buffer is limited to 2GB, so large arrays are split into chunks of {@link #CHUNK}
+ * elements. The amount of heap objects is therefore one per gigabyte of scene data at most,
+ * and does not grow with the amount of primitives in any practical sense.
+ * </p>
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+final class OffHeap {
+    /**
+     * Log2 of the amount of elements in a chunk
+     */
+    static final int CHUNK_SHIFT = 27;
+    /**
+     * The amount of elements in a chunk
+     */
+    static final int CHUNK = 1 << CHUNK_SHIFT;
+    /**
+     * Mask of an element index inside its chunk
+     */
+    static final int CHUNK_MASK = CHUNK - 1;
+    /**
+     * Byte order of scene files - fixed so that files are portable between machines
+     */
+    static final ByteOrder FILE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    /**
+     * Don't let anyone instantiate this class.
+     */
+    private OffHeap() {
+    }
+
+    /**
+     * Returns the amount of chunks needed for an array.
+     *
+     * @param length the amount of elements
+     * @return the amount of chunks
+     */
+    static int chunks(int length) {
+        return (length + CHUNK_MASK) >>> CHUNK_SHIFT;
+    }
+
+    /**
+     * Returns the amount of elements in a chunk of an array.
+     *
+     * @param length the amount of elements in the array
+     * @param chunk  the chunk index
+     * @return the amount of elements in that chunk
+     */
+    static int chunkLength(int length, int chunk) {
+        return Math.min(CHUNK, length - (chunk << CHUNK_SHIFT));
+    }
+
+    /**
+     * Maps a section of doubles of a scene file read-only.
+     *
+     * @param channel  the file
+     * @param position the position of the section in the file
+     * @param length   the amount of doubles
+     * @return the mapped storage
+     * @throws IOException if the mapping fails
+     */
+    static PackedNumbers mapDoubles(FileChannel channel, long position, int length) throws IOException {
+        DoubleBuffer[] chunks = new DoubleBuffer[chunks(length)];
+        for (int c = 0; c < chunks.length; ++c)
+            chunks[c] = channel.map(FileChannel.MapMode.READ_ONLY,
+                            position + ((long) c << CHUNK_SHIFT) * Double.BYTES,
+                            (long) chunkLength(length, c) * Double.BYTES)
+                    .order(FILE_ORDER).asDoubleBuffer();
+        return new PackedNumbers.DoubleBuffers(chunks, length);
+    }
+
+    /**
+     * Maps a section of floats of a scene file read-only.
+     *
+     * @param channel  the file
+     * @param position the position of the section in the file
+     * @param length   the amount of floats
+     * @return the mapped storage
+     * @throws IOException if the mapping fails
+     */
+    static PackedNumbers mapFloats(FileChannel channel, long position, int length) throws IOException {
+        FloatBuffer[] chunks = new FloatBuffer[chunks(length)];
+        for (int c = 0; c < chunks.length; ++c)
+            chunks[c] = channel.map(FileChannel.MapMode.READ_ONLY,
+                            position + ((long) c << CHUNK_SHIFT) * Float.BYTES,
+                            (long) chunkLength(length, c) * Float.BYTES)
+                    .order(FILE_ORDER).asFloatBuffer();
+        return new PackedNumbers.FloatBuffers(chunks, length);
+    }
+
+    /**
+     * Maps a section of indices of a scene file read-only.
+     *
+     * @param channel  the file
+     * @param position the position of the section in the file
+     * @param length   the amount of indices
+     * @return the mapped storage
+     * @throws IOException if the mapping fails
+     */
+    static PackedIndices mapInts(FileChannel channel, long position, int length) throws IOException {
+        IntBuffer[] chunks = new IntBuffer[chunks(length)];
+        for (int c = 0; c < chunks.length; ++c)
+            chunks[c] = channel.map(FileChannel.MapMode.READ_ONLY,
+                            position + ((long) c << CHUNK_SHIFT) * Integer.BYTES,
+                            (long) chunkLength(length, c) * Integer.BYTES)
+                    .order(FILE_ORDER).asIntBuffer();
+        return new PackedIndices.Buffers(chunks, length);
+    }
+
+    /**
+     * Reads bytes from a position of a channel into a new heap buffer, without moving the channel position,
+     * so several threads may read from the same channel at once.
+     *
+     * @param channel  the channel
+     * @param position the position to read from
+     * @param length   the amount of bytes
+     * @return the buffer, ready to be read, or null if the channel ends before
+     * @throws IOException if the reading fails
+     */
+    static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(FILE_ORDER);
+        while (buffer.hasRemaining()) {
+            int count = channel.read(buffer, position + buffer.position());
+            if (count < 0) return null;
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Reads a section of doubles of a scene file into a heap array.
+     *
+     * @param channel  the file
+     * @param position the position of the section in the file
+     * @param length   the amount of doubles
+     * @return the numbers
+     * @throws IOException if the reading fails
+     */
+    static double[] readDoubles(FileChannel channel, long position, int length) throws IOException {
+        double[] values = new double[length];
+        readSection(channel, position, length * Double.BYTES).asDoubleBuffer().get(values);
+        return values;
+    }
+
+    /**
+     * Reads a section of floats of a scene file into a heap array.
+     *
+     * @param channel  the file
+     * @param position the position of the section in the file
+     * @param length   the amount of floats
+     * @return the numbers
+     * @throws IOException if the reading fails
+     */
+    static float[] readFloats(FileChannel channel, long position, int length) throws IOException {
+        float[] values = new float[length];
+        readSection(channel, position, length * Float.BYTES).asFloatBuffer().get(values);
+        return values;
+    }
+
+    /**
+     * Reads a section of indices of a scene file into a heap array.
+     *
+     * @param channel  the file
+     * @param position the position of the section in the file
+     * @param length   the amount of indices
+     * @return the indices
+     * @throws IOException if the reading fails
+     */
+    static int[] readInts(FileChannel channel, long position, int length) throws IOException {
+        int[] values = new int[length];
+        readSection(channel, position, length * Integer.BYTES).asIntBuffer().get(values);
+        return values;
+    }
+
+    private static ByteBuffer readSection(FileChannel channel, long position, int bytes) throws IOException {
+        ByteBuffer buffer = read(channel, position, bytes);
+        if (buffer == null) throw new EOFException("Unexpected end of scene file at " + position);
+        return buffer;
+    }
+}
@@ -0,0 +1,107 @@
+package geometries;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * Read-only storage of the index data of a {@link CompiledScene} (primitive ids and BVH links).
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+interface PackedIndices {
+
+    /**
+     * Returns a stored index.
+     *
+     * @param index the position of the index
+     * @return the index
+     */
+    int get(int index);
+
+    /**
+     * Returns the amount of stored indices.
+     *
+     * @return the length of the storage
+     */
+    int length();
+
+    /**
+     * Estimates the memory held by the storage.
+     *
+     * @return the size in bytes
+     */
+    long bytes();
+
+    /**
+     * Wraps indices in a storage of the requested kind.
+     *
+     * @param values  the indices
+     * @param storage heap or off-heap storage
+     * @return the storage
+     */
+    static PackedIndices of(int[] values, CompiledScene.Storage storage) {
+        if (storage == CompiledScene.Storage.HEAP) return new Ints(values);
+        IntBuffer[] chunks = new IntBuffer[OffHeap.chunks(values.length)];
+        for (int c = 0; c < chunks.length; ++c) {
+            int length = OffHeap.chunkLength(values.length, c);
+            chunks[c] = ByteBuffer.allocateDirect(length * Integer.BYTES).order(ByteOrder.nativeOrder())
+                    .asIntBuffer().put(values, c << OffHeap.CHUNK_SHIFT, length);
+        }
+        return new Buffers(chunks, values.length);
+    }
+
+    /**
+     * Indices in a heap array.
+     */
+    final class Ints implements PackedIndices {
+        private final int[] values;
+
+        Ints(int[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public int get(int index) {
+            return values[index];
+        }
+
+        @Override
+        public int length() {
+            return values.length;
+        }
+
+        @Override
+        public long bytes() {
+            return PackedNumbers.arrayBytes(values.length, Integer.BYTES);
+        }
+    }
+
+    /**
+     * Indices in off-heap buffers (direct or mapped), split into chunks of {@link OffHeap#CHUNK} entries.
+     */
+    final class Buffers implements PackedIndices {
+        private final IntBuffer[] chunks;
+        private final int length;
+
+        Buffers(IntBuffer[] chunks, int length) {
+            this.chunks = chunks;
+            this.length = length;
+        }
+
+        @Override
+        public int get(int index) {
+            return chunks[index >>> OffHeap.CHUNK_SHIFT].get(index & OffHeap.CHUNK_MASK);
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public long bytes() {
+            return (long) length * Integer.BYTES;
+        }
+    }
+}
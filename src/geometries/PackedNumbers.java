@@ -0,0 +1,218 @@
+package geometries;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * Read-only storage of the packed numbers of a {@link CompiledScene}.
+ * The intersection kernels always compute in {@code double}; the storage decides only
+ * how and where the numbers are kept in memory.
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+interface PackedNumbers {
+
+    /**
+     * Returns a stored number, widened to double.
+     *
+     * @param index the index of the number
+     * @return the number
+     */
+    double get(int index);
+
+    /**
+     * Returns the amount of stored numbers.
+     *
+     * @return the length of the storage
+     */
+    int length();
+
+    /**
+     * Estimates the memory held by the storage.
+     *
+     * @return the size in bytes
+     */
+    long bytes();
+
+    /**
+     * Wraps numbers in a storage of the requested precision and kind.
+     *
+     * @param values    the numbers
+     * @param precision the storage precision
+     * @param storage   heap or off-heap storage
+     * @return the storage
+     */
+    static PackedNumbers of(double[] values, CompiledScene.Precision precision, CompiledScene.Storage storage) {
+        if (precision == CompiledScene.Precision.DOUBLE) return store(values, storage);
+        float[] floats = new float[values.length];
+        for (int i = 0; i < values.length; ++i)
+            floats[i] = (float) values[i];
+        return store(floats, storage);
+    }
+
+    /**
+     * Wraps box coordinates (6 numbers per box - minimal then maximal corner) in a storage of the requested
+     * precision and kind. In single precision the minimal corner is rounded down and the maximal one up,
+     * so a stored box always contains the original one.
+     *
+     * @param boxes     the box coordinates
+     * @param precision the storage precision
+     * @param storage   heap or off-heap storage
+     * @return the storage
+     */
+    static PackedNumbers ofBoxes(double[] boxes, CompiledScene.Precision precision, CompiledScene.Storage storage) {
+        if (precision == CompiledScene.Precision.DOUBLE) return store(boxes, storage);
+        float[] floats = new float[boxes.length];
+        for (int i = 0; i < boxes.length; ++i) {
+            float value = (float) boxes[i];
+            if (i % 6 < 3) {
+                if (value > boxes[i]) value = Math.nextDown(value);
+            } else if (value < boxes[i]) value = Math.nextUp(value);
+            floats[i] = value;
+        }
+        return store(floats, storage);
+    }
+
+    private static PackedNumbers store(double[] values, CompiledScene.Storage storage) {
+        if (storage == CompiledScene.Storage.HEAP) return new Doubles(values);
+        DoubleBuffer[] chunks = new DoubleBuffer[OffHeap.chunks(values.length)];
+        for (int c = 0; c < chunks.length; ++c) {
+            int length = OffHeap.chunkLength(values.length, c);
+            chunks[c] = ByteBuffer.allocateDirect(length * Double.BYTES).order(ByteOrder.nativeOrder())
+                    .asDoubleBuffer().put(values, c << OffHeap.CHUNK_SHIFT, length);
+        }
+        return new DoubleBuffers(chunks, values.length);
+    }
+
+    private static PackedNumbers store(float[] values, CompiledScene.Storage storage) {
+        if (storage == CompiledScene.Storage.HEAP) return new Floats(values);
+        FloatBuffer[] chunks = new FloatBuffer[OffHeap.chunks(values.length)];
+        for (int c = 0; c < chunks.length; ++c) {
+            int length = OffHeap.chunkLength(values.length, c);
+            chunks[c] = ByteBuffer.allocateDirect(length * Float.BYTES).order(ByteOrder.nativeOrder())
+                    .asFloatBuffer().put(values, c << OffHeap.CHUNK_SHIFT, length);
+        }
+        return new FloatBuffers(chunks, values.length);
+    }
+
+    /**
+     * Estimates the size of an array, aligned to 8 bytes.
+     *
+     * @param length      the amount of elements
+     * @param elementSize the size of an element in bytes
+     * @return the estimated size in bytes
+     */
+    static long arrayBytes(int length, int elementSize) {
+        return (16 + (long) length * elementSize + 7) & ~7L;
+    }
+
+    /**
+     * Double precision storage in a heap array.
+     */
+    final class Doubles implements PackedNumbers {
+        private final double[] values;
+
+        Doubles(double[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public double get(int index) {
+            return values[index];
+        }
+
+        @Override
+        public int length() {
+            return values.length;
+        }
+
+        @Override
+        public long bytes() {
+            return arrayBytes(values.length, Double.BYTES);
+        }
+    }
+
+    /**
+     * Single precision storage in a heap array.
+     */
+    final class Floats implements PackedNumbers {
+        private final float[] values;
+
+        Floats(float[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public double get(int index) {
+            return values[index];
+        }
+
+        @Override
+        public int length() {
+            return values.length;
+        }
+
+        @Override
+        public long bytes() {
+            return arrayBytes(values.length, Float.BYTES);
+        }
+    }
+
+    /**
+     * Double precision storage in off-heap buffers (direct or mapped).
+     */
+    final class DoubleBuffers implements PackedNumbers {
+        private final DoubleBuffer[] chunks;
+        private final int length;
+
+        DoubleBuffers(DoubleBuffer[] chunks, int length) {
+            this.chunks = chunks;
+            this.length = length;
+        }
+
+        @Override
+        public double get(int index) {
+            return chunks[index >>> OffHeap.CHUNK_SHIFT].get(index & OffHeap.CHUNK_MASK);
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public long bytes() {
+            return (long) length * Double.BYTES;
+        }
+    }
+
+    /**
+     * Single precision storage in off-heap buffers (direct or mapped).
+     */
+    final class FloatBuffers implements PackedNumbers {
+        private final FloatBuffer[] chunks;
+        private final int length;
+
+        FloatBuffers(FloatBuffer[] chunks, int length) {
+            this.chunks = chunks;
+            this.length = length;
+        }
+
+        @Override
+        public double get(int index) {
+            return chunks[index >>> OffHeap.CHUNK_SHIFT].get(index & OffHeap.CHUNK_MASK);
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public long bytes() {
+            return (long) length * Float.BYTES;
+        }
+    }
+}
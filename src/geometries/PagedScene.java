@@ -0,0 +1,465 @@
+package geometries;
+
+import primitives.Point;
+import primitives.Ray;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Class PagedScene is an out-of-core scene for data sets larger than the memory.
+ * <p>
+ * The scene file ({@link #write}) holds the primitives split into spatially compact clusters,
+ * each one a small {@link CompiledScene} of its own. An open scene keeps only the top of the
+ * hierarchy resident - a BVH over the cluster boxes and the unbounded primitives - and loads a
+ * cluster from the file when a ray first reaches its box. Loaded clusters are kept in a cache
+ * bounded by size, evicting the least recently used ones.
+ * </p>
+ * <p>
+ * The scene is safe for use by many render threads at once. When several threads reach the same
+ * missing cluster together, it is read once and all of them wait for that single load; if the load
+ * fails, all of them get the failure. Clusters already loaded are found without locking - the lock
+ * is taken only to add a loaded cluster and evict others.
+ * </p>
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+public final class PagedScene implements Intersectable, AutoCloseable {
+    /**
+     * Paged scene file signature ("PSCN") and format version
+     */
+    private static final int FILE_MAGIC = 0x5053434E;
+    private static final int FILE_VERSION = 1;
+    /**
+     * Header: signature, version, amount of clusters, padding, position of the unbounded primitives
+     */
+    private static final int HEADER_BYTES = 24;
+    /**
+     * Directory entry: cluster box (6 doubles) and cluster position
+     */
+    private static final int ENTRY_BYTES = 56;
+
+    /**
+     * Statistics of the cluster cache
+     *
+     * @param hits             cluster requests served from memory (including waits for a load in progress)
+     * @param misses           cluster loads from the file
+     * @param evictions        clusters dropped to respect the cache size
+     * @param residentClusters clusters currently in the cache
+     * @param residentBytes    memory of the clusters currently in the cache
+     */
+    public record Statistics(long hits, long misses, long evictions, int residentClusters, long residentBytes) {
+    }
+
+    private final FileChannel channel;
+    private final String name;
+    /**
+     * Positions of the clusters in the file
+     */
+    private final long[] positions;
+    /**
+     * The resident top of the hierarchy
+     */
+    private final CompiledScene top;
+    /**
+     * Maximal memory of the cached clusters (bytes)
+     */
+    private final long capacity;
+    /**
+     * Loaded clusters and clusters being loaded, by index - read without locking
+     */
+    private final ConcurrentHashMap<Integer, CompletableFuture<CompiledScene>> clusters = new ConcurrentHashMap<>();
+    /**
+     * Time of the last use of every cluster, for the least recently used eviction
+     */
+    private final AtomicLongArray lastUse;
+    /**
+     * Loaded clusters in the cache, guarded by the scene lock like the memory and eviction counts
+     */
+    private final Map<Integer, CompiledScene> resident = new HashMap<>();
+    private long residentBytes;
+    private long evictions;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Proxy of a cluster in the resident hierarchy - loads the cluster when a ray reaches its box.
+     */
+    private final class Cluster implements Intersectable {
+        private final int index;
+        private final BoundingBox box;
+
+        Cluster(int index, BoundingBox box) {
+            this.index = index;
+            this.box = box;
+        }
+
+        @Override
+        public List<Point> findIntersections(Ray ray) {
+            return cluster(index).findIntersections(ray);
+        }
+
+        @Override
+        public void findIntersections(Ray ray, IntersectionBuffer buffer) {
+            cluster(index).findIntersections(ray, buffer);
+        }
+
+        @Override
+        public List<Intersection> calculateIntersections(Ray ray) {
+            return cluster(index).calculateIntersections(ray);
+        }
+
+        @Override
+        public Intersection calculateClosestIntersection(Ray ray) {
+            return cluster(index).calculateClosestIntersection(ray);
+        }
+
+        @Override
+        public double distance(Point point) {
+            return cluster(index).distance(point);
+        }
+
+        @Override
+        public BoundingBox getBoundingBox() {
+            return box;
+        }
+    }
+
+    private PagedScene(FileChannel channel, String name, long capacity) throws IOException {
+        this.channel = channel;
+        this.name = name;
+        this.capacity = capacity;
+        ByteBuffer header = OffHeap.read(channel, 0, HEADER_BYTES);
+        if (header == null || header.getInt() != FILE_MAGIC || header.getInt() != FILE_VERSION)
+            throw new IllegalArgumentException("Not a paged scene file: " + name);
+        int count = header.getInt();
+        header.getInt();
+        long unboundedPosition = header.getLong();
+
+        ByteBuffer directory = OffHeap.read(channel, HEADER_BYTES, count * ENTRY_BYTES);
+        if (directory == null) throw new IllegalArgumentException("Truncated paged scene file " + name);
+        positions = new long[count];
+        List<Intersectable> proxies = new ArrayList<>(count + 1);
+        for (int i = 0; i < count; ++i) {
+            BoundingBox box = new BoundingBox(directory.getDouble(), directory.getDouble(), directory.getDouble(),
+                    directory.getDouble(), directory.getDouble(), directory.getDouble());
+            positions[i] = directory.getLong();
+            proxies.add(new Cluster(i, box));
+        }
+        lastUse = new AtomicLongArray(count);
+        if (unboundedPosition >= 0)
+            proxies.add(CompiledScene.load(channel, unboundedPosition, new Intersectable[0], false, name));
+        top = new CompiledScene(proxies, CompiledScene.Precision.DOUBLE, CompiledScene.Storage.HEAP);
+    }
+
+    /**
+     * Opens a paged scene file.
+     *
+     * @param file          the file written by {@link #write}
+     * @param cacheCapacity the maximal memory of the loaded clusters, in bytes
+     * @return the open scene - to be closed when not needed anymore
+     * @throws IOException              if the file cannot be read
+     * @throws IllegalArgumentException if the file is not a paged scene file
+     */
+    public static PagedScene open(Path file, long cacheCapacity) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new PagedScene(channel, file.toString(), cacheCapacity);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes a scene into a paged scene file. Bounded primitives are split by recursive median cuts
+     * along the longest axis until each cluster holds at most clusterSize of them.
+     *
+     * @param scene       the scene - spheres, triangles and planes only
+     * @param file        the file to (over)write
+     * @param clusterSize the maximal amount of primitives in a cluster
+     * @param precision   the storage precision of the clusters
+     * @throws IOException              if the writing fails
+     * @throws IllegalArgumentException if the scene has other geometries, which cannot be stored in a file
+     */
+    public static void write(Geometries scene, Path file, int clusterSize, CompiledScene.Precision precision)
+            throws IOException {
+        if (clusterSize < 1) throw new IllegalArgumentException("Cluster size must be positive");
+        List<Intersectable> primitives = new ArrayList<>();
+        scene.flatten(primitives);
+        List<Intersectable> unbounded = new ArrayList<>();
+        List<Item> bounded = new ArrayList<>();
+        for (Intersectable geometry : primitives) {
+            Class<?> type = geometry.getClass();
+            if (type != Sphere.class && type != Triangle.class && type != Plane.class)
+                throw new IllegalArgumentException("Paged scenes support only spheres, triangles and planes, got "
+                        + type.getSimpleName());
+            BoundingBox box = geometry.getBoundingBox();
+            if (box == null) unbounded.add(geometry);
+            else bounded.add(new Item(geometry, box));
+        }
+        List<List<Intersectable>> clusters = new ArrayList<>();
+        partition(bounded, clusterSize, clusters);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer directory = ByteBuffer.allocate(HEADER_BYTES + clusters.size() * ENTRY_BYTES)
+                    .order(OffHeap.FILE_ORDER);
+            directory.position(HEADER_BYTES);
+            channel.position((directory.capacity() + 7) & ~7L);
+            for (List<Intersectable> members : clusters) {
+                CompiledScene cluster = new CompiledScene(members, precision, CompiledScene.Storage.HEAP);
+                BoundingBox box = cluster.getBoundingBox();
+                directory.putDouble(box.minX()).putDouble(box.minY()).putDouble(box.minZ())
+                        .putDouble(box.maxX()).putDouble(box.maxY()).putDouble(box.maxZ())
+                        .putLong(channel.position());
+                cluster.write(channel);
+            }
+            long unboundedPosition = -1;
+            if (!unbounded.isEmpty()) {
+                unboundedPosition = channel.position();
+                new CompiledScene(unbounded, precision, CompiledScene.Storage.HEAP).write(channel);
+            }
+            directory.putInt(0, FILE_MAGIC).putInt(4, FILE_VERSION).putInt(8, clusters.size())
+                    .putLong(16, unboundedPosition);
+            directory.clear();
+            while (directory.hasRemaining())
+                channel.write(directory, directory.position());
+        }
+    }
+
+    /**
+     * A primitive with its box, for the partitioning
+     */
+    private record Item(Intersectable geometry, BoundingBox box) {
+        double centroid(int axis) {
+            return (box.min(axis) + box.max(axis)) / 2;
+        }
+    }
+
+    private static void partition(List<Item> items, int clusterSize, List<List<Intersectable>> clusters) {
+        if (items.isEmpty()) return;
+        if (items.size() <= clusterSize) {
+            List<Intersectable> members = new ArrayList<>(items.size());
+            for (Item item : items) members.add(item.geometry());
+            clusters.add(members);
+            return;
+        }
+        int axis = 0;
+        double longest = -1;
+        for (int a = 0; a < 3; ++a) {
+            double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+            for (Item item : items) {
+                min = Math.min(min, item.centroid(a));
+                max = Math.max(max, item.centroid(a));
+            }
+            if (max - min > longest) {
+                longest = max - min;
+                axis = a;
+            }
+        }
+        final int splitAxis = axis;
+        items.sort(Comparator.comparingDouble(item -> item.centroid(splitAxis)));
+        int mid = items.size() / 2;
+        partition(new ArrayList<>(items.subList(0, mid)), clusterSize, clusters);
+        partition(new ArrayList<>(items.subList(mid, items.size())), clusterSize, clusters);
+    }
+
+    /**
+     * Returns a cluster, loading it from the file if it is not in the cache.
+     *
+     * @param index the cluster index
+     * @return the cluster
+     * @throws UncheckedIOException     if the loading fails
+     * @throws IllegalArgumentException if the cluster in the file is damaged
+     */
+    private CompiledScene cluster(int index) {
+        lastUse.lazySet(index, System.nanoTime());
+        CompletableFuture<CompiledScene> future = clusters.get(index);
+        if (future == null) {
+            CompletableFuture<CompiledScene> created = new CompletableFuture<>();
+            future = clusters.putIfAbsent(index, created);
+            if (future == null) {
+                misses.increment();
+                return load(index, created);
+            }
+        }
+        hits.increment();
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            // the failure of the loading thread
+            if (e.getCause() instanceof RuntimeException failure) throw failure;
+            if (e.getCause() instanceof Error failure) throw failure;
+            throw e;
+        }
+    }
+
+    /**
+     * Loads a cluster by this thread, outside the lock, completing the future the other threads wait for.
+     * A failed load is forgotten, so a later request tries it again.
+     *
+     * @param index  the cluster index
+     * @param future the future of the cluster, already in the map
+     * @return the cluster
+     * @throws UncheckedIOException if the loading fails
+     */
+    private CompiledScene load(int index, CompletableFuture<CompiledScene> future) {
+        CompiledScene scene;
+        try {
+            scene = CompiledScene.load(channel, positions[index], new Intersectable[0], false, name);
+        } catch (IOException e) {
+            UncheckedIOException failure = new UncheckedIOException("Cannot load cluster " + index, e);
+            fail(index, future, failure);
+            throw failure;
+        } catch (RuntimeException | Error e) {
+            // e.g. a damaged cluster - the waiting threads must not wait forever
+            fail(index, future, e);
+            throw e;
+        }
+        future.complete(scene);
+        synchronized (this) {
+            resident.put(index, scene);
+            residentBytes += scene.memoryFootprint();
+            // evict the least recently used clusters, but keep at least the new one
+            while (residentBytes > capacity && resident.size() > 1) {
+                int eldest = -1;
+                for (int candidate : resident.keySet())
+                    if (candidate != index && (eldest < 0 || lastUse.get(candidate) < lastUse.get(eldest)))
+                        eldest = candidate;
+                residentBytes -= resident.remove(eldest).memoryFootprint();
+                clusters.remove(eldest);
+                ++evictions;
+            }
+        }
+        return scene;
+    }
+
+    private void fail(int index, CompletableFuture<CompiledScene> future, Throwable failure) {
+        clusters.remove(index, future);
+        future.completeExceptionally(failure);
+    }
+
+    /**
+     * Returns the amount of clusters in the scene file.
+     *
+     * @return the amount of clusters
+     */
+    public int clusterCount() {
+        return positions.length;
+    }
+
+    /**
+     * Returns a snapshot of the cache statistics.
+     *
+     * @return the statistics
+     */
+    public synchronized Statistics getStatistics() {
+        return new Statistics(hits.sum(), misses.sum(), evictions, resident.size(), residentBytes);
+    }
+
+    @Override
+    public BoundingBox getBoundingBox() {
+        return top.getBoundingBox();
+    }
+
+    @Override
+    public List<Point> findIntersections(Ray ray) {
+        return top.findIntersections(ray);
+    }
+
+    @Override
+    public void findIntersections(Ray ray, IntersectionBuffer buffer) {
+        top.findIntersections(ray, buffer);
+    }
+
+    @Override
+    public List<Intersection> calculateIntersections(Ray ray) {
+        return top.calculateIntersections(ray);
+    }
+
+    /**
+     * Finds the intersection point closest to the ray head. Clusters whose boxes start beyond
+     * the closest point found so far are not loaded.
+     *
+     * @param ray the ray
+     * @return the closest intersection point, or null if the ray hits nothing
+     */
+    public Point findClosestIntersection(Ray ray) {
+        return top.findClosestIntersection(ray);
+    }
+
+    /**
+     * Finds the intersection closest to the ray head. Clusters whose boxes start beyond
+     * the closest intersection found so far are not loaded.
+     *
+     * @param ray the ray
+     * @return the closest hit record, or null if the ray hits nothing
+     */
+    @Override
+    public Intersection calculateClosestIntersection(Ray ray) {
+        return top.calculateClosestIntersection(ray);
+    }
+
+    /**
+     * Returns the intersections of the ray within a distance range in increasing distance, found lazily.
+     * Clusters are loaded only when the traversal reaches them.
+     *
+     * @param ray  the ray
+     * @param tMin the minimal distance of a hit (inclusive, not negative)
+     * @param tMax the maximal distance of a hit (inclusive)
+     * @return an iterator over the hits in the range
+     * @throws IllegalArgumentException if the range is negative or empty
+     * @see CompiledScene#intersections(Ray, double, double)
+     */
+    public Iterator<Intersection> intersections(Ray ray, double tMin, double tMax) {
+        return top.intersections(ray, tMin, tMax);
+    }
+
+    /**
+     * Finds the k intersections closest to the ray head within a distance range, in increasing distance.
+     *
+     * @param ray  the ray
+     * @param k    the maximal amount of hits
+     * @param tMin the minimal distance of a hit (inclusive, not negative)
+     * @param tMax the maximal distance of a hit (inclusive)
+     * @return the hits, possibly fewer than k
+     * @throws IllegalArgumentException if k is not positive or the range is negative or empty
+     * @see CompiledScene#findNearest(Ray, int, double, double)
+     */
+    public List<Intersection> findNearest(Ray ray, int k, double tMin, double tMax) {
+        return top.findNearest(ray, k, tMin, tMax);
+    }
+
+    /**
+     * Computes the distance between a point and the closest primitive of the scene. Only the clusters
+     * whose boxes are closer than the closest primitive found so far are loaded.
+     *
+     * @param point the point
+     * @return the smallest distance, or positive infinity if the scene is empty
+     */
+    @Override
+    public double distance(Point point) {
+        return top.distance(point);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
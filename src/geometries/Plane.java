@@ -17,8 +17,16 @@ import static primitives.Util.isZero;
  * @author Yehonatan Uzzan and Oz Dahari
  */
 public class Plane extends Geometry {
-    private final Point q0; // Reference point on the plane
-    private final Vector normal; // Normal vector of the plane (always normalized)
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Reference point on the plane
+     */
+    protected final Point q0;
+    /**
+     * Normal vector of the plane (always normalized)
+     */
+    protected final Vector normal;
 
     /**
      * Constructs a Plane using three non-collinear points.
@@ -57,6 +65,31 @@ public class Plane extends Geometry {
         return normal;
     }
 
+    @Override
+    public double distance(Point point) {
+        return Math.abs(normal.getX() * (point.getX() - q0.getX()) + normal.getY() * (point.getY() - q0.getY())
+                + normal.getZ() * (point.getZ() - q0.getZ()));
+    }
+
+    @Override
+    public boolean overlaps(BoundingBox region) {
+        return region.overlapsPlane(normal.getX(), normal.getY(), normal.getZ(), offset());
+    }
+
+    @Override
+    public boolean overlaps(Frustum frustum) {
+        return frustum.overlapsPlane(normal.getX(), normal.getY(), normal.getZ(), offset());
+    }
+
+    /**
+     * Returns the offset d of the plane equation n*x + d = 0.
+     *
+     * @return the offset
+     */
+    private double offset() {
+        return -(normal.getX() * q0.getX() + normal.getY() * q0.getY() + normal.getZ() * q0.getZ());
+    }
+
     @Override
     public List<Point> findIntersections(Ray ray) {
         Point p0 = ray.getp1();
@@ -77,4 +110,27 @@ public class Plane extends Geometry {
         }
         return List.of(ray.getPoint(t));
     }
+
+    @Override
+    public void findIntersections(Ray ray, IntersectionBuffer buffer) {
+        double t = rayDistance(ray);
+        if (t > 0) buffer.add(t, this, -1);
+    }
+
+    /**
+     * Computes the distance of the intersection along a ray, without allocating.
+     *
+     * @param ray the ray
+     * @return the distance t of the intersection, or a non positive number if the ray does not intersect
+     */
+    double rayDistance(Ray ray) {
+        Point p0 = ray.getp1();
+        Vector dir = ray.getDirection();
+        double ux = q0.getX() - p0.getX(), uy = q0.getY() - p0.getY(), uz = q0.getZ() - p0.getZ();
+        if (isZero(ux) && isZero(uy) && isZero(uz)) return 0;
+        double nx = normal.getX(), ny = normal.getY(), nz = normal.getZ();
+        double denominator = nx * dir.getX() + ny * dir.getY() + nz * dir.getZ();
+        if (isZero(denominator)) return 0;
+        return alignZero((nx * ux + ny * uy + nz * uz) / denominator);
+    }
 }
@@ -15,9 +15,12 @@ import static primitives.Util.*;
  * @author Dan
  */
 public class Polygon extends Geometry {
+    private static final long serialVersionUID = 1L;
+
     /**
      * List of polygon's vertices
      */
+    @SuppressWarnings("serial") // always an immutable List.of list, which is serializable
     protected final List<Point> vertices;
     /**
      * Associated plane in which the polygon lays
@@ -93,6 +96,57 @@ public class Polygon extends Geometry {
         return plane.getNormal(point);
     }
 
+    /**
+     * Computes the distance between a point and the polygon. If the projection of the point on the
+     * polygon's plane falls inside the polygon, it is the distance to the plane; otherwise it is the
+     * distance to the closest edge.
+     *
+     * @param point the point
+     * @return the distance
+     */
+    @Override
+    public double distance(Point point) {
+        Vector n = plane.getNormal(null);
+        double px = point.getX(), py = point.getY(), pz = point.getZ();
+        boolean inside = true;
+        double closest = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < size; i++) {
+            Point a = vertices.get(i), b = vertices.get((i + 1) % size);
+            double ax = a.getX() - px, ay = a.getY() - py, az = a.getZ() - pz;
+            double bx = b.getX() - px, by = b.getY() - py, bz = b.getZ() - pz;
+            // same inside test as the intersection - the normal component of the point cancels out
+            if ((ay * bz - az * by) * n.getX() + (az * bx - ax * bz) * n.getY() + (ax * by - ay * bx) * n.getZ() < 0)
+                inside = false;
+            closest = Math.min(closest, segmentDistanceSquared(ax, ay, az, bx, by, bz));
+        }
+        if (inside) return plane.distance(point);
+        return Math.sqrt(closest);
+    }
+
+    /**
+     * Computes the squared distance between the origin and a segment.
+     *
+     * @param ax first end X
+     * @param ay first end Y
+     * @param az first end Z
+     * @param bx second end X
+     * @param by second end Y
+     * @param bz second end Z
+     * @return the squared distance
+     */
+    static double segmentDistanceSquared(double ax, double ay, double az, double bx, double by, double bz) {
+        double ex = bx - ax, ey = by - ay, ez = bz - az;
+        double lengthSquared = ex * ex + ey * ey + ez * ez;
+        double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, -(ax * ex + ay * ey + az * ez) / lengthSquared));
+        double cx = ax + t * ex, cy = ay + t * ey, cz = az + t * ez;
+        return cx * cx + cy * cy + cz * cz;
+    }
+
+    @Override
+    public BoundingBox getBoundingBox() {
+        return BoundingBox.of(vertices.toArray(new Point[0]));
+    }
+
     @Override
     public List<Point> findIntersections(Ray ray) {
         // Check if the ray is parallel to the plane
@@ -114,4 +168,28 @@ public class Polygon extends Geometry {
 
         return List.of(intersectionPoint); // Return the intersection point
     }
+
+    /**
+     * Appends the intersection with the polygon to a buffer, by the same tests as
+     * {@link #findIntersections(Ray)} on scalars, so that no objects are allocated.
+     *
+     * @param ray    the ray to intersect with the polygon
+     * @param buffer the buffer to append the hit to
+     */
+    @Override
+    public void findIntersections(Ray ray, IntersectionBuffer buffer) {
+        double t = plane.rayDistance(ray);
+        if (t <= 0) return;
+        Point p0 = ray.getp1();
+        Vector dir = ray.getDirection(), n = plane.getNormal(null);
+        double px = p0.getX() + t * dir.getX(), py = p0.getY() + t * dir.getY(), pz = p0.getZ() + t * dir.getZ();
+        for (int i = 0; i < size; i++) {
+            Point a = vertices.get(i), b = vertices.get((i + 1) % size);
+            double ax = a.getX() - px, ay = a.getY() - py, az = a.getZ() - pz;
+            double bx = b.getX() - px, by = b.getY() - py, bz = b.getZ() - pz;
+            if ((ay * bz - az * by) * n.getX() + (az * bx - ax * bz) * n.getY() + (ax * by - ay * bx) * n.getZ() < 0)
+                return; // the intersection point is outside the polygon
+        }
+        buffer.add(t, this, -1);
+    }
 }
@@ -7,6 +7,8 @@ package geometries;
  * @author Yehonatan Uzzan and Oz Dahari
  */
 public abstract class RadialGeometry extends Geometry {
+    private static final long serialVersionUID = 1L;
+
     protected final double radius;
 
     /**
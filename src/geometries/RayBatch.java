@@ -0,0 +1,189 @@
+package geometries;
+
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+/**
+ * Class RayBatch is a fixed capacity buffer of rays for batched queries ({@link RayCastService}).
+ * <p>
+ * The rays are kept as plain numbers in a single array - head, unit direction and the maximal
+ * distance of interest of each ray - so a batch of millions of rays is a single object, and it
+ * can be refilled and reused without any allocation.
+ * </p>
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+public final class RayBatch {
+    /**
+     * Numbers per ray: head (3), unit direction (3), maximal distance
+     */
+    static final int STRIDE = 7;
+
+    private final double[] data;
+    private int size;
+
+    /**
+     * Constructs an empty batch.
+     *
+     * @param capacity the maximal amount of rays
+     * @throws IllegalArgumentException if the capacity is not positive or too large
+     */
+    public RayBatch(int capacity) {
+        if (capacity <= 0 || capacity > Integer.MAX_VALUE / STRIDE)
+            throw new IllegalArgumentException("Illegal batch capacity " + capacity);
+        data = new double[STRIDE * capacity];
+    }
+
+    /**
+     * Appends a ray with no distance limit.
+     *
+     * @param ray the ray
+     * @return the index of the ray in the batch
+     * @throws IllegalStateException if the batch is full
+     */
+    public int add(Ray ray) {
+        return add(ray, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Appends a ray with a distance limit, e.g. the distance to the target of a line of sight query.
+     *
+     * @param ray         the ray
+     * @param maxDistance the distance to look up to
+     * @return the index of the ray in the batch
+     * @throws IllegalStateException if the batch is full
+     */
+    public int add(Ray ray, double maxDistance) {
+        Point head = ray.getp1();
+        Vector dir = ray.getDirection();
+        return add(head.getX(), head.getY(), head.getZ(), dir.getX(), dir.getY(), dir.getZ(), maxDistance);
+    }
+
+    /**
+     * Appends a ray given by numbers. The direction is normalized.
+     *
+     * @param ox          head X
+     * @param oy          head Y
+     * @param oz          head Z
+     * @param dx          direction X
+     * @param dy          direction Y
+     * @param dz          direction Z
+     * @param maxDistance the distance to look up to
+     * @return the index of the ray in the batch
+     * @throws IllegalStateException    if the batch is full
+     * @throws IllegalArgumentException if the direction is zero or the distance is not positive
+     */
+    public int add(double ox, double oy, double oz, double dx, double dy, double dz, double maxDistance) {
+        if (size == capacity())
+            throw new IllegalStateException("Ray batch is full");
+        set(size, ox, oy, oz, dx, dy, dz, maxDistance);
+        return size++;
+    }
+
+    /**
+     * Replaces a ray of the batch by numbers. The direction is normalized.
+     *
+     * @param index       the index of the ray
+     * @param ox          head X
+     * @param oy          head Y
+     * @param oz          head Z
+     * @param dx          direction X
+     * @param dy          direction Y
+     * @param dz          direction Z
+     * @param maxDistance the distance to look up to
+     * @throws IllegalArgumentException if the direction is zero or the distance is not positive
+     */
+    public void set(int index, double ox, double oy, double oz, double dx, double dy, double dz, double maxDistance) {
+        if (index < 0 || index >= capacity())
+            throw new IndexOutOfBoundsException("Ray " + index + " out of " + capacity());
+        double length = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        if (length == 0)
+            throw new IllegalArgumentException("ZERO vector is not allowed");
+        if (!(maxDistance > 0))
+            throw new IllegalArgumentException("Maximal distance must be positive");
+        int b = STRIDE * index;
+        data[b] = ox;
+        data[b + 1] = oy;
+        data[b + 2] = oz;
+        data[b + 3] = dx / length;
+        data[b + 4] = dy / length;
+        data[b + 5] = dz / length;
+        data[b + 6] = maxDistance;
+    }
+
+    /**
+     * Returns a ray of the batch as an object.
+     *
+     * @param index the index of the ray
+     * @return the ray
+     */
+    public Ray getRay(int index) {
+        int b = STRIDE * check(index);
+        return new Ray(new Point(data[b], data[b + 1], data[b + 2]),
+                new Vector(data[b + 3], data[b + 4], data[b + 5]));
+    }
+
+    /**
+     * Returns the distance limit of a ray.
+     *
+     * @param index the index of the ray
+     * @return the maximal distance
+     */
+    public double getMaxDistance(int index) {
+        return data[STRIDE * check(index) + 6];
+    }
+
+    /**
+     * Returns the amount of rays in the batch.
+     *
+     * @return the amount of rays
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the maximal amount of rays.
+     *
+     * @return the capacity
+     */
+    public int capacity() {
+        return data.length / STRIDE;
+    }
+
+    /**
+     * Empties the batch for reuse.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Returns the raw numbers, {@link #STRIDE} per ray, for the query kernels.
+     *
+     * @return the numbers (not a copy)
+     */
+    double[] data() {
+        return data;
+    }
+
+    /**
+     * Sets the amount of rays of a batch that was filled by {@link #set} - e.g. by several threads,
+     * each writing its own range of indices.
+     *
+     * @param size the amount of rays
+     * @throws IllegalArgumentException if the size is negative or beyond the capacity
+     */
+    public void setSize(int size) {
+        if (size < 0 || size > capacity())
+            throw new IllegalArgumentException("Illegal batch size " + size);
+        this.size = size;
+    }
+
+    private int check(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Ray " + index + " out of " + size);
+        return index;
+    }
+}
@@ -0,0 +1,234 @@
+package geometries;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Class RayCastService answers large batches of independent ray queries (picking, line of sight)
+ * in parallel over one shared, immutable {@link CompiledScene}.
+ * <p>
+ * A batch is split into chunks of consecutive rays that the worker threads take from a
+ * {@link ForkJoinPool}. The results go into caller supplied arrays and every thread reuses its own
+ * {@link IntersectionBuffer}, so a query allocates a few objects per chunk and none per ray.
+ * Any number of threads may call the service at once - their batches share the workers.
+ * </p>
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+public final class RayCastService implements AutoCloseable {
+    /**
+     * Amount of rays in a unit of parallel work
+     */
+    private static final int CHUNK = 256;
+
+    /**
+     * Metrics of a single batch.
+     *
+     * @param rays  the amount of rays in the batch
+     * @param hits  the amount of rays that hit (or were occluded)
+     * @param nanos the latency of the batch, from the call to the last result, in nanoseconds
+     */
+    public record BatchStatistics(int rays, int hits, long nanos) {
+        /**
+         * Returns the throughput of the batch.
+         *
+         * @return rays per second
+         */
+        public double raysPerSecond() {
+            return nanos == 0 ? 0 : rays * 1e9 / nanos;
+        }
+    }
+
+    /**
+     * Cumulative metrics of the service.
+     *
+     * @param batches       the amount of batches answered
+     * @param rays          the amount of rays answered
+     * @param totalNanos    the sum of the batch latencies in nanoseconds
+     * @param maxBatchNanos the largest batch latency in nanoseconds
+     */
+    public record Statistics(long batches, long rays, long totalNanos, long maxBatchNanos) {
+        /**
+         * Returns the average batch latency.
+         *
+         * @return the latency in nanoseconds
+         */
+        public double averageBatchNanos() {
+            return batches == 0 ? 0 : (double) totalNanos / batches;
+        }
+
+        /**
+         * Returns the throughput over the time spent in batches. With concurrent callers
+         * the batch times overlap, so the actual throughput may be higher.
+         *
+         * @return rays per second
+         */
+        public double raysPerSecond() {
+            return totalNanos == 0 ? 0 : rays * 1e9 / totalNanos;
+        }
+    }
+
+    private final CompiledScene scene;
+    private final ForkJoinPool pool;
+    private final ThreadLocal<IntersectionBuffer> buffers = ThreadLocal.withInitial(IntersectionBuffer::new);
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder rays = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxBatchNanos = new AtomicLong();
+
+    /**
+     * Constructs a service over a snapshot of a geometries collection - it is compiled once, so
+     * later changes of the collection do not affect the service (and cannot race with its queries).
+     *
+     * @param geometries the scene
+     * @param threads    the amount of worker threads
+     * @throws IllegalArgumentException if the amount of threads is not positive
+     */
+    public RayCastService(Geometries geometries, int threads) {
+        this(geometries.compile(), threads);
+    }
+
+    /**
+     * Constructs a service over a compiled scene.
+     *
+     * @param scene   the scene
+     * @param threads the amount of worker threads
+     * @throws IllegalArgumentException if the amount of threads is not positive
+     */
+    public RayCastService(CompiledScene scene, int threads) {
+        if (threads <= 0)
+            throw new IllegalArgumentException("Amount of threads must be positive");
+        this.scene = scene;
+        this.pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Returns the scene the service queries.
+     *
+     * @return the compiled scene
+     */
+    public CompiledScene getScene() {
+        return scene;
+    }
+
+    /**
+     * Finds the closest hit of every ray of a batch within its maximal distance.
+     *
+     * @param batch     the rays
+     * @param distances output: the distance of the closest hit of each ray, or positive infinity for a miss
+     * @param ids       output: the primitive id of the closest hit of each ray ({@link CompiledScene#getGeometry(int)}),
+     *                  or -1 for a miss; may be null if not needed
+     * @return the metrics of the batch
+     * @throws IllegalArgumentException if an output array is shorter than the batch
+     */
+    public BatchStatistics castClosest(RayBatch batch, double[] distances, int[] ids) {
+        checkLength(batch, distances.length);
+        if (ids != null) checkLength(batch, ids.length);
+        return run(batch, (from, to) -> {
+            IntersectionBuffer buffer = buffers.get();
+            double[] data = batch.data();
+            int hits = 0;
+            for (int i = from; i < to; ++i) {
+                int b = RayBatch.STRIDE * i;
+                buffer.clear();
+                if (scene.closest(null, data[b], data[b + 1], data[b + 2], data[b + 3], data[b + 4], data[b + 5],
+                        data[b + 6], buffer)) {
+                    distances[i] = buffer.getT(0);
+                    if (ids != null) ids[i] = buffer.getId(0);
+                    ++hits;
+                } else {
+                    distances[i] = Double.POSITIVE_INFINITY;
+                    if (ids != null) ids[i] = -1;
+                }
+            }
+            return hits;
+        });
+    }
+
+    /**
+     * Checks for every ray of a batch whether anything blocks it before its maximal distance
+     * (line of sight). The search of a ray stops at the first blocker found.
+     *
+     * @param batch    the rays
+     * @param occluded output: whether each ray is blocked
+     * @return the metrics of the batch, where hits are the blocked rays
+     * @throws IllegalArgumentException if the output array is shorter than the batch
+     */
+    public BatchStatistics castOcclusion(RayBatch batch, boolean[] occluded) {
+        checkLength(batch, occluded.length);
+        return run(batch, (from, to) -> {
+            IntersectionBuffer buffer = buffers.get();
+            double[] data = batch.data();
+            int hits = 0;
+            for (int i = from; i < to; ++i) {
+                int b = RayBatch.STRIDE * i;
+                buffer.clear();
+                occluded[i] = scene.occluded(null, data[b], data[b + 1], data[b + 2],
+                        data[b + 3], data[b + 4], data[b + 5], data[b + 6], buffer);
+                if (occluded[i]) ++hits;
+            }
+            return hits;
+        });
+    }
+
+    /**
+     * Returns the cumulative metrics of all the batches answered so far.
+     *
+     * @return the statistics
+     */
+    public Statistics getStatistics() {
+        return new Statistics(batches.sum(), rays.sum(), totalNanos.sum(), maxBatchNanos.get());
+    }
+
+    /**
+     * Stops the worker threads. Batches already running are completed.
+     */
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * Query of a range of rays of a batch.
+     */
+    @FunctionalInterface
+    private interface RangeQuery {
+        /**
+         * Answers the rays of a range.
+         *
+         * @param from first ray (inclusive)
+         * @param to   last ray (exclusive)
+         * @return the amount of hits in the range
+         */
+        int run(int from, int to);
+    }
+
+    private BatchStatistics run(RayBatch batch, RangeQuery query) {
+        long start = System.nanoTime();
+        int size = batch.size();
+        int chunks = (size + CHUNK - 1) / CHUNK;
+        List<ForkJoinTask<Integer>> tasks = new ArrayList<>(chunks);
+        for (int c = 0; c < chunks; ++c) {
+            int from = c * CHUNK, to = Math.min(size, from + CHUNK);
+            tasks.add(pool.submit(() -> query.run(from, to)));
+        }
+        int hits = 0;
+        for (ForkJoinTask<Integer> task : tasks)
+            hits += task.join();
+        long nanos = System.nanoTime() - start;
+        batches.increment();
+        rays.add(size);
+        totalNanos.add(nanos);
+        maxBatchNanos.accumulateAndGet(nanos, Math::max);
+        return new BatchStatistics(size, hits, nanos);
+    }
+
+    private static void checkLength(RayBatch batch, int length) {
+        if (length < batch.size())
+            throw new IllegalArgumentException("Output array of " + length + " for " + batch.size() + " rays");
+    }
+}
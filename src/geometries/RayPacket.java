@@ -0,0 +1,258 @@
+package geometries;
+
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import java.util.Arrays;
+
+/**
+ * Class RayPacket is a bundle of up to {@value #MAX_SIZE} coherent rays - e.g. the primary rays of an
+ * 8x8 block of neighbouring pixels - traced through a {@link CompiledScene} together by
+ * {@link CompiledScene#traceClosest(RayPacket)}.
+ * <p>
+ * The rays share one traversal of the BVH: a node is visited once for the whole packet, with a bit mask
+ * of the rays that are still active in it. Before the rays are tested one by one, the node is tested
+ * against the packet as a whole by interval arithmetic over the ranges of the ray heads and inverse
+ * directions, so a node that all the rays miss is culled by a single test. The interval test needs the
+ * directions of the rays to agree in sign along an axis; a packet that agrees along no axis is
+ * incoherent and is traced ray by ray.
+ * </p>
+ * <p>
+ * A packet is reusable and keeps its own scratch arrays, so tracing a refilled packet allocates nothing
+ * unless a delegated geometry does. It is not thread safe - each render thread keeps its own.
+ * </p>
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+public final class RayPacket {
+    /**
+     * Maximal amount of rays in a packet - one bit of an active mask per ray
+     */
+    public static final int MAX_SIZE = 64;
+
+    private final Ray[] rays = new Ray[MAX_SIZE];
+    final double[] ox = new double[MAX_SIZE], oy = new double[MAX_SIZE], oz = new double[MAX_SIZE];
+    final double[] dx = new double[MAX_SIZE], dy = new double[MAX_SIZE], dz = new double[MAX_SIZE];
+    final double[] invX = new double[MAX_SIZE], invY = new double[MAX_SIZE], invZ = new double[MAX_SIZE];
+    /**
+     * Distance of the closest hit of each ray so far, positive infinity for none
+     */
+    final double[] t = new double[MAX_SIZE];
+    /**
+     * Primitive id of the closest hit of each ray so far, -1 for none
+     */
+    final int[] ids = new int[MAX_SIZE];
+    private int size;
+    private CompiledScene scene;
+
+    /**
+     * Ranges of the ray heads and the inverse directions per axis, valid on the coherent axes only
+     */
+    private final double[] headLow = new double[3], headHigh = new double[3];
+    private final double[] invLow = new double[3], invHigh = new double[3];
+    private final boolean[] coherent = new boolean[3];
+    /**
+     * The largest distance of a closest hit so far - nodes beyond it are of no interest to any ray
+     */
+    double farthest;
+
+    /**
+     * Traversal stack - nodes and the masks of their active rays
+     */
+    int[] nodes = new int[64];
+    long[] masks = new long[64];
+    /**
+     * Scratch buffer for the kernels and the delegated geometries
+     */
+    final IntersectionBuffer buffer = new IntersectionBuffer(4);
+
+    /**
+     * Appends a ray.
+     *
+     * @param ray the ray
+     * @return the index of the ray in the packet
+     * @throws IllegalStateException if the packet is full
+     */
+    public int add(Ray ray) {
+        if (size == MAX_SIZE)
+            throw new IllegalStateException("Ray packet is full");
+        Point head = ray.getp1();
+        Vector dir = ray.getDirection();
+        rays[size] = ray;
+        ox[size] = head.getX();
+        oy[size] = head.getY();
+        oz[size] = head.getZ();
+        dx[size] = dir.getX();
+        dy[size] = dir.getY();
+        dz[size] = dir.getZ();
+        invX[size] = 1 / dx[size];
+        invY[size] = 1 / dy[size];
+        invZ[size] = 1 / dz[size];
+        return size++;
+    }
+
+    /**
+     * Empties the packet for reuse.
+     */
+    public void clear() {
+        Arrays.fill(rays, 0, size, null);
+        size = 0;
+        scene = null;
+    }
+
+    /**
+     * Returns the amount of rays in the packet.
+     *
+     * @return the amount of rays
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns a ray of the packet.
+     *
+     * @param index the index of the ray
+     * @return the ray
+     */
+    public Ray getRay(int index) {
+        return rays[check(index)];
+    }
+
+    /**
+     * Checks whether a ray hit anything in the last trace.
+     *
+     * @param index the index of the ray
+     * @return true if the ray has a closest hit
+     */
+    public boolean isHit(int index) {
+        return ids[check(index)] >= 0;
+    }
+
+    /**
+     * Returns the distance of the closest hit of a ray in the last trace.
+     *
+     * @param index the index of the ray
+     * @return the distance, or positive infinity for a miss
+     */
+    public double getT(int index) {
+        return t[check(index)];
+    }
+
+    /**
+     * Returns the (top level) primitive id of the closest hit of a ray in the last trace.
+     *
+     * @param index the index of the ray
+     * @return the id ({@link CompiledScene#getGeometry(int)}), or -1 for a miss
+     */
+    public int getId(int index) {
+        return ids[check(index)];
+    }
+
+    /**
+     * Creates the hit record of the closest hit of a ray in the last trace.
+     *
+     * @param index the index of the ray
+     * @return the hit record, or null for a miss
+     */
+    public Intersection getIntersection(int index) {
+        return isHit(index) ? scene.closestRecord(ids[index], rays[index], t[index]) : null;
+    }
+
+    /**
+     * Prepares the packet for a trace: clears the results of the previous one and computes the ranges
+     * for the interval test.
+     *
+     * @param scene the scene the packet is traced through
+     * @return true if the packet is coherent - its directions agree in sign along at least one axis
+     */
+    boolean prepare(CompiledScene scene) {
+        this.scene = scene;
+        Arrays.fill(t, 0, size, Double.POSITIVE_INFINITY);
+        Arrays.fill(ids, 0, size, -1);
+        farthest = Double.POSITIVE_INFINITY;
+        if (size < 2) return false;
+        boolean any = false;
+        for (int axis = 0; axis < 3; ++axis) {
+            double[] head = axis == 0 ? ox : axis == 1 ? oy : oz;
+            double[] dir = axis == 0 ? dx : axis == 1 ? dy : dz;
+            double[] inv = axis == 0 ? invX : axis == 1 ? invY : invZ;
+            boolean positive = dir[0] > 0, negative = dir[0] < 0;
+            headLow[axis] = headHigh[axis] = head[0];
+            invLow[axis] = invHigh[axis] = inv[0];
+            for (int i = 1; i < size; ++i) {
+                positive &= dir[i] > 0;
+                negative &= dir[i] < 0;
+                headLow[axis] = Math.min(headLow[axis], head[i]);
+                headHigh[axis] = Math.max(headHigh[axis], head[i]);
+                invLow[axis] = Math.min(invLow[axis], inv[i]);
+                invHigh[axis] = Math.max(invHigh[axis], inv[i]);
+            }
+            coherent[axis] = positive || negative;
+            any |= coherent[axis];
+        }
+        return any;
+    }
+
+    /**
+     * Recomputes the largest closest hit distance of the packet after its hits have changed.
+     */
+    void updateFarthest() {
+        double max = 0;
+        for (int i = 0; i < size; ++i)
+            max = Math.max(max, t[i]);
+        farthest = max;
+    }
+
+    /**
+     * Interval test of a box against the whole packet. For every coherent axis the slab entry and exit
+     * distances of all the rays are bounded by interval products of (box side - head range) and the inverse
+     * direction range; the box is missed by all the rays if the latest possible entry is after the earliest
+     * possible exit, if the exit is behind all the heads or if the entry is beyond all the closest hits.
+     *
+     * @return true if no ray of the packet can hit the box
+     */
+    boolean missesBox(double x0, double y0, double z0, double x1, double y1, double z1) {
+        double enter = Double.NEGATIVE_INFINITY, exit = Double.POSITIVE_INFINITY;
+        for (int axis = 0; axis < 3; ++axis) {
+            if (!coherent[axis]) continue;
+            double low = axis == 0 ? x0 : axis == 1 ? y0 : z0;
+            double high = axis == 0 ? x1 : axis == 1 ? y1 : z1;
+            // with a positive direction the rays enter through the low side, with a negative one through the high
+            boolean positive = invLow[axis] > 0;
+            double near = positive ? low : high, far = positive ? high : low;
+            enter = Math.max(enter, lowerProduct(near - headHigh[axis], near - headLow[axis], axis));
+            exit = Math.min(exit, upperProduct(far - headHigh[axis], far - headLow[axis], axis));
+        }
+        return enter > exit || exit < 0 || enter > farthest;
+    }
+
+    private double lowerProduct(double low, double high, int axis) {
+        return Math.min(Math.min(low * invLow[axis], low * invHigh[axis]),
+                Math.min(high * invLow[axis], high * invHigh[axis]));
+    }
+
+    private double upperProduct(double low, double high, int axis) {
+        return Math.max(Math.max(low * invLow[axis], low * invHigh[axis]),
+                Math.max(high * invLow[axis], high * invHigh[axis]));
+    }
+
+    /**
+     * Makes sure the traversal stack has a given length, keeping its content.
+     *
+     * @param length the needed length
+     */
+    void growStack(int length) {
+        if (length <= nodes.length) return;
+        int capacity = Math.max(length, 2 * nodes.length);
+        nodes = Arrays.copyOf(nodes, capacity);
+        masks = Arrays.copyOf(masks, capacity);
+    }
+
+    private int check(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Ray " + index + " out of " + size);
+        return index;
+    }
+}
@@ -0,0 +1,237 @@
+package geometries;
+
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import java.util.Arrays;
+
+/**
+ * Class RayQueue collects incoherent secondary rays - reflection, refraction and shadow rays spawned
+ * by the hits of a tile - and traces them together, in an order that keeps similar rays next to each other.
+ * <p>
+ * Every ray is queued with its owner (e.g. the index of the pixel that spawned it). Before the rays are
+ * cast, they are sorted by a key made of the octant of their direction and the Morton (Z order) code of
+ * their head's cell in a 512<sup>3</sup> grid over the heads of the queue, so consecutive rays start near
+ * each other and go the same way, and visit the same BVH nodes while those are still in the CPU caches.
+ * The sorted rays are cast by a {@link RayCastService} and the results are scattered back to the order
+ * the rays were queued in, so they can be accumulated into their owners.
+ * </p>
+ * <p>
+ * A queue is reusable and allocates nothing once refilled, except for the tasks of the service.
+ * It is not thread safe - each render thread keeps its own.
+ * </p>
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+public final class RayQueue {
+    /**
+     * Bits of the head cell coordinates per axis in the sort key
+     */
+    private static final int CELL_BITS = 9;
+
+    private final RayBatch rays;
+    private final RayBatch sorted;
+    private final int[] owners;
+    /**
+     * Sort keys: the key of a ray in the upper 32 bits and its index in the lower 32
+     */
+    private final long[] keys;
+    private final double[] sortedDistances;
+    private final int[] sortedIds;
+    private final boolean[] sortedOccluded;
+
+    /**
+     * Constructs an empty queue.
+     *
+     * @param capacity the maximal amount of rays
+     * @throws IllegalArgumentException if the capacity is not positive or too large
+     */
+    public RayQueue(int capacity) {
+        rays = new RayBatch(capacity);
+        sorted = new RayBatch(capacity);
+        owners = new int[capacity];
+        keys = new long[capacity];
+        sortedDistances = new double[capacity];
+        sortedIds = new int[capacity];
+        sortedOccluded = new boolean[capacity];
+    }
+
+    /**
+     * Queues a ray.
+     *
+     * @param ray         the ray
+     * @param maxDistance the distance to look up to, e.g. the distance to the light of a shadow ray
+     * @param owner       the owner of the ray, e.g. the pixel that spawned it
+     * @return the index of the ray in the queue
+     * @throws IllegalStateException if the queue is full
+     */
+    public int add(Ray ray, double maxDistance, int owner) {
+        Point head = ray.getp1();
+        Vector dir = ray.getDirection();
+        return add(head.getX(), head.getY(), head.getZ(), dir.getX(), dir.getY(), dir.getZ(), maxDistance, owner);
+    }
+
+    /**
+     * Queues a ray given by numbers. The direction is normalized.
+     *
+     * @param ox          head X
+     * @param oy          head Y
+     * @param oz          head Z
+     * @param dx          direction X
+     * @param dy          direction Y
+     * @param dz          direction Z
+     * @param maxDistance the distance to look up to
+     * @param owner       the owner of the ray
+     * @return the index of the ray in the queue
+     * @throws IllegalStateException    if the queue is full
+     * @throws IllegalArgumentException if the direction is zero or the distance is not positive
+     */
+    public int add(double ox, double oy, double oz, double dx, double dy, double dz, double maxDistance, int owner) {
+        int index = rays.add(ox, oy, oz, dx, dy, dz, maxDistance);
+        owners[index] = owner;
+        return index;
+    }
+
+    /**
+     * Returns the owner of a queued ray.
+     *
+     * @param index the index of the ray
+     * @return the owner given when the ray was queued
+     */
+    public int getOwner(int index) {
+        if (index < 0 || index >= size())
+            throw new IndexOutOfBoundsException("Ray " + index + " out of " + size());
+        return owners[index];
+    }
+
+    /**
+     * Returns a queued ray.
+     *
+     * @param index the index of the ray
+     * @return the ray
+     */
+    public Ray getRay(int index) {
+        return rays.getRay(index);
+    }
+
+    /**
+     * Returns the distance limit of a queued ray.
+     *
+     * @param index the index of the ray
+     * @return the maximal distance
+     */
+    public double getMaxDistance(int index) {
+        return rays.getMaxDistance(index);
+    }
+
+    /**
+     * Returns the amount of queued rays.
+     *
+     * @return the amount of rays
+     */
+    public int size() {
+        return rays.size();
+    }
+
+    /**
+     * Empties the queue for reuse.
+     */
+    public void clear() {
+        rays.clear();
+    }
+
+    /**
+     * Finds the closest hit of every queued ray within its maximal distance.
+     *
+     * @param service   the service to cast the rays by
+     * @param distances output, in queue order: the distance of the closest hit of each ray, or positive infinity
+     * @param ids       output, in queue order: the primitive id of the closest hit of each ray, or -1;
+     *                  may be null if not needed
+     * @param sort      whether to sort the rays before casting them
+     * @return the metrics of the query, where the latency includes the sorting and the scattering
+     * @throws IllegalArgumentException if an output array is shorter than the queue
+     */
+    public RayCastService.BatchStatistics castClosest(RayCastService service, double[] distances, int[] ids,
+                                                      boolean sort) {
+        if (!sort) return service.castClosest(rays, distances, ids);
+        if (distances.length < size() || ids != null && ids.length < size())
+            throw new IllegalArgumentException("Output array shorter than the queue of " + size());
+        long start = System.nanoTime();
+        sort();
+        int hits = service.castClosest(sorted, sortedDistances, sortedIds).hits();
+        for (int i = 0; i < size(); ++i) {
+            int index = (int) keys[i];
+            distances[index] = sortedDistances[i];
+            if (ids != null) ids[index] = sortedIds[i];
+        }
+        return new RayCastService.BatchStatistics(size(), hits, System.nanoTime() - start);
+    }
+
+    /**
+     * Checks for every queued ray whether anything blocks it before its maximal distance.
+     *
+     * @param service  the service to cast the rays by
+     * @param occluded output, in queue order: whether each ray is blocked
+     * @param sort     whether to sort the rays before casting them
+     * @return the metrics of the query, where the latency includes the sorting and the scattering
+     * @throws IllegalArgumentException if the output array is shorter than the queue
+     */
+    public RayCastService.BatchStatistics castOcclusion(RayCastService service, boolean[] occluded, boolean sort) {
+        if (!sort) return service.castOcclusion(rays, occluded);
+        if (occluded.length < size())
+            throw new IllegalArgumentException("Output array shorter than the queue of " + size());
+        long start = System.nanoTime();
+        sort();
+        int hits = service.castOcclusion(sorted, sortedOccluded).hits();
+        for (int i = 0; i < size(); ++i)
+            occluded[(int) keys[i]] = sortedOccluded[i];
+        return new RayCastService.BatchStatistics(size(), hits, System.nanoTime() - start);
+    }
+
+    /**
+     * Sorts the queued rays into {@link #sorted}, leaving the queue index of each sorted ray in the lower
+     * half of its key.
+     */
+    void sort() {
+        int size = size();
+        double[] data = rays.data();
+        double[] low = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+        double[] high = {Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        for (int i = 0; i < size; ++i)
+            for (int axis = 0; axis < 3; ++axis) {
+                low[axis] = Math.min(low[axis], data[RayBatch.STRIDE * i + axis]);
+                high[axis] = Math.max(high[axis], data[RayBatch.STRIDE * i + axis]);
+            }
+        int cells = 1 << CELL_BITS;
+        double[] scale = new double[3];
+        for (int axis = 0; axis < 3; ++axis)
+            scale[axis] = high[axis] > low[axis] ? (cells - 1) / (high[axis] - low[axis]) : 0;
+        for (int i = 0; i < size; ++i) {
+            int b = RayBatch.STRIDE * i;
+            long key = 0;
+            for (int axis = 0; axis < 3; ++axis)
+                key |= spread((int) ((data[b + axis] - low[axis]) * scale[axis])) << axis;
+            int octant = (data[b + 3] < 0 ? 4 : 0) | (data[b + 4] < 0 ? 2 : 0) | (data[b + 5] < 0 ? 1 : 0);
+            key |= (long) octant << 3 * CELL_BITS;
+            keys[i] = key << 32 | i;
+        }
+        Arrays.sort(keys, 0, size);
+        double[] target = sorted.data();
+        for (int i = 0; i < size; ++i)
+            System.arraycopy(data, RayBatch.STRIDE * (int) keys[i], target, RayBatch.STRIDE * i, RayBatch.STRIDE);
+        sorted.setSize(size);
+    }
+
+    /**
+     * Spreads the bits of a cell coordinate apart, two zero bits after each one.
+     */
+    private static long spread(int bits) {
+        long x = bits & 0x1FFFFF;
+        x = (x | x << 32) & 0x1F00000000FFFFL;
+        x = (x | x << 16) & 0x1F0000FF0000FFL;
+        x = (x | x << 8) & 0x100F00F00F00F00FL;
+        x = (x | x << 4) & 0x10C30C30C30C30C3L;
+        return (x | x << 2) & 0x1249249249249249L;
+    }
+}
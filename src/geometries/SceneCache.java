@@ -0,0 +1,242 @@
+package geometries;
+
+import primitives.Point;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class SceneCache keeps compiled scenes on disk, keyed by a hash of the scene content,
+ * so that an unchanged scene does not need to be indexed again on every run.
+ * <p>
+ * {@link #compile} hashes the geometries of the scene. If the cache directory has a file of
+ * that hash, the compiled scene is mapped from it; otherwise the scene is compiled and written
+ * into the directory. Files are written under a temporary name and renamed atomically, so
+ * several processes may share the directory. The directory is kept under a size limit by
+ * removing the least recently used files.
+ * </p>
+ * <p>
+ * Spheres, triangles, planes, polygons, tubes and cylinders are hashed by their defining values.
+ * A scene with any other geometry cannot be hashed reliably and is simply compiled in memory.
+ * </p>
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+public class SceneCache {
+    /**
+     * Extension of the cache files
+     */
+    private static final String EXTENSION = ".scene";
+    /**
+     * Version of the hashed content - to be changed with the scene file format
+     */
+    private static final int HASH_VERSION = 1;
+
+    private final Path directory;
+    private final long maxBytes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Constructs a cache in a directory.
+     *
+     * @param directory the cache directory, created if missing
+     * @param maxBytes  the maximal total size of the cache files
+     * @throws IOException              if the directory cannot be created
+     * @throws IllegalArgumentException if the size limit is not positive
+     */
+    public SceneCache(Path directory, long maxBytes) throws IOException {
+        if (maxBytes <= 0) throw new IllegalArgumentException("Cache size limit must be positive");
+        this.directory = Files.createDirectories(directory);
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns a compiled scene, mapped from the cache if the scene has not changed since it was cached,
+     * or freshly compiled (and cached) otherwise.
+     *
+     * @param scene     the scene
+     * @param precision the storage precision of the packed numbers
+     * @return the compiled scene
+     * @throws IOException if the cache directory cannot be used
+     */
+    public CompiledScene compile(Geometries scene, CompiledScene.Precision precision) throws IOException {
+        List<Intersectable> primitives = new ArrayList<>();
+        scene.flatten(primitives);
+        String hash = contentHash(primitives, precision);
+        if (hash == null) return new CompiledScene(primitives, precision, CompiledScene.Storage.HEAP);
+
+        Path file = directory.resolve(hash + EXTENSION);
+        if (Files.exists(file)) {
+            try {
+                // the hits report the caller's geometries, as on a miss
+                CompiledScene cached = CompiledScene.map(file, delegatesOf(primitives)).withSources(primitives);
+                Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+                hits.incrementAndGet();
+                return cached;
+            } catch (IllegalArgumentException | IOException e) {
+                // damaged or incompatible file - build it again
+                Files.deleteIfExists(file);
+            }
+        }
+
+        misses.incrementAndGet();
+        CompiledScene compiled = new CompiledScene(primitives, precision, CompiledScene.Storage.HEAP);
+        Path temporary = Files.createTempFile(directory, hash, ".tmp");
+        try {
+            compiled.write(temporary);
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        evict(file);
+        return compiled;
+    }
+
+    /**
+     * Returns the amount of scenes mapped from the cache.
+     *
+     * @return the amount of cache hits
+     */
+    public long hits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the amount of scenes that had to be compiled.
+     *
+     * @return the amount of cache misses
+     */
+    public long misses() {
+        return misses.get();
+    }
+
+    /**
+     * Removes the least recently used cache files until the directory fits the size limit.
+     *
+     * @param keep a file not to remove
+     * @throws IOException if the directory cannot be listed
+     */
+    private void evict(Path keep) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            stream.forEach(files::add);
+        }
+        long total = 0;
+        for (Path file : files) total += sizeOf(file);
+        files.sort(Comparator.comparing(SceneCache::lastModified));
+        for (Path file : files) {
+            if (total <= maxBytes) break;
+            if (file.equals(keep)) continue;
+            total -= sizeOf(file);
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0; // removed meanwhile by another process
+        }
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    /**
+     * Returns the delegated geometries of a scene in the order a compiled scene keeps them.
+     */
+    private static Intersectable[] delegatesOf(List<Intersectable> primitives) {
+        List<Intersectable> delegates = new ArrayList<>();
+        for (Intersectable geometry : primitives) {
+            Class<?> type = geometry.getClass();
+            if (type != Sphere.class && type != Triangle.class && type != Plane.class) delegates.add(geometry);
+        }
+        return delegates.toArray(new Intersectable[0]);
+    }
+
+    /**
+     * Computes the SHA-256 hash of the content of a scene, e.g. to tell whether saved results of the scene
+     * are still valid.
+     *
+     * @param scene the scene
+     * @return the hash in hex, or null if the scene has a geometry that cannot be hashed
+     */
+    public static String contentHash(Geometries scene) {
+        List<Intersectable> primitives = new ArrayList<>();
+        scene.flatten(primitives);
+        return contentHash(primitives, CompiledScene.Precision.DOUBLE);
+    }
+
+    /**
+     * Computes the SHA-256 hash of the scene content: the type and the defining values of every geometry,
+     * in order.
+     *
+     * @param primitives the flattened geometries
+     * @param precision  the storage precision, part of the key
+     * @return the hash in hex, or null if the scene has a geometry that cannot be hashed
+     */
+    static String contentHash(List<Intersectable> primitives, CompiledScene.Precision precision) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 12);
+        buffer.putInt(HASH_VERSION).putInt(precision.ordinal()).putInt(primitives.size());
+        for (Intersectable geometry : primitives) {
+            if (buffer.remaining() < 256) {
+                digest.update(buffer.flip());
+                buffer.clear();
+            }
+            Class<?> type = geometry.getClass();
+            if (type == Sphere.class) {
+                Sphere sphere = (Sphere) geometry;
+                put(buffer.put((byte) 1), sphere.center).putDouble(sphere.radius);
+            } else if (type == Triangle.class || type == Polygon.class) {
+                Polygon polygon = (Polygon) geometry;
+                buffer.put((byte) (type == Triangle.class ? 2 : 3)).putInt(polygon.vertices.size());
+                for (Point vertex : polygon.vertices) {
+                    if (buffer.remaining() < 32) {
+                        digest.update(buffer.flip());
+                        buffer.clear();
+                    }
+                    put(buffer, vertex);
+                }
+            } else if (type == Plane.class) {
+                Plane plane = (Plane) geometry;
+                put(put(buffer.put((byte) 4), plane.q0), plane.normal);
+            } else if (type == Tube.class || type == Cylinder.class) {
+                Tube tube = (Tube) geometry;
+                put(put(buffer.put((byte) (type == Tube.class ? 5 : 6)), tube.axisRay.getp1()),
+                        tube.axisRay.getDirection()).putDouble(tube.radius);
+                if (geometry instanceof Cylinder cylinder) buffer.putDouble(cylinder.height);
+            } else return null;
+        }
+        digest.update(buffer.flip());
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static ByteBuffer put(ByteBuffer buffer, Point point) {
+        return buffer.putDouble(point.getX()).putDouble(point.getY()).putDouble(point.getZ());
+    }
+}
@@ -7,6 +7,7 @@ import primitives.Vector;
 import java.util.List;
 
 import static primitives.Util.alignZero;
+import static primitives.Util.isZero;
 
 /**
  * Class Sphere represents a 3D sphere in space.
@@ -15,7 +16,12 @@ import static primitives.Util.alignZero;
  * @author Yehonatan Uzzan and Oz Dahari
  */
 public class Sphere extends RadialGeometry {
-    private final Point center;
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The center point of the sphere.
+     */
+    protected final Point center;
 
     /**
      * Constructs a Sphere with a given center and radius.
@@ -34,6 +40,29 @@ public class Sphere extends RadialGeometry {
         return point.subtract(center).normalize();
     }
 
+    @Override
+    public double distance(Point point) {
+        double dx = point.getX() - center.getX(), dy = point.getY() - center.getY(), dz = point.getZ() - center.getZ();
+        return Math.abs(Math.sqrt(dx * dx + dy * dy + dz * dz) - radius);
+    }
+
+    @Override
+    public boolean overlaps(BoundingBox region) {
+        return region.overlapsSphere(center.getX(), center.getY(), center.getZ(), radius);
+    }
+
+    @Override
+    public boolean overlaps(Frustum frustum) {
+        return frustum.overlapsSphere(center.getX(), center.getY(), center.getZ(), radius);
+    }
+
+    @Override
+    public BoundingBox getBoundingBox() {
+        return new BoundingBox(
+                center.getX() - radius, center.getY() - radius, center.getZ() - radius,
+                center.getX() + radius, center.getY() + radius, center.getZ() + radius);
+    }
+
     @Override
     public List<Point> findIntersections(Ray ray) {
         Point p0 = ray.getp1();
@@ -60,4 +89,24 @@ public class Sphere extends RadialGeometry {
         if (t1 > 0) return List.of(ray.getPoint(t1));
         return List.of(ray.getPoint(t2));
     }
+
+    @Override
+    public void findIntersections(Ray ray, IntersectionBuffer buffer) {
+        Point p0 = ray.getp1();
+        Vector dir = ray.getDirection();
+        double ux = center.getX() - p0.getX(), uy = center.getY() - p0.getY(), uz = center.getZ() - p0.getZ();
+        if (isZero(ux) && isZero(uy) && isZero(uz)) {
+            buffer.add(radius, this, -1);
+            return;
+        }
+        double tm = alignZero(dir.getX() * ux + dir.getY() * uy + dir.getZ() * uz);
+        double dSquared = alignZero(ux * ux + uy * uy + uz * uz - tm * tm);
+        double rSquared = alignZero(radius * radius);
+        if (dSquared >= rSquared) return;
+        double th = alignZero(Math.sqrt(rSquared - dSquared));
+        double t1 = alignZero(tm - th);
+        double t2 = alignZero(tm + th);
+        if (t1 > 0) buffer.add(t1, this, -1);
+        if (t2 > 0) buffer.add(t2, this, -1);
+    }
 }
@@ -15,6 +15,7 @@ import static primitives.Util.alignZero;
  * @author Yehonatan Uzzan and Oz Dahari
  */
 public class Triangle extends Polygon {
+    private static final long serialVersionUID = 1L;
 
     /**
      * Constructor that initializes a triangle with three vertices.
@@ -27,6 +28,13 @@ public class Triangle extends Polygon {
         super(p1, p2, p3);
     }
 
+    @Override
+    public boolean overlaps(Frustum frustum) {
+        Point a = vertices.get(0), b = vertices.get(1), c = vertices.get(2);
+        return frustum.overlapsTriangle(a.getX(), a.getY(), a.getZ(), b.getX(), b.getY(), b.getZ(),
+                c.getX(), c.getY(), c.getZ());
+    }
+
     /**
      * Finds the intersection points between a ray and the triangle.
      * The method first checks for an intersection with the triangle's plane,
@@ -73,5 +81,42 @@ public class Triangle extends Polygon {
         return null; // Intersection point is outside the triangle
     }
 
+    /**
+     * Appends the intersection with the triangle to a buffer, by the same tests as
+     * {@link #findIntersections(Ray)} on scalars, so that no objects are allocated.
+     *
+     * @param ray    the ray to intersect with the triangle
+     * @param buffer the buffer to append the hit to
+     */
+    @Override
+    public void findIntersections(Ray ray, IntersectionBuffer buffer) {
+        double t = plane.rayDistance(ray);
+        if (t <= 0) return;
+        Point p0 = ray.getp1(), p1 = vertices.get(0), p2 = vertices.get(1), p3 = vertices.get(2);
+        Vector v = ray.getDirection();
+        double dx = v.getX(), dy = v.getY(), dz = v.getZ();
+        // vectors from ray origin to triangle vertices
+        double x1 = p1.getX() - p0.getX(), y1 = p1.getY() - p0.getY(), z1 = p1.getZ() - p0.getZ();
+        double x2 = p2.getX() - p0.getX(), y2 = p2.getY() - p0.getY(), z2 = p2.getZ() - p0.getZ();
+        double x3 = p3.getX() - p0.getX(), y3 = p3.getY() - p0.getY(), z3 = p3.getZ() - p0.getZ();
+        double sign1 = sideSign(x1, y1, z1, x2, y2, z2, dx, dy, dz);
+        double sign2 = sideSign(x2, y2, z2, x3, y3, z3, dx, dy, dz);
+        double sign3 = sideSign(x3, y3, z3, x1, y1, z1, dx, dy, dz);
+        if ((sign1 > 0 && sign2 > 0 && sign3 > 0) || (sign1 < 0 && sign2 < 0 && sign3 < 0))
+            buffer.add(t, this, -1);
+    }
 
+    /**
+     * Computes the sign of a ray direction against the unit normal of the side spanned by two vectors
+     * from the ray origin.
+     *
+     * @return the aligned dot product, 0 if the side is degenerate as seen from the ray origin
+     */
+    private static double sideSign(double ax, double ay, double az, double bx, double by, double bz,
+                                   double dx, double dy, double dz) {
+        double nx = ay * bz - az * by, ny = az * bx - ax * bz, nz = ax * by - ay * bx;
+        double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+        if (length == 0) return 0;
+        return alignZero((dx * nx + dy * ny + dz * nz) / length);
+    }
 }
\ No newline at end of file
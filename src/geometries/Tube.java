@@ -20,6 +20,8 @@ import static primitives.Util.isZero;
  * @author Yehonatan Uzzan and Oz Dahari
  */
 public class Tube extends RadialGeometry {
+    private static final long serialVersionUID = 1L;
+
     /**
      * The central axis ray of the tube.
      */
@@ -65,6 +67,52 @@ public class Tube extends RadialGeometry {
         return point.subtract(o).normalize();
     }
 
+    @Override
+    public double distance(Point point) {
+        return Math.abs(axisDistance(point) - radius);
+    }
+
+    /**
+     * Conservative check whether the tube reaches into a box: the distance of the box center
+     * from the axis must not exceed the radius plus half the box diagonal.
+     *
+     * @param region the region
+     * @return false only if the tube is certainly outside the region
+     */
+    @Override
+    public boolean overlaps(BoundingBox region) {
+        BoundingBox box = getBoundingBox();
+        if (box != null) return box.overlaps(region);
+        double ex = region.maxX() - region.minX(), ey = region.maxY() - region.minY();
+        double ez = region.maxZ() - region.minZ();
+        Point center = new Point((region.minX() + region.maxX()) / 2, (region.minY() + region.maxY()) / 2,
+                (region.minZ() + region.maxZ()) / 2);
+        return axisDistance(center) <= radius + Math.sqrt(ex * ex + ey * ey + ez * ez) / 2;
+    }
+
+    @Override
+    public boolean overlaps(Frustum frustum) {
+        BoundingBox box = getBoundingBox();
+        if (box != null) return frustum.overlaps(box);
+        BoundingBox region = frustum.getBoundingBox();
+        return region == null || overlaps(region);
+    }
+
+    /**
+     * Computes the distance of a point from the tube's axis line.
+     *
+     * @param point the point
+     * @return the distance from the axis
+     */
+    protected double axisDistance(Point point) {
+        Point p0 = axisRay.getp1();
+        Vector dir = axisRay.getDirection();
+        double wx = point.getX() - p0.getX(), wy = point.getY() - p0.getY(), wz = point.getZ() - p0.getZ();
+        double along = wx * dir.getX() + wy * dir.getY() + wz * dir.getZ();
+        double squared = wx * wx + wy * wy + wz * wz - along * along;
+        return Math.sqrt(Math.max(0, squared));
+    }
+
     /**
      * Finds the intersection points between the given ray and the tube.
      * <p>
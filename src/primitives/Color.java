@@ -0,0 +1,155 @@
+package primitives;
+
+/**
+ * Class Color represents the intensity of light in RGB components, each a non negative number
+ * where 255 is the full intensity of an 8 bit color channel. Intensities above 255 are allowed
+ * while light is summed, and are clipped only when converted to a displayable color.
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+public class Color {
+    /**
+     * Black - no light
+     */
+    public static final Color BLACK = new Color(0, 0, 0);
+
+    /**
+     * The intensity components
+     */
+    private final Double3 rgb;
+
+    /**
+     * Constructor that receives the three components.
+     *
+     * @param r red component
+     * @param g green component
+     * @param b blue component
+     * @throws IllegalArgumentException if a component is negative
+     */
+    public Color(double r, double g, double b) {
+        if (r < 0 || g < 0 || b < 0)
+            throw new IllegalArgumentException("Negative color component is illegal");
+        rgb = new Double3(r, g, b);
+    }
+
+    /**
+     * Constructor that receives a Java color.
+     *
+     * @param other the Java color
+     */
+    public Color(java.awt.Color other) {
+        this(other.getRed(), other.getGreen(), other.getBlue());
+    }
+
+    private Color(Double3 rgb) {
+        this.rgb = rgb;
+    }
+
+    /**
+     * Returns the red component.
+     *
+     * @return the red intensity
+     */
+    public double getR() {
+        return rgb.d1();
+    }
+
+    /**
+     * Returns the green component.
+     *
+     * @return the green intensity
+     */
+    public double getG() {
+        return rgb.d2();
+    }
+
+    /**
+     * Returns the blue component.
+     *
+     * @return the blue intensity
+     */
+    public double getB() {
+        return rgb.d3();
+    }
+
+    /**
+     * Converts the intensity to a displayable Java color, clipping every component to 255.
+     *
+     * @return the Java color
+     */
+    public java.awt.Color getColor() {
+        return new java.awt.Color(clip(rgb.d1()), clip(rgb.d2()), clip(rgb.d3()));
+    }
+
+    private static int clip(double component) {
+        return (int) Math.min(255, Math.round(component));
+    }
+
+    /**
+     * Sums colors.
+     *
+     * @param colors the colors to add
+     * @return the sum
+     */
+    public Color add(Color... colors) {
+        Double3 sum = rgb;
+        for (Color color : colors)
+            sum = sum.add(color.rgb);
+        return new Color(sum);
+    }
+
+    /**
+     * Scales the color by a factor.
+     *
+     * @param k the factor
+     * @return the scaled color
+     * @throws IllegalArgumentException if the factor is negative
+     */
+    public Color scale(double k) {
+        if (k < 0)
+            throw new IllegalArgumentException("Negative scale factor is illegal");
+        return new Color(rgb.scale(k));
+    }
+
+    /**
+     * Scales every component by its own factor, e.g. by the attenuation of a material.
+     *
+     * @param k the factors
+     * @return the scaled color
+     * @throws IllegalArgumentException if a factor is negative
+     */
+    public Color scale(Double3 k) {
+        if (k.d1() < 0 || k.d2() < 0 || k.d3() < 0)
+            throw new IllegalArgumentException("Negative scale factor is illegal");
+        return new Color(rgb.product(k));
+    }
+
+    /**
+     * Divides the color by a number, e.g. to average the color samples of a pixel.
+     *
+     * @param k the divisor
+     * @return the reduced color
+     * @throws IllegalArgumentException if the divisor is not positive
+     */
+    public Color reduce(double k) {
+        if (!(k > 0))
+            throw new IllegalArgumentException("Reduce factor must be positive");
+        return new Color(rgb.reduce(k));
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        return obj instanceof Color other && rgb.equals(other.rgb);
+    }
+
+    @Override
+    public int hashCode() {
+        return rgb.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "rgb:" + rgb;
+    }
+}
@@ -2,6 +2,8 @@ package primitives; /**
  *
  */
 
+import java.io.Serializable;
+
 import static primitives.Util.isZero;
 
 /**
@@ -12,7 +14,8 @@ import static primitives.Util.isZero;
  * @param d3 first number
  * @author Dan Zilberstein
  */
-public record Double3(double d1, double d2, double d3) {
+public record Double3(double d1, double d2, double d3) implements Serializable {
+    private static final long serialVersionUID = 1L;
 
     /**
      * Zero triad (0,0,0)
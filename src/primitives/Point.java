@@ -1,12 +1,16 @@
 package primitives;
 
+import java.io.Serializable;
+
 /**
  * Class Point represents a point in 3D space.
  * It is defined by three coordinates stored as a {@link Double3} object.
  *
  * @author Yehonatan Uzzan and Oz Dahari
  */
-public class Point {
+public class Point implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     /**
      * The coordinates of the point, represented as a {@link Double3} object.
      */
@@ -81,6 +85,33 @@ public class Point {
         return Math.sqrt(distanceSquared(other));
     }
 
+    /**
+     * Returns the X coordinate of the point.
+     *
+     * @return The X coordinate.
+     */
+    public double getX() {
+        return xyz.d1();
+    }
+
+    /**
+     * Returns the Y coordinate of the point.
+     *
+     * @return The Y coordinate.
+     */
+    public double getY() {
+        return xyz.d2();
+    }
+
+    /**
+     * Returns the Z coordinate of the point.
+     *
+     * @return The Z coordinate.
+     */
+    public double getZ() {
+        return xyz.d3();
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (this == obj) return true;
@@ -88,6 +119,11 @@ public class Point {
         return xyz.equals(other.xyz);
     }
 
+    @Override
+    public int hashCode() {
+        return xyz.hashCode();
+    }
+
     @Override
     public String toString() {
         return xyz.toString();
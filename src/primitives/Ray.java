@@ -1,5 +1,7 @@
 package primitives;
 
+import java.io.Serializable;
+
 import static primitives.Util.isZero;
 
 /**
@@ -8,7 +10,9 @@ import static primitives.Util.isZero;
  *
  * @author Yehonatan Uzzan and Oz Dahari
  */
-public class Ray {
+public class Ray implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private final Point head;
     private final Vector direction;
 
@@ -1,5 +1,7 @@
 package primitives;
 
+import java.util.concurrent.ThreadLocalRandom;
+
 /**
  * entities.Util class is used for some internal utilities, e.g. controlling accuracy
  *
@@ -68,14 +70,16 @@ public final class Util {
     }
 
     /**
-     * Provide a real random number in range between min and max
+     * Provide a real random number in range between min and max.
+     * Every thread draws from its own generator, so render threads do not contend; for reproducible
+     * samples use a seeded {@link Xoroshiro128} instead.
      *
      * @param min value (included)
      * @param max value (excluded)
      * @return the random value
      */
     public static double random(double min, double max) {
-        return Math.random() * (max - min) + min;
+        return ThreadLocalRandom.current().nextDouble() * (max - min) + min;
     }
 
 }
@@ -8,6 +8,7 @@ package primitives;
  * @author Yehonatan Uzzan and Oz Dahari
  */
 public class Vector extends Point {
+    private static final long serialVersionUID = 1L;
 
     /**
      * Constructor that receives three coordinates and initializes the vector.
@@ -118,4 +119,9 @@ public class Vector extends Point {
         if (!(obj instanceof Vector other)) return false;
         return xyz.equals(other.xyz);
     }
+
+    @Override
+    public int hashCode() {
+        return xyz.hashCode();
+    }
 }
@@ -0,0 +1,82 @@
+package primitives;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Class Xoroshiro128 is a small, fast pseudo random generator (xoroshiro128++ by Blackman and Vigna)
+ * for sampling.
+ * <p>
+ * Unlike {@link Math#random()}, which draws from a single generator shared by all the threads, an
+ * instance is owned by its user, so render threads never contend for it. The state is 2 longs, so a
+ * generator may well be made per pixel: it is seeded by SplitMix64, which turns any seed - e.g. a
+ * hash of an image seed and the pixel coordinates ({@link #mix}) - into a well spread state. The
+ * numbers drawn then depend on the seed only, never on the thread or the order the pixels are rendered.
+ * </p>
+ * Not thread safe.
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+public final class Xoroshiro128 implements RandomGenerator {
+    /**
+     * SplitMix64 increment - the golden ratio
+     */
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private long s0;
+    private long s1;
+
+    /**
+     * Constructs a generator from a seed.
+     *
+     * @param seed the seed - any value
+     */
+    public Xoroshiro128(long seed) {
+        s0 = mix(seed + GOLDEN_GAMMA);
+        s1 = mix(seed + 2 * GOLDEN_GAMMA);
+        if ((s0 | s1) == 0) s1 = GOLDEN_GAMMA; // the all zero state is a fixed point
+    }
+
+    /**
+     * Constructs a generator from its raw state.
+     *
+     * @param s0 the first half of the state
+     * @param s1 the second half of the state, not zero together with the first
+     */
+    Xoroshiro128(long s0, long s1) {
+        this.s0 = s0;
+        this.s1 = s1;
+    }
+
+    /**
+     * The SplitMix64 output function: scrambles a number so that any change of it changes about half of
+     * the bits of the result. Hashing keys by it - {@code mix(mix(seed) ^ key)} - makes independent seeds.
+     *
+     * @param z the number
+     * @return the scrambled number
+     */
+    public static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    @Override
+    public long nextLong() {
+        long a = s0, b = s1;
+        long result = Long.rotateLeft(a + b, 17) + a;
+        b ^= a;
+        s0 = Long.rotateLeft(a, 49) ^ b ^ (b << 21);
+        s1 = Long.rotateLeft(b, 28);
+        return result;
+    }
+
+    /**
+     * Returns a new generator, seeded by this one, for an independent stream of numbers - e.g. for a task
+     * handed to another thread.
+     *
+     * @return the new generator
+     */
+    public Xoroshiro128 split() {
+        return new Xoroshiro128(nextLong());
+    }
+}
@@ -0,0 +1,159 @@
+package renderer;
+
+import geometries.CompiledScene;
+import geometries.Intersectable;
+import geometries.Intersection;
+import primitives.Color;
+
+/**
+ * Class AdaptiveSampler renders the tiles of an image with adaptive supersampling, for a single render thread.
+ * <p>
+ * The samples lie on a lattice of 2<sup>depth</sup> points per pixel side. A pixel is first sampled at its
+ * 4 corners; where the corners hit different geometries, or a color component differs by more than the
+ * threshold, the pixel is split into 4 quadrants, which are refined the same way down to the maximal depth.
+ * The color of a cell is the average of its quadrants, or of its corners once it is not split. Flat
+ * regions thus cost about a ray per pixel, and only edges and fine detail get more.
+ * </p>
+ * <p>
+ * A corner is shared by up to 4 pixels (and quadrants), so the samples of the current tile are kept in a
+ * cache indexed by their lattice point. Every tile gets a new stamp, which marks the samples of older tiles
+ * stale without clearing the cache.
+ * </p>
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+final class AdaptiveSampler {
+    /**
+     * The largest supported depth: 16x16 subpixels
+     */
+    static final int MAX_DEPTH = 4;
+    /**
+     * The tile size when the camera sets none - keeping the cache small
+     */
+    static final int TILE_SIZE = 16;
+
+    private final Camera camera;
+    private final CompiledScene scene;
+    private final Shader shader;
+    private final int depth;
+    private final double threshold;
+    /**
+     * Lattice points per side of a tile
+     */
+    private final int side;
+    private final int[] stamps;
+    private final Color[] colors;
+    /**
+     * The primitive ids of the hits, and the geometries of the hits that have no id (delegated ones)
+     */
+    private final int[] primitives;
+    private final Intersectable[] geometries;
+    private int stamp;
+    private int x0;
+    private int y0;
+    private long rays;
+
+    /**
+     * Constructs a sampler.
+     *
+     * @param camera    the camera, with its resolution set
+     * @param scene     the visible set
+     * @param shader    the color of the hits
+     * @param tile      the tile size
+     * @param depth     the most times a pixel is split
+     * @param threshold the largest color difference left unsplit
+     */
+    AdaptiveSampler(Camera camera, CompiledScene scene, Shader shader, int tile, int depth, double threshold) {
+        if ((long) tile << depth >= 1 << 14)
+            throw new IllegalArgumentException("Tile of " + tile + " pixels too large for depth " + depth);
+        this.camera = camera;
+        this.scene = scene;
+        this.shader = shader;
+        this.depth = depth;
+        this.threshold = threshold;
+        side = (tile << depth) + 1;
+        stamps = new int[side * side];
+        colors = new Color[side * side];
+        primitives = new int[side * side];
+        geometries = new Intersectable[side * side];
+    }
+
+    /**
+     * Renders the pixels of a tile.
+     *
+     * @param x0       the first column of the tile
+     * @param y0       the first row of the tile
+     * @param listener the receiver of the pixel colors
+     * @return the amount of rays traced for the tile
+     */
+    long traceTile(int x0, int y0, Camera.PixelListener listener) {
+        this.x0 = x0;
+        this.y0 = y0;
+        ++stamp;
+        rays = 0;
+        int tile = (side - 1) >> depth, full = 1 << depth;
+        int xEnd = Math.min(x0 + tile, camera.getNX()), yEnd = Math.min(y0 + tile, camera.getNY());
+        for (int y = y0; y < yEnd; ++y)
+            for (int x = x0; x < xEnd; ++x)
+                listener.accept(x, y, cell((x - x0) * full, (y - y0) * full, full));
+        return rays;
+    }
+
+    /**
+     * Computes the color of a square cell of the lattice.
+     *
+     * @param lx   the lattice column of the top left corner, relative to the tile
+     * @param ly   the lattice row of the top left corner, relative to the tile
+     * @param step the side of the cell, in lattice steps
+     * @return the average color of the cell
+     */
+    private Color cell(int lx, int ly, int step) {
+        int a = sample(lx, ly), b = sample(lx + step, ly), c = sample(lx, ly + step), d = sample(lx + step, ly + step);
+        if (step > 1 && differ(a, b, c, d)) {
+            int half = step / 2;
+            return cell(lx, ly, half).add(cell(lx + half, ly, half), cell(lx, ly + half, half),
+                    cell(lx + half, ly + half, half)).reduce(4);
+        }
+        return colors[a].add(colors[b], colors[c], colors[d]).reduce(4);
+    }
+
+    /**
+     * Checks whether the corners of a cell hit different geometries or differ in color beyond the threshold.
+     */
+    private boolean differ(int a, int b, int c, int d) {
+        int p = primitives[a];
+        if (primitives[b] != p || primitives[c] != p || primitives[d] != p) return true;
+        Intersectable g = geometries[a];
+        if (geometries[b] != g || geometries[c] != g || geometries[d] != g) return true;
+        return range(colors[a].getR(), colors[b].getR(), colors[c].getR(), colors[d].getR()) > threshold
+                || range(colors[a].getG(), colors[b].getG(), colors[c].getG(), colors[d].getG()) > threshold
+                || range(colors[a].getB(), colors[b].getB(), colors[c].getB(), colors[d].getB()) > threshold;
+    }
+
+    private static double range(double a, double b, double c, double d) {
+        return Math.max(Math.max(a, b), Math.max(c, d)) - Math.min(Math.min(a, b), Math.min(c, d));
+    }
+
+    /**
+     * Returns the cache index of a lattice point, tracing its ray first if it is not cached for the tile.
+     *
+     * @param lx the lattice column, relative to the tile
+     * @param ly the lattice row, relative to the tile
+     * @return the index of the sample
+     */
+    private int sample(int lx, int ly) {
+        int index = ly * side + lx;
+        if (stamps[index] != stamp) {
+            double scale = 1.0 / (1 << depth);
+            Intersection hit = scene.calculateClosestIntersection(camera.constructSampleRay(camera.getNX(),
+                    camera.getNY(), x0 + lx * scale, y0 + ly * scale));
+            colors[index] = shader.shade(hit);
+            // compared by primitive id - a scene without sources builds a new geometry object for every call
+            primitives[index] = hit == null ? -1 : hit.getPrimitiveId();
+            geometries[index] = hit == null || primitives[index] >= 0 ? null : hit.getGeometry();
+            stamps[index] = stamp;
+            ++rays;
+        }
+        return index;
+    }
+}
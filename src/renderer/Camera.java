@@ -1,7 +1,21 @@
 package renderer;
 
+import geometries.CompiledScene;
+import geometries.Frustum;
+import geometries.Geometries;
+import geometries.Intersectable;
+import geometries.Intersection;
+import geometries.RayPacket;
 import primitives.*;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
 import static primitives.Util.isZero;
 
 /**
@@ -22,6 +36,62 @@ public class Camera {
     private double width = 1;
     private double height = 1;
     private double distance = 1;
+    private int nX;
+    private int nY;
+    private int packetSize = 1;
+    private int tileSize;
+    private PixelOrder pixelOrder = PixelOrder.ROW_MAJOR;
+    private int threads = 1;
+    private int sampleDepth;
+    private double sampleThreshold;
+    private SamplePattern samplePattern = SamplePattern.STRATIFIED;
+    private int samples = 1;
+    private long seed;
+
+    /**
+     * Receiver of the primary ray results of {@link #traceRays(Intersectable, HitListener)}.
+     */
+    @FunctionalInterface
+    public interface HitListener {
+        /**
+         * Receives the closest hit of the ray through a pixel.
+         *
+         * @param column the pixel column
+         * @param row    the pixel row
+         * @param hit    the closest hit, or null if the ray hits nothing
+         */
+        void accept(int column, int row, Intersection hit);
+    }
+
+    /**
+     * Receiver of the pixel colors of {@link #renderAdaptive(Intersectable, Shader, PixelListener)}.
+     */
+    @FunctionalInterface
+    public interface PixelListener {
+        /**
+         * Receives the color of a pixel.
+         *
+         * @param column the pixel column
+         * @param row    the pixel row
+         * @param color  the color
+         */
+        void accept(int column, int row, Color color);
+    }
+
+    /**
+     * Tracer of the tiles of the image, one per render thread.
+     */
+    @FunctionalInterface
+    interface TileTracer {
+        /**
+         * Traces a tile.
+         *
+         * @param x0   the first column of the tile
+         * @param y0   the first row of the tile
+         * @param size the width and height of the tile (to be clipped to the image)
+         */
+        void trace(int x0, int y0, int size);
+    }
 
     /**
      * Builder class for {@link Camera}.
@@ -40,12 +110,25 @@ public class Camera {
          * @param vUp the up direction
          */
         public Builder(Point p0, Vector vTo, Vector vUp) {
+            this(p0, vTo, vUp, true);
+        }
+
+        /**
+         * Builder constructor that may take the direction vectors as they are, e.g. the vectors of another
+         * camera, which another normalization might change in the last bit.
+         *
+         * @param p0        the position of the camera
+         * @param vTo       the direction to look at
+         * @param vUp       the up direction
+         * @param normalize whether to normalize the direction vectors
+         */
+        private Builder(Point p0, Vector vTo, Vector vUp, boolean normalize) {
             if (!isZero(vTo.dotProduct(vUp))) {
                 throw new IllegalArgumentException("vTo and vUp are not orthogonal");
             }
             this.p0 = p0;
-            this.vTo = vTo.normalize();
-            this.vUp = vUp.normalize();
+            this.vTo = normalize ? vTo.normalize() : vTo;
+            this.vUp = normalize ? vUp.normalize() : vUp;
             this.camera = new Camera(this);
         }
 
@@ -73,6 +156,119 @@ public class Camera {
             return this;
         }
 
+        /**
+         * Set the resolution of the image - the amount of pixels along the view plane width and height.
+         *
+         * @param nX the amount of columns
+         * @param nY the amount of rows
+         * @return the builder itself
+         * @throws IllegalArgumentException if a dimension is not positive
+         */
+        public Builder setResolution(int nX, int nY) {
+            if (nX <= 0 || nY <= 0)
+                throw new IllegalArgumentException("Resolution must be positive");
+            camera.nX = nX;
+            camera.nY = nY;
+            return this;
+        }
+
+        /**
+         * Set the side of the square pixel blocks whose primary rays are traced together as a
+         * {@link RayPacket} - 1 (the default) traces single rays.
+         *
+         * @param size the block side: 1, 2, 4 or 8
+         * @return the builder itself
+         * @throws IllegalArgumentException if the size is not one of the supported ones
+         */
+        public Builder setPacketSize(int size) {
+            if (size != 1 && size != 2 && size != 4 && size != 8)
+                throw new IllegalArgumentException("Packet size must be 1, 2, 4 or 8");
+            camera.packetSize = size;
+            return this;
+        }
+
+        /**
+         * Set the side of the square tiles the image is split into - the units of work of the render threads.
+         * By default the whole image is a single tile.
+         *
+         * @param size the tile side in pixels, or 0 for a single tile
+         * @return the builder itself
+         * @throws IllegalArgumentException if the size is negative
+         */
+        public Builder setTileSize(int size) {
+            if (size < 0)
+                throw new IllegalArgumentException("Tile size must not be negative");
+            camera.tileSize = size;
+            return this;
+        }
+
+        /**
+         * Set the order of tracing the tiles of the image and the pixels (or packets) inside each tile.
+         * The default is {@link PixelOrder#ROW_MAJOR}.
+         *
+         * @param order the order
+         * @return the builder itself
+         */
+        public Builder setPixelOrder(PixelOrder order) {
+            if (order == null)
+                throw new IllegalArgumentException("Pixel order must not be null");
+            camera.pixelOrder = order;
+            return this;
+        }
+
+        /**
+         * Set the amount of render threads. The threads take the tiles in the {@link #setPixelOrder pixel order},
+         * so tiles traced at the same time are near each other.
+         *
+         * @param threads the amount of threads, 1 (the default) renders in the calling thread
+         * @return the builder itself
+         * @throws IllegalArgumentException if the amount is not positive
+         */
+        public Builder setThreads(int threads) {
+            if (threads <= 0)
+                throw new IllegalArgumentException("Amount of threads must be positive");
+            camera.threads = threads;
+            return this;
+        }
+
+        /**
+         * Sets the adaptive supersampling of {@link Camera#renderAdaptive}. Every pixel is sampled at its
+         * corners, and split into quadrants - recursively, up to the given depth - where its corner samples
+         * hit different geometries or differ in color by more than the threshold.
+         *
+         * @param maxDepth  the most times a pixel is split: 0 samples the corners only, 2 up to 4x4 subpixels
+         * @param threshold the largest difference of a color component (0-255) left unsplit
+         * @return the builder itself
+         * @throws IllegalArgumentException if the depth is not 0 to {@link AdaptiveSampler#MAX_DEPTH}
+         *                                  or the threshold is negative
+         */
+        public Builder setAdaptiveSampling(int maxDepth, double threshold) {
+            if (maxDepth < 0 || maxDepth > AdaptiveSampler.MAX_DEPTH || !(threshold >= 0))
+                throw new IllegalArgumentException("Illegal adaptive sampling depth " + maxDepth
+                        + " or threshold " + threshold);
+            camera.sampleDepth = maxDepth;
+            camera.sampleThreshold = threshold;
+            return this;
+        }
+
+        /**
+         * Sets the rays of every pixel of {@link Camera#renderSampled}.
+         *
+         * @param pattern the pattern of the sample points in a pixel
+         * @param samples the amount of rays per pixel
+         * @param seed    the seed of the sample points - the same seed renders the same image
+         * @return the builder itself
+         * @throws IllegalArgumentException if the pattern is null or the amount of rays is not positive
+         */
+        public Builder setSampling(SamplePattern pattern, int samples, long seed) {
+            if (pattern == null || samples <= 0)
+                throw new IllegalArgumentException("Illegal sampling by " + pattern + " of " + samples + " rays");
+            camera.samplePattern = pattern;
+            camera.samples = samples;
+            camera.seed = seed;
+            return this;
+        }
+
         /**
          * Build the camera.
          *
@@ -126,6 +322,283 @@ public class Camera {
     }
 
 
+    /**
+     * Constructs a ray from the camera through any point of the view plane, e.g. a subpixel sample.
+     * The point is given in pixels from the top left corner of the view plane, so the pixel (j, i)
+     * covers [j, j+1] x [i, i+1], and its center (j + 0.5, i + 0.5) is the point of
+     * {@link #constructRay(int, int, int, int)}.
+     *
+     * @param nX number of pixels in X direction
+     * @param nY number of pixels in Y direction
+     * @param x  the horizontal position, in pixels
+     * @param y  the vertical position, in pixels
+     * @return the ray through the point
+     */
+    public Ray constructSampleRay(int nX, int nY, double x, double y) {
+        Point pij = p0.add(vTo.scale(distance));
+        double xJ = (x - nX / 2.0) * (width / nX);
+        double yI = -(y - nY / 2.0) * (height / nY);
+        if (!isZero(xJ)) pij = pij.add(vRight.scale(xJ));
+        if (!isZero(yI)) pij = pij.add(vUp.scale(yI));
+        return new Ray(p0, pij.subtract(p0));
+    }
+
+    /**
+     * Computes the potentially visible set of a scene: the geometries whose bounds reach into the view
+     * frustum of the camera, compiled for tracing. Geometries behind the camera or beside the view
+     * are left out.
+     *
+     * @param scene the scene - a compiled scene, a geometries collection (compiled first) or any geometry
+     * @return the compiled visible part of the scene
+     */
+    public CompiledScene visibleSet(Intersectable scene) {
+        return compile(scene).cull(getFrustum());
+    }
+
+    /**
+     * Returns the compiled form of a scene.
+     *
+     * @param scene a compiled scene, a geometries collection (compiled) or any geometry (compiled as a delegate)
+     * @return the compiled scene
+     */
+    static CompiledScene compile(Intersectable scene) {
+        return scene instanceof CompiledScene c ? c
+                : scene instanceof Geometries g ? g.compile() : new Geometries(scene).compile();
+    }
+
+    /**
+     * Traces the primary ray of every pixel and reports its closest hit. The image is traced tile by tile,
+     * and each tile pixel by pixel - or block by block when the rays are traced in
+     * {@link Builder#setPacketSize(int) packets} - both in the {@link Builder#setPixelOrder pixel order}.
+     * The rays are traced against the {@link #visibleSet(Intersectable) visible set} of the scene only,
+     * computed once per call. With several {@link Builder#setThreads threads} the listener is called
+     * concurrently and must be thread safe.
+     *
+     * @param scene    the scene
+     * @param listener the receiver of the hits
+     * @throws IllegalStateException if the resolution was not set
+     */
+    public void traceRays(Intersectable scene, HitListener listener) {
+        if (nX <= 0 || nY <= 0)
+            throw new IllegalStateException("Resolution is not set");
+        CompiledScene visible = visibleSet(scene);
+        forEachTile(tileSize == 0 ? Math.max(nX, nY) : tileSize, () -> {
+            RayPacket packet = packetSize == 1 ? null : new RayPacket();
+            return (x0, y0, size) -> traceRegion(visible, x0, y0, size, size, packet, listener);
+        });
+    }
+
+    /**
+     * Renders the image with adaptive supersampling (see {@link Builder#setAdaptiveSampling}). The image is
+     * rendered tile by tile - in tiles of 16 pixels if no {@link Builder#setTileSize tile size} was set - and
+     * the samples on the corners shared by neighbouring pixels of a tile are traced once. With several
+     * {@link Builder#setThreads threads} the listener is called concurrently and must be thread safe.
+     *
+     * @param scene    the scene
+     * @param shader   the color of the hits
+     * @param listener the receiver of the pixel colors
+     * @return the amount of rays traced
+     * @throws IllegalStateException if the resolution was not set
+     */
+    public long renderAdaptive(Intersectable scene, Shader shader, PixelListener listener) {
+        if (nX <= 0 || nY <= 0)
+            throw new IllegalStateException("Resolution is not set");
+        CompiledScene visible = visibleSet(scene);
+        int tile = tileSize == 0 ? AdaptiveSampler.TILE_SIZE : tileSize;
+        AtomicLong rays = new AtomicLong();
+        forEachTile(tile, () -> {
+            AdaptiveSampler sampler = new AdaptiveSampler(this, visible, shader, tile, sampleDepth, sampleThreshold);
+            return (x0, y0, size) -> rays.addAndGet(sampler.traceTile(x0, y0, listener));
+        });
+        return rays.get();
+    }
+
+    /**
+     * Renders the image with {@link Builder#setSampling several rays} through every pixel, averaging their
+     * colors. The sample points depend only on the seed and the pixel, so the image is the same bits
+     * whatever the threads, tiles and pixel order. With several {@link Builder#setThreads threads} the
+     * listener is called concurrently and must be thread safe.
+     *
+     * @param scene    the scene
+     * @param shader   the color of the hits
+     * @param listener the receiver of the pixel colors
+     * @throws IllegalStateException if the resolution was not set
+     */
+    public void renderSampled(Intersectable scene, Shader shader, PixelListener listener) {
+        if (nX <= 0 || nY <= 0)
+            throw new IllegalStateException("Resolution is not set");
+        CompiledScene visible = visibleSet(scene);
+        forEachTile(tileSize == 0 ? Math.max(nX, nY) : tileSize, () -> {
+            double[] points = new double[2 * samples];
+            return (x0, y0, size) -> {
+                for (int y = y0; y < Math.min(y0 + size, nY); ++y)
+                    for (int x = x0; x < Math.min(x0 + size, nX); ++x)
+                        listener.accept(x, y, samplePixel(visible, shader, x, y, 0, points).reduce(samples));
+            };
+        });
+    }
+
+    /**
+     * Traces a range of the sample rays of a pixel.
+     *
+     * @param scene  the visible set
+     * @param shader the color of the hits
+     * @param x      the pixel column
+     * @param y      the pixel row
+     * @param first  the index of the first sample
+     * @param points the sample points buffer, 2 numbers per sample of the range
+     * @return the sum of the colors of the samples
+     */
+    Color samplePixel(CompiledScene scene, Shader shader, int x, int y, int first, double[] points) {
+        samplePattern.points(seed, x, y, first, points);
+        Color sum = Color.BLACK;
+        for (int i = 0; i < points.length; i += 2)
+            sum = sum.add(shader.shade(scene.calculateClosestIntersection(
+                    constructSampleRay(nX, nY, x + points[i], y + points[i + 1]))));
+        return sum;
+    }
+
+    /**
+     * Writes the settings the pixel colors depend on - the position, the view plane, the resolution and the
+     * sampling - e.g. to send the camera to another process. The numbers are written exactly.
+     *
+     * @param out the target
+     * @throws IOException if the writing fails
+     */
+    void writeSettings(DataOutput out) throws IOException {
+        for (Point point : new Point[]{p0, vTo, vUp}) {
+            out.writeDouble(point.getX());
+            out.writeDouble(point.getY());
+            out.writeDouble(point.getZ());
+        }
+        out.writeDouble(width);
+        out.writeDouble(height);
+        out.writeDouble(distance);
+        out.writeInt(nX);
+        out.writeInt(nY);
+        out.writeInt(samplePattern.ordinal());
+        out.writeInt(samples);
+        out.writeLong(seed);
+    }
+
+    /**
+     * Reads the settings written by {@link #writeSettings} into a new camera, which renders the very same
+     * pixel colors. The other settings - threads, tiles and so on - are the defaults.
+     *
+     * @param in the source
+     * @return the camera
+     * @throws IOException              if the reading fails
+     * @throws IllegalArgumentException if the settings are not valid
+     */
+    static Camera readSettings(DataInput in) throws IOException {
+        double[] numbers = new double[9];
+        for (int i = 0; i < numbers.length; ++i)
+            numbers[i] = in.readDouble();
+        Builder builder = new Builder(new Point(numbers[0], numbers[1], numbers[2]),
+                new Vector(numbers[3], numbers[4], numbers[5]), new Vector(numbers[6], numbers[7], numbers[8]), false)
+                .setVPSize(in.readDouble(), in.readDouble()).setVPDistance(in.readDouble())
+                .setResolution(in.readInt(), in.readInt());
+        int pattern = in.readInt();
+        if (pattern < 0 || pattern >= SamplePattern.values().length)
+            throw new IllegalArgumentException("Unknown sample pattern " + pattern);
+        return builder.setSampling(SamplePattern.values()[pattern], in.readInt(), in.readLong()).build();
+    }
+
+    /**
+     * Traces all the tiles of the image in the {@link Builder#setPixelOrder pixel order}, handing them out
+     * to the {@link Builder#setThreads threads} one at a time, and waits for them.
+     *
+     * @param tile    the tile size
+     * @param tracers the factory of a tracer for every thread
+     * @throws RuntimeException the first failure of a thread
+     */
+    void forEachTile(int tile, Supplier<TileTracer> tracers) {
+        int tilesX = (nX + tile - 1) / tile, tilesY = (nY + tile - 1) / tile;
+        int[] tiles = pixelOrder.order(tilesX, tilesY);
+        AtomicInteger next = new AtomicInteger();
+        Runnable worker = () -> {
+            TileTracer tracer = tracers.get();
+            for (int k = next.getAndIncrement(); k < tiles.length; k = next.getAndIncrement())
+                tracer.trace(tiles[k] % tilesX * tile, tiles[k] / tilesX * tile, tile);
+        };
+        if (threads == 1 || tiles.length == 1) {
+            worker.run();
+            return;
+        }
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] workers = new Thread[Math.min(threads, tiles.length)];
+        for (int t = 0; t < workers.length; ++t) {
+            workers[t] = new Thread(worker, "render-" + t);
+            workers[t].setUncaughtExceptionHandler((thread, e) -> failure.compareAndSet(null, e));
+            workers[t].start();
+        }
+        try {
+            for (Thread thread : workers)
+                thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while rendering", e);
+        }
+        if (failure.get() instanceof RuntimeException e) throw e;
+        if (failure.get() instanceof Error e) throw e;
+    }
+
+    /**
+     * Traces the pixels of a rectangle of the image in the pixel order - one by one, or in blocks of the packet size.
+     *
+     * @param scene    the visible set
+     * @param x0       the first column of the rectangle
+     * @param y0       the first row of the rectangle
+     * @param columns  the width of the rectangle (clipped to the image)
+     * @param rows     the height of the rectangle (clipped to the image)
+     * @param packet   the packet to reuse, or null to trace single rays (the packet size must then be 1)
+     * @param listener the receiver of the hits
+     */
+    void traceRegion(CompiledScene scene, int x0, int y0, int columns, int rows, RayPacket packet,
+                     HitListener listener) {
+        int xEnd = Math.min(x0 + columns, nX), yEnd = Math.min(y0 + rows, nY);
+        int blocksX = (xEnd - x0 + packetSize - 1) / packetSize;
+        int blocksY = (yEnd - y0 + packetSize - 1) / packetSize;
+        int blocks = blocksX * blocksY;
+        int[] order = pixelOrder == PixelOrder.ROW_MAJOR ? null : pixelOrder.order(blocksX, blocksY);
+        for (int k = 0; k < blocks; ++k) {
+            int block = order == null ? k : order[k];
+            int x = x0 + block % blocksX * packetSize, y = y0 + block / blocksX * packetSize;
+            if (packet == null) {
+                listener.accept(x, y, scene.calculateClosestIntersection(constructRay(nX, nY, x, y)));
+                continue;
+            }
+            // blocks at the right and bottom of the rectangle may be cut
+            int blockWidth = Math.min(packetSize, xEnd - x), blockHeight = Math.min(packetSize, yEnd - y);
+            packet.clear();
+            for (int i = 0; i < blockHeight; ++i)
+                for (int j = 0; j < blockWidth; ++j)
+                    packet.add(constructRay(nX, nY, x + j, y + i));
+            scene.traceClosest(packet);
+            for (int i = 0; i < packet.size(); ++i)
+                listener.accept(x + i % blockWidth, y + i / blockWidth, packet.getIntersection(i));
+        }
+    }
+
+    /**
+     * Returns the view volume of the camera - the pyramid from the camera position through the view plane.
+     *
+     * @return the infinite view frustum
+     */
+    public Frustum getFrustum() {
+        return getFrustum(Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Returns the view volume of the camera cut at a far distance.
+     *
+     * @param far the distance of the far plane along vTo
+     * @return the view frustum
+     */
+    public Frustum getFrustum(double far) {
+        return Frustum.perspective(p0, vTo, vUp, vRight, width, height, distance, far);
+    }
+
     // Getters
     public Point getP0() {
         return p0;
@@ -154,4 +627,40 @@ public class Camera {
     public double getDistance() {
         return distance;
     }
+
+    public int getNX() {
+        return nX;
+    }
+
+    public int getNY() {
+        return nY;
+    }
+
+    public int getPacketSize() {
+        return packetSize;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    public PixelOrder getPixelOrder() {
+        return pixelOrder;
+    }
+
+    public int getSamples() {
+        return samples;
+    }
+
+    public SamplePattern getSamplePattern() {
+        return samplePattern;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,335 @@
+package renderer;
+
+import geometries.CompiledScene;
+import geometries.Geometries;
+import geometries.SceneCache;
+import primitives.Color;
+import primitives.Point;
+import primitives.Vector;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class CheckpointRenderer renders an image like {@link Camera#renderSampled}, saving the completed tiles
+ * to a checkpoint file as it goes, so a render that dies can resume from where it was.
+ * <p>
+ * The render threads only queue the tiles they complete. A separate thread writes the checkpoint every
+ * interval: the colors of all the completed tiles, in a compact binary file. The file is written under a
+ * temporary name and renamed over the previous checkpoint atomically, so a crash during a write leaves the
+ * previous checkpoint whole. A last checkpoint is written when the render ends - completed or failed.
+ * </p>
+ * <p>
+ * The checkpoint is keyed by a hash of everything the image depends on: the scene content, the camera
+ * (position, view plane, resolution, tiles and sampling) and a settings text for the rest - e.g. the
+ * shader. A resumed render takes the saved tiles only if the hash is unchanged, and renders the others;
+ * as the sample points of a pixel depend on the seed only, the image is the very same as in a single run.
+ * The checkpoint is kept after the render, so resuming a completed render renders nothing; it is up to
+ * the caller to remove it once the image is saved.
+ * </p>
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+public final class CheckpointRenderer {
+    /**
+     * The tile size when the camera sets none - the unit of saved work
+     */
+    static final int TILE_SIZE = 32;
+    /**
+     * Leading bytes of a checkpoint file: "RTCP"
+     */
+    private static final int MAGIC = 0x52544350;
+    /**
+     * Version of the file format
+     */
+    private static final int VERSION = 1;
+
+    private final Camera camera;
+    private final CompiledScene scene;
+    private final Shader shader;
+    private final Path file;
+    private final byte[] hash;
+    private final int tile;
+    private final int tilesX;
+    private final int tiles;
+    private Duration interval = Duration.ofMinutes(1);
+    private int restoredTiles;
+    private final AtomicInteger checkpoints = new AtomicInteger();
+
+    /**
+     * Constructs a checkpointing renderer.
+     *
+     * @param camera   the camera, with its resolution set; its sampling, threads, tiles and pixel order are used
+     * @param scene    the scene
+     * @param shader   the color of the hits
+     * @param settings the other settings the image depends on, e.g. of the shader - a change makes the
+     *                 checkpoint stale
+     * @param file     the checkpoint file
+     * @throws IllegalStateException    if the resolution of the camera is not set
+     * @throws IllegalArgumentException if the scene has a geometry that cannot be hashed
+     */
+    public CheckpointRenderer(Camera camera, Geometries scene, Shader shader, String settings, Path file) {
+        if (camera.getNX() <= 0 || camera.getNY() <= 0)
+            throw new IllegalStateException("Resolution is not set");
+        String sceneHash = SceneCache.contentHash(scene);
+        if (sceneHash == null)
+            throw new IllegalArgumentException("Scene has a geometry that cannot be hashed for checkpoints");
+        this.camera = camera;
+        this.scene = camera.visibleSet(scene);
+        this.shader = shader;
+        this.file = file.toAbsolutePath();
+        tile = camera.getTileSize() == 0 ? TILE_SIZE : camera.getTileSize();
+        tilesX = (camera.getNX() + tile - 1) / tile;
+        tiles = tilesX * ((camera.getNY() + tile - 1) / tile);
+        hash = hash(sceneHash, settings);
+    }
+
+    /**
+     * Sets the time between checkpoints.
+     *
+     * @param interval the interval
+     * @return the renderer itself
+     * @throws IllegalArgumentException if the interval is not positive
+     */
+    public CheckpointRenderer setInterval(Duration interval) {
+        if (interval.isNegative() || interval.isZero())
+            throw new IllegalArgumentException("Checkpoint interval must be positive");
+        this.interval = interval;
+        return this;
+    }
+
+    /**
+     * Renders the image, checkpointing the completed tiles.
+     *
+     * @param resume whether to take the tiles of a valid checkpoint instead of rendering them
+     * @return the pixel colors, 3 numbers (red, green, blue) per pixel, row by row
+     * @throws IOException if the last checkpoint cannot be written
+     */
+    public double[] render(boolean resume) throws IOException {
+        int nX = camera.getNX(), nY = camera.getNY(), samples = camera.getSamples();
+        double[] pixels = new double[3 * nX * nY];
+        boolean[] done = new boolean[tiles];
+        List<Integer> completed = new ArrayList<>();
+        restoredTiles = resume ? load(pixels, done, completed) : 0;
+
+        // the render threads only queue their tiles; the checkpoint thread takes them from the queue
+        Queue<Integer> finished = new ConcurrentLinkedQueue<>();
+        ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.scheduleWithFixedDelay(() -> {
+            try {
+                save(pixels, completed, finished);
+            } catch (IOException e) {
+                // tried again at the next interval, and at the end
+            }
+        }, interval.toNanos(), interval.toNanos(), TimeUnit.NANOSECONDS);
+
+        Throwable failure = null;
+        try {
+            camera.forEachTile(tile, () -> {
+                double[] points = new double[2 * samples];
+                return (x0, y0, size) -> {
+                    int index = y0 / tile * tilesX + x0 / tile;
+                    if (done[index]) return;
+                    for (int y = y0; y < Math.min(y0 + size, nY); ++y)
+                        for (int x = x0; x < Math.min(x0 + size, nX); ++x) {
+                            Color color = camera.samplePixel(scene, shader, x, y, 0, points).reduce(samples);
+                            int p = 3 * (y * nX + x);
+                            pixels[p] = color.getR();
+                            pixels[p + 1] = color.getG();
+                            pixels[p + 2] = color.getB();
+                        }
+                    finished.add(index);
+                };
+            });
+        } catch (RuntimeException | Error e) {
+            failure = e;
+            throw e;
+        } finally {
+            writer.shutdown();
+            try {
+                writer.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            try {
+                save(pixels, completed, finished);
+            } catch (IOException e) {
+                if (failure == null) throw e;
+                failure.addSuppressed(e);
+            }
+        }
+        return pixels;
+    }
+
+    /**
+     * Returns the amount of tiles the last render took from the checkpoint.
+     *
+     * @return the amount of restored tiles
+     */
+    public int getRestoredTiles() {
+        return restoredTiles;
+    }
+
+    /**
+     * Returns the amount of checkpoints written by all the renders so far.
+     *
+     * @return the amount of checkpoints
+     */
+    public int getCheckpoints() {
+        return checkpoints.get();
+    }
+
+    /**
+     * Writes a checkpoint of all the completed tiles, if any tile was completed since the last one.
+     *
+     * @param pixels    the image
+     * @param completed the tiles in the checkpoint so far, added to
+     * @param finished  the tiles completed since
+     * @throws IOException if the checkpoint cannot be written
+     */
+    private synchronized void save(double[] pixels, List<Integer> completed, Queue<Integer> finished)
+            throws IOException {
+        int before = completed.size();
+        for (Integer index = finished.poll(); index != null; index = finished.poll())
+            completed.add(index);
+        if (completed.size() == before && Files.exists(file)) return;
+
+        Path directory = file.getParent();
+        Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.write(hash);
+                out.writeInt(camera.getNX());
+                out.writeInt(camera.getNY());
+                out.writeInt(tile);
+                out.writeInt(completed.size());
+                for (int index : completed) {
+                    out.writeInt(index);
+                    forEachPixel(index, p -> {
+                        for (int k = 0; k < 3; ++k)
+                            out.writeDouble(pixels[p + k]);
+                    });
+                }
+            }
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            checkpoints.incrementAndGet();
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Reads the tiles of the checkpoint, if there is one of the same hash.
+     *
+     * @param pixels    the image, filled with the saved tiles
+     * @param done      marks the saved tiles
+     * @param completed the saved tiles, added to
+     * @return the amount of saved tiles - 0 if the checkpoint is missing, stale or damaged
+     */
+    private int load(double[] pixels, boolean[] done, List<Integer> completed) {
+        if (!Files.exists(file)) return 0;
+        double[] read = new double[pixels.length];
+        List<Integer> indices = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            byte[] saved = new byte[hash.length];
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return 0;
+            in.readFully(saved);
+            if (!Arrays.equals(saved, hash) || in.readInt() != camera.getNX() || in.readInt() != camera.getNY()
+                    || in.readInt() != tile)
+                return 0;
+            int count = in.readInt();
+            for (int i = 0; i < count; ++i) {
+                int index = in.readInt();
+                if (index < 0 || index >= tiles) return 0;
+                indices.add(index);
+                forEachPixel(index, p -> {
+                    for (int k = 0; k < 3; ++k)
+                        read[p + k] = in.readDouble();
+                });
+            }
+        } catch (IOException e) {
+            return 0; // damaged - render it all again
+        }
+        // only a whole, valid checkpoint is taken
+        System.arraycopy(read, 0, pixels, 0, pixels.length);
+        for (int index : indices)
+            done[index] = true;
+        completed.addAll(indices);
+        return indices.size();
+    }
+
+    /**
+     * A body taking the index of the first number of a pixel in the image.
+     */
+    @FunctionalInterface
+    private interface PixelBody {
+        void accept(int p) throws IOException;
+    }
+
+    /**
+     * Runs a body on every pixel of a tile, row by row.
+     */
+    private void forEachPixel(int index, PixelBody body) throws IOException {
+        int nX = camera.getNX(), x0 = index % tilesX * tile, y0 = index / tilesX * tile;
+        for (int y = y0; y < Math.min(y0 + tile, camera.getNY()); ++y)
+            for (int x = x0; x < Math.min(x0 + tile, nX); ++x)
+                body.accept(3 * (y * nX + x));
+    }
+
+    /**
+     * Computes the SHA-256 hash of the scene, the camera and the settings.
+     */
+    private byte[] hash(String sceneHash, String settings) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        put(buffer.putInt(VERSION), camera.getP0());
+        put(buffer, camera.getVTo());
+        put(buffer, camera.getVUp());
+        buffer.putDouble(camera.getWidth()).putDouble(camera.getHeight()).putDouble(camera.getDistance())
+                .putInt(camera.getNX()).putInt(camera.getNY()).putInt(tile)
+                .putInt(camera.getSamplePattern().ordinal()).putInt(camera.getSamples()).putLong(camera.getSeed());
+        digest.update(buffer.flip());
+        digest.update(sceneHash.getBytes(StandardCharsets.US_ASCII));
+        digest.update(settings.getBytes(StandardCharsets.UTF_8));
+        return digest.digest();
+    }
+
+    private static void put(ByteBuffer buffer, Point point) {
+        buffer.putDouble(point.getX()).putDouble(point.getY()).putDouble(point.getZ());
+    }
+
+    private static void put(ByteBuffer buffer, Vector vector) {
+        buffer.putDouble(vector.getX()).putDouble(vector.getY()).putDouble(vector.getZ());
+    }
+}
@@ -0,0 +1,244 @@
+package renderer;
+
+import geometries.CompiledScene;
+import geometries.Intersectable;
+import primitives.Color;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class DeadlineRenderer renders an image within a given time, spending the time on the parts of the
+ * image that need it most.
+ * <p>
+ * Every pixel first gets {@link #BASE_SAMPLES} samples, from the camera sample pattern, which give the
+ * throughput of the render threads in rays per second and a first estimate of the noise of every pixel -
+ * the standard error of the mean of its luminance. The rest of the time is spent in rounds: every round
+ * takes half the rays the remaining time allows at the measured throughput, and deals them to the tiles
+ * in proportion to their total error, as a whole number of samples for every pixel of a tile. Flat regions,
+ * whose samples all agree, get no more samples at all; noisy edges and soft regions get the most. The
+ * throughput is measured again after every round, so the rounds shrink as the deadline comes closer and
+ * the estimate improves; the render threads also stop adding samples once the deadline passes.
+ * </p>
+ * <p>
+ * The result reports the quality reached - the mean standard error of the pixels - and how good the time
+ * estimates were: the relative error of the predicted round durations, and the time the render ended
+ * before or after the deadline.
+ * </p>
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+public final class DeadlineRenderer {
+    /**
+     * Samples of every pixel before the deadline is considered - the least to estimate the noise
+     */
+    static final int BASE_SAMPLES = 2;
+    /**
+     * Share of the remaining time given to a round
+     */
+    private static final double ROUND_SHARE = 0.5;
+
+    /**
+     * The result of a render.
+     *
+     * @param pixels          the pixel colors, 3 numbers (red, green, blue) per pixel, row by row
+     * @param samples         the amount of samples of every pixel
+     * @param rays            the amount of rays traced
+     * @param raysPerSecond   the measured throughput
+     * @param meanError       the mean standard error of the luminance of the pixels (0-255 scale)
+     * @param predictionError the relative error of the predicted durations of the completed rounds: the sum of
+     *                        their differences from the actual durations over the sum of the predictions
+     * @param overrunNanos    the end of the render less the deadline - negative when it ended early
+     */
+    public record Result(double[] pixels, int[] samples, long rays, double raysPerSecond, double meanError,
+                         double predictionError, long overrunNanos) {
+    }
+
+    private final Camera camera;
+    private final CompiledScene scene;
+    private final Shader shader;
+
+    /**
+     * Constructs a renderer.
+     *
+     * @param camera the camera, with its resolution set; its sampling, threads, tiles and pixel order are used
+     * @param scene  the scene - only its part visible to the camera is traced
+     * @param shader the color of the hits
+     * @throws IllegalStateException if the resolution of the camera is not set
+     */
+    public DeadlineRenderer(Camera camera, Intersectable scene, Shader shader) {
+        if (camera.getNX() <= 0 || camera.getNY() <= 0)
+            throw new IllegalStateException("Resolution is not set");
+        this.camera = camera;
+        this.scene = camera.visibleSet(scene);
+        this.shader = shader;
+    }
+
+    /**
+     * Renders the image within a time budget. The base samples are always taken, even past the deadline.
+     *
+     * @param budget the time budget from the call
+     * @return the image and the report of the render
+     * @throws IllegalArgumentException if the budget is not positive
+     */
+    public Result render(Duration budget) {
+        if (budget.isNegative() || budget.isZero())
+            throw new IllegalArgumentException("Time budget must be positive");
+        long start = System.nanoTime(), deadline = start + budget.toNanos();
+        int nX = camera.getNX(), nY = camera.getNY();
+        int tile = camera.getTileSize() == 0 ? AdaptiveSampler.TILE_SIZE : camera.getTileSize();
+        int tilesX = (nX + tile - 1) / tile, tilesY = (nY + tile - 1) / tile;
+        Accumulator image = new Accumulator(nX * nY);
+
+        // the base samples of every pixel
+        int[] allocation = new int[tilesX * tilesY];
+        Arrays.fill(allocation, BASE_SAMPLES);
+        long rays = round(image, tile, tilesX, allocation, Long.MAX_VALUE);
+        double rate = rays * 1e9 / Math.max(1, System.nanoTime() - start);
+
+        double predicted = 0, missed = 0;
+        while (true) {
+            double affordable = rate * (deadline - System.nanoTime()) / 1e9 * ROUND_SHARE;
+            if (!allocate(image, tile, tilesX, tilesY, affordable, allocation)) break;
+            long planned = 0;
+            for (int t = 0; t < allocation.length; ++t)
+                planned += (long) allocation[t] * tilePixels(t, tile, tilesX);
+            long roundStart = System.nanoTime();
+            long roundRays = round(image, tile, tilesX, allocation, deadline);
+            long roundNanos = System.nanoTime() - roundStart;
+            rays += roundRays;
+            if (roundRays < planned) break; // stopped by the deadline
+            predicted += planned * 1e9 / rate;
+            missed += Math.abs(roundNanos - planned * 1e9 / rate);
+            // the latest throughput - the threads speed up as the code is compiled
+            if (roundNanos > 1_000_000) rate = roundRays * 1e9 / roundNanos;
+        }
+        long end = System.nanoTime();
+
+        double[] pixels = new double[3 * nX * nY];
+        double error = 0;
+        for (int p = 0; p < nX * nY; ++p) {
+            for (int k = 0; k < 3; ++k)
+                pixels[3 * p + k] = image.sum[3 * p + k] / image.count[p];
+            error += image.error(p);
+        }
+        return new Result(pixels, image.count, rays, rate, error / (nX * nY),
+                predicted == 0 ? 0 : missed / predicted, end - deadline);
+    }
+
+    /**
+     * Deals the rays of a round to the tiles in proportion to their total error.
+     *
+     * @param image      the samples so far
+     * @param tile       the tile size
+     * @param tilesX     the amount of tile columns
+     * @param tilesY     the amount of tile rows
+     * @param affordable the rays of the round
+     * @param allocation the target: the samples to add to every pixel of every tile
+     * @return whether any samples were dealt
+     */
+    private boolean allocate(Accumulator image, int tile, int tilesX, int tilesY, double affordable,
+                             int[] allocation) {
+        int nX = camera.getNX(), nY = camera.getNY();
+        double[] errors = new double[allocation.length];
+        double total = 0;
+        for (int t = 0; t < allocation.length; ++t) {
+            int x0 = t % tilesX * tile, y0 = t / tilesX * tile;
+            for (int y = y0; y < Math.min(y0 + tile, nY); ++y)
+                for (int x = x0; x < Math.min(x0 + tile, nX); ++x)
+                    errors[t] += image.error(y * nX + x);
+            total += errors[t];
+        }
+        boolean any = false;
+        int worst = 0;
+        for (int t = 0; t < allocation.length; ++t) {
+            allocation[t] = total == 0 ? 0 : (int) Math.min(Integer.MAX_VALUE / 2,
+                    affordable * errors[t] / total / tilePixels(t, tile, tilesX));
+            any |= allocation[t] > 0;
+            if (errors[t] > errors[worst]) worst = t;
+        }
+        // too few rays for a sample everywhere in proportion - one more sample for the noisiest tile if affordable
+        if (!any && total > 0 && affordable >= tilePixels(worst, tile, tilesX)) {
+            allocation[worst] = 1;
+            any = true;
+        }
+        return any;
+    }
+
+    private int tilePixels(int t, int tile, int tilesX) {
+        int x0 = t % tilesX * tile, y0 = t / tilesX * tile;
+        return (Math.min(x0 + tile, camera.getNX()) - x0) * (Math.min(y0 + tile, camera.getNY()) - y0);
+    }
+
+    /**
+     * Traces a round of samples by the render threads.
+     *
+     * @param image      the samples so far, added to
+     * @param tile       the tile size
+     * @param tilesX     the amount of tile columns
+     * @param allocation the samples to add to every pixel of every tile
+     * @param deadline   the time to stop adding samples at
+     * @return the amount of rays traced
+     */
+    private long round(Accumulator image, int tile, int tilesX, int[] allocation, long deadline) {
+        int nX = camera.getNX(), nY = camera.getNY();
+        AtomicLong rays = new AtomicLong();
+        camera.forEachTile(tile, () -> {
+            double[] point = new double[2];
+            return (x0, y0, size) -> {
+                int samples = allocation[y0 / tile * tilesX + x0 / tile];
+                long traced = 0;
+                for (int y = y0; y < Math.min(y0 + size, nY) && samples > 0; ++y) {
+                    if (System.nanoTime() > deadline) break;
+                    for (int x = x0; x < Math.min(x0 + size, nX); ++x)
+                        for (int s = 0; s < samples; ++s) {
+                            int p = y * nX + x;
+                            image.add(p, camera.samplePixel(scene, shader, x, y, image.count[p], point));
+                            ++traced;
+                        }
+                }
+                rays.addAndGet(traced);
+            };
+        });
+        return rays.get();
+    }
+
+    /**
+     * The samples of the pixels: the sum of their colors, and the sum and the sum of squares of their
+     * luminance for the noise estimate. Every pixel is written by a single thread in a round.
+     */
+    private static final class Accumulator {
+        private final double[] sum;
+        private final double[] luminance;
+        private final double[] squares;
+        private final int[] count;
+
+        private Accumulator(int pixels) {
+            sum = new double[3 * pixels];
+            luminance = new double[pixels];
+            squares = new double[pixels];
+            count = new int[pixels];
+        }
+
+        private void add(int p, Color color) {
+            sum[3 * p] += color.getR();
+            sum[3 * p + 1] += color.getG();
+            sum[3 * p + 2] += color.getB();
+            double y = 0.2126 * color.getR() + 0.7152 * color.getG() + 0.0722 * color.getB();
+            luminance[p] += y;
+            squares[p] += y * y;
+            ++count[p];
+        }
+
+        /**
+         * The standard error of the mean luminance of a pixel.
+         */
+        private double error(int p) {
+            int n = count[p];
+            if (n < 2) return 0;
+            double variance = Math.max(0, (squares[p] - luminance[p] * luminance[p] / n) / (n - 1));
+            return Math.sqrt(variance / n);
+        }
+    }
+}
@@ -0,0 +1,399 @@
+package renderer;
+
+import geometries.Intersectable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.security.CodeSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Class DistributedRenderer renders an image by worker processes ({@link RenderWorker}), which may run on
+ * other machines: the coordinator splits the image into tiles and hands them out to the workers over sockets.
+ * <p>
+ * The scene is sent to every worker once, when it connects: the compiled visible set of the camera, with the
+ * camera settings and the name of the shader class - the shader is code, so the workers create it by its
+ * public constructor without arguments, and it must not tell the geometries of the hits by their identity.
+ * Every worker then gets one tile at a time, in the camera pixel order, so fast workers render more tiles
+ * than slow ones. The pixels of a tile are the same as those of {@link Camera#renderSampled}, as the sample
+ * points of a pixel depend on the seed only, so the image is the very same as in a single process.
+ * </p>
+ * <p>
+ * A worker that fails, or does not answer for the {@link #setTimeout timeout}, is dropped and its tile is
+ * put back at the head of the queue. Once the queue is empty, idle workers render a backup copy of the tiles
+ * still in progress on a single worker, and the first copy to come back is taken, so a slow worker does not
+ * hold up the end of the frame.
+ * </p>
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+public final class DistributedRenderer {
+    /**
+     * The tile size when the camera sets none
+     */
+    static final int TILE_SIZE = 32;
+    /**
+     * Wait of idle workers and of the coordinator between checks, in milliseconds
+     */
+    private static final long POLL_MILLIS = 10;
+    /**
+     * Wait for the workers to stop after the render, in milliseconds
+     */
+    private static final long END_MILLIS = 1000;
+
+    /**
+     * The result of a render.
+     *
+     * @param pixels        the pixel colors, 3 numbers (red, green, blue) per pixel, row by row
+     * @param workers       the amount of workers that connected
+     * @param failedWorkers the amount of workers dropped during the render
+     * @param requeuedTiles the amount of tiles put back in the queue after their worker was dropped
+     * @param backupTiles   the amount of backup copies handed out of tiles in progress
+     */
+    public record Result(double[] pixels, int workers, int failedWorkers, int requeuedTiles, int backupTiles) {
+    }
+
+    private final Camera camera;
+    private final Class<? extends Shader> shader;
+    private final byte[] handshake;
+    private final int tile;
+    private final int tilesX;
+    private final int[] order;
+    private Duration timeout = Duration.ofMinutes(1);
+
+    /**
+     * Constructs a coordinator, compiling the scene for the workers.
+     *
+     * @param camera the camera, with its resolution set; its sampling, tiles and pixel order are used
+     * @param scene  the scene - only its part visible to the camera is sent
+     * @param shader the class of the shader, with a public constructor without arguments
+     * @throws IllegalStateException    if the resolution of the camera is not set
+     * @throws IllegalArgumentException if the shader has no public constructor without arguments, or the
+     *                                  scene has a delegated geometry that is not serializable
+     * @throws IOException              if the scene cannot be written
+     */
+    public DistributedRenderer(Camera camera, Intersectable scene, Class<? extends Shader> shader)
+            throws IOException {
+        if (camera.getNX() <= 0 || camera.getNY() <= 0)
+            throw new IllegalStateException("Resolution is not set");
+        try {
+            shader.getConstructor();
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException("Shader " + shader.getName()
+                    + " has no public constructor without arguments", e);
+        }
+        this.camera = camera;
+        this.shader = shader;
+        tile = camera.getTileSize() == 0 ? TILE_SIZE : camera.getTileSize();
+        tilesX = (camera.getNX() + tile - 1) / tile;
+        order = camera.getPixelOrder().order(tilesX, (camera.getNY() + tile - 1) / tile);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(RenderWorker.MAGIC);
+        out.writeInt(RenderWorker.VERSION);
+        out.writeUTF(shader.getName());
+        camera.writeSettings(out);
+        try {
+            camera.visibleSet(scene).writeTo(out);
+        } catch (NotSerializableException e) {
+            throw new IllegalArgumentException("Scene has a geometry that cannot be sent: " + e.getMessage(), e);
+        }
+        handshake = bytes.toByteArray();
+    }
+
+    /**
+     * Sets the longest wait for a worker to answer, after which it is dropped.
+     *
+     * @param timeout the timeout
+     * @return the renderer itself
+     * @throws IllegalArgumentException if the timeout is not positive
+     */
+    public DistributedRenderer setTimeout(Duration timeout) {
+        if (timeout.isNegative() || timeout.toMillis() == 0)
+            throw new IllegalArgumentException("Timeout must be at least a millisecond");
+        this.timeout = timeout;
+        return this;
+    }
+
+    /**
+     * Renders the image by worker processes started on this machine.
+     *
+     * @param workers the amount of worker processes
+     * @return the image and the report of the render
+     * @throws IllegalArgumentException if the amount of workers is not positive
+     * @throws IOException              if the workers cannot be started, or they all fail
+     */
+    public Result render(int workers) throws IOException {
+        if (workers <= 0)
+            throw new IllegalArgumentException("Amount of workers must be positive");
+        try (ServerSocket server = new ServerSocket(0, workers, InetAddress.getLoopbackAddress())) {
+            return render(server, workers);
+        }
+    }
+
+    /**
+     * Renders the image by the workers connecting to a server socket: the worker processes started on this
+     * machine, and any other worker connecting during the render. The socket is left open.
+     *
+     * @param server       the bound server socket of the coordinator
+     * @param localWorkers the amount of worker processes to start on this machine
+     * @return the image and the report of the render
+     * @throws IllegalArgumentException if the amount of workers is negative or the socket is not bound
+     * @throws IOException              if the workers cannot be started, or no worker is left for the timeout
+     */
+    public Result render(ServerSocket server, int localWorkers) throws IOException {
+        if (localWorkers < 0 || !server.isBound())
+            throw new IllegalArgumentException("Illegal coordinator of " + localWorkers + " local workers");
+        Job job = new Job();
+        server.setSoTimeout((int) POLL_MILLIS);
+        Thread acceptor = new Thread(() -> job.accept(server), "coordinator");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        List<Process> processes = new ArrayList<>();
+        try {
+            InetAddress address = server.getInetAddress().isAnyLocalAddress()
+                    ? InetAddress.getLoopbackAddress() : server.getInetAddress();
+            for (int i = 0; i < localWorkers; ++i)
+                processes.add(new ProcessBuilder(Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                        "-cp", classpath(), RenderWorker.class.getName(), address.getHostAddress(),
+                        String.valueOf(server.getLocalPort()))
+                        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                        .redirectError(ProcessBuilder.Redirect.INHERIT).start());
+            job.await(processes);
+        } finally {
+            job.stop(acceptor);
+            for (Process process : processes)
+                try {
+                    if (!process.waitFor(END_MILLIS, TimeUnit.MILLISECONDS)) process.destroyForcibly();
+                } catch (InterruptedException e) {
+                    process.destroyForcibly();
+                    Thread.currentThread().interrupt();
+                }
+        }
+        return new Result(job.pixels, job.workers.get(), job.failed.get(), job.requeued.get(), job.backups.get());
+    }
+
+    /**
+     * Returns the classpath of the workers: the classpath of this process, and the locations of the worker
+     * and the shader classes, in case they were loaded by another class loader - e.g. of a test runner.
+     */
+    private String classpath() {
+        Set<String> entries = new LinkedHashSet<>();
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator))
+            if (!entry.isEmpty()) entries.add(entry);
+        for (Class<?> type : new Class<?>[]{RenderWorker.class, shader}) {
+            CodeSource source = type.getProtectionDomain().getCodeSource();
+            if (source == null) continue;
+            try {
+                entries.add(Path.of(source.getLocation().toURI()).toString());
+            } catch (URISyntaxException | IllegalArgumentException e) {
+                // not a local location - the workers must find the class on the classpath
+            }
+        }
+        return String.join(File.pathSeparator, entries);
+    }
+
+    /**
+     * The state of a render, shared by the threads serving the workers.
+     */
+    private final class Job {
+        private final double[] pixels = new double[3 * camera.getNX() * camera.getNY()];
+        private final BlockingDeque<Integer> pending = new LinkedBlockingDeque<>();
+        /**
+         * The amount of workers rendering every tile
+         */
+        private final AtomicIntegerArray attempts = new AtomicIntegerArray(order.length);
+        private final AtomicIntegerArray finished = new AtomicIntegerArray(order.length);
+        private final CountDownLatch remaining = new CountDownLatch(order.length);
+        private final AtomicInteger live = new AtomicInteger();
+        private final AtomicInteger workers = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicInteger requeued = new AtomicInteger();
+        private final AtomicInteger backups = new AtomicInteger();
+        private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+        private final ExecutorService threads = Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "worker connection");
+            thread.setDaemon(true);
+            return thread;
+        });
+        private volatile boolean stopped;
+
+        private Job() {
+            for (int index : order)
+                pending.add(index);
+        }
+
+        /**
+         * Accepts the workers until the render stops, serving every one by a thread of its own.
+         */
+        private void accept(ServerSocket server) {
+            while (!stopped) {
+                try {
+                    Socket socket = server.accept();
+                    live.incrementAndGet();
+                    workers.incrementAndGet();
+                    sockets.add(socket);
+                    threads.execute(() -> serve(socket));
+                } catch (SocketTimeoutException e) {
+                    // check whether the render stopped
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Waits for all the tiles.
+         *
+         * @param processes the local worker processes
+         * @throws IOException if no worker is left - none is connected, and either all the local worker
+         *                     processes exited or none has been connected for the timeout
+         */
+        private void await(List<Process> processes) throws IOException {
+            long lastLive = System.nanoTime();
+            try {
+                while (!remaining.await(POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    if (live.get() > 0) lastLive = System.nanoTime();
+                    else if (!processes.isEmpty() && processes.stream().noneMatch(Process::isAlive)
+                            || System.nanoTime() - lastLive > timeout.toNanos())
+                        throw new IOException("No workers left, " + remaining.getCount() + " tiles not rendered");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Render interrupted", e);
+            }
+        }
+
+        /**
+         * Stops accepting workers, stops the idle ones and drops the ones still rendering.
+         */
+        private void stop(Thread acceptor) {
+            stopped = true;
+            try {
+                acceptor.join();
+                threads.shutdown();
+                if (!threads.awaitTermination(END_MILLIS, TimeUnit.MILLISECONDS)) {
+                    for (Socket socket : sockets)
+                        try {
+                            socket.close();
+                        } catch (IOException e) {
+                            // the connection is dropped anyway
+                        }
+                    threads.awaitTermination(END_MILLIS, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Sends the scene to a worker and then its tiles, until the render stops or the worker fails.
+         */
+        private void serve(Socket socket) {
+            int claimed = -1;
+            try (socket) {
+                socket.setSoTimeout((int) Math.min(Integer.MAX_VALUE, timeout.toMillis()));
+                socket.setTcpNoDelay(true);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                out.write(handshake);
+                double[] colors = new double[3 * tile * tile];
+                for (int index = next(); index >= 0; index = next()) {
+                    claimed = index;
+                    int x0 = index % tilesX * tile, y0 = index / tilesX * tile;
+                    int width = Math.min(x0 + tile, camera.getNX()) - x0;
+                    int height = Math.min(y0 + tile, camera.getNY()) - y0;
+                    out.writeInt(index);
+                    out.writeInt(x0);
+                    out.writeInt(y0);
+                    out.writeInt(tile);
+                    out.flush();
+                    if (in.readInt() != index)
+                        throw new IOException("Worker answered another tile");
+                    for (int k = 0; k < 3 * width * height; ++k)
+                        colors[k] = in.readDouble();
+                    attempts.decrementAndGet(index);
+                    claimed = -1;
+                    // the first copy of the tile is taken - any other copy has the very same colors
+                    if (finished.compareAndSet(index, 0, 1)) {
+                        for (int y = 0; y < height; ++y)
+                            System.arraycopy(colors, 3 * y * width, pixels,
+                                    3 * ((y0 + y) * camera.getNX() + x0), 3 * width);
+                        remaining.countDown();
+                    }
+                }
+                out.writeInt(RenderWorker.STOP);
+                out.flush();
+            } catch (IOException e) {
+                if (remaining.getCount() > 0) failed.incrementAndGet();
+                if (claimed >= 0) {
+                    attempts.decrementAndGet(claimed);
+                    if (finished.get(claimed) == 0) {
+                        pending.addFirst(claimed);
+                        requeued.incrementAndGet();
+                    }
+                }
+            } finally {
+                sockets.remove(socket);
+                live.decrementAndGet();
+            }
+        }
+
+        /**
+         * Takes the next tile for a worker: a queued tile, or else a backup copy of a tile in progress on a
+         * single worker, waiting while there is neither.
+         *
+         * @return the index of the tile, or -1 if the render stopped
+         */
+        private int next() {
+            while (remaining.getCount() > 0 && !stopped) {
+                Integer index = pending.poll();
+                if (index == null) {
+                    for (int backup : order)
+                        if (finished.get(backup) == 0 && attempts.compareAndSet(backup, 1, 2)) {
+                            backups.incrementAndGet();
+                            return backup;
+                        }
+                    try {
+                        index = pending.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return -1;
+                    }
+                    if (index == null) continue;
+                }
+                if (finished.get(index) == 0) {
+                    attempts.incrementAndGet(index);
+                    return index;
+                }
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package renderer;
+
+import primitives.Color;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Class FrameBuffer holds the pixels of a rendered image outside the Java heap and writes them to image files.
+ * <p>
+ * Every pixel is 3 little endian floats (red, green, blue) in direct byte buffers, where 1 is the full
+ * intensity of a channel (a {@link Color} component of 255). A single buffer is limited to 2GB, so the
+ * image is split into chunks of whole rows; a 16K x 16K image takes 3GB in 3 chunks and a handful of heap
+ * objects. Pixels are written by absolute puts, which never touch the shared position of a buffer, so any
+ * number of render threads may write disjoint pixels at once without locks.
+ * </p>
+ * <p>
+ * The writers stream the buffers to a {@link FileChannel}. A PFM file has the very same float layout,
+ * so its rows are written straight from the buffers. PPM and TGA files hold 8 bit channels, so their
+ * rows are converted one at a time through a single reused row buffer. PNG files are converted by bands,
+ * which are compressed in parallel.
+ * </p>
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+public final class FrameBuffer {
+    /**
+     * Bytes per pixel: 3 floats
+     */
+    private static final int PIXEL_BYTES = 3 * Float.BYTES;
+    /**
+     * Default maximal bytes of a chunk
+     */
+    private static final int CHUNK_BYTES = 1 << 30;
+    /**
+     * Bytes of a band of rows compressed at once by the PNG writer
+     */
+    private static final int PNG_BAND_BYTES = 1 << 20;
+
+    private final int width;
+    private final int height;
+    private final int rowsPerChunk;
+    private final ByteBuffer[] chunks;
+
+    /**
+     * Constructs a black frame buffer.
+     *
+     * @param width  the amount of columns
+     * @param height the amount of rows
+     * @throws IllegalArgumentException if a dimension is not positive or a row is too long
+     */
+    public FrameBuffer(int width, int height) {
+        this(width, height, CHUNK_BYTES);
+    }
+
+    /**
+     * Constructs a black frame buffer with a given chunk size.
+     *
+     * @param width      the amount of columns
+     * @param height     the amount of rows
+     * @param chunkBytes the maximal bytes of a chunk (at least a row)
+     */
+    FrameBuffer(int width, int height, int chunkBytes) {
+        if (width <= 0 || height <= 0 || width > chunkBytes / PIXEL_BYTES)
+            throw new IllegalArgumentException("Illegal frame buffer size " + width + "x" + height);
+        this.width = width;
+        this.height = height;
+        rowsPerChunk = chunkBytes / (width * PIXEL_BYTES);
+        chunks = new ByteBuffer[(height + rowsPerChunk - 1) / rowsPerChunk];
+        for (int c = 0; c < chunks.length; ++c)
+            chunks[c] = ByteBuffer.allocateDirect(Math.min(rowsPerChunk, height - c * rowsPerChunk) * width * PIXEL_BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Sets a pixel to a color.
+     *
+     * @param x     the column
+     * @param y     the row
+     * @param color the color
+     */
+    public void setPixel(int x, int y, Color color) {
+        setPixel(x, y, color.getR() / 255, color.getG() / 255, color.getB() / 255);
+    }
+
+    /**
+     * Sets a pixel by its channel values, where 1 is the full intensity.
+     *
+     * @param x the column
+     * @param y the row
+     * @param r red
+     * @param g green
+     * @param b blue
+     */
+    public void setPixel(int x, int y, double r, double g, double b) {
+        ByteBuffer chunk = chunks[check(x, y) / rowsPerChunk];
+        int offset = ((y % rowsPerChunk) * width + x) * PIXEL_BYTES;
+        chunk.putFloat(offset, (float) r);
+        chunk.putFloat(offset + Float.BYTES, (float) g);
+        chunk.putFloat(offset + 2 * Float.BYTES, (float) b);
+    }
+
+    /**
+     * Returns the color of a pixel.
+     *
+     * @param x the column
+     * @param y the row
+     * @return the color
+     */
+    public Color getPixel(int x, int y) {
+        ByteBuffer chunk = chunks[check(x, y) / rowsPerChunk];
+        int offset = ((y % rowsPerChunk) * width + x) * PIXEL_BYTES;
+        return new Color(chunk.getFloat(offset) * 255.0, chunk.getFloat(offset + Float.BYTES) * 255.0,
+                chunk.getFloat(offset + 2 * Float.BYTES) * 255.0);
+    }
+
+    private int check(int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height)
+            throw new IndexOutOfBoundsException("Pixel " + x + "," + y + " out of " + width + "x" + height);
+        return y;
+    }
+
+    /**
+     * Returns a view of the bytes of a row, sharing the content of the buffer.
+     *
+     * @param y the row
+     * @return the row, positioned at its start
+     */
+    private ByteBuffer row(int y) {
+        int offset = (y % rowsPerChunk) * width * PIXEL_BYTES;
+        return chunks[y / rowsPerChunk].slice(offset, width * PIXEL_BYTES);
+    }
+
+    /**
+     * Writes the image as a little endian PFM (portable float map) file, with the full float channels.
+     * The rows are written straight from the buffer, bottom row first as the format requires.
+     *
+     * @param file the file
+     * @throws IOException if writing fails
+     */
+    public void writePfm(Path file) throws IOException {
+        try (FileChannel channel = open(file)) {
+            writeFully(channel, header("PF\n" + width + " " + height + "\n-1.0\n"));
+            for (int y = height - 1; y >= 0; --y)
+                writeFully(channel, row(y));
+        }
+    }
+
+    /**
+     * Writes the image as a binary PPM (P6) file with 8 bit channels, clipping the intensities.
+     *
+     * @param file the file
+     * @throws IOException if writing fails
+     */
+    public void writePpm(Path file) throws IOException {
+        try (FileChannel channel = open(file)) {
+            writeFully(channel, header("P6\n" + width + " " + height + "\n255\n"));
+            ByteBuffer bytes = ByteBuffer.allocateDirect(3 * width);
+            for (int y = 0; y < height; ++y) {
+                quantize(y, bytes, false);
+                writeFully(channel, bytes);
+            }
+        }
+    }
+
+    /**
+     * Writes the image as an uncompressed 24 bit TGA file, clipping the intensities. The rows are
+     * written top row first, as marked in the image descriptor.
+     *
+     * @param file the file
+     * @throws IOException if writing fails
+     */
+    public void writeTga(Path file) throws IOException {
+        if (width > 0xFFFF || height > 0xFFFF)
+            throw new IOException("Image too large for TGA: " + width + "x" + height);
+        try (FileChannel channel = open(file)) {
+            ByteBuffer header = ByteBuffer.allocate(18).order(ByteOrder.LITTLE_ENDIAN);
+            header.put(2, (byte) 2); // uncompressed true color
+            header.putShort(12, (short) width);
+            header.putShort(14, (short) height);
+            header.put(16, (byte) 24); // bits per pixel
+            header.put(17, (byte) 0x20); // top left origin
+            writeFully(channel, header);
+            ByteBuffer bytes = ByteBuffer.allocateDirect(3 * width);
+            for (int y = 0; y < height; ++y) {
+                quantize(y, bytes, true);
+                writeFully(channel, bytes);
+            }
+        }
+    }
+
+    /**
+     * Writes the image as a 24 bit PNG file, clipping the intensities. Bands of rows are compressed
+     * in parallel by a {@link PngEncoder}.
+     *
+     * @param file    the file
+     * @param threads the amount of compression threads
+     * @throws IOException if writing fails
+     */
+    public void writePng(Path file, int threads) throws IOException {
+        int bandHeight = Math.max(1, Math.min(height, PNG_BAND_BYTES / (3 * width)));
+        try (PngEncoder encoder = new PngEncoder(file, width, height, threads)) {
+            ByteBuffer band = ByteBuffer.allocateDirect(3 * width * bandHeight);
+            for (int y0 = 0; y0 < height; y0 += bandHeight) {
+                int rows = Math.min(bandHeight, height - y0);
+                for (int y = y0; y < y0 + rows; ++y)
+                    quantize(y, band.slice(3 * width * (y - y0), 3 * width), false);
+                encoder.accept(y0, rows, band.clear().limit(3 * width * rows));
+            }
+        }
+    }
+
+    /**
+     * Converts a row to 8 bit channels.
+     *
+     * @param y     the row
+     * @param bytes the target, 3 bytes per pixel, left ready to be written
+     * @param bgr   true for blue, green, red order; false for red, green, blue
+     */
+    private void quantize(int y, ByteBuffer bytes, boolean bgr) {
+        ByteBuffer row = row(y).order(ByteOrder.LITTLE_ENDIAN);
+        bytes.clear();
+        for (int x = 0; x < width; ++x) {
+            int offset = x * PIXEL_BYTES;
+            byte r = channel(row.getFloat(offset)), g = channel(row.getFloat(offset + Float.BYTES)),
+                    b = channel(row.getFloat(offset + 2 * Float.BYTES));
+            bytes.put(bgr ? b : r).put(g).put(bgr ? r : b);
+        }
+        bytes.flip();
+    }
+
+    private static byte channel(float value) {
+        return (byte) Math.max(0, Math.min(255, Math.round(value * 255)));
+    }
+
+    private static ByteBuffer header(String header) {
+        return ByteBuffer.wrap(header.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static FileChannel open(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+}
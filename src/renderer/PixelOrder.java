@@ -0,0 +1,120 @@
+package renderer;
+
+/**
+ * Order of visiting the cells of a grid - the pixels of a tile, or the tiles of an image.
+ * <p>
+ * Row by row order jumps across the whole width at the end of every row, so consecutive rays often
+ * look at unrelated parts of the scene. The space filling curves keep consecutive cells next to each
+ * other in both directions, so consecutive rays tend to visit the same BVH nodes and primitives while
+ * they are still in the CPU caches. Hilbert order never jumps at all; Morton (Z) order jumps at the
+ * borders of its quadrants but is cheaper to compute.
+ * </p>
+ * <p>
+ * The curves are defined on a square grid whose side is a power of 2; other grids are visited along the
+ * curve of the smallest such square that covers them, skipping the cells outside the grid.
+ * </p>
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+public enum PixelOrder {
+    /**
+     * Row by row, each row from left to right
+     */
+    ROW_MAJOR {
+        @Override
+        int cell(int d, int bits) {
+            return d & (1 << bits) - 1 | d >>> bits << 16;
+        }
+
+        @Override
+        public int[] order(int width, int height) {
+            // no need to skip the cells outside a square grid
+            check(width, height);
+            int[] order = new int[width * height];
+            for (int i = 0; i < order.length; ++i)
+                order[i] = i;
+            return order;
+        }
+    },
+    /**
+     * Morton (Z) order - the cell coordinates are the even and odd bits of the position along the curve
+     */
+    MORTON {
+        @Override
+        int cell(int d, int bits) {
+            return compact(d) | compact(d >>> 1) << 16;
+        }
+    },
+    /**
+     * Hilbert order - a continuous curve, every cell is next to the one before it
+     */
+    HILBERT {
+        @Override
+        int cell(int d, int bits) {
+            int x = 0, y = 0;
+            for (int s = 1; s < 1 << bits; s <<= 1) {
+                int rx = 1 & (d >>> 1), ry = 1 & (d ^ rx);
+                if (ry == 0) {
+                    // rotate the quadrant
+                    if (rx == 1) {
+                        x = s - 1 - x;
+                        y = s - 1 - y;
+                    }
+                    int swap = x;
+                    x = y;
+                    y = swap;
+                }
+                x += s * rx;
+                y += s * ry;
+                d >>>= 2;
+            }
+            return x | y << 16;
+        }
+    };
+
+    /**
+     * Computes the cell at a position along this order of a square grid.
+     *
+     * @param d    the position along the order
+     * @param bits log2 of the side of the grid
+     * @return the column of the cell in the lower 16 bits and its row in the upper ones
+     */
+    abstract int cell(int d, int bits);
+
+    /**
+     * Lists the cells of a grid in this order.
+     *
+     * @param width  the amount of columns
+     * @param height the amount of rows
+     * @return the cells, each as its index row * width + column
+     * @throws IllegalArgumentException if a dimension is not positive or the grid is too large
+     */
+    public int[] order(int width, int height) {
+        check(width, height);
+        int bits = 0;
+        while (1 << bits < Math.max(width, height)) ++bits;
+        int[] order = new int[width * height];
+        int count = 0;
+        for (long d = 0; count < order.length; ++d) {
+            int cell = cell((int) d, bits), x = cell & 0xFFFF, y = cell >>> 16;
+            if (x < width && y < height) order[count++] = y * width + x;
+        }
+        return order;
+    }
+
+    private static void check(int width, int height) {
+        if (width <= 0 || height <= 0 || Math.max(width, height) > 1 << 15)
+            throw new IllegalArgumentException("Illegal grid size " + width + "x" + height);
+    }
+
+    /**
+     * Gathers the even bits of a number into its lower half.
+     */
+    private static int compact(int bits) {
+        bits &= 0x55555555;
+        bits = (bits | bits >>> 1) & 0x33333333;
+        bits = (bits | bits >>> 2) & 0x0F0F0F0F;
+        bits = (bits | bits >>> 4) & 0x00FF00FF;
+        return (bits | bits >>> 8) & 0x0000FFFF;
+    }
+}
@@ -0,0 +1,307 @@
+package renderer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Class PngEncoder writes a 24 bit PNG file from bands of rows, compressing the bands in parallel
+ * in its own threads while the caller goes on rendering.
+ * <p>
+ * The image data of a PNG file is a single zlib stream, but a deflate stream may be cut into
+ * independent pieces: every band is filtered and compressed on its own by a separate {@link Deflater},
+ * ending with a sync flush (a byte aligned, non final block), and only the last band finishes the
+ * stream. The pieces are then simply concatenated, in order, into IDAT chunks. The Adler-32 check of
+ * the whole stream is combined from the checks of the bands, so no step is done serially over the
+ * whole image except the writing itself.
+ * </p>
+ * <p>
+ * {@link #accept} copies the band out and returns at once, so the encoder is a
+ * {@link StreamingRenderer.BandSink}, and a frame renderer may start the next frame while the last bands
+ * of the previous one are still being compressed. At most a fixed amount of bands is queued - a caller
+ * ahead of the encoder waits for a free slot. Rows are filtered by the Sub filter, which needs no other
+ * row, so the bands are independent.
+ * </p>
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+public final class PngEncoder implements StreamingRenderer.BandSink, AutoCloseable {
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    /**
+     * Zlib stream header: deflate with a 32K window, default compression
+     */
+    private static final byte[] ZLIB_HEADER = {0x78, (byte) 0x9C};
+    /**
+     * Adler-32 modulus
+     */
+    private static final int BASE = 65521;
+    /**
+     * PNG row filter type Sub
+     */
+    private static final byte FILTER_SUB = 1;
+
+    /**
+     * A compressed band
+     *
+     * @param data   the deflate stream piece
+     * @param adler  the Adler-32 check of the filtered rows
+     * @param length the amount of filtered bytes
+     */
+    private record Piece(byte[] data, long adler, long length) {
+    }
+
+    private final WritableByteChannel channel;
+    private final int width;
+    private final int height;
+    private final int level;
+    private final ExecutorService pool;
+    private final Semaphore slots;
+    private final CRC32 crc = new CRC32();
+    /**
+     * The write of the latest band - every band is written after the one before it
+     */
+    private CompletableFuture<Void> written;
+    private long adler = 1;
+    private int nextRow;
+
+    /**
+     * Constructs an encoder into a new file, with the default compression level.
+     *
+     * @param file    the file
+     * @param width   the amount of columns
+     * @param height  the amount of rows
+     * @param threads the amount of compression threads
+     * @throws IOException              if the file cannot be opened
+     * @throws IllegalArgumentException if a dimension or the amount of threads is not positive
+     */
+    public PngEncoder(Path file, int width, int height, int threads) throws IOException {
+        this(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE), width, height, threads, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Constructs an encoder into a channel, which it closes when closed.
+     *
+     * @param channel the channel
+     * @param width   the amount of columns
+     * @param height  the amount of rows
+     * @param threads the amount of compression threads; twice as many bands may be queued
+     * @param level   the deflate compression level, 0-9, or {@link Deflater#DEFAULT_COMPRESSION}
+     * @throws IOException              if the header cannot be written
+     * @throws IllegalArgumentException if a dimension, the amount of threads or the level is illegal
+     */
+    public PngEncoder(WritableByteChannel channel, int width, int height, int threads, int level) throws IOException {
+        if (width <= 0 || height <= 0 || threads <= 0 || width > (Integer.MAX_VALUE - 1) / 3
+                || level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION)
+            throw new IllegalArgumentException("Illegal PNG encoder " + width + "x" + height + ", " + threads
+                    + " threads, level " + level);
+        this.channel = channel;
+        this.width = width;
+        this.height = height;
+        this.level = level;
+        pool = Executors.newFixedThreadPool(threads);
+        slots = new Semaphore(2 * threads);
+
+        writeFully(ByteBuffer.wrap(SIGNATURE));
+        ByteBuffer header = ByteBuffer.allocate(13);
+        header.putInt(width).putInt(height)
+                .put((byte) 8) // bits per channel
+                .put((byte) 2) // true color
+                .put((byte) 0).put((byte) 0).put((byte) 0); // deflate, adaptive filters, no interlace
+        writeChunk("IHDR", header.array(), 0, 13);
+        written = CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Queues the next band for compression and returns once its pixels are copied.
+     *
+     * @param firstRow the first row of the band - the row after the previous band
+     * @param rows     the amount of rows in the band
+     * @param pixels   the pixels of the band, row by row, 3 bytes (red, green, blue) per pixel
+     * @throws IOException              if the compression or the writing of an earlier band failed
+     * @throws IllegalArgumentException if the band is not the next one or its size is wrong
+     */
+    @Override
+    public void accept(int firstRow, int rows, ByteBuffer pixels) throws IOException {
+        if (firstRow != nextRow || rows <= 0 || firstRow + rows > height || pixels.remaining() != 3 * width * rows)
+            throw new IllegalArgumentException("Illegal band of " + rows + " rows at row " + firstRow);
+        if (written.isCompletedExceptionally()) await();
+        try {
+            slots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while queueing a band", e);
+        }
+        nextRow += rows;
+        byte[] filtered = filter(pixels, rows);
+        boolean first = firstRow == 0, last = nextRow == height;
+        CompletableFuture<Piece> piece = CompletableFuture.supplyAsync(() -> compress(filtered, first, last), pool);
+        written = written.thenCombine(piece, (previous, done) -> {
+            try {
+                write(done, last);
+                return null;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        // the slot is freed even if an earlier band failed, so a waiting caller gets to see the failure
+        written.whenComplete((done, failure) -> slots.release());
+    }
+
+    /**
+     * Filters rows by the Sub filter: every byte less the byte of the same channel of the pixel to its left.
+     *
+     * @param pixels the rows, 3 bytes per pixel
+     * @param rows   the amount of rows
+     * @return the filtered rows, each led by its filter type
+     */
+    private byte[] filter(ByteBuffer pixels, int rows) {
+        int start = pixels.position(), rowBytes = 3 * width;
+        byte[] filtered = new byte[rows * (rowBytes + 1)];
+        for (int y = 0; y < rows; ++y) {
+            int in = start + y * rowBytes, out = y * (rowBytes + 1);
+            filtered[out++] = FILTER_SUB;
+            for (int i = 0; i < 3; ++i)
+                filtered[out + i] = pixels.get(in + i);
+            for (int i = 3; i < rowBytes; ++i)
+                filtered[out + i] = (byte) (pixels.get(in + i) - pixels.get(in + i - 3));
+        }
+        pixels.position(start + rows * rowBytes);
+        return filtered;
+    }
+
+    /**
+     * Compresses a band into a piece of the deflate stream.
+     *
+     * @param filtered the filtered rows
+     * @param first    whether the band is the first one - its piece starts with the zlib header
+     * @param last     whether the band is the last one - its piece ends the deflate stream
+     * @return the piece
+     */
+    private Piece compress(byte[] filtered, boolean first, boolean last) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(filtered);
+            if (last) deflater.finish();
+            byte[] out = new byte[filtered.length / 2 + 64];
+            int n = 0;
+            if (first) {
+                System.arraycopy(ZLIB_HEADER, 0, out, 0, ZLIB_HEADER.length);
+                n = ZLIB_HEADER.length;
+            }
+            while (true) {
+                if (n == out.length) out = Arrays.copyOf(out, 2 * out.length);
+                n += deflater.deflate(out, n, out.length - n, last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+                // a sync flush is complete once it leaves room in the output
+                if (last ? deflater.finished() : n < out.length) break;
+            }
+            Adler32 check = new Adler32();
+            check.update(filtered);
+            return new Piece(Arrays.copyOf(out, n), check.getValue(), filtered.length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Writes a compressed band - called for the bands in order.
+     *
+     * @param piece the compressed band
+     * @param last  whether it is the last band - the Adler-32 check and the end of the image follow it
+     * @throws IOException if writing fails
+     */
+    private void write(Piece piece, boolean last) throws IOException {
+        adler = combine(adler, piece.adler(), piece.length());
+        byte[] data = piece.data();
+        if (last) {
+            data = Arrays.copyOf(data, data.length + 4);
+            ByteBuffer.wrap(data, data.length - 4, 4).putInt((int) adler);
+        }
+        writeChunk("IDAT", data, 0, data.length);
+        if (last) writeChunk("IEND", data, 0, 0);
+    }
+
+    /**
+     * Combines the Adler-32 checks of two consecutive pieces of data, as zlib does.
+     *
+     * @param adler1  the check of the first piece
+     * @param adler2  the check of the second piece
+     * @param length2 the length of the second piece
+     * @return the check of both pieces
+     */
+    static long combine(long adler1, long adler2, long length2) {
+        long remainder = length2 % BASE;
+        long sum1 = adler1 & 0xFFFF;
+        long sum2 = remainder * sum1 % BASE;
+        sum1 += (adler2 & 0xFFFF) + BASE - 1;
+        sum2 += ((adler1 >> 16) & 0xFFFF) + ((adler2 >> 16) & 0xFFFF) + BASE - remainder;
+        if (sum1 >= BASE) sum1 -= BASE;
+        if (sum1 >= BASE) sum1 -= BASE;
+        if (sum2 >= 2L * BASE) sum2 -= 2L * BASE;
+        if (sum2 >= BASE) sum2 -= BASE;
+        return sum1 | (sum2 << 16);
+    }
+
+    private void writeChunk(String type, byte[] data, int offset, int length) throws IOException {
+        byte[] name = type.getBytes(StandardCharsets.US_ASCII);
+        crc.reset();
+        crc.update(name);
+        crc.update(data, offset, length);
+        writeFully(ByteBuffer.allocate(8).putInt(length).put(name).flip());
+        writeFully(ByteBuffer.wrap(data, offset, length));
+        writeFully(ByteBuffer.allocate(4).putInt((int) crc.getValue()).flip());
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+
+    /**
+     * Waits for the bands queued so far to be written.
+     *
+     * @throws IOException if the compression or the writing of a band failed
+     */
+    private void await() throws IOException {
+        try {
+            written.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while encoding", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) throw io.getCause();
+            throw new IOException("PNG encoding failed", e.getCause());
+        }
+    }
+
+    /**
+     * Waits for all the bands to be written, stops the threads and closes the channel.
+     *
+     * @throws IOException           if the compression or the writing of a band failed
+     * @throws IllegalStateException if not all the rows were given
+     */
+    @Override
+    public void close() throws IOException {
+        try (channel) {
+            await();
+            if (nextRow != height)
+                throw new IllegalStateException("Only " + nextRow + " of " + height + " rows were encoded");
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package renderer;
+
+import geometries.CompiledScene;
+import geometries.Intersectable;
+import primitives.Color;
+
+/**
+ * Class ProgressiveRenderer renders an image in passes, each giving a complete, better image than the one
+ * before it, so a preview is shown at once and refined for as long as it is watched.
+ * <p>
+ * The first pass traces a single ray per block of 4x4 pixels - a sixteenth of the work of a full image - and
+ * fills the blocks with its color. Every following pass halves the blocks, tracing only the pixels not traced
+ * yet, until every pixel has its own ray. Every later pass then adds {@link Camera.Builder#setSampling
+ * the camera amount} of samples to every pixel, from the camera sample pattern, and the image is their
+ * running mean. With the sequence patterns - all but {@link SamplePattern#STRATIFIED}, whose batches are
+ * stratified each on its own - the samples are those of {@link Camera#renderSampled} with as many samples
+ * in total, so the progressive image converges to the very same image.
+ * </p>
+ * <p>
+ * After every pass the listener gets a snapshot of the image, in the calling thread. A render may be
+ * cancelled at any time, from any thread - e.g. from the listener, or when the view changes; the pass in
+ * progress is then left unfinished and no more snapshots are taken. The cancel is final: it holds for a render
+ * that has not started yet too, and a renderer once cancelled renders no more passes.
+ * </p>
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+public final class ProgressiveRenderer {
+    /**
+     * Side of the blocks of the first pass, a power of 2
+     */
+    static final int COARSE_BLOCK = 4;
+
+    /**
+     * An image of a pass.
+     *
+     * @param pass    the index of the pass, from 0
+     * @param block   the side of the blocks filled by a single ray, 1 once every pixel is traced
+     * @param samples the amount of samples of every pixel, 0 while not every pixel is traced
+     * @param pixels  the pixel colors, 3 numbers (red, green, blue) per pixel, row by row - a copy
+     */
+    public record Snapshot(int pass, int block, int samples, double[] pixels) {
+    }
+
+    /**
+     * Receiver of the images of the passes.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * Receives the image of a pass.
+         *
+         * @param snapshot the image
+         */
+        void accept(Snapshot snapshot);
+    }
+
+    private final Camera camera;
+    private final CompiledScene scene;
+    private final Shader shader;
+    private volatile boolean cancelled;
+
+    /**
+     * Constructs a progressive renderer.
+     *
+     * @param camera the camera, with its resolution set; its sampling, threads, tiles and pixel order are used
+     * @param scene  the scene - only its part visible to the camera is traced
+     * @param shader the color of the hits
+     * @throws IllegalStateException if the resolution of the camera is not set
+     */
+    public ProgressiveRenderer(Camera camera, Intersectable scene, Shader shader) {
+        if (camera.getNX() <= 0 || camera.getNY() <= 0)
+            throw new IllegalStateException("Resolution is not set");
+        this.camera = camera;
+        this.scene = camera.visibleSet(scene);
+        this.shader = shader;
+    }
+
+    /**
+     * Renders up to a given amount of passes, or until cancelled.
+     *
+     * @param passes   the most passes to render: the coarse passes, then the passes of more samples
+     * @param listener the receiver of the image of every completed pass
+     * @return the amount of completed passes, 0 if the renderer was cancelled before
+     * @throws IllegalArgumentException if the amount of passes is not positive
+     */
+    public int render(int passes, Listener listener) {
+        if (passes <= 0)
+            throw new IllegalArgumentException("Amount of passes must be positive");
+        int nX = camera.getNX(), nY = camera.getNY(), batch = camera.getSamples();
+        double[] sum = new double[3 * nX * nY];
+        int samples = 0;
+        for (int pass = 0; pass < passes; ++pass) {
+            if (cancelled) return pass;
+            int block = COARSE_BLOCK >> Math.min(pass, Integer.numberOfTrailingZeros(COARSE_BLOCK));
+            // a coarse pass traces the pixels on its grid that the coarser grid did not; a fine pass adds samples
+            int coarser = pass == 0 ? 0 : 2 * block, first = block > 1 || samples == 0 ? 0 : samples;
+            int count = block > 1 || samples == 0 ? 1 : batch;
+            camera.forEachTile(tile(), () -> {
+                double[] points = new double[2 * count];
+                return (x0, y0, size) -> {
+                    for (int y = y0; y < Math.min(y0 + size, nY) && !cancelled; ++y)
+                        for (int x = x0; x < Math.min(x0 + size, nX); ++x) {
+                            if (x % block != 0 || y % block != 0) continue;
+                            if (coarser > 0 && first == 0 && x % coarser == 0 && y % coarser == 0) continue;
+                            Color color = camera.samplePixel(scene, shader, x, y, first, points);
+                            int p = 3 * (y * nX + x);
+                            sum[p] += color.getR();
+                            sum[p + 1] += color.getG();
+                            sum[p + 2] += color.getB();
+                        }
+                };
+            });
+            if (cancelled) return pass;
+            if (block == 1) samples += count;
+            listener.accept(new Snapshot(pass, block, samples, snapshot(sum, block, samples)));
+            if (cancelled) return pass + 1;
+        }
+        return passes;
+    }
+
+    /**
+     * Cancels the render in progress and any later one. Safe to call from any thread; the render returns
+     * after the rows in progress.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    private int tile() {
+        return camera.getTileSize() == 0 ? Math.max(camera.getNX(), camera.getNY()) : camera.getTileSize();
+    }
+
+    /**
+     * Computes the image of a pass: the mean of the samples of every pixel, or the color of the ray of its
+     * block while the pixels are not all traced.
+     */
+    private double[] snapshot(double[] sum, int block, int samples) {
+        int nX = camera.getNX(), nY = camera.getNY();
+        double[] pixels = new double[sum.length];
+        for (int y = 0; y < nY; ++y)
+            for (int x = 0; x < nX; ++x) {
+                int p = 3 * (y * nX + x), source = block == 1 ? p : 3 * ((y - y % block) * nX + x - x % block);
+                double scale = samples == 0 ? 1 : 1.0 / samples;
+                for (int k = 0; k < 3; ++k)
+                    pixels[p + k] = sum[source + k] * scale;
+            }
+        return pixels;
+    }
+}
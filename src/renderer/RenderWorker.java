@@ -0,0 +1,111 @@
+package renderer;
+
+import geometries.CompiledScene;
+import primitives.Color;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+
+/**
+ * Class RenderWorker is the worker process of a {@link DistributedRenderer}: it connects to the coordinator,
+ * receives the scene once, and then renders the tiles it is sent, one at a time, until it is told to stop or
+ * the coordinator goes away.
+ * <p>
+ * Run it as {@code java -cp <classpath> renderer.RenderWorker <host> <port>}; the classpath must have the
+ * shader class of the render. The coordinator starts its local workers by itself; workers on other
+ * machines may connect to it the same way.
+ * </p>
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+public final class RenderWorker {
+    /**
+     * Leading bytes of the coordinator handshake: "RTWK"
+     */
+    static final int MAGIC = 0x5254574B;
+    /**
+     * Version of the protocol
+     */
+    static final int VERSION = 1;
+    /**
+     * The tile index that tells the worker to stop
+     */
+    static final int STOP = -1;
+
+    private RenderWorker() {
+    }
+
+    /**
+     * Connects to a coordinator and renders its tiles.
+     *
+     * @param args the host and the port of the coordinator
+     * @throws IOException if the connection fails
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2)
+            throw new IllegalArgumentException("Usage: RenderWorker <host> <port>");
+        try (Socket socket = new Socket(args[0], Integer.parseInt(args[1]))) {
+            socket.setTcpNoDelay(true);
+            serve(socket);
+        } catch (EOFException e) {
+            // the coordinator closed the connection - e.g. the render is done without this worker's tile
+        }
+    }
+
+    /**
+     * Renders the tiles of a coordinator over a connection.
+     * <p>
+     * The coordinator sends the handshake - the shader class name, the camera settings and the compiled
+     * visible set - then tile requests (index, first column, first row, size). The worker answers every
+     * request with the index and the colors of the pixels of the tile, row by row.
+     * </p>
+     *
+     * @param socket the connection to the coordinator
+     * @throws IOException if the connection fails, the handshake is not valid or the scene holds
+     *                     geometries of classes outside the library
+     */
+    static void serve(Socket socket) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION)
+            throw new IOException("Not a render coordinator");
+        Shader shader = shader(in.readUTF());
+        Camera camera = Camera.readSettings(in);
+        CompiledScene scene = CompiledScene.readFrom(in);
+
+        int nX = camera.getNX(), nY = camera.getNY(), samples = camera.getSamples();
+        double[] points = new double[2 * samples];
+        for (int index = in.readInt(); index != STOP; index = in.readInt()) {
+            int x0 = in.readInt(), y0 = in.readInt(), size = in.readInt();
+            out.writeInt(index);
+            for (int y = y0; y < Math.min(y0 + size, nY); ++y)
+                for (int x = x0; x < Math.min(x0 + size, nX); ++x) {
+                    Color color = camera.samplePixel(scene, shader, x, y, 0, points).reduce(samples);
+                    out.writeDouble(color.getR());
+                    out.writeDouble(color.getG());
+                    out.writeDouble(color.getB());
+                }
+            out.flush();
+        }
+    }
+
+    /**
+     * Creates the shader of the render by its public constructor without arguments.
+     * The name comes from the peer, so the class is checked to be a shader before it is initialized.
+     */
+    private static Shader shader(String name) throws IOException {
+        try {
+            Class<?> type = Class.forName(name, false, RenderWorker.class.getClassLoader());
+            if (!Shader.class.isAssignableFrom(type))
+                throw new IOException("Not a shader: " + name);
+            return type.asSubclass(Shader.class).getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IOException("Cannot create the shader " + name, e);
+        }
+    }
+}
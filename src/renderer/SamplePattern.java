@@ -0,0 +1,282 @@
+package renderer;
+
+import primitives.Xoroshiro128;
+
+/**
+ * Pattern of the sample points of the rays through a pixel, on the unit square of the pixel.
+ * <p>
+ * All the patterns are deterministic: the points of a pixel depend on the image seed, the pixel and the
+ * sample indices only, so an image renders to the very same bits by any amount of threads in any order.
+ * Every pixel gets its own generator ({@link Xoroshiro128}), seeded by a hash of the seed and the pixel,
+ * so no generator is shared between threads.
+ * </p>
+ * <ul>
+ *     <li>{@link #RANDOM} - independent uniform points</li>
+ *     <li>{@link #STRATIFIED} - one point in each cell of a grid (jittered grid), or in each row and column
+ *     of a finer grid when the amount of points is not a square (Latin hypercube)</li>
+ *     <li>{@link #HALTON} and {@link #SOBOL} - low discrepancy sequences, spread evenly for every prefix,
+ *     so their points may be taken in batches; every pixel shifts the sequence by its own random offset
+ *     so neighbouring pixels do not repeat the same error</li>
+ *     <li>{@link #BLUE_NOISE} - the Sobol sequence shifted by a precomputed blue noise table instead of
+ *     random offsets, so the error left in the image is high frequency noise, less visible than white
+ *     noise at low sample counts</li>
+ * </ul>
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+public enum SamplePattern {
+    /**
+     * Independent uniform random points
+     */
+    RANDOM {
+        @Override
+        void generate(long seed, long pixel, int x, int y, int first, double[] points) {
+            for (int i = 0; i < points.length / 2; ++i) {
+                // a generator per sample index, so a sample does not depend on the batches
+                Xoroshiro128 random = new Xoroshiro128(pixel + first + i);
+                points[2 * i] = random.nextDouble();
+                points[2 * i + 1] = random.nextDouble();
+            }
+        }
+    },
+    /**
+     * Jittered grid - or Latin hypercube when the amount of points is not a square. The points of every batch
+     * are stratified among themselves.
+     */
+    STRATIFIED {
+        @Override
+        void generate(long seed, long pixel, int x, int y, int first, double[] points) {
+            int n = points.length / 2, side = (int) Math.round(Math.sqrt(n));
+            Xoroshiro128 random = new Xoroshiro128(Xoroshiro128.mix(pixel ^ first));
+            if (side * side == n) {
+                for (int i = 0; i < n; ++i) {
+                    points[2 * i] = below1((i % side + random.nextDouble()) / side);
+                    points[2 * i + 1] = below1((i / side + random.nextDouble()) / side);
+                }
+                return;
+            }
+            // a random permutation of the rows: every column and every row of the n x n grid gets one point
+            int[] rows = new int[n];
+            for (int i = 0; i < n; ++i)
+                rows[i] = i;
+            for (int i = n - 1; i > 0; --i) {
+                int j = random.nextInt(i + 1), swap = rows[i];
+                rows[i] = rows[j];
+                rows[j] = swap;
+            }
+            for (int i = 0; i < n; ++i) {
+                points[2 * i] = below1((i + random.nextDouble()) / n);
+                points[2 * i + 1] = below1((rows[i] + random.nextDouble()) / n);
+            }
+        }
+    },
+    /**
+     * Halton sequence in bases 2 and 3, shifted per pixel
+     */
+    HALTON {
+        @Override
+        void generate(long seed, long pixel, int x, int y, int first, double[] points) {
+            double shiftX = unit(Xoroshiro128.mix(pixel)), shiftY = unit(Xoroshiro128.mix(~pixel));
+            for (int i = 0; i < points.length / 2; ++i) {
+                points[2 * i] = wrap(radicalInverse(first + i, 2) + shiftX);
+                points[2 * i + 1] = wrap(radicalInverse(first + i, 3) + shiftY);
+            }
+        }
+    },
+    /**
+     * The first two dimensions of the Sobol sequence, scrambled per pixel by a random digital shift, which
+     * keeps every 2<sup>k</sup> aligned points one in each of 2<sup>k</sup> equal boxes of any proportion
+     */
+    SOBOL {
+        @Override
+        void generate(long seed, long pixel, int x, int y, int first, double[] points) {
+            long shift = Xoroshiro128.mix(pixel);
+            for (int i = 0; i < points.length / 2; ++i) {
+                points[2 * i] = bits(Integer.reverse(first + i) ^ (int) shift);
+                points[2 * i + 1] = bits(sobol(first + i) ^ (int) (shift >>> 32));
+            }
+        }
+    },
+    /**
+     * The Sobol sequence, shifted per pixel by a 64x64 blue noise tile repeated over the image
+     */
+    BLUE_NOISE {
+        @Override
+        void generate(long seed, long pixel, int x, int y, int first, double[] points) {
+            // the seed moves the tile, so different seeds give different images
+            int offset = (int) Xoroshiro128.mix(~seed), tx = x + offset, ty = y + (offset >>> 8);
+            float[] table = BlueNoise.TABLE;
+            int half = BlueNoise.SIDE / 2, mask = BlueNoise.SIDE - 1;
+            double shiftX = table[(ty & mask) * BlueNoise.SIDE + (tx & mask)];
+            double shiftY = table[((ty + half) & mask) * BlueNoise.SIDE + ((tx + half) & mask)];
+            for (int i = 0; i < points.length / 2; ++i) {
+                points[2 * i] = wrap(bits(Integer.reverse(first + i)) + shiftX);
+                points[2 * i + 1] = wrap(bits(sobol(first + i)) + shiftY);
+            }
+        }
+    };
+
+    /**
+     * Generates the points of a range of samples of a pixel.
+     *
+     * @param seed   the seed of the image
+     * @param pixel  the hash of the seed and the pixel
+     * @param x      the pixel column
+     * @param y      the pixel row
+     * @param first  the index of the first sample
+     * @param points the target, 2 numbers (x, y) per sample
+     */
+    abstract void generate(long seed, long pixel, int x, int y, int first, double[] points);
+
+    /**
+     * Computes the sample points of a range of samples of a pixel, in [0, 1) x [0, 1).
+     *
+     * @param seed   the seed of the image
+     * @param x      the pixel column
+     * @param y      the pixel row
+     * @param first  the index of the first sample - for patterns taken in batches
+     * @param points the target, filled with 2 numbers (x, y) for each of its length / 2 samples
+     * @throws IllegalArgumentException if the first index is negative or the target length is odd
+     */
+    public void points(long seed, int x, int y, int first, double[] points) {
+        if (first < 0 || points.length % 2 != 0)
+            throw new IllegalArgumentException("Illegal sample range from " + first + " of " + points.length / 2);
+        long pixel = Xoroshiro128.mix(Xoroshiro128.mix(seed) ^ ((long) x << 32 | y & 0xFFFFFFFFL));
+        generate(seed, pixel, x, y, first, points);
+    }
+
+    private static double unit(long bits) {
+        return (bits >>> 11) * 0x1p-53;
+    }
+
+    private static double bits(int bits) {
+        return (bits & 0xFFFFFFFFL) * 0x1p-32;
+    }
+
+    private static double below1(double value) {
+        return value < 1 ? value : Math.nextDown(1.0);
+    }
+
+    private static double wrap(double value) {
+        return value >= 1 ? value - 1 : value;
+    }
+
+    /**
+     * Mirrors the digits of a number in a base around the radix point.
+     */
+    private static double radicalInverse(int index, int base) {
+        double result = 0, scale = 1.0 / base;
+        for (int i = index; i > 0; i /= base, scale /= base)
+            result += i % base * scale;
+        return result;
+    }
+
+    /**
+     * The second dimension of the Sobol sequence (primitive polynomial x + 1), as 32 bits after the radix point.
+     */
+    static int sobol(int index) {
+        int result = 0;
+        for (int v = 1 << 31; index != 0; index >>>= 1, v ^= v >>> 1)
+            if ((index & 1) != 0) result ^= v;
+        return result;
+    }
+
+    /**
+     * A blue noise tile by the void and cluster method (Ulichney, 1993), computed on first use.
+     * <p>
+     * Every cell gets a rank: the cells are added to a binary pattern one by one, each time into the largest
+     * void - the empty cell least covered by a Gaussian around the cells already in - and removed from the
+     * initial pattern one by one from the tightest cluster. Thresholding the ranks at any level thus gives an
+     * evenly spread pattern, and the values of neighbouring cells are far apart.
+     * </p>
+     */
+    private static final class BlueNoise {
+        /**
+         * Side of the tile, a power of 2
+         */
+        static final int SIDE = 64;
+        /**
+         * Standard deviation of the Gaussian, in cells
+         */
+        private static final double SIGMA = 1.5;
+        /**
+         * The values of the cells, (rank + 0.5) / cells - all different, evenly spread in [0, 1)
+         */
+        static final float[] TABLE = generate();
+
+        private static float[] generate() {
+            int cells = SIDE * SIDE, mask = SIDE - 1;
+            // the Gaussian of every offset, wrapping around the tile
+            double[] gauss = new double[cells];
+            for (int dy = 0; dy < SIDE; ++dy)
+                for (int dx = 0; dx < SIDE; ++dx) {
+                    int wx = Math.min(dx, SIDE - dx), wy = Math.min(dy, SIDE - dy);
+                    gauss[dy * SIDE + dx] = Math.exp(-(wx * wx + wy * wy) / (2 * SIGMA * SIGMA));
+                }
+            boolean[] on = new boolean[cells];
+            double[] energy = new double[cells];
+            // a random initial pattern of a tenth of the cells, relaxed by moving the tightest cluster into the
+            // largest void until they are the same cell
+            Xoroshiro128 random = new Xoroshiro128(SIDE);
+            int ones = 0;
+            while (ones < cells / 10) {
+                int cell = random.nextInt(cells);
+                if (!on[cell]) {
+                    toggle(on, energy, gauss, cell, mask);
+                    ++ones;
+                }
+            }
+            for (int i = 0; i < cells; ++i) {
+                int cluster = extreme(on, energy, true);
+                toggle(on, energy, gauss, cluster, mask);
+                int gap = extreme(on, energy, false);
+                toggle(on, energy, gauss, gap, mask);
+                if (gap == cluster) break;
+            }
+            int[] rank = new int[cells];
+            boolean[] prototype = on.clone();
+            double[] prototypeEnergy = energy.clone();
+            // the initial cells are ranked by removing them, the others by adding them
+            for (int r = ones - 1; r >= 0; --r) {
+                int cluster = extreme(on, energy, true);
+                toggle(on, energy, gauss, cluster, mask);
+                rank[cluster] = r;
+            }
+            on = prototype;
+            energy = prototypeEnergy;
+            for (int r = ones; r < cells; ++r) {
+                int gap = extreme(on, energy, false);
+                toggle(on, energy, gauss, gap, mask);
+                rank[gap] = r;
+            }
+            float[] table = new float[cells];
+            for (int i = 0; i < cells; ++i)
+                table[i] = (rank[i] + 0.5f) / cells;
+            return table;
+        }
+
+        /**
+         * Turns a cell on or off, updating the energy of all the cells.
+         */
+        private static void toggle(boolean[] on, double[] energy, double[] gauss, int cell, int mask) {
+            on[cell] = !on[cell];
+            double sign = on[cell] ? 1 : -1;
+            int cx = cell % SIDE, cy = cell / SIDE;
+            for (int y = 0; y < SIDE; ++y)
+                for (int x = 0; x < SIDE; ++x)
+                    energy[y * SIDE + x] += sign * gauss[((y - cy) & mask) * SIDE + ((x - cx) & mask)];
+        }
+
+        /**
+         * Finds the tightest cluster - the cell on with the most energy - or the largest void - the cell
+         * off with the least energy.
+         */
+        private static int extreme(boolean[] on, double[] energy, boolean cluster) {
+            int best = -1;
+            for (int i = 0; i < on.length; ++i)
+                if (on[i] == cluster && (best < 0 || (cluster ? energy[i] > energy[best] : energy[i] < energy[best])))
+                    best = i;
+            return best;
+        }
+    }
+}
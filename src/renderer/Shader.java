@@ -0,0 +1,20 @@
+package renderer;
+
+import geometries.Intersection;
+import primitives.Color;
+
+/**
+ * Color of the closest hit of a primary ray.
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+@FunctionalInterface
+public interface Shader {
+    /**
+     * Computes the color seen along a ray.
+     *
+     * @param hit the closest hit of the ray, or null if the ray hits nothing
+     * @return the color
+     */
+    Color shade(Intersection hit);
+}
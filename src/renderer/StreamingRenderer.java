@@ -0,0 +1,221 @@
+package renderer;
+
+import geometries.CompiledScene;
+import geometries.Intersectable;
+import geometries.RayPacket;
+import primitives.Color;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Class StreamingRenderer renders images too large to be held in memory, band by band.
+ * <p>
+ * The image is split into bands of whole rows. The render threads of the camera take the bands in order,
+ * each into one of a fixed amount of band buffers, and hand the completed bands to the calling thread,
+ * which passes them to a {@link BandSink} in order - e.g. appends them to an image file - and then returns
+ * the buffers for reuse. A render thread that finds no free buffer waits, so the renderers are never more
+ * than the amount of buffers ahead of the sink, and the memory is that many bands whatever the image size.
+ * </p>
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+public final class StreamingRenderer {
+    /**
+     * Receiver of the completed bands, in order.
+     */
+    @FunctionalInterface
+    public interface BandSink {
+        /**
+         * Receives a band. The buffer is reused for later bands once the call returns.
+         *
+         * @param firstRow the first row of the band
+         * @param rows     the amount of rows in the band
+         * @param pixels   the pixels of the band, row by row, 3 bytes (red, green, blue) per pixel,
+         *                 positioned at the first one
+         * @throws IOException if the band cannot be passed on
+         */
+        void accept(int firstRow, int rows, ByteBuffer pixels) throws IOException;
+    }
+
+    /**
+     * A band buffer with the band it holds
+     */
+    private static final class Band {
+        private final ByteBuffer pixels;
+        private int index;
+
+        private Band(int bytes) {
+            pixels = ByteBuffer.allocateDirect(bytes);
+        }
+    }
+
+    /**
+     * Marks the failure of a render thread in the queue of completed bands
+     */
+    private static final Band FAILED = new Band(0);
+
+    private final Camera camera;
+    private final CompiledScene scene;
+    private final Shader shader;
+
+    /**
+     * Constructs a streaming renderer.
+     *
+     * @param camera the camera, with its resolution set; its threads, packet size and pixel order are used
+     * @param scene  the scene - only its part visible to the camera is traced
+     * @param shader the color of the hits
+     * @throws IllegalStateException if the resolution of the camera is not set
+     */
+    public StreamingRenderer(Camera camera, Intersectable scene, Shader shader) {
+        if (camera.getNX() <= 0 || camera.getNY() <= 0)
+            throw new IllegalStateException("Resolution is not set");
+        this.camera = camera;
+        this.scene = camera.visibleSet(scene);
+        this.shader = shader;
+    }
+
+    /**
+     * Renders the image into a binary PPM (P6) file, appending every band as soon as it and all
+     * the bands above it are done.
+     *
+     * @param file       the file
+     * @param bandHeight the amount of rows in a band
+     * @param buffers    the amount of band buffers - the most bands held in memory
+     * @throws IOException if writing fails
+     */
+    public void renderPpm(Path file, int bandHeight, int buffers) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            String header = "P6\n" + camera.getNX() + " " + camera.getNY() + "\n255\n";
+            writeFully(channel, ByteBuffer.wrap(header.getBytes(StandardCharsets.US_ASCII)));
+            render(bandHeight, buffers, (firstRow, rows, pixels) -> writeFully(channel, pixels));
+        }
+    }
+
+    /**
+     * Renders the image into a PNG file. The bands are compressed by a {@link PngEncoder} in its own
+     * threads, while the render threads go on with the next bands.
+     *
+     * @param file       the file
+     * @param bandHeight the amount of rows in a band
+     * @param buffers    the amount of band buffers - the most bands held in memory
+     * @param encoders   the amount of compression threads
+     * @throws IOException if writing fails
+     */
+    public void renderPng(Path file, int bandHeight, int buffers, int encoders) throws IOException {
+        try (PngEncoder encoder = new PngEncoder(file, camera.getNX(), camera.getNY(), encoders)) {
+            render(bandHeight, buffers, encoder);
+        }
+    }
+
+    /**
+     * Renders the image band by band into a sink.
+     *
+     * @param bandHeight the amount of rows in a band
+     * @param buffers    the amount of band buffers - the most bands held in memory
+     * @param sink       the receiver of the bands, called in the calling thread in band order
+     * @throws IOException              if the sink fails
+     * @throws IllegalArgumentException if the band height or the amount of buffers is not positive,
+     *                                  or a band is larger than 2GB
+     */
+    public void render(int bandHeight, int buffers, BandSink sink) throws IOException {
+        int nX = camera.getNX(), nY = camera.getNY();
+        if (bandHeight <= 0 || buffers <= 0 || (long) 3 * nX * bandHeight > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Illegal band height " + bandHeight + " or buffers " + buffers);
+        int bands = (nY + bandHeight - 1) / bandHeight;
+        BlockingQueue<Band> free = new ArrayBlockingQueue<>(buffers);
+        for (int b = 0; b < Math.min(buffers, bands); ++b)
+            free.add(new Band(3 * nX * Math.min(bandHeight, nY)));
+        BlockingQueue<Band> completed = new ArrayBlockingQueue<>(buffers + camera.getThreads());
+        AtomicInteger next = new AtomicInteger();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Runnable worker = () -> {
+            RayPacket packet = camera.getPacketSize() == 1 ? null : new RayPacket();
+            try {
+                while (true) {
+                    // a free buffer first, then a band - the bands are taken in order as the buffers are freed
+                    Band band = free.take();
+                    int index = next.getAndIncrement();
+                    if (index >= bands) {
+                        free.put(band);
+                        return;
+                    }
+                    band.index = index;
+                    int firstRow = index * bandHeight;
+                    camera.traceRegion(scene, 0, firstRow, nX, bandHeight, packet, (column, row, hit) -> {
+                        Color color = shader.shade(hit);
+                        int offset = 3 * ((row - firstRow) * nX + column);
+                        band.pixels.put(offset, channel(color.getR()))
+                                .put(offset + 1, channel(color.getG()))
+                                .put(offset + 2, channel(color.getB()));
+                    });
+                    completed.put(band);
+                }
+            } catch (InterruptedException e) {
+                // the render was aborted
+            } catch (RuntimeException | Error e) {
+                failure.compareAndSet(null, e);
+                completed.offer(FAILED);
+            }
+        };
+        Thread[] workers = new Thread[Math.max(1, Math.min(camera.getThreads(), bands))];
+        for (int t = 0; t < workers.length; ++t) {
+            workers[t] = new Thread(worker, "band-render-" + t);
+            workers[t].start();
+        }
+
+        // the bands come in any order; pass them on in order
+        Map<Integer, Band> pending = new HashMap<>();
+        try {
+            for (int index = 0; index < bands; ++index) {
+                Band band = pending.remove(index);
+                while (band == null) {
+                    Band done = completed.take();
+                    if (done == FAILED) {
+                        if (failure.get() instanceof Error e) throw e;
+                        throw (RuntimeException) failure.get();
+                    }
+                    if (done.index == index) band = done;
+                    else pending.put(done.index, done);
+                }
+                int firstRow = index * bandHeight, rows = Math.min(bandHeight, nY - firstRow);
+                band.pixels.clear().limit(3 * nX * rows);
+                sink.accept(firstRow, rows, band.pixels);
+                free.put(band);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while rendering", e);
+        } finally {
+            for (Thread thread : workers)
+                thread.interrupt();
+            for (Thread thread : workers)
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+        }
+    }
+
+    private static byte channel(double value) {
+        return (byte) Math.max(0, Math.min(255, Math.round(value)));
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+}
@@ -0,0 +1,336 @@
+package renderer;
+
+import geometries.CompiledScene;
+import geometries.Intersectable;
+import geometries.RayBatch;
+import geometries.RayCastService;
+import primitives.Color;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntConsumer;
+
+/**
+ * Class WavefrontRenderer renders an image of a camera by stages instead of following every pixel
+ * through all the steps on its own.
+ * <p>
+ * Each stage drains the whole queue of the previous one - kept in flat arrays of numbers - before the
+ * next stage starts, so every stage runs one small piece of code over a large amount of work:
+ * </p>
+ * <ol>
+ *     <li>{@link Stage#GENERATION} - the primary ray of every pixel</li>
+ *     <li>{@link Stage#CLOSEST_HIT} - the closest hit of every primary ray</li>
+ *     <li>{@link Stage#SHADING} - the ambient light of every hit and a shadow ray to every light it faces</li>
+ *     <li>{@link Stage#SHADOW} - an any-hit test of every shadow ray</li>
+ *     <li>{@link Stage#ACCUMULATION} - the diffuse (Lambert) light of the unblocked shadow rays</li>
+ * </ol>
+ * <p>
+ * Every stage is processed in parallel; the tracing stages by a {@link RayCastService}. The time of each
+ * stage is measured, so the bottleneck stage of a scene can be found.
+ * </p>
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+public final class WavefrontRenderer implements AutoCloseable {
+    /**
+     * Amount of pixels in a unit of parallel work of the shading stages
+     */
+    private static final int CHUNK = 1024;
+    /**
+     * Distance to move the head of a shadow ray off the surface, so it does not hit the surface itself
+     */
+    private static final double DELTA = 1e-6;
+
+    /**
+     * The stages of the pipeline, in order
+     */
+    public enum Stage {
+        /**
+         * Ray generation
+         */
+        GENERATION,
+        /**
+         * Closest hit of the primary rays
+         */
+        CLOSEST_HIT,
+        /**
+         * Shading of the hits and generation of the shadow rays
+         */
+        SHADING,
+        /**
+         * Any-hit of the shadow rays
+         */
+        SHADOW,
+        /**
+         * Accumulation of the light into the image
+         */
+        ACCUMULATION
+    }
+
+    /**
+     * A point light source.
+     *
+     * @param position  the position of the light
+     * @param intensity the intensity of the light
+     */
+    private record Light(Point position, Color intensity) {
+    }
+
+    private final Camera camera;
+    private final RayCastService service;
+    private final ForkJoinPool pool;
+    private final List<Light> lights = new ArrayList<>();
+    private Color ambient = Color.BLACK;
+    private Color background = Color.BLACK;
+    private final long[] stageNanos = new long[Stage.values().length];
+
+    /**
+     * Constructs a renderer.
+     *
+     * @param camera  the camera, with its resolution set
+     * @param scene   the scene - a compiled scene, a geometries collection (compiled) or any geometry
+     * @param threads the amount of worker threads
+     * @throws IllegalArgumentException if the amount of threads is not positive
+     * @throws IllegalStateException    if the resolution of the camera is not set
+     */
+    public WavefrontRenderer(Camera camera, Intersectable scene, int threads) {
+        if (camera.getNX() <= 0 || camera.getNY() <= 0)
+            throw new IllegalStateException("Resolution is not set");
+        this.camera = camera;
+        this.service = new RayCastService(Camera.compile(scene), threads);
+        this.pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Adds a point light source.
+     *
+     * @param position  the position of the light
+     * @param intensity the intensity of the light
+     * @return the renderer itself
+     */
+    public WavefrontRenderer addLight(Point position, Color intensity) {
+        lights.add(new Light(position, intensity));
+        return this;
+    }
+
+    /**
+     * Sets the ambient light, added to every hit.
+     *
+     * @param ambient the ambient light
+     * @return the renderer itself
+     */
+    public WavefrontRenderer setAmbient(Color ambient) {
+        this.ambient = ambient;
+        return this;
+    }
+
+    /**
+     * Sets the color of the pixels whose ray hits nothing.
+     *
+     * @param background the background color
+     * @return the renderer itself
+     */
+    public WavefrontRenderer setBackground(Color background) {
+        this.background = background;
+        return this;
+    }
+
+    /**
+     * Renders the image.
+     *
+     * @return the pixel colors, 3 numbers (red, green, blue) per pixel, row by row
+     */
+    public double[] render() {
+        return trace(null);
+    }
+
+    /**
+     * Renders the image into a frame buffer. The accumulation stage writes the final colors of its
+     * chunks into the buffer in parallel.
+     *
+     * @param target the frame buffer, of the camera resolution
+     * @throws IllegalArgumentException if the frame buffer size differs from the camera resolution
+     */
+    public void render(FrameBuffer target) {
+        if (target.getWidth() != camera.getNX() || target.getHeight() != camera.getNY())
+            throw new IllegalArgumentException("Frame buffer size differs from the camera resolution");
+        trace(target);
+    }
+
+    /**
+     * Runs the stages of a render.
+     *
+     * @param target the frame buffer to write the final colors into, or null
+     * @return the pixel colors, 3 numbers per pixel
+     */
+    private double[] trace(FrameBuffer target) {
+        int nX = camera.getNX(), nY = camera.getNY(), pixels = nX * nY, lightCount = lights.size();
+        CompiledScene scene = service.getScene();
+
+        long start = System.nanoTime();
+        RayBatch primary = new RayBatch(pixels);
+        parallel(pixels, chunk -> {
+            for (int p = chunk * CHUNK; p < Math.min(pixels, (chunk + 1) * CHUNK); ++p) {
+                Ray ray = camera.constructRay(nX, nY, p % nX, p / nX);
+                Point head = ray.getp1();
+                Vector dir = ray.getDirection();
+                primary.set(p, head.getX(), head.getY(), head.getZ(), dir.getX(), dir.getY(), dir.getZ(),
+                        Double.POSITIVE_INFINITY);
+            }
+        });
+        primary.setSize(pixels);
+        start = lap(Stage.GENERATION, start);
+
+        double[] distances = new double[pixels];
+        int[] ids = new int[pixels];
+        service.castClosest(primary, distances, ids);
+        start = lap(Stage.CLOSEST_HIT, start);
+
+        // shading: the ambient light of every pixel, then the shadow rays of every chunk at its own offset
+        double[] image = new double[3 * pixels];
+        double[] surface = new double[6 * pixels]; // point and facing normal of every hit
+        int chunks = (pixels + CHUNK - 1) / CHUNK;
+        int[] offsets = new int[chunks + 1];
+        parallel(pixels, chunk -> {
+            int count = 0;
+            for (int p = chunk * CHUNK; p < Math.min(pixels, (chunk + 1) * CHUNK); ++p) {
+                if (ids[p] < 0) {
+                    put(image, p, background.getR(), background.getG(), background.getB());
+                    continue;
+                }
+                put(image, p, ambient.getR(), ambient.getG(), ambient.getB());
+                Ray ray = primary.getRay(p);
+                Point point = ray.getPoint(distances[p]);
+                Vector normal = scene.getNormal(ids[p], point);
+                if (normal == null) {
+                    ids[p] = -1; // no normal - ambient light only
+                    continue;
+                }
+                if (normal.dotProduct(ray.getDirection()) > 0) normal = normal.scale(-1);
+                int s = 6 * p;
+                surface[s] = point.getX();
+                surface[s + 1] = point.getY();
+                surface[s + 2] = point.getZ();
+                surface[s + 3] = normal.getX();
+                surface[s + 4] = normal.getY();
+                surface[s + 5] = normal.getZ();
+                for (Light light : lights)
+                    if (facing(surface, s, light)) ++count;
+            }
+            offsets[chunk + 1] = count;
+        });
+        for (int c = 0; c < chunks; ++c)
+            offsets[c + 1] += offsets[c];
+        RayBatch shadows = new RayBatch(Math.max(1, offsets[chunks]));
+        int[] owners = new int[offsets[chunks]];
+        double[] light = new double[3 * offsets[chunks]];
+        parallel(pixels, chunk -> {
+            int r = offsets[chunk];
+            for (int p = chunk * CHUNK; p < Math.min(pixels, (chunk + 1) * CHUNK); ++p) {
+                if (ids[p] < 0) continue;
+                int s = 6 * p;
+                for (int l = 0; l < lightCount; ++l) {
+                    Light source = lights.get(l);
+                    if (!facing(surface, s, source)) continue;
+                    double hx = surface[s] + DELTA * surface[s + 3], hy = surface[s + 1] + DELTA * surface[s + 4],
+                            hz = surface[s + 2] + DELTA * surface[s + 5];
+                    double lx = source.position().getX() - hx, ly = source.position().getY() - hy,
+                            lz = source.position().getZ() - hz;
+                    double length = Math.sqrt(lx * lx + ly * ly + lz * lz);
+                    double diffuse = (lx * surface[s + 3] + ly * surface[s + 4] + lz * surface[s + 5]) / length;
+                    shadows.set(r, hx, hy, hz, lx, ly, lz, length);
+                    owners[r] = p;
+                    light[3 * r] = source.intensity().getR() * diffuse;
+                    light[3 * r + 1] = source.intensity().getG() * diffuse;
+                    light[3 * r + 2] = source.intensity().getB() * diffuse;
+                    ++r;
+                }
+            }
+        });
+        shadows.setSize(offsets[chunks]);
+        start = lap(Stage.SHADING, start);
+
+        boolean[] occluded = new boolean[shadows.size()];
+        service.castOcclusion(shadows, occluded);
+        start = lap(Stage.SHADOW, start);
+
+        // the shadow rays of a chunk belong to its own pixels, so the chunks add to the image independently
+        parallel(pixels, chunk -> {
+            for (int r = offsets[chunk]; r < offsets[chunk + 1]; ++r)
+                if (!occluded[r])
+                    for (int k = 0; k < 3; ++k)
+                        image[3 * owners[r] + k] += light[3 * r + k];
+            if (target != null)
+                for (int p = chunk * CHUNK; p < Math.min(pixels, (chunk + 1) * CHUNK); ++p)
+                    target.setPixel(p % nX, p / nX, image[3 * p] / 255, image[3 * p + 1] / 255, image[3 * p + 2] / 255);
+        });
+        lap(Stage.ACCUMULATION, start);
+        return image;
+    }
+
+    /**
+     * Checks whether a hit faces a light - the light is on the side of its normal.
+     */
+    private static boolean facing(double[] surface, int s, Light light) {
+        Point position = light.position();
+        return (position.getX() - surface[s]) * surface[s + 3] + (position.getY() - surface[s + 1]) * surface[s + 4]
+                + (position.getZ() - surface[s + 2]) * surface[s + 5] > 0;
+    }
+
+    private static void put(double[] image, int pixel, double r, double g, double b) {
+        image[3 * pixel] = r;
+        image[3 * pixel + 1] = g;
+        image[3 * pixel + 2] = b;
+    }
+
+    /**
+     * Runs a body over the chunks of a range of pixels in parallel and waits for all of them.
+     *
+     * @param pixels the amount of pixels
+     * @param body   the body, receiving the chunk index
+     */
+    private void parallel(int pixels, IntConsumer body) {
+        int chunks = (pixels + CHUNK - 1) / CHUNK;
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(chunks);
+        for (int c = 0; c < chunks; ++c) {
+            int chunk = c;
+            tasks.add(pool.submit(() -> body.accept(chunk)));
+        }
+        for (ForkJoinTask<?> task : tasks)
+            task.join();
+    }
+
+    private long lap(Stage stage, long start) {
+        long now = System.nanoTime();
+        stageNanos[stage.ordinal()] += now - start;
+        return now;
+    }
+
+    /**
+     * Returns the total time spent in each stage by all the renders so far.
+     *
+     * @return the nanoseconds per stage, in stage order
+     */
+    public Map<Stage, Long> getStageNanos() {
+        Map<Stage, Long> nanos = new EnumMap<>(Stage.class);
+        for (Stage stage : Stage.values())
+            nanos.put(stage, stageNanos[stage.ordinal()]);
+        return nanos;
+    }
+
+    /**
+     * Stops the worker threads.
+     */
+    @Override
+    public void close() {
+        service.close();
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,107 @@
+package benchmark;
+
+import geometries.CompiledScene;
+import geometries.Geometries;
+import geometries.Intersection;
+import geometries.Sphere;
+import geometries.Triangle;
+import primitives.Color;
+import primitives.Point;
+import primitives.Vector;
+import renderer.Camera;
+import renderer.Shader;
+
+import static java.lang.System.out;
+
+/**
+ * Benchmark of adaptive supersampling ({@link Camera#renderAdaptive}) against uniform supersampling.
+ * <p>
+ * Renders a floor with a grid of spheres, lit by a directional light, with N x N rays through the subpixel
+ * centers of every pixel, and adaptively at the same subpixel depth with a few thresholds. Prints the time,
+ * the rays per pixel and the RMS error of each image from a 16 x 16 uniform reference.
+ * </p>
+ * Run with: {@code java benchmark.AdaptiveBenchmark [resolution] [depth]}
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+public final class AdaptiveBenchmark {
+
+    private AdaptiveBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional image resolution and subpixel depth
+     */
+    public static void main(String[] args) {
+        int resolution = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        Geometries geometries = new Geometries(new Triangle(new Point(-200, -100, 0), new Point(200, -100, 0),
+                new Point(0, 300, 0)));
+        for (int i = 0; i < 5; ++i)
+            for (int j = 0; j < 5; ++j)
+                geometries.add(new Sphere(new Point(8 * j - 16, 8 * i, 2 + i % 3), 2 + (i + j) % 3));
+        CompiledScene scene = geometries.compile();
+        Vector light = new Vector(1, -1, 2).normalize();
+        Shader shader = hit -> {
+            if (hit == null) return new Color(40, 60, 120);
+            double lambert = Math.max(0, hit.getNormal().dotProduct(light));
+            return hit.getGeometry() instanceof Sphere ? new Color(230, 60, 40).scale(0.2 + 0.8 * lambert)
+                    : new Color(200, 200, 200).scale(0.2 + 0.8 * lambert);
+        };
+        Camera camera = new Camera.Builder(new Point(0, -60, 30), new Vector(0, 2, -1), new Vector(0, 1, 2))
+                .setVPSize(16, 16).setVPDistance(12).setResolution(resolution, resolution).build();
+        out.printf("%d primitives, %dx%d pixels, depth %d%n", scene.size(), resolution, resolution, depth);
+
+        double[] reference = uniform(camera, scene, shader, 16);
+        int n = 1 << depth;
+        long start = System.nanoTime();
+        double[] image = uniform(camera, scene, shader, n);
+        report("uniform " + n + "x" + n, System.nanoTime() - start, (double) n * n, image, reference);
+        for (double threshold : new double[]{4, 16, 48}) {
+            Camera adaptive = new Camera.Builder(new Point(0, -60, 30), new Vector(0, 2, -1), new Vector(0, 1, 2))
+                    .setVPSize(16, 16).setVPDistance(12).setResolution(resolution, resolution)
+                    .setAdaptiveSampling(depth, threshold).build();
+            double[] result = new double[3 * resolution * resolution];
+            start = System.nanoTime();
+            long rays = adaptive.renderAdaptive(scene, shader, (column, row, color) -> {
+                int p = 3 * (row * resolution + column);
+                result[p] = color.getR();
+                result[p + 1] = color.getG();
+                result[p + 2] = color.getB();
+            });
+            report("adaptive " + threshold, System.nanoTime() - start, (double) rays / resolution / resolution,
+                    result, reference);
+        }
+    }
+
+    /**
+     * Renders with n x n rays through the subpixel centers of every pixel.
+     */
+    private static double[] uniform(Camera camera, CompiledScene scene, Shader shader, int n) {
+        int nX = camera.getNX(), nY = camera.getNY();
+        double[] image = new double[3 * nX * nY];
+        for (int y = 0; y < nY; ++y)
+            for (int x = 0; x < nX; ++x)
+                for (int i = 0; i < n; ++i)
+                    for (int j = 0; j < n; ++j) {
+                        Intersection hit = scene.calculateClosestIntersection(
+                                camera.constructSampleRay(nX, nY, x + (j + 0.5) / n, y + (i + 0.5) / n));
+                        Color color = shader.shade(hit);
+                        int p = 3 * (y * nX + x);
+                        image[p] += color.getR() / (n * n);
+                        image[p + 1] += color.getG() / (n * n);
+                        image[p + 2] += color.getB() / (n * n);
+                    }
+        return image;
+    }
+
+    private static void report(String name, long nanos, double raysPerPixel, double[] image, double[] reference) {
+        double sum = 0;
+        for (int i = 0; i < image.length; ++i)
+            sum += (image[i] - reference[i]) * (image[i] - reference[i]);
+        out.printf("%-14s %8.1f ms %6.2f rays/pixel RMS error %5.2f%n", name, nanos / 1e6, raysPerPixel,
+                Math.sqrt(sum / image.length));
+    }
+}
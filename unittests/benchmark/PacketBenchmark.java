@@ -0,0 +1,52 @@
+package benchmark;
+
+import geometries.CompiledScene;
+import primitives.Point;
+import primitives.Vector;
+import renderer.Camera;
+
+import static java.lang.System.out;
+
+/**
+ * Benchmark of primary ray tracing in packets ({@link geometries.RayPacket}).
+ * <p>
+ * Traces the primary rays of a camera looking down at the height field scene of {@link PrecisionBenchmark}
+ * one by one and in 2x2, 4x4 and 8x8 packets, and prints the time and throughput of each run.
+ * </p>
+ * Run with: {@code java benchmark.PacketBenchmark [grid size] [resolution]}
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+public final class PacketBenchmark {
+
+    private PacketBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional grid size and image resolution
+     */
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        int resolution = args.length > 1 ? Integer.parseInt(args[1]) : 800;
+        CompiledScene scene = PrecisionBenchmark.heightField(n).compile();
+        out.printf("%d primitives, %dx%d pixels%n", scene.size(), resolution, resolution);
+        for (int size : new int[]{1, 2, 4, 8}) {
+            Camera camera = new Camera.Builder(new Point(0, -60, 40), new Vector(0, 1, -0.6), new Vector(0, 0.6, 1))
+                    .setVPSize(16, 16).setVPDistance(10).setResolution(resolution, resolution)
+                    .setPacketSize(size).build();
+            int[] hits = new int[1];
+            for (int warmup = 0; warmup < 2; ++warmup)
+                camera.traceRays(scene, (column, row, hit) -> {
+                });
+            long start = System.nanoTime();
+            camera.traceRays(scene, (column, row, hit) -> {
+                if (hit != null) ++hits[0];
+            });
+            long nanos = System.nanoTime() - start;
+            out.printf("packet %dx%d: %7.1f ms %6.2f Mrays/s (%d hits)%n", size, size, nanos / 1e6,
+                    (double) resolution * resolution * 1e3 / nanos, hits[0]);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package benchmark;
+
+import geometries.CompiledScene;
+import primitives.Point;
+import primitives.Vector;
+import renderer.Camera;
+import renderer.PixelOrder;
+
+import static java.lang.System.out;
+
+/**
+ * Benchmark of the pixel and tile orders ({@link PixelOrder}) of primary ray tracing.
+ * <p>
+ * Traces the primary rays of a camera looking at a large height field scene of {@link PrecisionBenchmark}
+ * in every order, with single rays and with 4x4 packets, and prints the time and throughput of each run.
+ * The JVM cannot read the hardware counters; for the cache misses behind the differences run it under
+ * {@code perf stat -e cache-references,cache-misses} with a single order given as the third argument.
+ * </p>
+ * Run with: {@code java benchmark.PixelOrderBenchmark [grid size] [resolution] [order]}
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+public final class PixelOrderBenchmark {
+
+    private PixelOrderBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional grid size, image resolution and a single order to run
+     */
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+        int resolution = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        PixelOrder[] orders = args.length > 2 ? new PixelOrder[]{PixelOrder.valueOf(args[2])} : PixelOrder.values();
+        CompiledScene scene = PrecisionBenchmark.heightField(n).compile();
+        int threads = Runtime.getRuntime().availableProcessors();
+        out.printf("%d primitives, %dx%d pixels, %d threads%n", scene.size(), resolution, resolution, threads);
+        for (int packet : new int[]{1, 4})
+            for (PixelOrder order : orders) {
+                Camera camera = new Camera.Builder(new Point(0, -60, 40), new Vector(0, 1, -0.6), new Vector(0, 0.6, 1))
+                        .setVPSize(16, 16).setVPDistance(10).setResolution(resolution, resolution)
+                        .setTileSize(32).setPixelOrder(order).setPacketSize(packet).setThreads(threads).build();
+                for (int warmup = 0; warmup < 2; ++warmup)
+                    camera.traceRays(scene, (column, row, hit) -> {
+                    });
+                long start = System.nanoTime();
+                camera.traceRays(scene, (column, row, hit) -> {
+                });
+                long nanos = System.nanoTime() - start;
+                out.printf("%-9s packet %dx%d: %7.1f ms %6.2f Mrays/s%n", order, packet, packet, nanos / 1e6,
+                        (double) resolution * resolution * 1e3 / nanos);
+            }
+    }
+}
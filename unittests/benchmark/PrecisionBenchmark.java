@@ -0,0 +1,103 @@
+package benchmark;
+
+import geometries.CompiledScene;
+import geometries.Geometries;
+import geometries.Sphere;
+import geometries.Triangle;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+import renderer.Camera;
+
+import static java.lang.System.out;
+
+/**
+ * Benchmark of the single precision storage mode of {@link CompiledScene}.
+ * <p>
+ * Compiles a height field mesh with scattered spheres in double and in single precision,
+ * prints the memory footprint of both and casts a grid of camera rays through both to measure
+ * the speed and the image difference: pixels that changed between hit and miss and the largest
+ * distance between the closest points.
+ * </p>
+ * Run with: {@code java benchmark.PrecisionBenchmark [grid size] [resolution]}
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+public final class PrecisionBenchmark {
+
+    private PrecisionBenchmark() {
+    }
+
+    /**
+     * Builds a wavy height field of 2*n*n triangles on the XY plane and n spheres above it.
+     *
+     * @param n the amount of grid cells along each axis
+     * @return the scene
+     */
+    static Geometries heightField(int n) {
+        Geometries scene = new Geometries();
+        Point[][] grid = new Point[n + 1][n + 1];
+        for (int i = 0; i <= n; ++i)
+            for (int j = 0; j <= n; ++j) {
+                double x = j * 100.0 / n - 50, y = i * 100.0 / n - 50;
+                grid[i][j] = new Point(x, y, 2 * Math.sin(x / 5) * Math.cos(y / 7));
+            }
+        for (int i = 0; i < n; ++i)
+            for (int j = 0; j < n; ++j) {
+                scene.add(new Triangle(grid[i][j], grid[i][j + 1], grid[i + 1][j + 1]));
+                scene.add(new Triangle(grid[i][j], grid[i + 1][j + 1], grid[i + 1][j]));
+            }
+        for (int k = 0; k < n; ++k)
+            scene.add(new Sphere(new Point(k * 97 % 100 - 50, k * 89 % 100 - 50, 4), 1.5));
+        return scene;
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional grid size and image resolution
+     */
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        int resolution = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+
+        Geometries geometries = heightField(n);
+        CompiledScene doubles = geometries.compile(CompiledScene.Precision.DOUBLE);
+        CompiledScene floats = geometries.compile(CompiledScene.Precision.SINGLE);
+        out.printf("primitives: %d%n", doubles.size());
+        out.printf("footprint DOUBLE: %,d bytes%n", doubles.memoryFootprint());
+        out.printf("footprint SINGLE: %,d bytes (%.1f%%)%n", floats.memoryFootprint(),
+                100.0 * floats.memoryFootprint() / doubles.memoryFootprint());
+
+        Camera camera = new Camera.Builder(new Point(0, -80, 60), new Vector(0, 4, -3), new Vector(0, 3, 4))
+                .setVPSize(100, 100).setVPDistance(100).build();
+        Point[] reference = new Point[resolution * resolution];
+        Point[] single = new Point[resolution * resolution];
+        for (int round = 0; round < 3; ++round) { // first rounds warm the JIT up
+            long start = System.nanoTime();
+            trace(camera, doubles, resolution, reference);
+            long middle = System.nanoTime();
+            trace(camera, floats, resolution, single);
+            long end = System.nanoTime();
+            out.printf("round %d: DOUBLE %d ms, SINGLE %d ms%n", round,
+                    (middle - start) / 1_000_000, (end - middle) / 1_000_000);
+        }
+
+        int changed = 0;
+        double maxDistance = 0;
+        for (int k = 0; k < reference.length; ++k) {
+            if ((reference[k] == null) != (single[k] == null)) ++changed;
+            else if (reference[k] != null) maxDistance = Math.max(maxDistance, reference[k].distance(single[k]));
+        }
+        out.printf("pixels changed hit/miss: %d of %d, max point difference: %.3g%n",
+                changed, reference.length, maxDistance);
+    }
+
+    private static void trace(Camera camera, CompiledScene scene, int resolution, Point[] image) {
+        for (int i = 0; i < resolution; ++i)
+            for (int j = 0; j < resolution; ++j) {
+                Ray ray = camera.constructRay(resolution, resolution, j, i);
+                image[i * resolution + j] = scene.findClosestIntersection(ray);
+            }
+    }
+}
@@ -0,0 +1,62 @@
+package benchmark;
+
+import geometries.CompiledScene;
+import geometries.RayBatch;
+import geometries.RayCastService;
+
+import java.util.Random;
+
+import static java.lang.System.out;
+
+/**
+ * Benchmark of batched ray queries by {@link RayCastService}.
+ * <p>
+ * Casts a batch of random rays over the height field scene of {@link PrecisionBenchmark}, both for the
+ * closest hit and for occlusion, with an increasing amount of threads, and prints the latency and
+ * throughput of each run.
+ * </p>
+ * Run with: {@code java benchmark.RayCastBenchmark [grid size] [rays]}
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+public final class RayCastBenchmark {
+
+    private RayCastBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional grid size and amount of rays
+     */
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        CompiledScene scene = PrecisionBenchmark.heightField(n).compile();
+        Random random = new Random(4423);
+        RayBatch batch = new RayBatch(size);
+        for (int i = 0; i < size; ++i)
+            batch.add(random.nextDouble() * 100 - 50, random.nextDouble() * 100 - 50, 10,
+                    random.nextDouble() - 0.5, random.nextDouble() - 0.5, -random.nextDouble(),
+                    random.nextDouble() * 30 + 1);
+        double[] distances = new double[size];
+        int[] ids = new int[size];
+        boolean[] occluded = new boolean[size];
+        out.printf("%d primitives, %d rays%n", scene.size(), size);
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= cores; threads *= 2)
+            try (RayCastService service = new RayCastService(scene, threads)) {
+                for (int warmup = 0; warmup < 2; ++warmup) {
+                    service.castClosest(batch, distances, ids);
+                    service.castOcclusion(batch, occluded);
+                }
+                RayCastService.BatchStatistics closest = service.castClosest(batch, distances, ids);
+                RayCastService.BatchStatistics occlusion = service.castOcclusion(batch, occluded);
+                out.printf("%2d threads: closest %7.1f ms %6.2f Mrays/s (%d hits), "
+                                + "occlusion %7.1f ms %6.2f Mrays/s (%d blocked)%n", threads,
+                        closest.nanos() / 1e6, closest.raysPerSecond() / 1e6, closest.hits(),
+                        occlusion.nanos() / 1e6, occlusion.raysPerSecond() / 1e6, occlusion.hits());
+            }
+    }
+}
@@ -0,0 +1,99 @@
+package benchmark;
+
+import geometries.CompiledScene;
+import geometries.RayCastService;
+import geometries.RayQueue;
+import primitives.Point;
+import primitives.Vector;
+import renderer.Camera;
+import renderer.PixelOrder;
+
+import java.util.Random;
+
+import static java.lang.System.out;
+
+/**
+ * Benchmark of sorting secondary rays ({@link RayQueue}).
+ * <p>
+ * Traces the primary rays of a camera over the height field scene of {@link PrecisionBenchmark}, queues a
+ * reflection ray and a shadow ray for every hit, and casts both queues with and without sorting, printing
+ * the throughput of each run (the sorted runs include the sorting and the scattering back). The queues are
+ * cast once as generated, in the coherent Hilbert order of the pixels, and once shuffled - like the rays
+ * of later bounces, whose order no longer follows the pixels.
+ * </p>
+ * Run with: {@code java benchmark.RayQueueBenchmark [grid size] [resolution]}
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+public final class RayQueueBenchmark {
+
+    private RayQueueBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional grid size and image resolution
+     */
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        int resolution = args.length > 1 ? Integer.parseInt(args[1]) : 800;
+        CompiledScene scene = PrecisionBenchmark.heightField(n).compile();
+        Camera camera = new Camera.Builder(new Point(0, -60, 40), new Vector(0, 1, -0.6), new Vector(0, 0.6, 1))
+                .setVPSize(16, 16).setVPDistance(10).setResolution(resolution, resolution)
+                .setTileSize(32).setPixelOrder(PixelOrder.HILBERT).build();
+        Point light = new Point(30, 20, 60);
+        RayQueue reflections = new RayQueue(resolution * resolution);
+        RayQueue shadows = new RayQueue(resolution * resolution);
+        camera.traceRays(scene, (column, row, hit) -> {
+            if (hit == null) return;
+            Vector normal = hit.getNormal();
+            Vector dir = hit.getRay().getDirection();
+            double dn = dir.dotProduct(normal);
+            if (dn > 0) normal = normal.scale(-1);
+            Point head = hit.getPoint().add(normal.scale(1e-4));
+            int pixel = row * resolution + column;
+            reflections.add(head.getX(), head.getY(), head.getZ(), dir.getX() - 2 * dn * normal.getX(),
+                    dir.getY() - 2 * dn * normal.getY(), dir.getZ() - 2 * dn * normal.getZ(),
+                    Double.POSITIVE_INFINITY, pixel);
+            Vector toLight = light.subtract(head);
+            shadows.add(head.getX(), head.getY(), head.getZ(), toLight.getX(), toLight.getY(), toLight.getZ(),
+                    toLight.length(), pixel);
+        });
+        int threads = Runtime.getRuntime().availableProcessors();
+        out.printf("%d primitives, %d reflection and %d shadow rays, %d threads%n", scene.size(), reflections.size(),
+                shadows.size(), threads);
+        try (RayCastService service = new RayCastService(scene, threads)) {
+            run("generated", reflections, shadows, service);
+            run("shuffled", shuffle(reflections), shuffle(shadows), service);
+        }
+    }
+
+    private static void run(String name, RayQueue reflections, RayQueue shadows, RayCastService service) {
+        double[] distances = new double[reflections.size()];
+        boolean[] occluded = new boolean[shadows.size()];
+        for (boolean sort : new boolean[]{false, true, false, true}) {
+            RayCastService.BatchStatistics closest = reflections.castClosest(service, distances, null, sort);
+            RayCastService.BatchStatistics occlusion = shadows.castOcclusion(service, occluded, sort);
+            out.printf("%-9s %-8s reflections %7.1f ms %6.2f Mrays/s, shadows %7.1f ms %6.2f Mrays/s%n", name,
+                    sort ? "sorted" : "unsorted", closest.nanos() / 1e6, closest.raysPerSecond() / 1e6,
+                    occlusion.nanos() / 1e6, occlusion.raysPerSecond() / 1e6);
+        }
+    }
+
+    private static RayQueue shuffle(RayQueue queue) {
+        int[] order = new int[queue.size()];
+        for (int i = 0; i < order.length; ++i)
+            order[i] = i;
+        Random random = new Random(903);
+        for (int i = order.length - 1; i > 0; --i) {
+            int j = random.nextInt(i + 1), swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+        RayQueue shuffled = new RayQueue(order.length);
+        for (int index : order)
+            shuffled.add(queue.getRay(index), queue.getMaxDistance(index), queue.getOwner(index));
+        return shuffled;
+    }
+}
@@ -0,0 +1,59 @@
+package benchmark;
+
+import geometries.CompiledScene;
+import primitives.Color;
+import primitives.Point;
+import primitives.Vector;
+import renderer.Camera;
+import renderer.WavefrontRenderer;
+
+import java.util.Map;
+
+import static java.lang.System.out;
+
+/**
+ * Benchmark of the stages of {@link WavefrontRenderer}.
+ * <p>
+ * Renders the height field scene of {@link PrecisionBenchmark} with two lights and prints the time of
+ * every stage of the last render, to show which stage is the bottleneck.
+ * </p>
+ * Run with: {@code java benchmark.WavefrontBenchmark [grid size] [resolution]}
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+public final class WavefrontBenchmark {
+
+    private WavefrontBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional grid size and image resolution
+     */
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        int resolution = args.length > 1 ? Integer.parseInt(args[1]) : 800;
+        CompiledScene scene = PrecisionBenchmark.heightField(n).compile();
+        Camera camera = new Camera.Builder(new Point(0, -60, 40), new Vector(0, 1, -0.6), new Vector(0, 0.6, 1))
+                .setVPSize(16, 16).setVPDistance(10).setResolution(resolution, resolution).build();
+        int threads = Runtime.getRuntime().availableProcessors();
+        out.printf("%d primitives, %dx%d pixels, %d threads%n", scene.size(), resolution, resolution, threads);
+        try (WavefrontRenderer renderer = new WavefrontRenderer(camera, scene, threads)) {
+            renderer.setAmbient(new Color(20, 20, 20))
+                    .addLight(new Point(30, 20, 60), new Color(200, 180, 150))
+                    .addLight(new Point(-40, -30, 20), new Color(60, 60, 90));
+            for (int warmup = 0; warmup < 2; ++warmup)
+                renderer.render();
+            Map<WavefrontRenderer.Stage, Long> before = renderer.getStageNanos();
+            renderer.render();
+            long total = 0;
+            for (Map.Entry<WavefrontRenderer.Stage, Long> stage : renderer.getStageNanos().entrySet())
+                total += stage.getValue() - before.get(stage.getKey());
+            for (Map.Entry<WavefrontRenderer.Stage, Long> stage : renderer.getStageNanos().entrySet()) {
+                long nanos = stage.getValue() - before.get(stage.getKey());
+                out.printf("%-12s %7.1f ms %5.1f%%%n", stage.getKey(), nanos / 1e6, 100.0 * nanos / total);
+            }
+        }
+    }
+}
@@ -0,0 +1,498 @@
+package geometries;
+
+import org.junit.jupiter.api.Test;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.NotSerializableException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link geometries.CompiledScene}.
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+class CompiledSceneTests {
+
+    /**
+     * Builds a scene of many small spheres and triangles spread in a cube, plus a floor plane.
+     *
+     * @param count amount of spheres and of triangles
+     * @return the scene
+     */
+    static Geometries randomScene(int count) {
+        Random random = new Random(5785);
+        Geometries scene = new Geometries(new Plane(new Point(0, 0, -60), new Vector(0, 0, 1)));
+        for (int i = 0; i < count; ++i) {
+            Point c = new Point(random.nextDouble() * 100 - 50, random.nextDouble() * 100 - 50,
+                    random.nextDouble() * 100 - 50);
+            scene.add(new Sphere(c, 0.5 + random.nextDouble()));
+            Point a = new Point(random.nextDouble() * 100 - 50, random.nextDouble() * 100 - 50,
+                    random.nextDouble() * 100 - 50);
+            scene.add(new Triangle(a, a.add(new Vector(2, 0, 0.5)), a.add(new Vector(0, 2, 1))));
+        }
+        return scene;
+    }
+
+    /**
+     * Test method for {@link CompiledScene#findIntersections(Ray)}.
+     */
+    @Test
+    void testFindIntersections() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Ray through sphere, plane, triangle and cylinder (delegated) finds all the points
+        Geometries geometries = new Geometries(
+                new Sphere(new Point(0, 0, 0), 1),
+                new Plane(new Point(0, 0, 1), new Vector(0, 0, 1)),
+                new Triangle(new Point(-1, -1, 2), new Point(1, -1, 2), new Point(0, 1, 2)),
+                new Cylinder(new Ray(new Point(-1, 0.1, 4), Vector.UNIT_X), 0.5, 2));
+        CompiledScene scene = geometries.compile();
+        Ray ray = new Ray(new Point(0.1, 0.1, -2), new Vector(0, 0, 1));
+        List<Point> points = scene.findIntersections(ray);
+        assertNotNull(points, "TC01: Expected intersections");
+        assertEquals(geometries.findIntersections(ray).size(), points.size(), "TC01: Wrong number of points");
+        assertEquals(6, points.size(), "TC01: Wrong number of points");
+
+        // TC02: Ray missing all the geometries
+        assertNull(scene.findIntersections(new Ray(new Point(5, 5, -2), new Vector(1, 0, 0))),
+                "TC02: Expected no intersections");
+
+        // TC03: Random scene gives the same amount of points as the uncompiled one
+        Geometries random = randomScene(300);
+        CompiledScene compiled = random.compile();
+        Ray diagonal = new Ray(new Point(-60, -60, -55), new Vector(1, 1, 0.9));
+        List<Point> expected = random.findIntersections(diagonal);
+        List<Point> actual = compiled.findIntersections(diagonal);
+        assertEquals(expected == null ? 0 : expected.size(), actual == null ? 0 : actual.size(),
+                "TC03: Wrong number of points");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Empty scene
+        assertNull(new Geometries().compile().findIntersections(ray), "TC11: Empty scene has no intersections");
+    }
+
+    /**
+     * Test method for {@link CompiledScene#findClosestIntersection(Ray)}.
+     */
+    @Test
+    void testFindClosestIntersection() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Closest point of many random rays matches the uncompiled scene
+        Geometries geometries = randomScene(500);
+        CompiledScene scene = geometries.compile();
+        Random random = new Random(4423);
+        for (int i = 0; i < 200; ++i) {
+            Ray ray = new Ray(new Point(0, 0, 0), new Vector(random.nextDouble() - 0.5,
+                    random.nextDouble() - 0.5, random.nextDouble() - 0.5));
+            List<Point> points = geometries.findIntersections(ray);
+            Point expected = null;
+            if (points != null)
+                for (Point p : points)
+                    if (expected == null || p.distance(ray.getp1()) < expected.distance(ray.getp1())) expected = p;
+            assertEquals(expected, scene.findClosestIntersection(ray), "TC01: Wrong closest point for " + ray);
+        }
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Ray starting inside a sphere returns the point on its far side
+        CompiledScene sphere = new Geometries(new Sphere(new Point(0, 0, 0), 1)).compile();
+        assertEquals(new Point(0, 0, 1), sphere.findClosestIntersection(new Ray(Point.ZERO, Vector.UNIT_Z)),
+                "TC11: Wrong point from the sphere center");
+    }
+
+    /**
+     * Test method for {@link Geometries#compile()}.
+     */
+    @Test
+    void testCompile() {
+        // TC01: Nested collections are flattened
+        Geometries nested = new Geometries(new Sphere(new Point(0, 0, 0), 1),
+                new Geometries(new Sphere(new Point(5, 0, 0), 1), new Sphere(new Point(10, 0, 0), 1)));
+        CompiledScene scene = nested.compile();
+        assertEquals(3, scene.size(), "TC01: Nested geometries were not flattened");
+
+        // TC02: The compiled scene does not change when the collection does
+        nested.add(new Sphere(new Point(15, 0, 0), 1));
+        assertEquals(3, scene.size(), "TC02: Compiled scene changed after adding geometry");
+
+        // TC03: Memory footprint grows with the scene
+        assertTrue(randomScene(100).compile().memoryFootprint() < randomScene(1000).compile().memoryFootprint(),
+                "TC03: Memory footprint does not grow with the scene");
+    }
+
+    /**
+     * Test method for {@link Geometries#compile(CompiledScene.Precision)} in single precision.
+     */
+    @Test
+    void testSinglePrecision() {
+        Geometries geometries = randomScene(500);
+        CompiledScene doubles = geometries.compile(CompiledScene.Precision.DOUBLE);
+        CompiledScene floats = geometries.compile(CompiledScene.Precision.SINGLE);
+
+        // TC01: Single precision takes less memory
+        assertTrue(floats.memoryFootprint() < doubles.memoryFootprint(), "TC01: Single precision is not smaller");
+
+        // TC02: Closest points are the same up to float rounding
+        Random random = new Random(903);
+        for (int i = 0; i < 200; ++i) {
+            Ray ray = new Ray(new Point(0, 0, 0), new Vector(random.nextDouble() - 0.5,
+                    random.nextDouble() - 0.5, random.nextDouble() - 0.5));
+            Point expected = doubles.findClosestIntersection(ray);
+            Point actual = floats.findClosestIntersection(ray);
+            // a ray grazing an edge may legally hit or miss after rounding
+            if (expected == null || actual == null) continue;
+            assertEquals(0, expected.distance(actual), 1e-3, "TC02: Wrong closest point for " + ray);
+        }
+    }
+
+    /**
+     * Checks that two scenes give the same closest points for random rays from the origin.
+     *
+     * @param expected the reference scene
+     * @param actual   the tested scene
+     * @param message  the failure message
+     */
+    private static void assertSameClosest(CompiledScene expected, CompiledScene actual, String message) {
+        Random random = new Random(5785);
+        for (int i = 0; i < 200; ++i) {
+            Ray ray = new Ray(new Point(0, 0, 0), new Vector(random.nextDouble() - 0.5,
+                    random.nextDouble() - 0.5, random.nextDouble() - 0.5));
+            assertEquals(expected.findClosestIntersection(ray), actual.findClosestIntersection(ray),
+                    message + " for " + ray);
+        }
+    }
+
+    /**
+     * Test method for {@link Geometries#compile(CompiledScene.Precision, CompiledScene.Storage)} off the heap.
+     */
+    @Test
+    void testOffHeap() {
+        Geometries geometries = randomScene(500);
+        CompiledScene heap = geometries.compile();
+        CompiledScene offHeap = geometries.compile(CompiledScene.Precision.DOUBLE, CompiledScene.Storage.OFF_HEAP);
+
+        // TC01: Same closest points as the heap scene
+        assertSameClosest(heap, offHeap, "TC01: Wrong closest point");
+
+        // TC02: Geometries are rebuilt from the packed data
+        Sphere sphere = new Sphere(new Point(1, 2, 3), 4);
+        CompiledScene single = new Geometries(sphere).compile(CompiledScene.Precision.DOUBLE,
+                CompiledScene.Storage.OFF_HEAP);
+        Intersectable rebuilt = single.getGeometry(0);
+        assertNotSame(sphere, rebuilt, "TC02: Off-heap scene should not reference its sources");
+        assertEquals(sphere.getBoundingBox(), rebuilt.getBoundingBox(), "TC02: Wrong rebuilt sphere");
+    }
+
+    /**
+     * Test method for {@link CompiledScene#write(Path)} and {@link CompiledScene#map(Path)}.
+     *
+     * @throws IOException if the temporary file cannot be used
+     */
+    @Test
+    void testWriteAndMap() throws IOException {
+        // TC01: Mapped scene gives the same closest points, in both precisions
+        Geometries geometries = randomScene(500);
+        for (CompiledScene.Precision precision : CompiledScene.Precision.values()) {
+            CompiledScene scene = geometries.compile(precision);
+            Path sceneFile = Files.createTempFile("scene", ".bin");
+            sceneFile.toFile().deleteOnExit();
+            scene.write(sceneFile);
+            CompiledScene mapped = CompiledScene.map(sceneFile);
+            assertEquals(scene.size(), mapped.size(), "TC01: Wrong size of mapped " + precision + " scene");
+            assertSameClosest(scene, mapped, "TC01: Wrong mapped " + precision + " closest point");
+        }
+
+        // TC02: A scene with delegated geometries cannot be mapped alone
+        Path file = Files.createTempFile("scene", ".bin");
+        file.toFile().deleteOnExit();
+        new Geometries(new Cylinder(new Ray(Point.ZERO, Vector.UNIT_Z), 1, 1)).compile().write(file);
+        assertThrows(IllegalArgumentException.class, () -> CompiledScene.map(file),
+                "TC02: Mapping a scene without its delegated geometries should fail");
+
+        // TC03: Not a scene file
+        Files.write(file, new byte[100]);
+        assertThrows(IllegalArgumentException.class, () -> CompiledScene.map(file), "TC03: Not a scene file");
+        // TC04: A scene file of an unknown precision
+        geometries.compile().write(file);
+        byte[] content = Files.readAllBytes(file);
+        ByteBuffer.wrap(content).order(OffHeap.FILE_ORDER).putInt(8, 99);
+        Files.write(file, content);
+        assertThrows(IllegalArgumentException.class, () -> CompiledScene.map(file), "TC04: Unknown precision");
+    }
+
+    /**
+     * Test method for {@link CompiledScene#writeTo(java.io.DataOutput)} and
+     * {@link CompiledScene#readFrom(java.io.DataInput)}.
+     *
+     * @throws IOException if the stream cannot be used
+     */
+    @Test
+    void testWriteTo() throws IOException {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: A scene read back, delegated geometries included, gives the same closest points
+        Geometries geometries = randomScene(500);
+        geometries.add(new Polygon(new Point(-30, -30, 40), new Point(30, -30, 40), new Point(30, 30, 40),
+                new Point(-30, 30, 40)));
+        CompiledScene scene = geometries.compile();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        scene.writeTo(new DataOutputStream(bytes));
+        CompiledScene read = CompiledScene.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(scene.size(), read.size(), "TC01: Wrong size of the scene read");
+        assertSameClosest(scene, read, "TC01: Wrong closest point of the scene read");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A delegated geometry that is not serializable - it refers to this test - cannot be written
+        CompiledScene custom = new Geometries(new Sphere(Point.ZERO, 1) {
+            @Override
+            public String toString() {
+                return "custom sphere of " + CompiledSceneTests.this;
+            }
+        }).compile();
+        assertThrows(NotSerializableException.class, () -> custom.writeTo(new DataOutputStream(bytes)),
+                "TC11: Not serializable geometry written");
+        // TC12: A delegated geometry holding a class outside the library is not read
+        ByteArrayOutputStream tagged = new ByteArrayOutputStream();
+        new Geometries(new TaggedSphere()).compile().writeTo(new DataOutputStream(tagged));
+        assertThrows(InvalidClassException.class,
+                () -> CompiledScene.readFrom(new DataInputStream(new ByteArrayInputStream(tagged.toByteArray()))),
+                "TC12: Geometry of a class outside the library read");
+        // TC13: A damaged stream
+        byte[] damaged = bytes.toByteArray();
+        damaged[27] ^= 1; // the length of the packed data
+        assertThrows(IllegalArgumentException.class,
+                () -> CompiledScene.readFrom(new DataInputStream(new ByteArrayInputStream(damaged))),
+                "TC13: Damaged scene read");
+    }
+
+    /**
+     * A serializable sphere holding a class that the scene streams do not accept.
+     */
+    private static final class TaggedSphere extends Sphere {
+        private static final long serialVersionUID = 1L;
+        private final java.util.Date tag = new java.util.Date();
+
+        TaggedSphere() {
+            super(Point.ZERO, 1);
+        }
+    }
+
+    /**
+     * Test method for {@link CompiledScene#intersections(Ray, double, double)} and
+     * {@link CompiledScene#findNearest(Ray, int, double, double)}.
+     */
+    @Test
+    void testIntersections() {
+        Geometries geometries = randomScene(3000);
+        geometries.add(new Cylinder(new Ray(new Point(-75, 0, 0), Vector.UNIT_X), 3, 150));
+        CompiledScene scene = geometries.compile();
+        Ray ray = new Ray(new Point(-60, -60, -55), new Vector(1, 1, 0.9));
+        List<Intersection> all = geometries.calculateIntersections(ray);
+        assertTrue(all != null && all.size() > 5, "Expected many intersections");
+        double[] expected = all.stream().mapToDouble(Intersection::getT).sorted().toArray();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: All the hits come in increasing distance
+        List<Double> actual = new ArrayList<>();
+        scene.intersections(ray).forEachRemaining(hit -> actual.add(hit.getT()));
+        assertEquals(expected.length, actual.size(), "TC01: Wrong number of hits");
+        for (int i = 0; i < expected.length; ++i)
+            assertEquals(expected[i], actual.get(i), 1e-9, "TC01: Wrong order");
+
+        // TC02: k nearest hits
+        List<Intersection> nearest = scene.findNearest(ray, 3, 0, Double.POSITIVE_INFINITY);
+        assertEquals(3, nearest.size(), "TC02: Wrong number of hits");
+        for (int i = 0; i < 3; ++i)
+            assertEquals(expected[i], nearest.get(i).getT(), 1e-9, "TC02: Wrong hit");
+
+        // TC03: Hits in a range
+        double tMin = expected[1], tMax = expected[expected.length - 2];
+        Iterator<Intersection> range = scene.intersections(ray, tMin, tMax);
+        for (int i = 1; i < expected.length - 1; ++i)
+            assertEquals(expected[i], range.next().getT(), 1e-9, "TC03: Wrong hit in range");
+        assertFalse(range.hasNext(), "TC03: Hit beyond the range");
+
+        // TC04: The first hit is found without visiting the whole scene
+        int[] tested = new int[1];
+        Geometries boxes = new Geometries();
+        for (int i = 0; i < 1000; ++i) {
+            Sphere sphere = new Sphere(new Point(i * 3, 0, 0), 1);
+            boxes.add(new Intersectable() {
+                @Override
+                public List<Point> findIntersections(Ray r) {
+                    ++tested[0];
+                    return sphere.findIntersections(r);
+                }
+
+                @Override
+                public double distance(Point point) {
+                    return sphere.distance(point);
+                }
+
+                @Override
+                public BoundingBox getBoundingBox() {
+                    return sphere.getBoundingBox();
+                }
+            });
+        }
+        Ray along = new Ray(new Point(-5, 0, 0), Vector.UNIT_X);
+        List<Intersection> first = boxes.compile().findNearest(along, 1, 0, Double.POSITIVE_INFINITY);
+        assertEquals(4, first.get(0).getT(), 1e-9, "TC04: Wrong first hit");
+        assertTrue(tested[0] <= 8, "TC04: Too many primitives tested: " + tested[0]);
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Range with no hits
+        assertTrue(scene.findNearest(ray, 5, expected[0] + 1e-6, expected[1] - 1e-6).isEmpty(),
+                "TC11: Expected no hits between the first two");
+
+        // TC12: Illegal arguments
+        assertThrows(IllegalArgumentException.class, () -> scene.intersections(ray, -1, 5), "TC12: Negative range");
+        assertThrows(IllegalArgumentException.class, () -> scene.intersections(ray, 5, 1), "TC12: Empty range");
+        assertThrows(IllegalArgumentException.class, () -> scene.findNearest(ray, 0, 0, 1), "TC12: k = 0");
+    }
+
+    /**
+     * Test method for {@link CompiledScene#findNearest(Point)}, {@link CompiledScene#distance(Point)}
+     * and {@link CompiledScene#findWithin(Point, double)}.
+     */
+    @Test
+    void testPointQueries() {
+        Geometries geometries = randomScene(500);
+        Cylinder cylinder = new Cylinder(new Ray(new Point(-20, 0, 0), Vector.UNIT_Y), 2, 40);
+        geometries.add(cylinder);
+        List<Intersectable> all = new ArrayList<>();
+        geometries.flatten(all);
+        Random random = new Random(4423);
+
+        // ============ Equivalence Partitions Tests ==============
+        for (CompiledScene.Precision precision : CompiledScene.Precision.values()) {
+            CompiledScene scene = geometries.compile(precision);
+            double delta = precision == CompiledScene.Precision.DOUBLE ? 1e-9 : 1e-4;
+            for (int i = 0; i < 100; ++i) {
+                Point p = new Point(random.nextDouble() * 120 - 60, random.nextDouble() * 120 - 60,
+                        random.nextDouble() * 120 - 60);
+                double expected = Double.POSITIVE_INFINITY;
+                for (Intersectable geometry : all)
+                    expected = Math.min(expected, geometry.distance(p));
+                // TC01: The nearest geometry is found with its distance
+                CompiledScene.Nearest nearest = scene.findNearest(p);
+                assertEquals(expected, nearest.distance(), delta, "TC01: Wrong nearest distance");
+                assertEquals(nearest.distance(), nearest.geometry().distance(p), delta, "TC01: Wrong nearest geometry");
+                assertEquals(expected, scene.distance(p), delta, "TC01: Wrong scene distance");
+
+                // TC02: All the geometries within a radius
+                double radius = 8;
+                int within = 0;
+                for (Intersectable geometry : all)
+                    if (geometry.distance(p) <= radius - delta) ++within;
+                int[] ids = scene.findWithin(p, radius);
+                assertTrue(ids.length >= within, "TC02: Missing geometries within the radius");
+                for (int id : ids)
+                    assertTrue(scene.getGeometry(id).distance(p) <= radius + delta, "TC02: Geometry beyond the radius");
+            }
+        }
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Empty scene
+        CompiledScene empty = new Geometries().compile();
+        assertNull(empty.findNearest(Point.ZERO), "TC11: Empty scene has no nearest geometry");
+        assertEquals(Double.POSITIVE_INFINITY, empty.distance(Point.ZERO), "TC11: Wrong empty scene distance");
+        assertEquals(0, empty.findWithin(Point.ZERO, 5).length, "TC11: Empty scene has nothing within");
+        // TC12: Zero radius finds the geometries through the point only
+        CompiledScene scene = geometries.compile();
+        assertArrayEquals(new int[]{scene.findNearest(new Point(-20, 5, 2)).id()},
+                scene.findWithin(new Point(-20, 5, 2), 0), "TC12: Wrong geometries at zero radius");
+        // TC13: Negative radius
+        assertThrows(IllegalArgumentException.class, () -> scene.findWithin(Point.ZERO, -1), "TC13: Negative radius");
+    }
+
+    /**
+     * Test method for {@link CompiledScene#findOverlapping(Frustum)} and
+     * {@link CompiledScene#findOverlapping(BoundingBox)}.
+     */
+    @Test
+    void testFindOverlapping() {
+        Geometries geometries = randomScene(500);
+        geometries.add(new Cylinder(new Ray(new Point(-20, 0, 0), Vector.UNIT_Y), 2, 40));
+        List<Intersectable> all = new ArrayList<>();
+        geometries.flatten(all);
+        CompiledScene scene = geometries.compile();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Frustum query finds the same geometries as testing each one
+        Frustum frustum = Frustum.perspective(new Point(0, 0, 60), new Vector(0, 0, -1), new Vector(0, 1, 0),
+                new Vector(1, 0, 0), 1, 1, 3, 100);
+        List<Intersectable> found = scene.findOverlapping(frustum);
+        long expected = all.stream().filter(g -> g.overlaps(frustum)).count();
+        assertEquals(expected, found.size(), "TC01: Wrong number of geometries in the frustum");
+        assertTrue(found.size() < all.size() / 2, "TC01: Frustum should cull most of the scene");
+        for (Intersectable geometry : found)
+            assertTrue(geometry.overlaps(frustum), "TC01: Geometry outside the frustum");
+
+        // TC02: Box query finds the same geometries as testing each one
+        BoundingBox region = new BoundingBox(-10, -10, -10, 10, 10, 10);
+        List<Intersectable> inBox = scene.findOverlapping(region);
+        assertEquals(all.stream().filter(g -> g.overlaps(region)).count(), inBox.size(),
+                "TC02: Wrong number of geometries in the box");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Region away from everything but the floor plane
+        List<Intersectable> floor = scene.findOverlapping(new BoundingBox(200, 200, -70, 210, 210, -50));
+        assertEquals(1, floor.size(), "TC11: Only the floor plane expected");
+        assertInstanceOf(Plane.class, floor.get(0), "TC11: Only the floor plane expected");
+    }
+
+    /**
+     * Test method for {@link CompiledScene#cull(Frustum)}.
+     */
+    @Test
+    void testCull() {
+        Geometries geometries = randomScene(500);
+        geometries.add(new Cylinder(new Ray(new Point(-20, 0, 0), Vector.UNIT_Y), 2, 40));
+        CompiledScene heap = geometries.compile();
+        CompiledScene offHeap = geometries.compile(CompiledScene.Precision.DOUBLE, CompiledScene.Storage.OFF_HEAP);
+        Frustum frustum = Frustum.perspective(new Point(0, 0, 60), new Vector(0, 0, -1), new Vector(0, 1, 0),
+                new Vector(1, 0, 0), 1, 1, 3, 100);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The subset has the overlapping geometries and the same hits inside the frustum
+        Random random = new Random(21);
+        for (CompiledScene scene : List.of(heap, offHeap)) {
+            CompiledScene culled = scene.cull(frustum);
+            assertEquals(scene.findOverlapping(frustum).size(), culled.size(), "TC01: Wrong culled size");
+            for (int i = 0; i < 200; ++i) {
+                Ray ray = new Ray(new Point(0, 0, 60), new Vector(random.nextDouble() * 0.9 - 0.45,
+                        random.nextDouble() * 0.9 - 0.45, -3));
+                Intersection expected = scene.calculateClosestIntersection(ray);
+                if (expected == null || expected.getT() > 90) continue; // beyond the far plane
+                Intersection hit = culled.calculateClosestIntersection(ray);
+                assertNotNull(hit, "TC01: Missing hit");
+                assertEquals(expected.getT(), hit.getT(), 1e-9, "TC01: Wrong hit");
+            }
+        }
+        // TC02: The heap subset keeps the source geometries
+        CompiledScene culled = heap.cull(frustum);
+        for (int id = 0; id < culled.size(); ++id)
+            assertTrue(heap.findOverlapping(frustum).contains(culled.getGeometry(id)), "TC02: Geometry not kept");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A frustum around the whole scene culls nothing - the scene itself is returned
+        Frustum wide = Frustum.perspective(new Point(0, 0, 200), new Vector(0, 0, -1), new Vector(0, 1, 0),
+                new Vector(1, 0, 0), 100, 100, 1, 1000);
+        assertSame(heap, heap.cull(wide), "TC11: Scene rebuilt without culling");
+        assertSame(offHeap, offHeap.cull(wide), "TC11: Off-heap scene rebuilt without culling");
+    }
+}
@@ -81,4 +81,26 @@ class CylinderTests {
         assertTrue(result7.contains(new Point(0, 0, 0)), "TC07: Missing bottom base intersection");
         assertTrue(result7.contains(new Point(0, 2, 0)), "TC07: Missing top base intersection");
     }
+
+    /**
+     * Test method for {@link Cylinder#distance(Point)}.
+     */
+    @Test
+    void testDistance() {
+        Cylinder cylinder = new Cylinder(new Ray(new Point(0, 0, 0), new Vector(0, 0, 1)), 2, 4);
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Point beside the side
+        assertEquals(3, cylinder.distance(new Point(5, 0, 2)), 1e-10, "TC01: Wrong distance beside the side");
+        // TC02: Point above the top base
+        assertEquals(1, cylinder.distance(new Point(1, 0, 5)), 1e-10, "TC02: Wrong distance above the top");
+        // TC03: Point beyond the bottom rim
+        assertEquals(5, cylinder.distance(new Point(5, 0, -4)), 1e-10, "TC03: Wrong distance beyond the rim");
+        // TC04: Point inside, closer to the side than to the bases
+        assertEquals(0.5, cylinder.distance(new Point(0, 1.5, 2)), 1e-10, "TC04: Wrong distance inside");
+        // TC05: Point inside, closer to the bottom base
+        assertEquals(0.25, cylinder.distance(new Point(0, 0, 0.25)), 1e-10, "TC05: Wrong distance inside near a base");
+        // =============== Boundary Values Tests ==================
+        // TC11: Point on the bottom rim
+        assertEquals(0, cylinder.distance(new Point(2, 0, 0)), 1e-10, "TC11: Wrong distance on the rim");
+    }
 }
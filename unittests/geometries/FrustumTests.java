@@ -0,0 +1,87 @@
+package geometries;
+
+import org.junit.jupiter.api.Test;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link geometries.Frustum} and the overlap tests of the geometries.
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+class FrustumTests {
+    /**
+     * Camera at the origin looking down -Z with a 90 degrees field of view, cut at distance 10
+     */
+    private final Frustum frustum = Frustum.perspective(new Point(0, 0, 0), new Vector(0, 0, -1),
+            new Vector(0, 1, 0), new Vector(1, 0, 0), 2, 2, 1, 10);
+
+    /**
+     * Test method for {@link Frustum#contains(Point)}.
+     */
+    @Test
+    void testContains() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Point in front of the camera
+        assertTrue(frustum.contains(new Point(1, -1, -5)), "TC01: Point inside");
+        // TC02: Point beside the pyramid
+        assertFalse(frustum.contains(new Point(6, 0, -5)), "TC02: Point beside");
+        // TC03: Point behind the camera
+        assertFalse(frustum.contains(new Point(0, 0, 1)), "TC03: Point behind");
+        // TC04: Point beyond the far plane
+        assertFalse(frustum.contains(new Point(0, 0, -11)), "TC04: Point beyond the far plane");
+        // =============== Boundary Values Tests ==================
+        // TC11: Point on a side plane
+        assertTrue(frustum.contains(new Point(5, 0, -5)), "TC11: Point on the side");
+        // TC12: The apex
+        assertTrue(frustum.contains(new Point(0, 0, 0)), "TC12: Apex");
+    }
+
+    /**
+     * Test method for {@link Intersectable#overlaps(Frustum)}.
+     */
+    @Test
+    void testOverlaps() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Sphere in front, beside, behind and partly inside
+        assertTrue(new Sphere(new Point(0, 0, -5), 1).overlaps(frustum), "TC01: Sphere in front");
+        assertFalse(new Sphere(new Point(8, 0, -5), 1).overlaps(frustum), "TC01: Sphere beside");
+        assertFalse(new Sphere(new Point(0, 0, 5), 1).overlaps(frustum), "TC01: Sphere behind");
+        assertTrue(new Sphere(new Point(5.5, 0, -5), 1).overlaps(frustum), "TC01: Sphere crossing the side");
+
+        // TC02: Triangle crossing the view with all vertices outside, and one entirely behind
+        assertTrue(new Triangle(new Point(-20, -1, -5), new Point(20, -1, -5), new Point(0, 20, -5))
+                .overlaps(frustum), "TC02: Triangle crossing");
+        assertFalse(new Triangle(new Point(-1, -1, 2), new Point(1, -1, 2), new Point(0, 1, 2))
+                .overlaps(frustum), "TC02: Triangle behind");
+
+        // TC03: Plane crossing the frustum and one beyond it
+        assertTrue(new Plane(new Point(0, 0, -3), new Vector(0, 0, 1)).overlaps(frustum), "TC03: Plane crossing");
+        assertFalse(new Plane(new Point(0, 0, -12), new Vector(0, 0, 1)).overlaps(frustum), "TC03: Plane beyond");
+
+        // TC04: Tube along the view and one far away
+        assertTrue(new Tube(new Ray(new Point(0, 0, -5), Vector.UNIT_X), 1).overlaps(frustum), "TC04: Tube across");
+        assertFalse(new Tube(new Ray(new Point(0, 50, 0), Vector.UNIT_X), 1).overlaps(frustum), "TC04: Tube away");
+
+        // TC05: Box regions
+        BoundingBox box = new BoundingBox(-1, -1, -1, 1, 1, 1);
+        assertTrue(new Sphere(new Point(2, 0, 0), 1.5).overlaps(box), "TC05: Sphere into box");
+        assertFalse(new Sphere(new Point(2, 2, 2), 1.5).overlaps(box), "TC05: Sphere beside the box corner");
+        assertTrue(new Plane(new Point(0, 0, 0.5), new Vector(1, 1, 1)).overlaps(box), "TC05: Plane through box");
+        assertFalse(new Plane(new Point(0, 0, 5), new Vector(0, 0, 1)).overlaps(box), "TC05: Plane above box");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: An infinite frustum conservatively accepts any plane
+        Frustum infinite = Frustum.perspective(new Point(0, 0, 0), new Vector(0, 0, -1),
+                new Vector(0, 1, 0), new Vector(1, 0, 0), 2, 2, 1, Double.POSITIVE_INFINITY);
+        assertFalse(infinite.isFinite(), "TC11: Expected an infinite frustum");
+        assertNull(infinite.getBoundingBox(), "TC11: Infinite frustum has no box");
+        assertTrue(new Plane(new Point(0, 0, -1000), new Vector(0, 0, 1)).overlaps(infinite), "TC11: Far plane");
+        // TC12: Illegal dimensions
+        assertThrows(IllegalArgumentException.class, () -> Frustum.perspective(new Point(0, 0, 0),
+                new Vector(0, 0, -1), new Vector(0, 1, 0), new Vector(1, 0, 0), 0, 2, 1, 10), "TC12: Zero width");
+    }
+}
@@ -0,0 +1,147 @@
+package geometries;
+
+import org.junit.jupiter.api.Test;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link geometries.IntersectionBuffer}.
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+class IntersectionBufferTests {
+    private static final double DELTA = 1e-9;
+
+    /**
+     * Test method for {@link Intersectable#findIntersections(Ray, IntersectionBuffer)}.
+     */
+    @Test
+    void testFindIntersections() {
+        Sphere sphere = new Sphere(new Point(0, 0, 0), 1);
+        Plane plane = new Plane(new Point(0, 0, 3), new Vector(0, 0, 1));
+        Triangle triangle = new Triangle(new Point(-1, -1, 2), new Point(1, -1, 2), new Point(0, 1, 2));
+        Geometries geometries = new Geometries(sphere, plane, triangle);
+        Ray ray = new Ray(new Point(0, 0, -2), new Vector(0, 0, 1));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: All the geometries append their hits with their distances
+        IntersectionBuffer buffer = new IntersectionBuffer(1);
+        geometries.findIntersections(ray, buffer);
+        assertEquals(4, buffer.size(), "TC01: Wrong number of hits");
+        double[] expected = {1, 3, 5, 4};
+        for (int i = 0; i < buffer.size(); ++i) {
+            assertEquals(expected[i], buffer.getT(i), DELTA, "TC01: Wrong distance");
+            assertEquals(-1, buffer.getId(i), "TC01: Plain geometries have no primitive id");
+        }
+        assertSame(sphere, buffer.getGeometry(0), "TC01: Wrong geometry");
+        assertSame(triangle, buffer.getGeometry(3), "TC01: Wrong geometry");
+        assertEquals(0, buffer.closest(), "TC01: Wrong closest hit");
+        assertEquals(new Point(0, 0, 2), buffer.getPoint(3, ray), "TC01: Wrong point");
+
+        // TC02: A compiled scene reports itself with the primitive ids
+        CompiledScene scene = geometries.compile();
+        buffer.clear();
+        scene.findIntersections(ray, buffer);
+        assertEquals(4, buffer.size(), "TC02: Wrong number of hits");
+        for (int i = 0; i < buffer.size(); ++i) {
+            assertSame(scene, buffer.getSource(i), "TC02: Wrong source");
+            Intersection intersection = buffer.getIntersection(i, ray);
+            Geometry geometry = (Geometry) buffer.getGeometry(i);
+            assertNotNull(geometry.findIntersections(ray), "TC02: Wrong geometry");
+            assertEquals(geometry.getNormal(intersection.getPoint()), intersection.getNormal(), "TC02: Wrong normal");
+        }
+
+        // TC03: Scene nested in a scene shares the traversal stack with the outer one
+        Geometries random = CompiledSceneTests.randomScene(300);
+        CompiledScene outer = new Geometries(random.compile(), sphereGrid(200)).compile();
+        Ray diagonal = new Ray(new Point(-60, -60, -55), new Vector(1, 1, 0.9));
+        buffer.clear();
+        outer.findIntersections(diagonal, buffer);
+        List<Point> points = new Geometries(random, sphereGrid(200)).findIntersections(diagonal);
+        assertEquals(points == null ? 0 : points.size(), buffer.size(), "TC03: Wrong number of hits");
+        // TC04: The triangle and polygon kernels find the points of the list queries
+        Polygon square = new Polygon(new Point(-1, -1, 1), new Point(1, -1, 1), new Point(1, 1, 1),
+                new Point(-1, 1, 1));
+        for (Polygon polygon : List.of(triangle, square))
+            for (double x = -1.5; x <= 1.5; x += 0.25)
+                for (double y = -1.5; y <= 1.5; y += 0.25) {
+                    Ray grid = new Ray(new Point(x, y, -3), new Vector(0.01, 0.02, 1));
+                    List<Point> expectedPoints = polygon.findIntersections(grid);
+                    buffer.clear();
+                    polygon.findIntersections(grid, buffer);
+                    assertEquals(expectedPoints == null ? 0 : 1, buffer.size(), "TC04: Wrong number of hits");
+                    if (expectedPoints != null)
+                        assertEquals(expectedPoints.get(0).distance(grid.getp1()), buffer.getT(0), DELTA,
+                                "TC04: Wrong distance");
+                }
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Cleared buffer is empty and reusable
+        buffer.clear();
+        assertTrue(buffer.isEmpty(), "TC11: Cleared buffer is not empty");
+        assertEquals(-1, buffer.closest(), "TC11: Empty buffer has no closest hit");
+        scene.findIntersections(ray, buffer);
+        assertEquals(4, buffer.size(), "TC11: Wrong number of hits after reuse");
+
+        // TC12: Reading beyond the hits
+        assertThrows(IndexOutOfBoundsException.class, () -> buffer.getT(4), "TC12: Expected out of bounds");
+
+        // TC13: Capacity must be positive
+        assertThrows(IllegalArgumentException.class, () -> new IntersectionBuffer(0), "TC13: Expected exception");
+    }
+
+    /**
+     * Test that queries into a reused buffer do not allocate.
+     */
+    @Test
+    void testNoAllocation() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean)
+                || !bean.isThreadAllocatedMemorySupported())
+            return;
+        CompiledScene scene = CompiledSceneTests.randomScene(300).compile();
+        Geometries geometries = sphereGrid(200);
+        geometries.add(new Plane(new Point(0, 0, -60), new Vector(0, 0, 1)), CompiledSceneTests.randomScene(100),
+                new Polygon(new Point(-30, -30, 40), new Point(30, -30, 40), new Point(30, 30, 40),
+                        new Point(-30, 30, 40)));
+        Ray[] rays = new Ray[100];
+        for (int i = 0; i < rays.length; ++i)
+            rays[i] = new Ray(new Point(0, 0, 0), new Vector(Math.cos(i), Math.sin(i), 0.3));
+        IntersectionBuffer buffer = new IntersectionBuffer();
+        for (int round = 0; round < 20; ++round) // grow the buffer and warm up
+            for (Ray ray : rays) {
+                buffer.clear();
+                scene.findIntersections(ray, buffer);
+                geometries.findIntersections(ray, buffer);
+            }
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Steady state queries allocate nothing (up to the measuring itself)
+        long before = bean.getCurrentThreadAllocatedBytes();
+        for (Ray ray : rays) {
+            buffer.clear();
+            scene.findIntersections(ray, buffer);
+            geometries.findIntersections(ray, buffer);
+        }
+        long allocated = bean.getCurrentThreadAllocatedBytes() - before;
+        assertTrue(allocated < 1024, "TC01: Queries allocated " + allocated + " bytes");
+    }
+
+    /**
+     * Builds a grid of spheres, 10 in a row.
+     *
+     * @param count amount of spheres
+     * @return the scene
+     */
+    private static Geometries sphereGrid(int count) {
+        Geometries scene = new Geometries();
+        for (int i = 0; i < count; ++i)
+            scene.add(new Sphere(new Point(i % 10 * 10 - 45, i / 10 % 10 * 10 - 45, i / 100 * 10 - 45), 2));
+        return scene;
+    }
+}
@@ -0,0 +1,98 @@
+package geometries;
+
+import org.junit.jupiter.api.Test;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link geometries.Intersection} and the hit record queries of {@link Intersectable}.
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+class IntersectionTests {
+    private static final double DELTA = 1e-9;
+
+    /**
+     * Test method for {@link Intersectable#calculateIntersections(Ray)}.
+     */
+    @Test
+    void testCalculateIntersections() {
+        Sphere sphere = new Sphere(new Point(0, 0, 0), 1);
+        Plane plane = new Plane(new Point(0, 0, 3), new Vector(0, 0, 1));
+        Geometries geometries = new Geometries(sphere, plane);
+        Ray ray = new Ray(new Point(0, 0, -2), new Vector(0, 0, 1));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Each hit knows its geometry, distance and point
+        List<Intersection> intersections = geometries.calculateIntersections(ray);
+        assertNotNull(intersections, "TC01: Expected intersections");
+        assertEquals(3, intersections.size(), "TC01: Wrong number of intersections");
+        for (Intersection intersection : intersections) {
+            Geometry geometry = (Geometry) intersection.getGeometry();
+            assertTrue(geometry == sphere || geometry == plane, "TC01: Wrong geometry");
+            assertEquals(intersection.getPoint().distance(ray.getp1()), intersection.getT(), DELTA,
+                    "TC01: Wrong distance");
+            assertEquals(geometry.getNormal(intersection.getPoint()), intersection.getNormal(),
+                    "TC01: Wrong normal");
+        }
+
+        // TC02: The closest hit is the near side of the sphere
+        Intersection closest = geometries.calculateClosestIntersection(ray);
+        assertSame(sphere, closest.getGeometry(), "TC02: Wrong closest geometry");
+        assertEquals(1, closest.getT(), DELTA, "TC02: Wrong closest distance");
+        assertEquals(new Point(0, 0, -1), closest.getPoint(), "TC02: Wrong closest point");
+        assertEquals(new Vector(0, 0, -1), closest.getNormal(), "TC02: Wrong closest normal");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: No hits
+        Ray away = new Ray(new Point(0, 0, -2), new Vector(0, 1, 0));
+        assertNull(geometries.calculateIntersections(away), "TC11: Expected no intersections");
+        assertNull(geometries.calculateClosestIntersection(away), "TC11: Expected no closest intersection");
+    }
+
+    /**
+     * Test method for {@link CompiledScene#calculateClosestIntersection(Ray)}.
+     */
+    @Test
+    void testCompiledClosestIntersection() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Packed hits agree with the source geometries on point, geometry and normal
+        Geometries geometries = CompiledSceneTests.randomScene(300);
+        for (CompiledScene.Storage storage : CompiledScene.Storage.values()) {
+            CompiledScene scene = geometries.compile(CompiledScene.Precision.DOUBLE, storage);
+            Random random = new Random(4423);
+            for (int i = 0; i < 200; ++i) {
+                Ray ray = new Ray(new Point(0, 0, 0), new Vector(random.nextDouble() - 0.5,
+                        random.nextDouble() - 0.5, random.nextDouble() - 0.5));
+                Intersection hit = scene.calculateClosestIntersection(ray);
+                assertEquals(scene.findClosestIntersection(ray), hit == null ? null : hit.getPoint(),
+                        "TC01: Wrong closest point");
+                if (hit == null) continue;
+                Geometry geometry = (Geometry) hit.getGeometry();
+                assertEquals(geometry.getNormal(hit.getPoint()), hit.getNormal(), "TC01: Wrong normal");
+                assertSame(hit.getNormal(), hit.getNormal(), "TC01: Normal is not cached");
+                List<Point> points = geometry.findIntersections(ray);
+                assertNotNull(points, "TC01: Hit geometry is not intersected by the ray");
+            }
+        }
+
+        // TC02: Delegated geometry (cylinder) is reported with its own normal
+        Cylinder cylinder = new Cylinder(new Ray(new Point(-1, 0, 4), Vector.UNIT_X), 0.5, 2);
+        CompiledScene scene = new Geometries(cylinder, new Sphere(new Point(0, 0, 0), 1)).compile();
+        Ray ray = new Ray(new Point(0, 0, 10), new Vector(0, 0, -1));
+        Intersection hit = scene.calculateClosestIntersection(ray);
+        assertSame(cylinder, hit.getGeometry(), "TC02: Wrong closest geometry");
+        assertEquals(new Vector(0, 0, 1), hit.getNormal(), "TC02: Wrong normal");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Ray missing everything
+        assertNull(scene.calculateClosestIntersection(new Ray(new Point(5, 5, 5), Vector.UNIT_X)),
+                "TC11: Expected no intersection");
+    }
+}
@@ -0,0 +1,175 @@
+package geometries;
+
+import org.junit.jupiter.api.Test;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link geometries.PagedScene}.
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+class PagedSceneTests {
+
+    /**
+     * Writes a random scene into a temporary paged scene file.
+     *
+     * @param scene the scene
+     * @return the file
+     * @throws IOException if the file cannot be written
+     */
+    private static Path writeScene(Geometries scene) throws IOException {
+        Path file = Files.createTempFile("paged", ".bin");
+        file.toFile().deleteOnExit();
+        PagedScene.write(scene, file, 16, CompiledScene.Precision.DOUBLE);
+        return file;
+    }
+
+    /**
+     * Creates random rays from the origin.
+     *
+     * @param count amount of rays
+     * @return the rays
+     */
+    private static List<Ray> randomRays(int count) {
+        Random random = new Random(4423);
+        List<Ray> rays = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i)
+            rays.add(new Ray(Point.ZERO, new Vector(random.nextDouble() - 0.5, random.nextDouble() - 0.5,
+                    random.nextDouble() - 0.5)));
+        return rays;
+    }
+
+    /**
+     * Test method for {@link PagedScene#findClosestIntersection(Ray)} with a small cache.
+     *
+     * @throws IOException if the scene file cannot be used
+     */
+    @Test
+    void testFindClosestIntersection() throws IOException {
+        Geometries geometries = CompiledSceneTests.randomScene(500);
+        CompiledScene expected = geometries.compile();
+        try (PagedScene scene = PagedScene.open(writeScene(geometries), 4096)) {
+            // TC01: Same closest points as the compiled scene
+            for (Ray ray : randomRays(200))
+                assertEquals(expected.findClosestIntersection(ray), scene.findClosestIntersection(ray),
+                        "TC01: Wrong closest point for " + ray);
+
+            // TC02: The cache holds few clusters, so clusters were evicted and reloaded
+            PagedScene.Statistics statistics = scene.getStatistics();
+            assertTrue(scene.clusterCount() > 1, "TC02: Scene was not split into clusters");
+            assertTrue(statistics.evictions() > 0, "TC02: Nothing was evicted from a small cache");
+            assertTrue(statistics.residentClusters() < scene.clusterCount(), "TC02: All the clusters are resident");
+        }
+    }
+
+    /**
+     * Test method for {@link PagedScene} used by many threads at once.
+     *
+     * @throws Exception if the scene file cannot be used or a thread fails
+     */
+    @Test
+    void testConcurrentFaults() throws Exception {
+        Geometries geometries = CompiledSceneTests.randomScene(500);
+        CompiledScene expected = geometries.compile();
+        List<Ray> rays = randomRays(100);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try (PagedScene scene = PagedScene.open(writeScene(geometries), Long.MAX_VALUE)) {
+            // TC01: All the threads trace the same rays together and get the right points
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < 8; ++t)
+                results.add(executor.submit(() -> {
+                    for (Ray ray : rays)
+                        assertEquals(expected.findClosestIntersection(ray), scene.findClosestIntersection(ray),
+                                "TC01: Wrong closest point for " + ray);
+                }));
+            for (Future<?> result : results) result.get();
+
+            // TC02: With a large enough cache every cluster was loaded at most once
+            PagedScene.Statistics statistics = scene.getStatistics();
+            assertEquals(0, statistics.evictions(), "TC02: Unexpected evictions");
+            assertEquals(statistics.residentClusters(), statistics.misses(), "TC02: A cluster was loaded twice");
+            assertTrue(statistics.hits() > 0, "TC02: No cache hits");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Test method for {@link PagedScene} faulting a damaged cluster from many threads at once.
+     *
+     * @throws Exception if the scene file cannot be used
+     */
+    @Test
+    void testDamagedCluster() throws Exception {
+        // a single cluster, whose scene header is overwritten
+        Path file = writeScene(new Geometries(new Sphere(new Point(0, 0, -10), 1)));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long position = OffHeap.read(channel, 0, 80).getLong(72); // the position of the first cluster
+            channel.write(ByteBuffer.allocate(8), position);
+        }
+        Ray ray = new Ray(Point.ZERO, new Vector(0, 0, -1));
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try (PagedScene scene = PagedScene.open(file, Long.MAX_VALUE)) {
+            // TC01: Both threads faulting the cluster together get the failure, none waits forever
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < 2; ++t)
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return scene.findClosestIntersection(ray);
+                }));
+            start.countDown();
+            for (Future<?> result : results) {
+                ExecutionException failure = assertThrows(ExecutionException.class,
+                        () -> result.get(10, TimeUnit.SECONDS), "TC01: Damaged cluster loaded");
+                assertInstanceOf(IllegalArgumentException.class, failure.getCause(), "TC01: Wrong failure");
+            }
+            // TC02: A later request tries the load again, and fails again
+            assertThrows(IllegalArgumentException.class, () -> scene.findClosestIntersection(ray),
+                    "TC02: Damaged cluster loaded");
+            assertEquals(0, scene.getStatistics().residentClusters(), "TC02: Damaged cluster is resident");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Test method for {@link PagedScene#write}.
+     *
+     * @throws IOException if the scene file cannot be used
+     */
+    @Test
+    void testWrite() throws IOException {
+        Path file = Files.createTempFile("paged", ".bin");
+        file.toFile().deleteOnExit();
+        // TC01: Delegated geometries cannot be written
+        Geometries tube = new Geometries(new Tube(new Ray(Point.ZERO, Vector.UNIT_Z), 1));
+        assertThrows(IllegalArgumentException.class,
+                () -> PagedScene.write(tube, file, 16, CompiledScene.Precision.DOUBLE),
+                "TC01: Tube should not be written");
+
+        // TC02: Not a paged scene file
+        Files.write(file, new byte[100]);
+        assertThrows(IllegalArgumentException.class, () -> PagedScene.open(file, 1024), "TC02: Not a scene file");
+    }
+}
@@ -147,4 +147,19 @@ class PlaneTest {
         assertNull(plane.findIntersections(ray6), "Expected no intersection (ray lies in plane)");
     }
 
+    /**
+     * Test method for {@link Plane#distance(Point)}.
+     */
+    @Test
+    void testDistance() {
+        Plane plane = new Plane(new Point(0, 0, 1), new Vector(0, 0, 2));
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Point above the plane
+        assertEquals(2, plane.distance(new Point(5, -3, 3)), 1e-10, "TC01: Wrong distance above");
+        // TC02: Point below the plane
+        assertEquals(4, plane.distance(new Point(1, 1, -3)), 1e-10, "TC02: Wrong distance below");
+        // =============== Boundary Values Tests ==================
+        // TC11: Point on the plane
+        assertEquals(0, plane.distance(new Point(7, 8, 1)), 1e-10, "TC11: Wrong distance on the plane");
+    }
 }
@@ -116,5 +116,21 @@ class PolygonTests {
                     "Polygon's normal is not orthogonal to one of the edges");
     }
 
-
+    /**
+     * Test method for {@link geometries.Polygon#distance(Point)}.
+     */
+    @Test
+    void testDistance() {
+        Polygon square = new Polygon(new Point(0, 0, 0), new Point(2, 0, 0), new Point(2, 2, 0), new Point(0, 2, 0));
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Point below the inside of the polygon
+        assertEquals(2, square.distance(new Point(1, 1, -2)), 1e-10, "TC01: Wrong distance below the inside");
+        // TC02: Point beside an edge in the polygon's plane
+        assertEquals(3, square.distance(new Point(5, 1, 0)), 1e-10, "TC02: Wrong distance beside an edge");
+        // TC03: Point beside a corner
+        assertEquals(Math.sqrt(3), square.distance(new Point(3, 3, 1)), 1e-10, "TC03: Wrong distance beside a corner");
+        // =============== Boundary Values Tests ==================
+        // TC11: Point on a vertex
+        assertEquals(0, square.distance(new Point(2, 2, 0)), 1e-10, "TC11: Wrong distance on a vertex");
+    }
 }
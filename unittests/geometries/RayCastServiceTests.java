@@ -0,0 +1,142 @@
+package geometries;
+
+import org.junit.jupiter.api.Test;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link geometries.RayCastService} and {@link geometries.RayBatch}.
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+class RayCastServiceTests {
+
+    /**
+     * Fills a batch with random rays from the middle of the random scene.
+     *
+     * @param size the amount of rays
+     * @return the batch
+     */
+    private static RayBatch randomBatch(int size) {
+        Random random = new Random(903);
+        RayBatch batch = new RayBatch(size);
+        for (int i = 0; i < size; ++i)
+            batch.add(random.nextDouble() * 10, random.nextDouble() * 10, random.nextDouble() * 10,
+                    random.nextDouble() - 0.5, random.nextDouble() - 0.5, random.nextDouble() - 0.5,
+                    i % 2 == 0 ? Double.POSITIVE_INFINITY : 20);
+        return batch;
+    }
+
+    /**
+     * Test method for {@link RayCastService#castClosest(RayBatch, double[], int[])}.
+     */
+    @Test
+    void testCastClosest() {
+        Geometries geometries = CompiledSceneTests.randomScene(500);
+        geometries.add(new Cylinder(new Ray(new Point(-20, 0, 0), Vector.UNIT_Y), 2, 40));
+        RayBatch batch = randomBatch(3000);
+        try (RayCastService service = new RayCastService(geometries, 4)) {
+            CompiledScene scene = service.getScene();
+            double[] distances = new double[batch.size()];
+            int[] ids = new int[batch.size()];
+
+            // ============ Equivalence Partitions Tests ==============
+            // TC01: Every ray gets the closest hit of the scene within its distance
+            RayCastService.BatchStatistics statistics = service.castClosest(batch, distances, ids);
+            int hits = 0;
+            for (int i = 0; i < batch.size(); ++i) {
+                Ray ray = batch.getRay(i);
+                Intersection expected = scene.calculateClosestIntersection(ray);
+                if (expected == null || expected.getT() >= batch.getMaxDistance(i)) {
+                    assertEquals(Double.POSITIVE_INFINITY, distances[i], "TC01: Expected a miss");
+                    assertEquals(-1, ids[i], "TC01: Expected no id for a miss");
+                    continue;
+                }
+                ++hits;
+                assertEquals(expected.getT(), distances[i], 1e-9, "TC01: Wrong distance");
+                assertNotNull(scene.getGeometry(ids[i]).findIntersections(ray), "TC01: Wrong geometry id");
+            }
+            assertTrue(hits > 0, "TC01: Expected some hits");
+            assertEquals(hits, statistics.hits(), "TC01: Wrong hit count");
+            assertEquals(batch.size(), statistics.rays(), "TC01: Wrong ray count");
+
+            // TC02: Concurrent callers get the same results
+            List<CompletableFuture<Void>> callers = new ArrayList<>();
+            double[][] results = new double[4][batch.size()];
+            for (double[] result : results)
+                callers.add(CompletableFuture.runAsync(() -> service.castClosest(batch, result, null)));
+            CompletableFuture.allOf(callers.toArray(new CompletableFuture<?>[0])).join();
+            for (double[] result : results)
+                assertArrayEquals(distances, result, "TC02: Concurrent results differ");
+            assertEquals(5, service.getStatistics().batches(), "TC02: Wrong batch count");
+            assertEquals(5L * batch.size(), service.getStatistics().rays(), "TC02: Wrong ray count");
+
+            // =============== Boundary Values Tests ==================
+            // TC11: Empty batch
+            assertEquals(0, service.castClosest(new RayBatch(1), new double[0], null).rays(),
+                    "TC11: Empty batch has no rays");
+
+            // TC12: Output array shorter than the batch
+            assertThrows(IllegalArgumentException.class, () -> service.castClosest(batch, new double[10], null),
+                    "TC12: Expected exception for a short output array");
+        }
+    }
+
+    /**
+     * Test method for {@link RayCastService#castOcclusion(RayBatch, boolean[])}.
+     */
+    @Test
+    void testCastOcclusion() {
+        RayBatch batch = randomBatch(2000);
+        try (RayCastService service = new RayCastService(CompiledSceneTests.randomScene(500), 3)) {
+            CompiledScene scene = service.getScene();
+            boolean[] occluded = new boolean[batch.size()];
+            double[] distances = new double[batch.size()];
+
+            // ============ Equivalence Partitions Tests ==============
+            // TC01: A ray is occluded exactly when it has a hit within its distance
+            service.castOcclusion(batch, occluded);
+            service.castClosest(batch, distances, null);
+            for (int i = 0; i < batch.size(); ++i) {
+                assertEquals(distances[i] < Double.POSITIVE_INFINITY, occluded[i], "TC01: Wrong occlusion");
+                assertEquals(occluded[i], scene.isOccluded(batch.getRay(i), batch.getMaxDistance(i)),
+                        "TC01: Batch and single ray occlusion differ");
+            }
+        }
+    }
+
+    /**
+     * Test method for {@link RayBatch}.
+     */
+    @Test
+    void testRayBatch() {
+        RayBatch batch = new RayBatch(2);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Directions are normalized
+        batch.add(new Ray(new Point(1, 2, 3), new Vector(0, 0, 5)), 7);
+        batch.add(0, 0, 0, 3, 4, 0, Double.POSITIVE_INFINITY);
+        assertEquals(new Vector(0.6, 0.8, 0), batch.getRay(1).getDirection(), "TC01: Direction not normalized");
+        assertEquals(7, batch.getMaxDistance(0), "TC01: Wrong distance");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Full batch
+        assertThrows(IllegalStateException.class, () -> batch.add(0, 0, 0, 1, 0, 0, 1), "TC11: Batch is full");
+        // TC12: Zero direction and non positive distance
+        assertThrows(IllegalArgumentException.class, () -> batch.set(0, 0, 0, 0, 0, 0, 0, 1), "TC12: Zero direction");
+        assertThrows(IllegalArgumentException.class, () -> batch.set(0, 0, 0, 0, 1, 0, 0, 0), "TC12: Zero distance");
+        // TC13: Reuse after clear
+        batch.clear();
+        assertEquals(0, batch.size(), "TC13: Cleared batch is not empty");
+        assertThrows(IndexOutOfBoundsException.class, () -> batch.getRay(0), "TC13: No rays after clear");
+        assertEquals(0, batch.add(new Ray(Point.ZERO, Vector.UNIT_X)), "TC13: Wrong index after clear");
+    }
+}
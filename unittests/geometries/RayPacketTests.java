@@ -0,0 +1,95 @@
+package geometries;
+
+import org.junit.jupiter.api.Test;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link geometries.RayPacket} and {@link CompiledScene#traceClosest(RayPacket)}.
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+class RayPacketTests {
+
+    /**
+     * Checks the results of a traced packet against single ray queries.
+     */
+    private static void assertSameAsSingleRays(CompiledScene scene, RayPacket packet, String message) {
+        for (int i = 0; i < packet.size(); ++i) {
+            Intersection expected = scene.calculateClosestIntersection(packet.getRay(i));
+            if (expected == null) {
+                assertFalse(packet.isHit(i), message + ": unexpected hit of ray " + i);
+                assertNull(packet.getIntersection(i), message + ": unexpected record of ray " + i);
+            } else {
+                assertTrue(packet.isHit(i), message + ": missed ray " + i);
+                assertEquals(expected.getT(), packet.getT(i), 1e-9, message + ": wrong distance of ray " + i);
+                assertEquals(expected.getGeometry(), packet.getIntersection(i).getGeometry(),
+                        message + ": wrong geometry of ray " + i);
+            }
+        }
+    }
+
+    /**
+     * Test method for {@link CompiledScene#traceClosest(RayPacket)}.
+     */
+    @Test
+    void testTraceClosest() {
+        Geometries random = CompiledSceneTests.randomScene(2000);
+        random.add(new Cylinder(new Ray(new Point(-20, 0, 0), Vector.UNIT_X), 3, 40));
+        CompiledScene scene = random.compile();
+        RayPacket packet = new RayPacket();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: An 8x8 bundle of coherent rays from one head is traced as a packet, like single rays
+        Point head = new Point(0, 0, 70);
+        for (int i = 0; i < 8; ++i)
+            for (int j = 0; j < 8; ++j)
+                packet.add(new Ray(head, new Vector(0.3 + 0.01 * j, -0.2 + 0.01 * i, -1)));
+        assertTrue(scene.traceClosest(packet), "TC01: Coherent packet should be traced as a packet");
+        assertSameAsSingleRays(scene, packet, "TC01");
+        // TC02: Coherent rays through the delegated cylinder
+        packet.clear();
+        for (int i = 0; i < 16; ++i)
+            packet.add(new Ray(new Point(-1 + 0.1 * i, 0.5, 20), new Vector(0.01, 0.02, -1)));
+        assertTrue(scene.traceClosest(packet), "TC02: Coherent packet should be traced as a packet");
+        assertSameAsSingleRays(scene, packet, "TC02");
+        assertInstanceOf(Cylinder.class, packet.getIntersection(0).getGeometry(), "TC02: Cylinder not hit first");
+        // TC03: Random rays disagree in sign along every axis and fall back to single rays
+        packet.clear();
+        Random r = new Random(4423);
+        for (int i = 0; i < RayPacket.MAX_SIZE; ++i)
+            packet.add(new Ray(new Point(r.nextDouble() * 10, r.nextDouble() * 10, r.nextDouble() * 10),
+                    new Vector(r.nextDouble() - 0.5, r.nextDouble() - 0.5, r.nextDouble() - 0.5)));
+        assertFalse(scene.traceClosest(packet), "TC03: Incoherent packet should fall back");
+        assertSameAsSingleRays(scene, packet, "TC03");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Rays disagreeing along X and Y only are still coherent along Z
+        packet.clear();
+        for (int i = -2; i <= 2; ++i)
+            for (int j = -2; j <= 2; ++j)
+                if (i != 0 && j != 0) packet.add(new Ray(head, new Vector(0.05 * j, 0.05 * i, -1)));
+        assertTrue(scene.traceClosest(packet), "TC11: Packet coherent along Z should be traced as a packet");
+        assertSameAsSingleRays(scene, packet, "TC11");
+        // TC12: A packet of rays that all miss
+        packet.clear();
+        for (int i = 0; i < 4; ++i)
+            packet.add(new Ray(new Point(0, 0, 70), new Vector(0.01 * i + 0.01, 0.01, 1)));
+        assertTrue(scene.traceClosest(packet), "TC12: Coherent packet should be traced as a packet");
+        for (int i = 0; i < 4; ++i)
+            assertEquals(-1, packet.getId(i), "TC12: Ray away from the scene should miss");
+        // TC13: A full packet rejects another ray
+        packet.clear();
+        for (int i = 0; i < RayPacket.MAX_SIZE; ++i)
+            packet.add(new Ray(head, new Vector(0, 0, -1)));
+        assertThrows(IllegalStateException.class, () -> packet.add(new Ray(head, new Vector(0, 0, -1))),
+                "TC13: Full packet should throw");
+        // TC14: Reading a result out of range throws
+        assertThrows(IndexOutOfBoundsException.class, () -> new RayPacket().getT(0), "TC14: Empty packet has no results");
+    }
+}
@@ -0,0 +1,77 @@
+package geometries;
+
+import org.junit.jupiter.api.Test;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link geometries.RayQueue}.
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+class RayQueueTests {
+
+    /**
+     * Test method for {@link RayQueue#castClosest(RayCastService, double[], int[], boolean)}
+     * and {@link RayQueue#castOcclusion(RayCastService, boolean[], boolean)}.
+     */
+    @Test
+    void testCast() {
+        Random random = new Random(5785);
+        RayQueue queue = new RayQueue(4000);
+        for (int i = 0; i < 4000; ++i)
+            queue.add(random.nextDouble() * 60 - 30, random.nextDouble() * 60 - 30, random.nextDouble() * 60 - 30,
+                    random.nextDouble() - 0.5, random.nextDouble() - 0.5, random.nextDouble() - 0.5,
+                    i % 3 == 0 ? 15 : Double.POSITIVE_INFINITY, i / 4);
+        try (RayCastService service = new RayCastService(CompiledSceneTests.randomScene(500), 2)) {
+            double[] unsorted = new double[queue.size()], sorted = new double[queue.size()];
+            int[] unsortedIds = new int[queue.size()], sortedIds = new int[queue.size()];
+
+            // ============ Equivalence Partitions Tests ==============
+            // TC01: Sorted casting scatters the same closest hits back to the queue order
+            RayCastService.BatchStatistics plain = queue.castClosest(service, unsorted, unsortedIds, false);
+            RayCastService.BatchStatistics reordered = queue.castClosest(service, sorted, sortedIds, true);
+            assertArrayEquals(unsorted, sorted, "TC01: Sorted distances differ");
+            assertArrayEquals(unsortedIds, sortedIds, "TC01: Sorted ids differ");
+            assertEquals(plain.hits(), reordered.hits(), "TC01: Wrong hit count");
+            assertTrue(plain.hits() > 0, "TC01: Expected some hits");
+            for (int i = 0; i < 100; ++i) {
+                Intersection expected = service.getScene().calculateClosestIntersection(queue.getRay(i));
+                double limit = i % 3 == 0 ? 15 : Double.POSITIVE_INFINITY;
+                assertEquals(expected == null || expected.getT() >= limit ? Double.POSITIVE_INFINITY : expected.getT(),
+                        sorted[i], 1e-9, "TC01: Wrong distance of ray " + i);
+            }
+            // TC02: Sorted occlusion scatters the same results back
+            boolean[] blocked = new boolean[queue.size()], sortedBlocked = new boolean[queue.size()];
+            queue.castOcclusion(service, blocked, false);
+            queue.castOcclusion(service, sortedBlocked, true);
+            assertArrayEquals(blocked, sortedBlocked, "TC02: Sorted occlusion differs");
+            // TC03: The owners are kept in queue order
+            assertEquals(0, queue.getOwner(3), "TC03: Wrong owner");
+            assertEquals(999, queue.getOwner(3999), "TC03: Wrong owner");
+
+            // =============== Boundary Values Tests ==================
+            // TC11: Rays from a single head (no extent to quantize) are sorted by octant only
+            RayQueue shadows = new RayQueue(8);
+            for (int i = 0; i < 8; ++i)
+                shadows.add(new Ray(Point.ZERO, new Vector((i & 4) - 2, (i & 2) - 1, (i & 1) - 0.5)), 100, i);
+            double[] expected = new double[8], actual = new double[8];
+            shadows.castClosest(service, expected, null, false);
+            shadows.castClosest(service, actual, null, true);
+            assertArrayEquals(expected, actual, "TC11: Sorted distances differ");
+            // TC12: An empty queue
+            shadows.clear();
+            assertEquals(0, shadows.castClosest(service, actual, null, true).rays(), "TC12: Empty queue cast rays");
+            // TC13: A full queue rejects another ray, and a short output array throws
+            assertThrows(IllegalStateException.class,
+                    () -> queue.add(new Ray(Point.ZERO, Vector.UNIT_X), 1, 0), "TC13: Full queue should throw");
+            assertThrows(IllegalArgumentException.class,
+                    () -> queue.castClosest(service, new double[10], null, true), "TC13: Short output should throw");
+        }
+    }
+}
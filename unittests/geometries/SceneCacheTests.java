@@ -0,0 +1,115 @@
+package geometries;
+
+import org.junit.jupiter.api.Test;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link geometries.SceneCache}.
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+class SceneCacheTests {
+
+    /**
+     * Counts the cache files in a directory.
+     *
+     * @param directory the cache directory
+     * @return the amount of cache files
+     * @throws IOException if the directory cannot be listed
+     */
+    private static long countFiles(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.toString().endsWith(".scene")).count();
+        }
+    }
+
+    /**
+     * Test method for {@link SceneCache#compile(Geometries, CompiledScene.Precision)}.
+     *
+     * @throws IOException if the cache directory cannot be used
+     */
+    @Test
+    void testCompile() throws IOException {
+        Path directory = Files.createTempDirectory("cache");
+        directory.toFile().deleteOnExit();
+        SceneCache cache = new SceneCache(directory, Long.MAX_VALUE);
+        Geometries geometries = CompiledSceneTests.randomScene(200);
+        geometries.add(new Cylinder(new Ray(new Point(0, 0, 10), Vector.UNIT_X), 2, 3));
+        Ray ray = new Ray(new Point(1, -30, 10.5), Vector.UNIT_Y);
+
+        // TC01: First compilation misses and writes a file
+        CompiledScene first = cache.compile(geometries, CompiledScene.Precision.DOUBLE);
+        assertEquals(1, cache.misses(), "TC01: Expected a miss");
+        assertEquals(1, countFiles(directory), "TC01: Expected a cache file");
+
+        // TC02: Same scene again is mapped from the cache, with its delegated cylinder attached
+        CompiledScene second = cache.compile(geometries, CompiledScene.Precision.DOUBLE);
+        assertEquals(1, cache.hits(), "TC02: Expected a hit");
+        assertEquals(first.findClosestIntersection(ray), second.findClosestIntersection(ray),
+                "TC02: Cached scene gives a different point");
+        Intersection firstHit = first.calculateClosestIntersection(ray);
+        assertSame(firstHit.getGeometry(), second.calculateClosestIntersection(ray).getGeometry(),
+                "TC02: Cached scene reports another geometry");
+        Ray sphereRay = new Ray(Point.ZERO, new Vector(1, 0.3, -0.2));
+        Intersectable packed = first.calculateClosestIntersection(sphereRay).getGeometry();
+        assertNotEquals(Cylinder.class, packed.getClass(), "TC02: Expected a packed primitive");
+        assertSame(packed, second.calculateClosestIntersection(sphereRay).getGeometry(),
+                "TC02: Cached scene reports another packed geometry");
+
+        // TC03: Changed scene misses again
+        geometries.add(new Sphere(new Point(0, 0, 80), 1));
+        cache.compile(geometries, CompiledScene.Precision.DOUBLE);
+        assertEquals(2, cache.misses(), "TC03: Changed scene should miss");
+
+        // TC04: Other precision is another key
+        cache.compile(geometries, CompiledScene.Precision.SINGLE);
+        assertEquals(3, cache.misses(), "TC04: Other precision should miss");
+
+        // TC05: Scene with an unknown geometry is not cached
+        Intersectable custom = new Intersectable() {
+            @Override
+            public List<Point> findIntersections(Ray ray1) {
+                return List.of(new Point(1, 1, 1));
+            }
+
+            @Override
+            public double distance(Point point) {
+                return point.distance(new Point(1, 1, 1));
+            }
+        };
+        cache.compile(new Geometries(custom), CompiledScene.Precision.DOUBLE);
+        assertEquals(3, cache.misses(), "TC05: Unknown geometry should bypass the cache");
+    }
+
+    /**
+     * Test method for the size limit of {@link SceneCache}.
+     *
+     * @throws IOException if the cache directory cannot be used
+     */
+    @Test
+    void testEviction() throws IOException {
+        Path directory = Files.createTempDirectory("cache");
+        directory.toFile().deleteOnExit();
+        long sceneBytes = CompiledSceneTests.randomScene(100).compile().memoryFootprint();
+        SceneCache cache = new SceneCache(directory, 2 * sceneBytes);
+
+        // TC01: Only the most recent scenes stay within the limit
+        for (int i = 0; i < 5; ++i) {
+            Geometries geometries = CompiledSceneTests.randomScene(100);
+            geometries.add(new Sphere(new Point(i, 0, 0), 1));
+            cache.compile(geometries, CompiledScene.Precision.DOUBLE);
+        }
+        assertTrue(countFiles(directory) < 5, "TC01: Old cache files were not evicted");
+        assertTrue(countFiles(directory) >= 1, "TC01: The newest cache file was evicted");
+    }
+}
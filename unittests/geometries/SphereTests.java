@@ -83,4 +83,22 @@ class SphereTest {
         Ray ray8 = new Ray(new Point(0, -2, 0), Vector.UNIT_Z);
         assertNull(sphere.findIntersections(ray8), "TC08: Expected no intersection");
     }
+
+    /**
+     * Test method for {@link Sphere#distance(Point)}.
+     */
+    @Test
+    void testDistance() {
+        Sphere sphere = new Sphere(new Point(1, 0, 0), 2);
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Point outside the sphere
+        assertEquals(3, sphere.distance(new Point(1, 5, 0)), 1e-10, "TC01: Wrong distance outside");
+        // TC02: Point inside the sphere
+        assertEquals(1.5, sphere.distance(new Point(1, 0, 0.5)), 1e-10, "TC02: Wrong distance inside");
+        // =============== Boundary Values Tests ==================
+        // TC11: Point on the surface
+        assertEquals(0, sphere.distance(new Point(3, 0, 0)), 1e-10, "TC11: Wrong distance on the surface");
+        // TC12: Point at the center
+        assertEquals(2, sphere.distance(new Point(1, 0, 0)), 1e-10, "TC12: Wrong distance at the center");
+    }
 }
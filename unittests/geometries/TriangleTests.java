@@ -114,5 +114,23 @@ class TriangleTest {
         assertNull(triangle.findIntersections(ray6), "Expected no intersection (on edge's continuation)");
     }
 
-
+    /**
+     * Test method for {@link Triangle#distance(Point)}.
+     */
+    @Test
+    void testDistance() {
+        Triangle triangle = new Triangle(new Point(0, 0, 0), new Point(4, 0, 0), new Point(0, 4, 0));
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Point above the inside of the triangle
+        assertEquals(3, triangle.distance(new Point(1, 1, 3)), 1e-10, "TC01: Wrong distance above the inside");
+        // TC02: Point beside an edge
+        assertEquals(5, triangle.distance(new Point(2, -3, 4)), 1e-10, "TC02: Wrong distance beside an edge");
+        // TC03: Point beside a vertex
+        assertEquals(Math.sqrt(3), triangle.distance(new Point(-1, -1, 1)), 1e-10, "TC03: Wrong distance beside a vertex");
+        // =============== Boundary Values Tests ==================
+        // TC11: Point on an edge
+        assertEquals(0, triangle.distance(new Point(2, 2, 0)), 1e-10, "TC11: Wrong distance on an edge");
+        // TC12: Point above an edge
+        assertEquals(1, triangle.distance(new Point(2, 0, 1)), 1e-10, "TC12: Wrong distance above an edge");
+    }
 }
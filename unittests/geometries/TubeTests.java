@@ -89,4 +89,21 @@ class TubeTest {
         assertEquals(1.0, p2.distance(new Point(0, 1, 0)), 1e-10);
     }
 
+    /**
+     * Test method for {@link Tube#distance(Point)}.
+     */
+    @Test
+    void testDistance() {
+        Tube tube = new Tube(new Ray(new Point(0, 0, 0), new Vector(0, 1, 0)), 2);
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Point outside the tube (also behind the axis head - the tube is infinite)
+        assertEquals(3, tube.distance(new Point(0, -10, 5)), 1e-10, "TC01: Wrong distance outside");
+        // TC02: Point inside the tube
+        assertEquals(1, tube.distance(new Point(1, 7, 0)), 1e-10, "TC02: Wrong distance inside");
+        // =============== Boundary Values Tests ==================
+        // TC11: Point on the axis
+        assertEquals(2, tube.distance(new Point(0, 3, 0)), 1e-10, "TC11: Wrong distance on the axis");
+        // TC12: Point on the surface
+        assertEquals(0, tube.distance(new Point(0, 3, 2)), 1e-10, "TC12: Wrong distance on the surface");
+    }
 }
@@ -0,0 +1,37 @@
+package primitives;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link primitives.Color}.
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+class ColorTests {
+
+    /**
+     * Test method for the arithmetic of {@link Color}.
+     */
+    @Test
+    void testArithmetic() {
+        Color color = new Color(10, 20, 30);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Sum of colors
+        assertEquals(new Color(12, 24, 36), color.add(new Color(1, 2, 3), new Color(1, 2, 3)), "TC01: Wrong sum");
+        // TC02: Scaling by a number and by a triad, and reducing
+        assertEquals(new Color(20, 40, 60), color.scale(2), "TC02: Wrong scale");
+        assertEquals(new Color(10, 40, 15), color.scale(new Double3(1, 2, 0.5)), "TC02: Wrong triad scale");
+        assertEquals(new Color(5, 10, 15), color.reduce(2), "TC02: Wrong reduce");
+        // TC03: Conversion to a Java color clips the components
+        assertEquals(new java.awt.Color(255, 20, 30), new Color(300, 20, 30).getColor(), "TC03: Wrong clipping");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Negative components and factors throw
+        assertThrows(IllegalArgumentException.class, () -> new Color(-1, 0, 0), "TC11: Negative component");
+        assertThrows(IllegalArgumentException.class, () -> color.scale(-1), "TC11: Negative scale");
+        assertThrows(IllegalArgumentException.class, () -> color.reduce(0), "TC11: Zero reduce");
+    }
+}
@@ -0,0 +1,74 @@
+package primitives;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link primitives.Xoroshiro128}.
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+class Xoroshiro128Tests {
+
+    /**
+     * Test method for {@link Xoroshiro128#nextLong()}.
+     */
+    @Test
+    void testNextLong() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The xoroshiro128++ output of a known state: rotl(s0 + s1, 17) + s0
+        assertEquals((3L << 17) + 1, new Xoroshiro128(1, 2).nextLong(), "TC01: Wrong first number");
+        // TC02: The same seed gives the same numbers, another seed other numbers
+        Xoroshiro128 a = new Xoroshiro128(42), b = new Xoroshiro128(42), c = new Xoroshiro128(43);
+        boolean differ = false;
+        for (int i = 0; i < 100; ++i) {
+            long next = a.nextLong();
+            assertEquals(next, b.nextLong(), "TC02: Same seed should give the same numbers");
+            differ |= next != c.nextLong();
+        }
+        assertTrue(differ, "TC02: Another seed should give other numbers");
+        // TC03: Doubles are uniform in [0, 1)
+        double sum = 0;
+        for (int i = 0; i < 10000; ++i) {
+            double value = a.nextDouble();
+            assertTrue(value >= 0 && value < 1, "TC03: Double out of range");
+            sum += value;
+        }
+        assertEquals(0.5, sum / 10000, 0.02, "TC03: Doubles should average a half");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Seed 0 gives a working generator
+        Xoroshiro128 zero = new Xoroshiro128(0);
+        assertNotEquals(zero.nextLong(), zero.nextLong(), "TC11: Seed 0 should not be stuck");
+    }
+
+    /**
+     * Test method for {@link Xoroshiro128#mix(long)}.
+     */
+    @Test
+    void testMix() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The first SplitMix64 number of seed 0
+        assertEquals(0xE220A8397B1DCDAFL, Xoroshiro128.mix(0x9E3779B97F4A7C15L), "TC01: Wrong SplitMix64 output");
+        // TC02: Consecutive keys differ in about half of the bits
+        int bits = 0;
+        for (long key = 0; key < 1000; ++key)
+            bits += Long.bitCount(Xoroshiro128.mix(key) ^ Xoroshiro128.mix(key + 1));
+        assertEquals(32, bits / 1000.0, 1, "TC02: Mixing should change half of the bits");
+    }
+
+    /**
+     * Test method for {@link Xoroshiro128#split()}.
+     */
+    @Test
+    void testSplit() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: A split generator gives another stream, the same for the same parent seed
+        Xoroshiro128 parent = new Xoroshiro128(7), child = parent.split();
+        Xoroshiro128 again = new Xoroshiro128(7).split();
+        long first = child.nextLong();
+        assertEquals(first, again.nextLong(), "TC01: Split should be deterministic");
+        assertNotEquals(first, parent.nextLong(), "TC01: Split stream should differ from the parent");
+    }
+}
@@ -1,8 +1,16 @@
 package renderer;
 
+import geometries.CompiledScene;
+import geometries.Frustum;
+import geometries.Geometries;
+import geometries.Intersection;
+import geometries.Sphere;
+import geometries.Triangle;
 import org.junit.jupiter.api.Test;
 import primitives.*;
 import renderer.Camera;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.function.BiFunction;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -81,4 +89,260 @@ class CameraTests {
                 "TC05: Incorrect ray through bottom-right"
         );
     }
+
+    /**
+     * Test method for {@link renderer.Camera#getFrustum(double)}.
+     */
+    @Test
+    void testGetFrustum() {
+        Camera camera = new Camera.Builder(new Point(0, 0, 0), new Vector(0, 0, -1), new Vector(0, 1, 0))
+                .setVPSize(4, 2)
+                .setVPDistance(2)
+                .build();
+        Frustum frustum = camera.getFrustum(10);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The view plane center and a ray through a corner pixel are inside
+        assertTrue(frustum.contains(new Point(0, 0, -2)), "TC01: View plane center outside");
+        assertTrue(frustum.contains(camera.constructRay(3, 3, 0, 0).getPoint(5)), "TC01: Corner ray outside");
+        // TC02: Points beside the view plane and behind the camera are outside
+        assertFalse(frustum.contains(new Point(3, 0, -2)), "TC02: Point beside the view plane inside");
+        assertFalse(frustum.contains(new Point(0, 0, 1)), "TC02: Point behind the camera inside");
+        // =============== Boundary Values Tests ==================
+        // TC11: Infinite frustum by default
+        assertFalse(camera.getFrustum().isFinite(), "TC11: Default frustum should be infinite");
+    }
+
+    /**
+     * Test method for {@link Camera#traceRays(geometries.Intersectable, Camera.HitListener)}.
+     */
+    @Test
+    void testTraceRays() {
+        Camera camera = new Camera.Builder(new Point(0, 0, 0), new Vector(0, 0, -1), new Vector(0, 1, 0))
+                .setVPSize(4, 4)
+                .setVPDistance(4)
+                .setResolution(9, 9)
+                .build();
+        // a few geometries in view, many behind and beside the camera
+        Geometries scene = new Geometries(new Sphere(new Point(0, 0, -20), 3),
+                new Triangle(new Point(-5, -5, -30), new Point(5, -5, -30), new Point(0, 5, -30)));
+        for (int i = 0; i < 50; ++i) {
+            scene.add(new Sphere(new Point(i - 25, 0, 10 + i), 1));
+            scene.add(new Sphere(new Point(100 + i, 0, -20), 1));
+        }
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The visible set keeps only the geometries in view
+        CompiledScene visible = camera.visibleSet(scene);
+        assertEquals(2, visible.size(), "TC01: Wrong visible set");
+        // TC02: Every pixel gets the same closest hit as a ray traced against the whole scene
+        CompiledScene full = scene.compile();
+        int[] pixels = {0};
+        camera.traceRays(scene, (column, row, hit) -> {
+            Intersection expected = full.calculateClosestIntersection(camera.constructRay(9, 9, column, row));
+            if (expected == null)
+                assertNull(hit, "TC02: Unexpected hit at " + column + "," + row);
+            else
+                assertEquals(expected.getT(), hit.getT(), 1e-9, "TC02: Wrong hit at " + column + "," + row);
+            ++pixels[0];
+        });
+        assertEquals(81, pixels[0], "TC02: Wrong amount of pixels");
+        // TC03: Tracing in packets of every size reports the same hits, partial blocks at the edges included
+        for (int size : new int[]{2, 4, 8}) {
+            Camera packets = new Camera.Builder(new Point(0, 0, 0), new Vector(0, 0, -1), new Vector(0, 1, 0))
+                    .setVPSize(4, 4).setVPDistance(4).setResolution(9, 9).setPacketSize(size).build();
+            boolean[] seen = new boolean[81];
+            packets.traceRays(scene, (column, row, hit) -> {
+                Intersection expected = full.calculateClosestIntersection(camera.constructRay(9, 9, column, row));
+                assertEquals(expected == null, hit == null, "TC03: Wrong hit at " + column + "," + row);
+                if (expected != null)
+                    assertEquals(expected.getT(), hit.getT(), 1e-9, "TC03: Wrong hit at " + column + "," + row);
+                seen[row * 9 + column] = true;
+            });
+            for (boolean pixel : seen)
+                assertTrue(pixel, "TC03: Pixel not traced with packet size " + size);
+        }
+
+        // TC04: Tiles in every order, traced by several threads, report every pixel once with the same hits
+        for (PixelOrder order : PixelOrder.values()) {
+            Camera tiled = new Camera.Builder(new Point(0, 0, 0), new Vector(0, 0, -1), new Vector(0, 1, 0))
+                    .setVPSize(4, 4).setVPDistance(4).setResolution(9, 9)
+                    .setTileSize(3).setPixelOrder(order).setPacketSize(2).setThreads(3).build();
+            AtomicIntegerArray seen = new AtomicIntegerArray(81);
+            tiled.traceRays(scene, (column, row, hit) -> {
+                Intersection expected = full.calculateClosestIntersection(camera.constructRay(9, 9, column, row));
+                assertEquals(expected == null, hit == null, "TC04: Wrong hit at " + column + "," + row);
+                seen.incrementAndGet(row * 9 + column);
+            });
+            for (int pixel = 0; pixel < 81; ++pixel)
+                assertEquals(1, seen.get(pixel), "TC04: Pixel " + pixel + " traced wrong amount of times in " + order);
+        }
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Tracing without a resolution throws
+        Camera noResolution = new Camera.Builder(new Point(0, 0, 0), new Vector(0, 0, -1), new Vector(0, 1, 0))
+                .setVPSize(4, 4).setVPDistance(4).build();
+        assertThrows(IllegalStateException.class, () -> noResolution.traceRays(scene, (column, row, hit) -> {
+        }), "TC11: Missing resolution should throw");
+        // TC12: A non positive resolution throws
+        assertThrows(IllegalArgumentException.class,
+                () -> new Camera.Builder(new Point(0, 0, 0), new Vector(0, 0, -1), new Vector(0, 1, 0))
+                        .setResolution(0, 5), "TC12: Zero resolution should throw");
+        // TC13: An unsupported packet size throws
+        assertThrows(IllegalArgumentException.class,
+                () -> new Camera.Builder(new Point(0, 0, 0), new Vector(0, 0, -1), new Vector(0, 1, 0))
+                        .setPacketSize(3), "TC13: Packet size 3 should throw");
+        // TC14: A failure in a render thread reaches the caller
+        Camera threaded = new Camera.Builder(new Point(0, 0, 0), new Vector(0, 0, -1), new Vector(0, 1, 0))
+                .setVPSize(4, 4).setVPDistance(4).setResolution(9, 9).setTileSize(3).setThreads(2).build();
+        assertThrows(IllegalStateException.class, () -> threaded.traceRays(scene, (column, row, hit) -> {
+            throw new IllegalStateException("listener failure");
+        }), "TC14: Listener failure should be rethrown");
+    }
+
+    /**
+     * Test method for {@link Camera#constructSampleRay(int, int, double, double)}.
+     */
+    @Test
+    void testConstructSampleRay() {
+        Camera camera = new Camera.Builder(new Point(0, 0, 0), new Vector(0, 0, -1), new Vector(0, 1, 0))
+                .setVPSize(6, 6).setVPDistance(10).build();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The center of a pixel is the ray of the pixel
+        for (int i = 0; i < 3; ++i)
+            for (int j = 0; j < 3; ++j)
+                assertEquals(camera.constructRay(3, 3, j, i), camera.constructSampleRay(3, 3, j + 0.5, i + 0.5),
+                        "TC01: Wrong ray through the center of pixel " + j + "," + i);
+
+        // =============== Boundary Values Tests ==================
+        // TC11: The top left corner of the view plane
+        assertEquals(new Ray(new Point(0, 0, 0), new Vector(-3, 3, -10)), camera.constructSampleRay(3, 3, 0, 0),
+                "TC11: Wrong ray through the top left corner");
+        // TC12: The center of the view plane
+        assertEquals(new Ray(new Point(0, 0, 0), new Vector(0, 0, -1)), camera.constructSampleRay(4, 4, 2, 2),
+                "TC12: Wrong ray through the center");
+    }
+
+    /**
+     * Test method for {@link Camera#renderAdaptive(geometries.Intersectable, Shader, Camera.PixelListener)}.
+     */
+    @Test
+    void testRenderAdaptive() {
+        Geometries scene = new Geometries(new Sphere(new Point(0.3, 0.2, -10), 4),
+                new Triangle(new Point(-50, -50, -20), new Point(50, -50, -20), new Point(0, 50, -20)));
+        CompiledScene full = scene.compile();
+        Color white = new Color(255, 255, 255), gray = new Color(100, 100, 100), blue = new Color(0, 0, 255);
+        Shader shader = hit -> hit == null ? blue : hit.getGeometry() instanceof Sphere ? white : gray;
+        BiFunction<Integer, Integer, Camera.Builder> builder = (depth, threads) ->
+                new Camera.Builder(new Point(0, 0, 0), new Vector(0, 0, -1), new Vector(0, 1, 0))
+                        .setVPSize(4, 4).setVPDistance(4).setResolution(16, 16)
+                        .setAdaptiveSampling(depth, 0).setThreads(threads);
+
+        // the box filtered image of the full 4x4 subpixel lattice
+        Camera camera = builder.apply(2, 1).build();
+        Color[] reference = new Color[256];
+        for (int p = 0; p < 256; ++p) {
+            Color sum = Color.BLACK;
+            for (int i = 0; i < 4; ++i)
+                for (int j = 0; j < 4; ++j)
+                    for (int corner = 0; corner < 4; ++corner)
+                        sum = sum.add(shader.shade(full.calculateClosestIntersection(camera.constructSampleRay(16, 16,
+                                p % 16 + (j + corner % 2) / 4.0, p / 16 + (i + corner / 2) / 4.0))));
+            reference[p] = sum.reduce(64);
+        }
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Only the pixels on edges are split, to the same colors as the full lattice, by far fewer rays
+        Color[] image = new Color[256];
+        long rays = camera.renderAdaptive(scene, shader, (column, row, color) -> image[row * 16 + column] = color);
+        for (int p = 0; p < 256; ++p) {
+            assertEquals(reference[p].getR(), image[p].getR(), 1e-9, "TC01: Wrong red of pixel " + p);
+            assertEquals(reference[p].getB(), image[p].getB(), 1e-9, "TC01: Wrong blue of pixel " + p);
+        }
+        assertTrue(rays < 65 * 65 / 3, "TC01: Too many rays: " + rays);
+        // TC02: Tiles in every order by several threads give the same image
+        for (PixelOrder order : PixelOrder.values()) {
+            Color[] tiled = new Color[256];
+            AtomicIntegerArray seen = new AtomicIntegerArray(256);
+            builder.apply(2, 3).setTileSize(5).setPixelOrder(order).build().renderAdaptive(scene, shader,
+                    (column, row, color) -> {
+                        tiled[row * 16 + column] = color;
+                        seen.incrementAndGet(row * 16 + column);
+                    });
+            for (int p = 0; p < 256; ++p) {
+                assertEquals(1, seen.get(p), "TC02: Pixel " + p + " rendered wrong amount of times in " + order);
+                assertEquals(image[p], tiled[p], "TC02: Wrong pixel " + p + " in " + order);
+            }
+        }
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Depth 0 averages the corners, each traced once in a single tile
+        Color[] corners = new Color[256];
+        rays = builder.apply(0, 1).build().renderAdaptive(scene, shader,
+                (column, row, color) -> corners[row * 16 + column] = color);
+        assertEquals(17 * 17, rays, "TC11: Shared corners should be traced once");
+        assertEquals(white, corners[8 * 16 + 8], "TC11: Wrong pixel inside the sphere");
+        // TC12: A flat region of a single geometry is not split
+        Camera flat = builder.apply(3, 1).build();
+        Geometries wall = new Geometries(new Triangle(new Point(-50, -50, -20), new Point(50, -50, -20),
+                new Point(0, 50, -20)));
+        assertEquals(17 * 17, flat.renderAdaptive(wall, hit -> gray, (column, row, color) ->
+                assertEquals(gray, color, "TC12: Wrong flat pixel")), "TC12: Flat region should not be split");
+        CompiledScene offHeap = wall.compile(CompiledScene.Precision.DOUBLE, CompiledScene.Storage.OFF_HEAP);
+        assertEquals(17 * 17, flat.renderAdaptive(offHeap, hit -> gray, (column, row, color) -> {
+        }), "TC12: Flat region of a scene without sources should not be split");
+        // TC13: Illegal depth or threshold throws, and so does a missing resolution
+        assertThrows(IllegalArgumentException.class, () -> builder.apply(5, 1), "TC13: Depth 5 should throw");
+        assertThrows(IllegalArgumentException.class,
+                () -> new Camera.Builder(new Point(0, 0, 0), new Vector(0, 0, -1), new Vector(0, 1, 0))
+                        .setAdaptiveSampling(1, -1), "TC13: Negative threshold should throw");
+        Camera noResolution = new Camera.Builder(new Point(0, 0, 0), new Vector(0, 0, -1), new Vector(0, 1, 0))
+                .setVPSize(4, 4).setVPDistance(4).build();
+        assertThrows(IllegalStateException.class, () -> noResolution.renderAdaptive(scene, shader,
+                (column, row, color) -> {
+                }), "TC13: Missing resolution should throw");
+    }
+
+    /**
+     * Test method for {@link Camera#renderSampled(geometries.Intersectable, Shader, Camera.PixelListener)}.
+     */
+    @Test
+    void testRenderSampled() {
+        Geometries scene = new Geometries(new Sphere(new Point(0.3, 0.2, -10), 4));
+        Color white = new Color(255, 255, 255), blue = new Color(0, 0, 255);
+        Shader shader = hit -> hit == null ? blue : white;
+        Camera.Builder builder = new Camera.Builder(new Point(0, 0, 0), new Vector(0, 0, -1), new Vector(0, 1, 0))
+                .setVPSize(4, 4).setVPDistance(4).setResolution(12, 12);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Every pattern renders the same bits by one thread and by several, in tiles of any order
+        for (SamplePattern pattern : SamplePattern.values()) {
+            Color[] single = new Color[144], parallel = new Color[144];
+            builder.setSampling(pattern, 9, 17).setThreads(1).setTileSize(0).setPixelOrder(PixelOrder.ROW_MAJOR)
+                    .build().renderSampled(scene, shader, (column, row, color) -> single[row * 12 + column] = color);
+            builder.setThreads(3).setTileSize(5).setPixelOrder(PixelOrder.HILBERT)
+                    .build().renderSampled(scene, shader, (column, row, color) -> parallel[row * 12 + column] = color);
+            assertArrayEquals(single, parallel, "TC01: " + pattern + " differs between sequential and parallel");
+            // the center is inside the sphere, the corners outside, and some pixel on the edge is mixed
+            assertEquals(white, single[6 * 12 + 6], "TC01: Wrong pixel inside the sphere");
+            assertEquals(blue, single[0], "TC01: Wrong pixel outside the sphere");
+            assertTrue(Arrays.stream(single).anyMatch(color -> color.getR() > 0 && color.getR() < 255),
+                    "TC01: " + pattern + " should blend the edge");
+        }
+        // TC02: Another seed gives another image
+        Color[] first = new Color[144], second = new Color[144];
+        builder.setThreads(1).setSampling(SamplePattern.RANDOM, 4, 1).build()
+                .renderSampled(scene, shader, (column, row, color) -> first[row * 12 + column] = color);
+        builder.setSampling(SamplePattern.RANDOM, 4, 2).build()
+                .renderSampled(scene, shader, (column, row, color) -> second[row * 12 + column] = color);
+        assertFalse(Arrays.equals(first, second), "TC02: Another seed should change the edges");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Illegal sampling throws
+        assertThrows(IllegalArgumentException.class, () -> builder.setSampling(SamplePattern.SOBOL, 0, 1),
+                "TC11: Zero samples should throw");
+        assertThrows(IllegalArgumentException.class, () -> builder.setSampling(null, 4, 1),
+                "TC11: Missing pattern should throw");
+    }
 }
@@ -0,0 +1,147 @@
+package renderer;
+
+import geometries.Geometries;
+import geometries.Sphere;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import primitives.Color;
+import primitives.Point;
+import primitives.Vector;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link renderer.CheckpointRenderer}.
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+class CheckpointRendererTests {
+    private final Geometries scene = new Geometries(new Sphere(new Point(-1, 0, -10), 3));
+    private final AtomicInteger calls = new AtomicInteger();
+    private volatile int failAt = Integer.MAX_VALUE;
+    private final Shader shader = hit -> {
+        if (calls.incrementAndGet() > failAt) throw new IllegalStateException("Render killed");
+        return hit == null ? new Color(0, 0, 255) : new Color(255, 255, 255);
+    };
+
+    /**
+     * A 24x16 camera in 6 tiles of 8, 4 samples a pixel.
+     */
+    private Camera.Builder builder() {
+        return new Camera.Builder(new Point(0, 0, 0), new Vector(0, 0, -1), new Vector(0, 1, 0))
+                .setVPSize(12, 8).setVPDistance(10).setResolution(24, 16).setTileSize(8)
+                .setSampling(SamplePattern.RANDOM, 4, 3);
+    }
+
+    /**
+     * Test method for {@link CheckpointRenderer#render(boolean)}.
+     */
+    @Test
+    void testRender(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("render.ckpt");
+        Camera camera = builder().build();
+        double[] expected = new double[3 * 24 * 16];
+        camera.renderSampled(scene, shader, (column, row, color) -> {
+            int p = 3 * (row * 24 + column);
+            expected[p] = color.getR();
+            expected[p + 1] = color.getG();
+            expected[p + 2] = color.getB();
+        });
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: A render killed midway leaves a checkpoint of the tiles completed
+        failAt = 700; // past 2 tiles of 8x8 pixels, 4 samples each
+        calls.set(0);
+        CheckpointRenderer renderer = new CheckpointRenderer(camera, scene, shader, "flat", file);
+        assertThrows(IllegalStateException.class, () -> renderer.render(false), "TC01: Render should fail");
+        assertTrue(Files.exists(file), "TC01: No checkpoint written");
+        assertEquals(1, renderer.getCheckpoints(), "TC01: Wrong amount of checkpoints");
+        // TC02: Resuming renders only the other tiles, to the same image as a single run
+        failAt = Integer.MAX_VALUE;
+        calls.set(0);
+        CheckpointRenderer resumed = new CheckpointRenderer(camera, scene, shader, "flat", file);
+        assertArrayEquals(expected, resumed.render(true), "TC02: Resumed image differs");
+        assertEquals(2, resumed.getRestoredTiles(), "TC02: Wrong amount of restored tiles");
+        assertEquals(4 * 64 * 4, calls.get(), "TC02: Restored tiles should not be rendered");
+        // TC03: A changed seed or settings makes the checkpoint stale
+        calls.set(0);
+        new CheckpointRenderer(camera, scene, shader, "shaded", file).render(true);
+        assertEquals(4 * 24 * 16, calls.get(), "TC03: Stale checkpoint of other settings taken");
+        Camera reseeded = builder().setSampling(SamplePattern.RANDOM, 4, 4).build();
+        CheckpointRenderer other = new CheckpointRenderer(reseeded, scene, shader, "shaded", file);
+        other.render(true);
+        assertEquals(0, other.getRestoredTiles(), "TC03: Stale checkpoint of another seed taken");
+        // TC04: A changed scene makes the checkpoint stale
+        Geometries moved = new Geometries(new Sphere(new Point(1, 0, -10), 3));
+        CheckpointRenderer elsewhere = new CheckpointRenderer(reseeded, moved, shader, "shaded", file);
+        elsewhere.render(true);
+        assertEquals(0, elsewhere.getRestoredTiles(), "TC04: Stale checkpoint of another scene taken");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Resuming a completed render renders nothing
+        calls.set(0);
+        CheckpointRenderer done = new CheckpointRenderer(reseeded, moved, shader, "shaded", file);
+        double[] again = done.render(true);
+        assertEquals(0, calls.get(), "TC11: Completed render should not be rendered again");
+        assertEquals(6, done.getRestoredTiles(), "TC11: Wrong amount of restored tiles");
+        // TC12: Without resume the checkpoint is ignored
+        calls.set(0);
+        assertArrayEquals(again, done.render(false), "TC12: Wrong image");
+        assertEquals(4 * 24 * 16, calls.get(), "TC12: Checkpoint taken without resume");
+        // TC13: A damaged checkpoint is ignored
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, java.util.Arrays.copyOf(bytes, bytes.length - 100));
+        CheckpointRenderer damaged = new CheckpointRenderer(reseeded, moved, shader, "shaded", file);
+        assertArrayEquals(again, damaged.render(true), "TC13: Wrong image");
+        assertEquals(0, damaged.getRestoredTiles(), "TC13: Damaged checkpoint taken");
+        // TC14: Only the checkpoint file remains, without temporary files
+        try (var files = Files.list(directory)) {
+            assertEquals(1, files.count(), "TC14: Temporary files left");
+        }
+    }
+
+    /**
+     * Test method for {@link CheckpointRenderer#setInterval(Duration)}.
+     */
+    @Test
+    void testSetInterval(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("render.ckpt");
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Checkpoints are written during the render, besides the last one
+        AtomicInteger tiles = new AtomicInteger();
+        Shader slow = hit -> {
+            if (calls.incrementAndGet() % 256 == 0 && tiles.incrementAndGet() <= 6) {
+                try {
+                    Thread.sleep(30);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return hit == null ? Color.BLACK : new Color(255, 255, 255);
+        };
+        CheckpointRenderer renderer = new CheckpointRenderer(builder().build(), scene, slow, "slow", file)
+                .setInterval(Duration.ofMillis(10));
+        renderer.render(false);
+        assertTrue(renderer.getCheckpoints() > 1, "TC01: No periodic checkpoints written");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A non positive interval throws
+        assertThrows(IllegalArgumentException.class, () -> renderer.setInterval(Duration.ZERO), "TC11: Zero interval");
+        // TC12: A camera without resolution throws
+        Camera camera = new Camera.Builder(new Point(0, 0, 0), new Vector(0, 0, -1), new Vector(0, 1, 0))
+                .setVPSize(12, 8).setVPDistance(10).build();
+        assertThrows(IllegalStateException.class, () -> new CheckpointRenderer(camera, scene, slow, "", file),
+                "TC12: No resolution");
+        // TC13: A scene that cannot be hashed throws
+        Geometries custom = new Geometries(new Sphere(new Point(0, 0, -10), 1) {
+        });
+        assertThrows(IllegalArgumentException.class,
+                () -> new CheckpointRenderer(builder().build(), custom, slow, "", file), "TC13: Unhashable scene");
+    }
+}
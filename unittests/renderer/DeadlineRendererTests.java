@@ -0,0 +1,67 @@
+package renderer;
+
+import geometries.Geometries;
+import geometries.Sphere;
+import org.junit.jupiter.api.Test;
+import primitives.Color;
+import primitives.Point;
+import primitives.Vector;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link renderer.DeadlineRenderer}.
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+class DeadlineRendererTests {
+    private final Geometries scene = new Geometries(new Sphere(new Point(-1, 0, -10), 3));
+    private final Color background = new Color(0, 0, 255);
+    private final Shader shader = hit -> hit == null ? background : new Color(255, 255, 255);
+
+    /**
+     * A 40x32 image in tiles of 8: the sphere covers the left part, the right tiles are background only.
+     */
+    private DeadlineRenderer renderer() {
+        return new DeadlineRenderer(new Camera.Builder(new Point(0, 0, 0), new Vector(0, 0, -1), new Vector(0, 1, 0))
+                .setVPSize(10, 8).setVPDistance(10).setResolution(40, 32).setTileSize(8)
+                .setSampling(SamplePattern.RANDOM, 1, 5).setThreads(2).build(), scene, shader);
+    }
+
+    /**
+     * Test method for {@link DeadlineRenderer#render(Duration)}.
+     */
+    @Test
+    void testRender() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The render ends near the deadline, with the edge tiles sampled more than the flat ones
+        DeadlineRenderer renderer = renderer();
+        DeadlineRenderer.Result result = renderer.render(Duration.ofMillis(300));
+        assertTrue(result.overrunNanos() < 100_000_000, "TC01: Render overran by " + result.overrunNanos() / 1e6 + " ms");
+        assertTrue(result.overrunNanos() > -150_000_000, "TC01: Render ended too early, by " + -result.overrunNanos() / 1e6 + " ms");
+        int edge = 16 * 40 + 4, flat = 16 * 40 + 36; // the left edge of the sphere, and the right background
+        assertTrue(result.samples()[edge] > DeadlineRenderer.BASE_SAMPLES, "TC01: Edge pixel not refined");
+        assertEquals(DeadlineRenderer.BASE_SAMPLES, result.samples()[flat], "TC01: Flat pixel should not be refined");
+        assertEquals(background.getB(), result.pixels()[3 * flat + 2], 1e-12, "TC01: Wrong flat pixel");
+        long rays = 0;
+        for (int samples : result.samples())
+            rays += samples;
+        assertEquals(rays, result.rays(), "TC01: Wrong amount of rays");
+        assertTrue(result.raysPerSecond() > 0, "TC01: No throughput measured");
+        assertTrue(result.predictionError() >= 0, "TC01: Negative prediction error");
+        // TC02: A longer budget reaches a smaller error
+        DeadlineRenderer.Result shorter = renderer().render(Duration.ofMillis(60));
+        assertTrue(result.meanError() < shorter.meanError(), "TC02: More time should reduce the error");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A budget too short for the base samples still takes them, and reports the overrun
+        DeadlineRenderer.Result late = renderer.render(Duration.ofNanos(1));
+        for (int samples : late.samples())
+            assertEquals(DeadlineRenderer.BASE_SAMPLES, samples, "TC11: Every pixel should have the base samples");
+        assertTrue(late.overrunNanos() > 0, "TC11: Overrun should be reported");
+        // TC12: A non positive budget throws
+        assertThrows(IllegalArgumentException.class, () -> renderer.render(Duration.ZERO), "TC12: Zero budget");
+    }
+}
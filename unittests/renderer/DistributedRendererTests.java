@@ -0,0 +1,207 @@
+package renderer;
+
+import geometries.Cylinder;
+import geometries.Geometries;
+import geometries.Intersection;
+import geometries.Plane;
+import geometries.Sphere;
+import org.junit.jupiter.api.Test;
+import primitives.Color;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link renderer.DistributedRenderer}, by worker processes on this machine.
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+class DistributedRendererTests {
+    private final Geometries scene = new Geometries(new Sphere(new Point(-1, 0, -10), 3),
+            new Cylinder(new Ray(new Point(4, -3, -12), new Vector(0, 1, 0.2)), 1, 5),
+            new Plane(new Point(0, -4, 0), new Vector(0, 1, 0.1)));
+
+    /**
+     * Colors the hits by their normal, and the background blue.
+     */
+    public static final class NormalShader implements Shader {
+        @Override
+        public Color shade(Intersection hit) {
+            if (hit == null) return new Color(0, 0, 255);
+            Vector normal = hit.getNormal();
+            return new Color(128 + 127 * normal.getX(), 128 + 127 * normal.getY(), 128 + 127 * normal.getZ());
+        }
+    }
+
+    /**
+     * A shader that the workers cannot create.
+     */
+    public static final class TintShader implements Shader {
+        private final Color tint;
+
+        public TintShader(Color tint) {
+            this.tint = tint;
+        }
+
+        @Override
+        public Color shade(Intersection hit) {
+            return tint;
+        }
+    }
+
+    private static volatile boolean probed;
+
+    /**
+     * A class that is not a shader, which records whether it was ever initialized.
+     */
+    public static final class Probe {
+        static {
+            probed = true;
+        }
+    }
+
+    /**
+     * A 24x16 camera in 6 tiles of 8, 4 samples a pixel.
+     */
+    private Camera.Builder builder() {
+        return new Camera.Builder(new Point(0, 0, 0), new Vector(0, 0, -1), new Vector(0, 1, 0))
+                .setVPSize(12, 8).setVPDistance(10).setResolution(24, 16).setTileSize(8)
+                .setSampling(SamplePattern.RANDOM, 4, 3);
+    }
+
+    private double[] expected(Camera camera) {
+        double[] pixels = new double[3 * 24 * 16];
+        camera.renderSampled(scene, new NormalShader(), (column, row, color) -> {
+            int p = 3 * (row * 24 + column);
+            pixels[p] = color.getR();
+            pixels[p + 1] = color.getG();
+            pixels[p + 2] = color.getB();
+        });
+        return pixels;
+    }
+
+    /**
+     * Test method for {@link DistributedRenderer#render(int)} and
+     * {@link DistributedRenderer#render(ServerSocket, int)}.
+     *
+     * @throws Exception if the workers cannot be used
+     */
+    @Test
+    void testRender() throws Exception {
+        Camera camera = builder().build();
+        double[] expected = expected(camera);
+        DistributedRenderer renderer = new DistributedRenderer(camera, scene, NormalShader.class);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Worker processes render the very same image as a single process
+        DistributedRenderer.Result result = renderer.render(2);
+        assertArrayEquals(expected, result.pixels(), "TC01: Distributed image differs");
+        assertEquals(2, result.workers(), "TC01: Wrong amount of workers");
+        assertEquals(0, result.failedWorkers(), "TC01: No worker should fail");
+
+        // TC02: The tile of a dead worker is put back, the tile of a stalled one is backed up
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        ServerSocket server = new ServerSocket(0, 10, loopback);
+        Socket dead = new Socket(loopback, server.getLocalPort());
+        Socket stalled = new Socket(loopback, server.getLocalPort());
+        try {
+            Thread killer = new Thread(() -> {
+                try {
+                    dead.getInputStream().read(); // the coordinator sent the scene and a tile
+                    Thread.sleep(200);
+                    dead.close();
+                } catch (IOException | InterruptedException e) {
+                    // closed anyway
+                }
+            });
+            killer.start();
+            result = renderer.setTimeout(Duration.ofSeconds(30)).render(server, 2);
+            killer.join();
+            assertArrayEquals(expected, result.pixels(), "TC02: Image differs with failing workers");
+            assertEquals(4, result.workers(), "TC02: Wrong amount of workers");
+            assertEquals(1, result.failedWorkers(), "TC02: The dead worker should fail");
+            assertEquals(1, result.requeuedTiles(), "TC02: The tile of the dead worker should be put back");
+            assertTrue(result.backupTiles() >= 1, "TC02: The tile of the stalled worker should be backed up");
+        } finally {
+            stalled.close();
+            dead.close();
+            server.close();
+        }
+
+        // =============== Boundary Values Tests ==================
+        // TC11: No worker left - the render fails after the timeout
+        try (ServerSocket closing = new ServerSocket(0, 10, loopback)) {
+            new Socket(loopback, closing.getLocalPort()).close();
+            renderer.setTimeout(Duration.ofMillis(300));
+            assertThrows(IOException.class, () -> renderer.render(closing, 0), "TC11: Render without workers");
+        }
+        // TC12: Illegal amounts of workers
+        assertThrows(IllegalArgumentException.class, () -> renderer.render(0), "TC12: No workers");
+        try (ServerSocket idle = new ServerSocket(0, 10, loopback)) {
+            assertThrows(IllegalArgumentException.class, () -> renderer.render(idle, -1), "TC12: Negative workers");
+        }
+    }
+
+    /**
+     * Test method for {@link DistributedRenderer#DistributedRenderer(Camera, geometries.Intersectable, Class)}
+     * and {@link DistributedRenderer#setTimeout(Duration)}.
+     *
+     * @throws IOException if the scene cannot be written
+     */
+    @Test
+    void testConstructor() throws IOException {
+        DistributedRenderer renderer = new DistributedRenderer(builder().build(), scene, NormalShader.class);
+        // =============== Boundary Values Tests ==================
+        // TC11: A shader the workers cannot create
+        assertThrows(IllegalArgumentException.class,
+                () -> new DistributedRenderer(builder().build(), scene, TintShader.class), "TC11: Shader with arguments");
+        // TC12: A camera without resolution
+        Camera camera = new Camera.Builder(new Point(0, 0, 0), new Vector(0, 0, -1), new Vector(0, 1, 0))
+                .setVPSize(12, 8).setVPDistance(10).build();
+        assertThrows(IllegalStateException.class, () -> new DistributedRenderer(camera, scene, NormalShader.class),
+                "TC12: No resolution");
+        // TC13: A scene with a geometry that cannot be sent - it refers to this test
+        Geometries custom = new Geometries(new Sphere(new Point(0, 0, -10), 1) {
+            @Override
+            public String toString() {
+                return "custom sphere of " + DistributedRendererTests.this;
+            }
+        });
+        assertThrows(IllegalArgumentException.class,
+                () -> new DistributedRenderer(builder().build(), custom, NormalShader.class), "TC13: Unsendable scene");
+        // TC14: A non positive timeout
+        assertThrows(IllegalArgumentException.class, () -> renderer.setTimeout(Duration.ZERO), "TC14: Zero timeout");
+    }
+
+    /**
+     * Test method for {@link RenderWorker#serve(Socket)}.
+     *
+     * @throws Exception if the connection cannot be used
+     */
+    @Test
+    void testServe() throws Exception {
+        // =============== Boundary Values Tests ==================
+        // TC11: A class that is not a shader is refused before it is initialized
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        try (ServerSocket server = new ServerSocket(0, 1, loopback);
+             Socket worker = new Socket(loopback, server.getLocalPort());
+             Socket coordinator = server.accept()) {
+            DataOutputStream out = new DataOutputStream(coordinator.getOutputStream());
+            out.writeInt(RenderWorker.MAGIC);
+            out.writeInt(RenderWorker.VERSION);
+            out.writeUTF(Probe.class.getName());
+            out.flush();
+            assertThrows(IOException.class, () -> RenderWorker.serve(worker), "TC11: Not a shader");
+        }
+        assertFalse(probed, "TC11: The refused class was initialized");
+    }
+}
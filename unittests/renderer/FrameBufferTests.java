@@ -0,0 +1,129 @@
+package renderer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import primitives.Color;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link renderer.FrameBuffer}.
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+class FrameBufferTests {
+
+    /**
+     * Fills a 5x3 image split into chunks of 2 rows: pixel (x, y) gets the color (10x, 20y, 255).
+     */
+    private static FrameBuffer gradient() {
+        FrameBuffer image = new FrameBuffer(5, 3, 2 * 5 * 12);
+        // every row by its own thread - the writes are disjoint
+        IntStream.range(0, 3).parallel().forEach(y -> {
+            for (int x = 0; x < 5; ++x)
+                image.setPixel(x, y, new Color(10 * x, 20 * y, 255));
+        });
+        return image;
+    }
+
+    /**
+     * Checks a color up to the float precision of the buffer.
+     */
+    private static void assertColor(Color expected, Color actual, String message) {
+        assertEquals(expected.getR(), actual.getR(), 1e-4, message);
+        assertEquals(expected.getG(), actual.getG(), 1e-4, message);
+        assertEquals(expected.getB(), actual.getB(), 1e-4, message);
+    }
+
+    /**
+     * Test method for {@link FrameBuffer#setPixel(int, int, Color)} and {@link FrameBuffer#getPixel(int, int)}.
+     */
+    @Test
+    void testPixels() {
+        FrameBuffer image = gradient();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Pixels in both chunks keep their colors
+        assertColor(new Color(30, 20, 255), image.getPixel(3, 1), "TC01: Wrong pixel in the first chunk");
+        assertColor(new Color(40, 40, 255), image.getPixel(4, 2), "TC01: Wrong pixel in the second chunk");
+        // TC02: An unset pixel is black
+        assertEquals(Color.BLACK, new FrameBuffer(2, 2).getPixel(1, 1), "TC02: New pixel should be black");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Pixels out of the image throw
+        assertThrows(IndexOutOfBoundsException.class, () -> image.getPixel(5, 0), "TC11: Column out of range");
+        assertThrows(IndexOutOfBoundsException.class, () -> image.setPixel(0, -1, Color.BLACK), "TC11: Negative row");
+        // TC12: Illegal sizes throw
+        assertThrows(IllegalArgumentException.class, () -> new FrameBuffer(0, 5), "TC12: Empty image");
+    }
+
+    /**
+     * Test method for {@link FrameBuffer#writePfm(Path)}, {@link FrameBuffer#writePpm(Path)}
+     * {@link FrameBuffer#writeTga(Path)} and {@link FrameBuffer#writePng(Path, int)}.
+     */
+    @Test
+    void testWrite(@TempDir Path directory) throws IOException {
+        FrameBuffer image = gradient();
+        image.setPixel(0, 0, 2, 0, 0.5); // over the full intensity
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: PPM - header, then top row first in red, green, blue bytes, clipped
+        Path ppm = directory.resolve("image.ppm");
+        image.writePpm(ppm);
+        byte[] bytes = Files.readAllBytes(ppm);
+        String header = "P6\n5 3\n255\n";
+        assertEquals(header, new String(bytes, 0, header.length(), StandardCharsets.US_ASCII), "TC01: Wrong PPM header");
+        assertEquals(header.length() + 45, bytes.length, "TC01: Wrong PPM length");
+        assertEquals(255, bytes[header.length()] & 0xFF, "TC01: Red should be clipped");
+        assertEquals(128, bytes[header.length() + 2] & 0xFF, "TC01: Wrong blue");
+        int p = header.length() + 3 * (2 * 5 + 3);
+        assertArrayEquals(new byte[]{30, 40, (byte) 255}, new byte[]{bytes[p], bytes[p + 1], bytes[p + 2]},
+                "TC01: Wrong PPM pixel");
+        // TC02: PFM - header, then bottom row first in little endian floats
+        Path pfm = directory.resolve("image.pfm");
+        image.writePfm(pfm);
+        bytes = Files.readAllBytes(pfm);
+        header = "PF\n5 3\n-1.0\n";
+        assertEquals(header, new String(bytes, 0, header.length(), StandardCharsets.US_ASCII), "TC02: Wrong PFM header");
+        assertEquals(header.length() + 180, bytes.length, "TC02: Wrong PFM length");
+        ByteBuffer floats = ByteBuffer.wrap(bytes, header.length(), 180).slice().order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(40 / 255f, floats.getFloat(4), 1e-6, "TC02: Bottom row should come first");
+        assertEquals(2f, floats.getFloat(12 * 10), 1e-6, "TC02: Top row should come last, unclipped");
+        // TC03: TGA - 18 byte header, then top row first in blue, green, red bytes
+        Path tga = directory.resolve("image.tga");
+        image.writeTga(tga);
+        bytes = Files.readAllBytes(tga);
+        assertEquals(18 + 45, bytes.length, "TC03: Wrong TGA length");
+        assertEquals(2, bytes[2], "TC03: Wrong image type");
+        assertEquals(5, bytes[12], "TC03: Wrong width");
+        assertEquals(3, bytes[14], "TC03: Wrong height");
+        assertEquals(24, bytes[16], "TC03: Wrong depth");
+        p = 18 + 3 * (2 * 5 + 3);
+        assertArrayEquals(new byte[]{(byte) 255, 40, 30}, new byte[]{bytes[p], bytes[p + 1], bytes[p + 2]},
+                "TC03: Wrong TGA pixel");
+        // TC04: PNG - readable, with the clipped 8 bit colors
+        Path png = directory.resolve("image.png");
+        image.writePng(png, 2);
+        BufferedImage read = ImageIO.read(png.toFile());
+        assertEquals(5, read.getWidth(), "TC04: Wrong PNG width");
+        assertEquals(3, read.getHeight(), "TC04: Wrong PNG height");
+        assertEquals(0xFF0080, read.getRGB(0, 0) & 0xFFFFFF, "TC04: Wrong clipped PNG pixel");
+        assertEquals(0x1E28FF, read.getRGB(3, 2) & 0xFFFFFF, "TC04: Wrong PNG pixel");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Writing over an existing longer file truncates it
+        image.writePpm(tga);
+        assertEquals(Files.size(ppm), Files.size(tga), "TC11: Old content should be truncated");
+    }
+}
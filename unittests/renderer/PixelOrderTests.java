@@ -0,0 +1,64 @@
+package renderer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link renderer.PixelOrder}.
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+class PixelOrderTests {
+
+    /**
+     * Checks that an order visits every cell of a grid exactly once.
+     */
+    private static void assertPermutation(int[] order, int width, int height, String message) {
+        assertEquals(width * height, order.length, message + ": wrong amount of cells");
+        boolean[] seen = new boolean[order.length];
+        for (int cell : order) {
+            assertFalse(seen[cell], message + ": cell " + cell + " visited twice");
+            seen[cell] = true;
+        }
+    }
+
+    /**
+     * Test method for {@link PixelOrder#order(int, int)}.
+     */
+    @Test
+    void testOrder() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Every order visits every cell of square and non square grids once
+        for (PixelOrder order : PixelOrder.values()) {
+            assertPermutation(order.order(16, 16), 16, 16, "TC01: " + order + " 16x16");
+            assertPermutation(order.order(13, 5), 13, 5, "TC01: " + order + " 13x5");
+        }
+        // TC02: Row major order is the identity
+        assertArrayEquals(new int[]{0, 1, 2, 3, 4, 5}, PixelOrder.ROW_MAJOR.order(3, 2), "TC02: Wrong row major order");
+        // TC03: Morton order visits the quadrants in Z shape
+        assertArrayEquals(new int[]{0, 1, 4, 5, 2, 3, 6, 7, 8, 9, 12, 13, 10, 11, 14, 15},
+                PixelOrder.MORTON.order(4, 4), "TC03: Wrong Morton order");
+        // TC04: Consecutive cells of Hilbert order are neighbours
+        int[] hilbert = PixelOrder.HILBERT.order(32, 32);
+        for (int i = 1; i < hilbert.length; ++i)
+            assertEquals(1, Math.abs(hilbert[i] % 32 - hilbert[i - 1] % 32) + Math.abs(hilbert[i] / 32 - hilbert[i - 1] / 32),
+                    "TC04: Hilbert cells " + (i - 1) + " and " + i + " are not neighbours");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A single cell
+        for (PixelOrder order : PixelOrder.values())
+            assertArrayEquals(new int[]{0}, order.order(1, 1), "TC11: " + order + " single cell");
+        // TC12: A single row is visited left to right by the curves too
+        assertArrayEquals(new int[]{0, 1, 2}, PixelOrder.HILBERT.order(3, 1), "TC12: Wrong Hilbert row");
+        assertArrayEquals(new int[]{0, 1, 2}, PixelOrder.MORTON.order(3, 1), "TC12: Wrong Morton row");
+        // TC13: Empty grid throws
+        assertThrows(IllegalArgumentException.class, () -> PixelOrder.MORTON.order(0, 4), "TC13: Empty grid should throw");
+        // TC14: The square grid order of row major visits the same cells as its listing
+        int[] square = PixelOrder.ROW_MAJOR.order(8, 8);
+        for (int d = 0; d < square.length; ++d) {
+            int cell = PixelOrder.ROW_MAJOR.cell(d, 3);
+            assertEquals(square[d], (cell >>> 16) * 8 + (cell & 0xFFFF), "TC14: Wrong row major cell " + d);
+        }
+    }
+}
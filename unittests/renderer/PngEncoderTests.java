@@ -0,0 +1,164 @@
+package renderer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link renderer.PngEncoder}.
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+class PngEncoderTests {
+    private static final int WIDTH = 61;
+    private static final int HEIGHT = 47;
+
+    /**
+     * Pixels of a test image: smooth gradients with some noise, 3 bytes per pixel.
+     */
+    private static byte[] image() {
+        Random random = new Random(7);
+        byte[] pixels = new byte[3 * WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; ++y)
+            for (int x = 0; x < WIDTH; ++x) {
+                int p = 3 * (y * WIDTH + x);
+                pixels[p] = (byte) (4 * x);
+                pixels[p + 1] = (byte) (5 * y);
+                pixels[p + 2] = (byte) (x * y % 7 == 0 ? random.nextInt(256) : 128);
+            }
+        return pixels;
+    }
+
+    /**
+     * Encodes an image by bands of the given heights, repeated as needed.
+     */
+    private static void encode(Path file, byte[] pixels, int threads, int level, int... bandHeights) throws IOException {
+        try (PngEncoder encoder = new PngEncoder(FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE), WIDTH, HEIGHT, threads, level)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(pixels.length);
+            for (int row = 0, b = 0; row < HEIGHT; ++b) {
+                int rows = Math.min(bandHeights[b % bandHeights.length], HEIGHT - row);
+                // the buffer is reused - the encoder must copy the band
+                buffer.clear();
+                buffer.put(pixels, 3 * WIDTH * row, 3 * WIDTH * rows).flip();
+                encoder.accept(row, rows, buffer);
+                row += rows;
+            }
+        }
+    }
+
+    /**
+     * Checks that a PNG file decodes to the given pixels, and that its chunks and zlib stream are intact.
+     */
+    private static void assertImage(byte[] pixels, Path file, String message) throws IOException {
+        BufferedImage read = ImageIO.read(file.toFile());
+        assertEquals(WIDTH, read.getWidth(), message + ": wrong width");
+        assertEquals(HEIGHT, read.getHeight(), message + ": wrong height");
+        for (int y = 0; y < HEIGHT; ++y)
+            for (int x = 0; x < WIDTH; ++x) {
+                int p = 3 * (y * WIDTH + x);
+                int rgb = (pixels[p] & 0xFF) << 16 | (pixels[p + 1] & 0xFF) << 8 | pixels[p + 2] & 0xFF;
+                assertEquals(rgb, read.getRGB(x, y) & 0xFFFFFF, message + ": wrong pixel " + x + "," + y);
+            }
+
+        // every chunk has a correct CRC, and the image data inflates with a correct Adler-32 check
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file));
+        bytes.position(8);
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        while (bytes.hasRemaining()) {
+            int length = bytes.getInt();
+            byte[] chunk = new byte[4 + length];
+            bytes.get(chunk);
+            CRC32 crc = new CRC32();
+            crc.update(chunk);
+            assertEquals((int) crc.getValue(), bytes.getInt(), message + ": wrong chunk CRC");
+            if (chunk[0] == 'I' && chunk[1] == 'D' && chunk[2] == 'A' && chunk[3] == 'T')
+                data.write(chunk, 4, length);
+        }
+        Inflater inflater = new Inflater();
+        inflater.setInput(data.toByteArray());
+        byte[] raw = new byte[HEIGHT * (3 * WIDTH + 1) + 1];
+        try {
+            assertEquals(raw.length - 1, inflater.inflate(raw), message + ": wrong amount of image data");
+        } catch (DataFormatException e) {
+            fail(message + ": corrupt zlib stream - " + e.getMessage());
+        }
+        assertTrue(inflater.finished(), message + ": the zlib stream should end");
+        inflater.end();
+    }
+
+    /**
+     * Test method for {@link PngEncoder#accept(int, int, ByteBuffer)}.
+     */
+    @Test
+    void testAccept(@TempDir Path directory) throws IOException {
+        byte[] pixels = image();
+        Path file = directory.resolve("image.png");
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Bands of mixed heights compressed by several threads
+        encode(file, pixels, 3, 6, 5, 1, 13, 8);
+        assertImage(pixels, file, "TC01");
+        // TC02: Stored (uncompressed) bands
+        encode(file, pixels, 2, 0, 10);
+        assertImage(pixels, file, "TC02");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: The whole image in a single band
+        encode(file, pixels, 2, 9, HEIGHT);
+        assertImage(pixels, file, "TC11");
+        // TC12: Single row bands by a single thread
+        encode(file, pixels, 1, 1, 1);
+        assertImage(pixels, file, "TC12");
+        // TC13: A band that is not the next one throws
+        try (PngEncoder encoder = new PngEncoder(directory.resolve("bad.png"), WIDTH, HEIGHT, 1)) {
+            assertThrows(IllegalArgumentException.class,
+                    () -> encoder.accept(1, 1, ByteBuffer.allocate(3 * WIDTH)), "TC13: Skipped band should throw");
+            assertThrows(IllegalArgumentException.class,
+                    () -> encoder.accept(0, 1, ByteBuffer.allocate(WIDTH)), "TC13: Short band should throw");
+            encoder.accept(0, HEIGHT, ByteBuffer.wrap(pixels));
+        }
+        // TC14: Closing before all the rows were given throws
+        PngEncoder partial = new PngEncoder(directory.resolve("partial.png"), WIDTH, HEIGHT, 1);
+        partial.accept(0, 1, ByteBuffer.wrap(pixels, 0, 3 * WIDTH));
+        assertThrows(IllegalStateException.class, partial::close, "TC14: Missing rows should throw");
+    }
+
+    /**
+     * Test method for {@link PngEncoder#combine(long, long, long)}.
+     */
+    @Test
+    void testCombine() {
+        byte[] data = image();
+        Adler32 whole = new Adler32(), first = new Adler32(), second = new Adler32();
+        whole.update(data);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The checks of two parts combine to the check of the whole
+        first.update(data, 0, 1000);
+        second.update(data, 1000, data.length - 1000);
+        assertEquals(whole.getValue(), PngEncoder.combine(first.getValue(), second.getValue(), data.length - 1000),
+                "TC01: Wrong combined check");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Combining with nothing before - the check of an empty part is 1
+        assertEquals(whole.getValue(), PngEncoder.combine(1, whole.getValue(), data.length),
+                "TC11: Wrong combined check after an empty part");
+    }
+}
@@ -0,0 +1,110 @@
+package renderer;
+
+import geometries.Geometries;
+import geometries.Sphere;
+import org.junit.jupiter.api.Test;
+import primitives.Color;
+import primitives.Point;
+import primitives.Vector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link renderer.ProgressiveRenderer}.
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+class ProgressiveRendererTests {
+    private final Geometries scene = new Geometries(new Sphere(new Point(0.3, 0.2, -10), 4));
+    /**
+     * Shades by the distance of the hit, so every pixel of the sphere is different
+     */
+    private final Shader shader = hit -> hit == null ? new Color(0, 0, 255)
+            : new Color(255, 20 * (hit.getT() - 5), 0);
+
+    private Camera.Builder builder(int samples) {
+        return new Camera.Builder(new Point(0, 0, 0), new Vector(0, 0, -1), new Vector(0, 1, 0))
+                .setVPSize(4, 4).setVPDistance(4).setResolution(13, 10)
+                .setSampling(SamplePattern.SOBOL, samples, 3);
+    }
+
+    /**
+     * Test method for {@link ProgressiveRenderer#render(int, ProgressiveRenderer.Listener)}.
+     */
+    @Test
+    void testRender() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Coarse passes of halving blocks, then passes of more samples, converging to the sampled image
+        List<ProgressiveRenderer.Snapshot> snapshots = new ArrayList<>();
+        ProgressiveRenderer renderer = new ProgressiveRenderer(builder(4).setThreads(3).setTileSize(4).build(),
+                scene, shader);
+        assertEquals(5, renderer.render(5, snapshots::add), "TC01: Wrong amount of passes");
+        assertEquals(5, snapshots.size(), "TC01: Wrong amount of snapshots");
+        int[] blocks = {4, 2, 1, 1, 1}, samples = {0, 0, 1, 5, 9};
+        for (int pass = 0; pass < 5; ++pass) {
+            assertEquals(pass, snapshots.get(pass).pass(), "TC01: Wrong pass index");
+            assertEquals(blocks[pass], snapshots.get(pass).block(), "TC01: Wrong block of pass " + pass);
+            assertEquals(samples[pass], snapshots.get(pass).samples(), "TC01: Wrong samples of pass " + pass);
+        }
+        // the coarse pass fills every block by its top left pixel, also the cut blocks on the right and bottom
+        double[] coarse = snapshots.get(0).pixels();
+        for (int y = 0; y < 10; ++y)
+            for (int x = 0; x < 13; ++x)
+                for (int k = 0; k < 3; ++k)
+                    assertEquals(coarse[3 * ((y / 4 * 4) * 13 + x / 4 * 4) + k], coarse[3 * (y * 13 + x) + k],
+                            "TC01: Block not filled at " + x + "," + y);
+        // the last pass is the image of all its samples at once
+        double[] expected = new double[3 * 130];
+        builder(9).build().renderSampled(scene, shader, (column, row, color) -> {
+            int p = 3 * (row * 13 + column);
+            expected[p] = color.getR();
+            expected[p + 1] = color.getG();
+            expected[p + 2] = color.getB();
+        });
+        assertArrayEquals(expected, snapshots.get(4).pixels(), 1e-9, "TC01: Wrong converged image");
+
+        // TC02: Cancelling from the listener stops after the pass
+        AtomicInteger taken = new AtomicInteger();
+        ProgressiveRenderer cancelled = new ProgressiveRenderer(builder(4).build(), scene, shader);
+        assertEquals(2, cancelled.render(10, snapshot -> {
+            if (taken.incrementAndGet() == 2) cancelled.cancel();
+        }), "TC02: Wrong amount of completed passes");
+        assertEquals(2, taken.get(), "TC02: No snapshot should follow the cancel");
+        // TC03: Cancelling in the middle of a pass leaves it without a snapshot
+        AtomicInteger shaded = new AtomicInteger();
+        ProgressiveRenderer[] midPass = new ProgressiveRenderer[1];
+        midPass[0] = new ProgressiveRenderer(builder(4).build(), scene, hit -> {
+            if (shaded.incrementAndGet() == 60) midPass[0].cancel();
+            return shader.shade(hit);
+        });
+        List<ProgressiveRenderer.Snapshot> partial = new ArrayList<>();
+        int done = midPass[0].render(10, partial::add);
+        assertEquals(partial.size(), done, "TC03: Wrong amount of completed passes");
+        assertTrue(done < 10, "TC03: Render should stop");
+        assertTrue(shaded.get() < 130 + 60, "TC03: Render went on after the cancel");
+        // TC04: A cancel before the render is not lost - the renderer stays cancelled
+        ProgressiveRenderer early = new ProgressiveRenderer(builder(4).build(), scene, shader);
+        early.cancel();
+        assertEquals(0, early.render(10, snapshot -> fail("TC04: Snapshot after the cancel")),
+                "TC04: Render should not start after the cancel");
+        assertEquals(0, cancelled.render(10, snapshot -> fail("TC04: Snapshot after the cancel")),
+                "TC04: Cancelled renderer should stay cancelled");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A single pass is the coarse image
+        List<ProgressiveRenderer.Snapshot> single = new ArrayList<>();
+        new ProgressiveRenderer(builder(1).build(), scene, shader).render(1, single::add);
+        assertEquals(1, single.size(), "TC11: Wrong amount of snapshots");
+        assertEquals(4, single.get(0).block(), "TC11: First pass should be coarse");
+        // TC12: Illegal amounts of passes and a missing resolution throw
+        assertThrows(IllegalArgumentException.class, () -> renderer.render(0, snapshot -> {
+        }), "TC12: Zero passes should throw");
+        assertThrows(IllegalStateException.class, () -> new ProgressiveRenderer(
+                new Camera.Builder(new Point(0, 0, 0), new Vector(0, 0, -1), new Vector(0, 1, 0)).build(),
+                scene, shader), "TC12: Missing resolution should throw");
+    }
+}
@@ -0,0 +1,98 @@
+package renderer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link renderer.SamplePattern}.
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+class SamplePatternTests {
+
+    /**
+     * Checks that every box of a grid of columns x rows over the unit square holds one of the points.
+     */
+    private static void assertOnePerBox(double[] points, int columns, int rows, String message) {
+        int[] count = new int[columns * rows];
+        for (int i = 0; i < points.length; i += 2)
+            ++count[(int) (points[i + 1] * rows) * columns + (int) (points[i] * columns)];
+        for (int box = 0; box < count.length; ++box)
+            assertEquals(1, count[box], message + ": box " + box + " of " + columns + "x" + rows);
+    }
+
+    /**
+     * Test method for {@link SamplePattern#points(long, int, int, int, double[])}.
+     */
+    @Test
+    void testPoints() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Every pattern gives the same points for the same seed and pixel, inside the unit square
+        for (SamplePattern pattern : SamplePattern.values()) {
+            double[] points = new double[2 * 64], again = new double[2 * 64], other = new double[2 * 64];
+            pattern.points(5, 3, 4, 0, points);
+            pattern.points(5, 3, 4, 0, again);
+            pattern.points(5, 4, 3, 0, other);
+            assertArrayEquals(points, again, "TC01: " + pattern + " should be deterministic");
+            assertFalse(Arrays.equals(points, other), "TC01: " + pattern + " should differ between pixels");
+            for (double value : points)
+                assertTrue(value >= 0 && value < 1, "TC01: " + pattern + " point out of the pixel");
+        }
+        // TC02: A square amount of stratified points is a jittered grid
+        double[] points = new double[2 * 16];
+        SamplePattern.STRATIFIED.points(1, 0, 0, 0, points);
+        assertOnePerBox(points, 4, 4, "TC02");
+        // TC03: Other amounts of stratified points are a Latin hypercube
+        points = new double[2 * 7];
+        SamplePattern.STRATIFIED.points(1, 0, 0, 0, points);
+        assertOnePerBox(points, 7, 1, "TC03");
+        assertOnePerBox(points, 1, 7, "TC03");
+        // TC04: 16 shifted Sobol points are one in every box of 16 of any proportion
+        points = new double[2 * 16];
+        SamplePattern.SOBOL.points(9, 2, 3, 0, points);
+        for (int columns = 1; columns <= 16; columns *= 2)
+            assertOnePerBox(points, columns, 16 / columns, "TC04");
+        // TC05: The sequences give the same points whether taken at once or in batches
+        for (SamplePattern pattern : new SamplePattern[]{SamplePattern.RANDOM, SamplePattern.HALTON,
+                SamplePattern.SOBOL, SamplePattern.BLUE_NOISE}) {
+            double[] all = new double[2 * 12], tail = new double[2 * 4];
+            pattern.points(3, 1, 1, 0, all);
+            pattern.points(3, 1, 1, 8, tail);
+            assertArrayEquals(Arrays.copyOfRange(all, 16, 24), tail, "TC05: " + pattern + " batches differ");
+        }
+        // TC06: The first blue noise points of a 64x64 tile of pixels are all different and evenly spread,
+        // and neighbouring pixels are further apart than by independent random values
+        int[] bins = new int[4096];
+        double[][] first = new double[64][64];
+        double[] point = new double[2];
+        for (int y = 0; y < 64; ++y)
+            for (int x = 0; x < 64; ++x) {
+                SamplePattern.BLUE_NOISE.points(11, x + 100, y + 50, 0, point);
+                first[y][x] = point[0];
+                ++bins[(int) (point[0] * 4096)];
+            }
+        for (int bin = 0; bin < 4096; ++bin)
+            assertEquals(1, bins[bin], "TC06: Blue noise values should be a permutation");
+        double difference = 0;
+        for (int y = 0; y < 64; ++y)
+            for (int x = 0; x < 63; ++x)
+                difference += Math.abs(first[y][x] - first[y][x + 1]);
+        // independent uniform values differ by a third on average
+        assertTrue(difference / (64 * 63) > 0.36, "TC06: Blue noise neighbours too close: " + difference / (64 * 63));
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A single stratified point, and no points at all
+        points = new double[2];
+        SamplePattern.STRATIFIED.points(1, 0, 0, 0, points);
+        assertTrue(points[0] >= 0 && points[0] < 1 && points[1] >= 0 && points[1] < 1, "TC11: Point out of the pixel");
+        assertDoesNotThrow(() -> SamplePattern.HALTON.points(1, 0, 0, 0, new double[0]), "TC11: Empty range");
+        // TC12: A negative first index or an odd target throws
+        assertThrows(IllegalArgumentException.class, () -> SamplePattern.SOBOL.points(1, 0, 0, -1, new double[2]),
+                "TC12: Negative index should throw");
+        assertThrows(IllegalArgumentException.class, () -> SamplePattern.SOBOL.points(1, 0, 0, 0, new double[3]),
+                "TC12: Odd target should throw");
+    }
+}
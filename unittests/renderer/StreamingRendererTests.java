@@ -0,0 +1,135 @@
+package renderer;
+
+import geometries.Geometries;
+import geometries.Plane;
+import geometries.Sphere;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import primitives.Color;
+import primitives.Point;
+import primitives.Vector;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link renderer.StreamingRenderer}.
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+class StreamingRendererTests {
+    private final Geometries scene = new Geometries(new Plane(new Point(0, 0, 0), new Vector(0, 0, 1)),
+            new Sphere(new Point(0, 0, 2), 2));
+    /**
+     * Gray levels by the distance of the hit, blue for a miss
+     */
+    private final Shader shader = hit -> hit == null ? new Color(0, 0, 255)
+            : new Color(Math.min(255, hit.getT() * 5), Math.min(255, hit.getT() * 5), Math.min(255, hit.getT() * 5));
+
+    private Camera camera(int threads, int packetSize) {
+        return new Camera.Builder(new Point(0, -20, 8), new Vector(0, 1, -0.4), new Vector(0, 0.4, 1))
+                .setVPSize(10, 10).setVPDistance(10).setResolution(37, 23)
+                .setThreads(threads).setPacketSize(packetSize).build();
+    }
+
+    /**
+     * Test method for {@link StreamingRenderer#renderPpm(Path, int, int)}
+     * and {@link StreamingRenderer#renderPng(Path, int, int, int)}.
+     */
+    @Test
+    void testRenderPpm(@TempDir Path directory) throws IOException {
+        // the expected image, by the camera in memory
+        Camera reference = camera(1, 1);
+        byte[] expected = new byte[3 * 37 * 23];
+        reference.traceRays(scene, (column, row, hit) -> {
+            Color color = shader.shade(hit);
+            int p = 3 * (row * 37 + column);
+            expected[p] = (byte) Math.round(color.getR());
+            expected[p + 1] = (byte) Math.round(color.getG());
+            expected[p + 2] = (byte) Math.round(color.getB());
+        });
+        String header = "P6\n37 23\n255\n";
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Bands of several rows by several threads in packets give the same image
+        Path file = directory.resolve("image.ppm");
+        new StreamingRenderer(camera(3, 2), scene, shader).renderPpm(file, 4, 2);
+        byte[] bytes = Files.readAllBytes(file);
+        assertEquals(header.length() + expected.length, bytes.length, "TC01: Wrong file length");
+        for (int i = 0; i < expected.length; ++i)
+            assertEquals(expected[i], bytes[header.length() + i], "TC01: Wrong byte " + i);
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Single row bands in a single buffer
+        new StreamingRenderer(camera(2, 1), scene, shader).renderPpm(file, 1, 1);
+        bytes = Files.readAllBytes(file);
+        for (int i = 0; i < expected.length; ++i)
+            assertEquals(expected[i], bytes[header.length() + i], "TC11: Wrong byte " + i);
+        // TC12: A single band taller than the image
+        new StreamingRenderer(camera(2, 4), scene, shader).renderPpm(file, 100, 3);
+        bytes = Files.readAllBytes(file);
+        for (int i = 0; i < expected.length; ++i)
+            assertEquals(expected[i], bytes[header.length() + i], "TC12: Wrong byte " + i);
+        // TC13: A PNG file compressed while rendering has the same pixels
+        Path png = directory.resolve("image.png");
+        new StreamingRenderer(camera(2, 2), scene, shader).renderPng(png, 3, 2, 2);
+        BufferedImage read = ImageIO.read(png.toFile());
+        for (int p = 0; p < 37 * 23; ++p)
+            assertEquals((expected[3 * p] & 0xFF) << 16 | (expected[3 * p + 1] & 0xFF) << 8 | expected[3 * p + 2] & 0xFF,
+                    read.getRGB(p % 37, p / 37) & 0xFFFFFF, "TC13: Wrong pixel " + p);
+    }
+
+    /**
+     * Test method for {@link StreamingRenderer#render(int, int, StreamingRenderer.BandSink)}.
+     */
+    @Test
+    void testRender() {
+        AtomicInteger shaded = new AtomicInteger();
+        StreamingRenderer renderer = new StreamingRenderer(camera(4, 1), scene, hit -> {
+            shaded.incrementAndGet();
+            return shader.shade(hit);
+        });
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: A slow sink gets the bands in order, while the renderers are never more than the buffers ahead
+        int[] nextRow = {0};
+        assertDoesNotThrow(() -> renderer.render(2, 3, (firstRow, rows, pixels) -> {
+            assertEquals(nextRow[0], firstRow, "TC01: Band out of order");
+            assertEquals(Math.min(2, 23 - firstRow), rows, "TC01: Wrong band height");
+            assertEquals(3 * 37 * rows, pixels.remaining(), "TC01: Wrong band size");
+            assertTrue(shaded.get() <= (firstRow + 3 * 2) * 37, "TC01: Renderers too far ahead of the sink");
+            nextRow[0] += rows;
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }), "TC01: Render failed");
+        assertEquals(23, nextRow[0], "TC01: Missing bands");
+        // TC02: A failing sink stops the render
+        IOException failure = assertThrows(IOException.class, () -> renderer.render(2, 2, (firstRow, rows, pixels) -> {
+            if (firstRow == 4) throw new IOException("disk full");
+        }), "TC02: Sink failure should be rethrown");
+        assertEquals("disk full", failure.getMessage(), "TC02: Wrong failure");
+        // TC03: A failing shader stops the render
+        StreamingRenderer failing = new StreamingRenderer(camera(2, 1), scene, hit -> {
+            throw new IllegalStateException("shader failure");
+        });
+        assertThrows(IllegalStateException.class, () -> failing.render(2, 2, (firstRow, rows, pixels) -> {
+        }), "TC03: Shader failure should be rethrown");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Illegal band height or amount of buffers throws
+        assertThrows(IllegalArgumentException.class, () -> renderer.render(0, 2, (firstRow, rows, pixels) -> {
+        }), "TC11: Zero band height should throw");
+        assertThrows(IllegalArgumentException.class, () -> renderer.render(2, 0, (firstRow, rows, pixels) -> {
+        }), "TC11: Zero buffers should throw");
+    }
+}
@@ -0,0 +1,104 @@
+package renderer;
+
+import geometries.CompiledScene;
+import geometries.Geometries;
+import geometries.Intersection;
+import geometries.Plane;
+import geometries.Sphere;
+import org.junit.jupiter.api.Test;
+import primitives.Color;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link renderer.WavefrontRenderer}.
+ *
+ * @author Yehonatan Uzzan and Oz Dahari
+ */
+class WavefrontRendererTests {
+
+    /**
+     * Test method for {@link WavefrontRenderer#render()}.
+     */
+    @Test
+    void testRender() {
+        Camera camera = new Camera.Builder(new Point(0, -20, 8), new Vector(0, 1, -0.4), new Vector(0, 0.4, 1))
+                .setVPSize(10, 10).setVPDistance(10).setResolution(40, 30).build();
+        Geometries scene = new Geometries(new Plane(new Point(0, 0, 0), new Vector(0, 0, 1)),
+                new Sphere(new Point(0, 0, 2), 2), new Sphere(new Point(3, 3, 1), 1));
+        CompiledScene compiled = scene.compile();
+        Color ambient = new Color(10, 10, 10), background = new Color(0, 0, 40);
+        Point[] positions = {new Point(-10, -5, 20), new Point(10, 10, 5)};
+        Color[] intensities = {new Color(200, 150, 100), new Color(50, 50, 50)};
+
+        try (WavefrontRenderer renderer = new WavefrontRenderer(camera, scene, 2)) {
+            renderer.setAmbient(ambient).setBackground(background);
+            for (int l = 0; l < positions.length; ++l)
+                renderer.addLight(positions[l], intensities[l]);
+            double[] image = renderer.render();
+
+            // ============ Equivalence Partitions Tests ==============
+            // TC01: Every pixel gets the light a pixel by pixel renderer gives it
+            int shadowed = 0;
+            for (int i = 0; i < 30; ++i)
+                for (int j = 0; j < 40; ++j) {
+                    Ray ray = camera.constructRay(40, 30, j, i);
+                    Intersection hit = compiled.calculateClosestIntersection(ray);
+                    double[] expected = {background.getR(), background.getG(), background.getB()};
+                    if (hit != null) {
+                        expected = new double[]{ambient.getR(), ambient.getG(), ambient.getB()};
+                        Vector normal = hit.getNormal();
+                        if (normal.dotProduct(ray.getDirection()) > 0) normal = normal.scale(-1);
+                        Point head = hit.getPoint().add(normal.scale(1e-6));
+                        for (int l = 0; l < positions.length; ++l) {
+                            Vector toLight = positions[l].subtract(head);
+                            double diffuse = toLight.normalize().dotProduct(normal);
+                            if (diffuse <= 0) continue;
+                            if (compiled.isOccluded(new Ray(head, toLight), toLight.length())) {
+                                ++shadowed;
+                                continue;
+                            }
+                            expected[0] += intensities[l].getR() * diffuse;
+                            expected[1] += intensities[l].getG() * diffuse;
+                            expected[2] += intensities[l].getB() * diffuse;
+                        }
+                    }
+                    int p = i * 40 + j;
+                    for (int k = 0; k < 3; ++k)
+                        assertEquals(expected[k], image[3 * p + k], 1e-6, "TC01: Wrong color at " + j + "," + i);
+                }
+            assertTrue(shadowed > 0, "TC01: Expected some shadows");
+            // TC02: Rendering into a frame buffer gives the same colors
+            FrameBuffer buffer = new FrameBuffer(40, 30);
+            renderer.render(buffer);
+            for (int p = 0; p < 40 * 30; p += 7) {
+                Color pixel = buffer.getPixel(p % 40, p / 40);
+                assertEquals(image[3 * p], pixel.getR(), 1e-3, "TC02: Wrong frame buffer red at " + p);
+                assertEquals(image[3 * p + 2], pixel.getB(), 1e-3, "TC02: Wrong frame buffer blue at " + p);
+            }
+            assertThrows(IllegalArgumentException.class, () -> renderer.render(new FrameBuffer(30, 40)),
+                    "TC02: Frame buffer of another size should throw");
+            // TC03: Every stage was timed
+            Map<WavefrontRenderer.Stage, Long> nanos = renderer.getStageNanos();
+            assertEquals(WavefrontRenderer.Stage.values().length, nanos.size(), "TC03: Missing stages");
+            for (Map.Entry<WavefrontRenderer.Stage, Long> stage : nanos.entrySet())
+                assertTrue(stage.getValue() > 0, "TC03: Stage " + stage.getKey() + " not timed");
+
+            // =============== Boundary Values Tests ==================
+            // TC11: A second render gives the same image and adds to the stage times
+            long shading = nanos.get(WavefrontRenderer.Stage.SHADING);
+            assertArrayEquals(image, renderer.render(), "TC11: Second render differs");
+            assertTrue(renderer.getStageNanos().get(WavefrontRenderer.Stage.SHADING) > shading,
+                    "TC11: Stage times should accumulate");
+        }
+        // TC12: A camera without a resolution throws
+        Camera noResolution = new Camera.Builder(new Point(0, 0, 0), new Vector(0, 0, -1), new Vector(0, 1, 0)).build();
+        assertThrows(IllegalStateException.class, () -> new WavefrontRenderer(noResolution, scene, 1),
+                "TC12: Missing resolution should throw");
+    }
+}